@@ -29,7 +29,9 @@ import org.edx.mobile.module.analytics.AnalyticsRegistry;
 import org.edx.mobile.module.analytics.FirebaseAnalytics;
 import org.edx.mobile.module.analytics.SegmentAnalytics;
 import org.edx.mobile.module.prefs.PrefManager;
-import org.edx.mobile.module.storage.IStorage;
+import org.edx.mobile.module.storage.DownloadMigrator;
+import org.edx.mobile.module.storage.DownloadReconciler;
+import org.edx.mobile.module.storage.DownloadStateMachine;
 import org.edx.mobile.receivers.NetworkConnectivityReceiver;
 import org.edx.mobile.util.Config;
 import org.edx.mobile.util.NetworkUtil;
@@ -123,6 +125,13 @@ public abstract class MainApplication extends MultiDexApplication {
 
         checkIfAppVersionUpgraded(this);
 
+        // Complete the download transitions interrupted by the app being killed
+        injector.getInstance(DownloadStateMachine.class).recoverInBackground();
+        // Clean up the video files left over by removed downloads, and vice versa
+        injector.getInstance(DownloadReconciler.class).reconcileInBackground();
+        // Carry on moving the downloaded videos to the volume picked by the user, if cut short
+        injector.getInstance(DownloadMigrator.class).resumeInBackground();
+
         // Register Font Awesome module in android-iconify library
         Iconify.with(new FontAwesomeModule());
 
@@ -165,8 +174,6 @@ public abstract class MainApplication extends MultiDexApplication {
 
     private void onAppUpdated(final long previousVersionCode, final long curVersionCode,
                               final String previousVersionName, final String curVersionName) {
-        // Try repair of download data on updating of app version
-        injector.getInstance(IStorage.class).repairDownloadCompletionData();
         // Fire app updated event
         EventBus.getDefault().postSticky(new AppUpdatedEvent(previousVersionCode, curVersionCode,
                 previousVersionName, curVersionName));
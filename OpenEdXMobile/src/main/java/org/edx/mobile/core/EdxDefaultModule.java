@@ -26,6 +26,7 @@ import org.edx.mobile.module.db.IDatabase;
 import org.edx.mobile.module.db.impl.IDatabaseImpl;
 import org.edx.mobile.module.download.IDownloadManager;
 import org.edx.mobile.module.download.IDownloadManagerImpl;
+import org.edx.mobile.module.download.OkHttpDownloadManager;
 import org.edx.mobile.module.notification.DummyNotificationDelegate;
 import org.edx.mobile.module.notification.NotificationDelegate;
 import org.edx.mobile.module.storage.IStorage;
@@ -54,7 +55,11 @@ public class EdxDefaultModule extends AbstractModule {
         Config config = new Config(context);
 
         bind(IDatabase.class).to(IDatabaseImpl.class);
-        bind(IDownloadManager.class).to(IDownloadManagerImpl.class);
+        if (config.isSegmentedDownloadsEnabled()) {
+            bind(IDownloadManager.class).to(OkHttpDownloadManager.class);
+        } else {
+            bind(IDownloadManager.class).to(IDownloadManagerImpl.class);
+        }
 
         bind(NotificationDelegate.class).to(DummyNotificationDelegate.class);
 
@@ -28,20 +28,15 @@ import org.edx.mobile.model.api.SectionEntry;
 import org.edx.mobile.model.api.SummaryModel;
 import org.edx.mobile.model.api.VideoResponseModel;
 import org.edx.mobile.model.course.BlockModel;
-import org.edx.mobile.model.course.BlockType;
 import org.edx.mobile.model.course.CourseBannerInfoModel;
 import org.edx.mobile.model.course.CourseComponent;
 import org.edx.mobile.model.course.CourseDates;
 import org.edx.mobile.model.course.CourseStatus;
 import org.edx.mobile.model.course.CourseStructureV1Model;
-import org.edx.mobile.model.course.DiscussionBlockModel;
-import org.edx.mobile.model.course.DiscussionData;
 import org.edx.mobile.model.course.HasDownloadEntry;
-import org.edx.mobile.model.course.HtmlBlockModel;
 import org.edx.mobile.model.course.IBlock;
 import org.edx.mobile.model.course.ResetCourseDates;
 import org.edx.mobile.model.course.VideoBlockModel;
-import org.edx.mobile.model.course.VideoData;
 import org.edx.mobile.model.course.VideoInfo;
 import org.edx.mobile.module.prefs.UserPrefs;
 import org.edx.mobile.util.Config;
@@ -52,6 +47,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import retrofit2.Call;
 
@@ -60,10 +57,19 @@ import static org.edx.mobile.http.util.CallUtil.executeStrict;
 
 @Singleton
 public class CourseAPI {
+    /**
+     * No of blocks above which a course structure is normalized in parallel.
+     */
+    private static final int PARALLEL_NORMALIZATION_THRESHOLD = 2000;
+
+    private static ForkJoinPool normalizationPool;
 
     @Inject
     protected Config config;
 
+    @Inject
+    protected ImportedCourseStructures importedCourseStructures;
+
     @NonNull
     private final CourseService courseService;
     @NonNull
@@ -226,11 +232,37 @@ public class CourseAPI {
     @NonNull
     public CourseComponent getCourseStructureFromCache(@NonNull String blocksApiVersion, @NonNull String courseId)
             throws Exception {
-        CourseStructureV1Model model = executeStrict(
-                courseService.getCourseStructure("only-if-cached, max-stale", blocksApiVersion, getUsername(), courseId));
+        CourseStructureV1Model model = getCourseStructureModelFromCache(blocksApiVersion, courseId);
         return (CourseComponent) normalizeCourseStructure(model, courseId);
     }
 
+    /**
+     * @return The course structure from the HTTP cache, or the one imported from a course
+     * package if it isn't cached. The imported one is deleted once the structure fetched from the
+     * server is cached.
+     */
+    @NonNull
+    public CourseStructureV1Model getCourseStructureModelFromCache(@NonNull String blocksApiVersion,
+                                                                   @NonNull String courseId)
+            throws Exception {
+        final CourseStructureV1Model cachedModel;
+        try {
+            cachedModel = executeStrict(courseService.getCourseStructure(
+                    "only-if-cached, max-stale", blocksApiVersion, getUsername(), courseId));
+        } catch (Exception e) {
+            final CourseStructureV1Model model = importedCourseStructures == null ? null :
+                    importedCourseStructures.get(courseId);
+            if (model == null) {
+                throw e;
+            }
+            return model;
+        }
+        if (importedCourseStructures != null) {
+            importedCourseStructures.remove(courseId);
+        }
+        return cachedModel;
+    }
+
     @NonNull
     public Call<CourseStatus> getCourseStatus(@NonNull String courseId) {
         return courseService.getCourseStatus(courseId);
@@ -375,35 +407,153 @@ public class CourseAPI {
     public static IBlock normalizeCourseStructure(
             @NonNull final CourseStructureV1Model courseStructureV1Model,
             @NonNull final String courseId) throws CourseContentNotValidException {
+        final boolean parallel = courseStructureV1Model.blockData != null &&
+                courseStructureV1Model.blockData.size() >= PARALLEL_NORMALIZATION_THRESHOLD;
+        return normalizeCourseStructure(courseStructureV1Model, courseId, parallel);
+    }
+
+    /**
+     * Mapping from raw data structure from getCourseStructure() API
+     *
+     * @param parallel <code>true</code> to build the subtrees of the chapters in parallel,
+     *                 which only pays off for courses having thousands of blocks.
+     */
+    @NonNull
+    public static IBlock normalizeCourseStructure(
+            @NonNull final CourseStructureV1Model courseStructureV1Model,
+            @NonNull final String courseId, boolean parallel) throws CourseContentNotValidException {
         BlockModel topBlock = courseStructureV1Model.getBlockById(courseStructureV1Model.root);
         if (topBlock == null) {
             throw new CourseContentNotValidException("Server didn't send a proper response for this course: " + courseStructureV1Model.root);
         }
         CourseComponent course = new CourseComponent(topBlock, null);
         course.setCourseId(courseId);
-        for (BlockModel m : courseStructureV1Model.getDescendants(topBlock)) {
-            normalizeCourseStructure(courseStructureV1Model, m, course);
+        if (parallel) {
+            // Chapters are created in order on this thread, only their subtrees are built in
+            // parallel as each task only touches the nodes of its own chapter.
+            final List<NormalizeChildrenTask> tasks = new ArrayList<>();
+            final int count = courseStructureV1Model.getDescendantsCount(topBlock);
+            for (int i = 0; i < count; i++) {
+                final BlockModel m = courseStructureV1Model.getDescendant(topBlock, i);
+                if (m == null) {
+                    continue;
+                }
+                if (m.isContainer()) {
+                    tasks.add(new NormalizeChildrenTask(courseStructureV1Model, m,
+                            new CourseComponent(m, course)));
+                } else {
+                    normalizeCourseStructure(courseStructureV1Model, m, course);
+                }
+            }
+            getNormalizationPool().invoke(new NormalizeChildrenTask.Batch(tasks));
+        } else {
+            final int count = courseStructureV1Model.getDescendantsCount(topBlock);
+            for (int i = 0; i < count; i++) {
+                final BlockModel m = courseStructureV1Model.getDescendant(topBlock, i);
+                if (m != null) {
+                    normalizeCourseStructure(courseStructureV1Model, m, course);
+                }
+            }
         }
+        course.trimChildren();
+        course.computeAggregates();
         return course;
     }
 
-    private static void normalizeCourseStructure(
+    static void normalizeCourseStructure(
             @NonNull final CourseStructureV1Model courseStructureV1Model,
             @NonNull final BlockModel block,
             @NonNull final CourseComponent parent) {
 
         if (block.isContainer()) {
             CourseComponent child = new CourseComponent(block, parent);
-            for (BlockModel m : courseStructureV1Model.getDescendants(block)) {
-                normalizeCourseStructure(courseStructureV1Model, m, child);
+            if (hasOnlyLeaves(courseStructureV1Model, block)) {
+                // Leaves are only created once they are needed, e.g. on navigating to a unit
+                child.setPendingChildren(courseStructureV1Model, block);
+            } else {
+                normalizeChildren(courseStructureV1Model, block, child);
             }
         } else {
-            if (BlockType.VIDEO == block.type && block.data instanceof VideoData) {
-                new VideoBlockModel(block, parent);
-            } else if (BlockType.DISCUSSION == block.type && block.data instanceof DiscussionData) {
-                new DiscussionBlockModel(block, parent);
-            } else { //everything else.. we fallback to html component
-                new HtmlBlockModel(block, parent);
+            CourseComponent.createLeaf(block, parent);
+        }
+    }
+
+    static boolean hasOnlyLeaves(
+            @NonNull final CourseStructureV1Model courseStructureV1Model,
+            @NonNull final BlockModel block) {
+        final int count = courseStructureV1Model.getDescendantsCount(block);
+        boolean hasLeaves = false;
+        for (int i = 0; i < count; i++) {
+            final BlockModel m = courseStructureV1Model.getDescendant(block, i);
+            if (m != null) {
+                if (m.isContainer()) {
+                    return false;
+                }
+                hasLeaves = true;
+            }
+        }
+        return hasLeaves;
+    }
+
+    private static void normalizeChildren(
+            @NonNull final CourseStructureV1Model courseStructureV1Model,
+            @NonNull final BlockModel block,
+            @NonNull final CourseComponent component) {
+        final int count = courseStructureV1Model.getDescendantsCount(block);
+        for (int i = 0; i < count; i++) {
+            final BlockModel m = courseStructureV1Model.getDescendant(block, i);
+            if (m != null) {
+                normalizeCourseStructure(courseStructureV1Model, m, component);
+            }
+        }
+        component.trimChildren();
+    }
+
+    @NonNull
+    private static synchronized ForkJoinPool getNormalizationPool() {
+        if (normalizationPool == null) {
+            normalizationPool = new ForkJoinPool();
+        }
+        return normalizationPool;
+    }
+
+    /**
+     * Builds the subtree of an already created container component.
+     */
+    private static class NormalizeChildrenTask extends RecursiveAction {
+        @NonNull
+        private final CourseStructureV1Model courseStructureV1Model;
+        @NonNull
+        private final BlockModel block;
+        @NonNull
+        private final CourseComponent component;
+
+        NormalizeChildrenTask(@NonNull CourseStructureV1Model courseStructureV1Model,
+                              @NonNull BlockModel block, @NonNull CourseComponent component) {
+            this.courseStructureV1Model = courseStructureV1Model;
+            this.block = block;
+            this.component = component;
+        }
+
+        @Override
+        protected void compute() {
+            normalizeChildren(courseStructureV1Model, block, component);
+        }
+
+        /**
+         * Runs the given tasks in parallel and waits for all of them to finish.
+         */
+        static class Batch extends RecursiveAction {
+            @NonNull
+            private final List<NormalizeChildrenTask> tasks;
+
+            Batch(@NonNull List<NormalizeChildrenTask> tasks) {
+                this.tasks = tasks;
+            }
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
             }
         }
     }
@@ -0,0 +1,211 @@
+package org.edx.mobile.course;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.IBlock;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory token index over the display names of the sections, subsections and units of a
+ * course, to search within a course as the learner types.
+ * <p>
+ * Every word of a query is matched as a prefix of the words of the display names, and the
+ * results are ordered the way they appear in the course outline. The index is kept up to date
+ * with {@link #update(List)} after the course has been patched, which only re-tokenizes the
+ * changed components. It isn't thread safe and is meant to be used on the main thread.
+ */
+public class CourseSearchIndex {
+    private static final EnumSet<BlockType> INDEXED_TYPES =
+            EnumSet.of(BlockType.CHAPTER, BlockType.SEQUENTIAL, BlockType.VERTICAL);
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    @NonNull
+    private final CourseComponent course;
+    /**
+     * Components having each token in their display name, sorted by token for prefix lookups.
+     */
+    private final TreeMap<String, Set<CourseComponent>> index = new TreeMap<>();
+    /**
+     * Tokens under which each component is indexed, to remove them when it changes.
+     */
+    private final Map<CourseComponent, String[]> indexedTokens = new IdentityHashMap<>();
+    /**
+     * Position of each indexed component in the course outline, to order the results.
+     */
+    private Map<CourseComponent, Integer> positions = new IdentityHashMap<>();
+
+    private final Comparator<CourseComponent> outlineOrder = new Comparator<CourseComponent>() {
+        @Override
+        public int compare(CourseComponent lhs, CourseComponent rhs) {
+            return positions.get(lhs) - positions.get(rhs);
+        }
+    };
+
+    public CourseSearchIndex(@NonNull CourseComponent course) {
+        this.course = course;
+        update(null);
+    }
+
+    /**
+     * Bring the index up to date with the course, after it has been patched.
+     *
+     * @param changes The changes applied to the course, null if unknown in which case the display
+     *                names of all the components are indexed again.
+     */
+    public void update(@Nullable List<CourseStructurePatcher.Change> changes) {
+        final Map<CourseComponent, Integer> newPositions = new IdentityHashMap<>();
+        collectPositions(course, newPositions);
+        // Drop the components that are no longer part of the course
+        final List<CourseComponent> removed = new ArrayList<>();
+        for (CourseComponent component : indexedTokens.keySet()) {
+            if (!newPositions.containsKey(component)) {
+                removed.add(component);
+            }
+        }
+        for (CourseComponent component : removed) {
+            remove(component);
+        }
+        positions = newPositions;
+        if (changes == null) {
+            for (CourseComponent component : newPositions.keySet()) {
+                remove(component);
+                add(component);
+            }
+            return;
+        }
+        for (CourseStructurePatcher.Change change : changes) {
+            if (change.type == CourseStructurePatcher.Change.Type.UPDATED &&
+                    newPositions.containsKey(change.component)) {
+                remove(change.component);
+                add(change.component);
+            }
+        }
+        // Index the components that have been added to the course
+        for (CourseComponent component : newPositions.keySet()) {
+            if (!indexedTokens.containsKey(component)) {
+                add(component);
+            }
+        }
+    }
+
+    /**
+     * @param query Words to look for, each of them is matched as the prefix of a word.
+     * @param limit Maximum no of results to return.
+     * @return The components whose display name matches all the words of the query, in the
+     * order they appear in the course outline.
+     */
+    @NonNull
+    public List<CourseComponent> search(@NonNull String query, int limit) {
+        final String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return Collections.emptyList();
+        }
+        Set<CourseComponent> matches = null;
+        for (String token : queryTokens) {
+            final Set<CourseComponent> tokenMatches = newIdentitySet();
+            for (Set<CourseComponent> components : index.subMap(token,
+                    token + Character.MAX_VALUE).values()) {
+                if (matches == null) {
+                    tokenMatches.addAll(components);
+                } else {
+                    for (CourseComponent component : components) {
+                        if (matches.contains(component)) {
+                            tokenMatches.add(component);
+                        }
+                    }
+                }
+            }
+            matches = tokenMatches;
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        final List<CourseComponent> results = new ArrayList<>(matches);
+        Collections.sort(results, outlineOrder);
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    private void add(@NonNull CourseComponent component) {
+        final String[] tokens = tokenize(component.getDisplayName());
+        indexedTokens.put(component, tokens);
+        for (String token : tokens) {
+            Set<CourseComponent> components = index.get(token);
+            if (components == null) {
+                components = newIdentitySet();
+                index.put(token, components);
+            }
+            components.add(component);
+        }
+    }
+
+    private void remove(@NonNull CourseComponent component) {
+        final String[] tokens = indexedTokens.remove(component);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            final Set<CourseComponent> components = index.get(token);
+            if (components != null) {
+                components.remove(component);
+                if (components.isEmpty()) {
+                    index.remove(token);
+                }
+            }
+        }
+    }
+
+    private static void collectPositions(@NonNull CourseComponent component,
+                                         @NonNull Map<CourseComponent, Integer> positions) {
+        for (IBlock child : component.getChildren()) {
+            final CourseComponent childComponent = (CourseComponent) child;
+            if (!childComponent.isContainer()) {
+                continue;
+            }
+            if (INDEXED_TYPES.contains(childComponent.getType())) {
+                positions.put(childComponent, positions.size());
+            }
+            // Leaves aren't indexed, so there is no need to create them
+            if (!childComponent.hasPendingChildren()) {
+                collectPositions(childComponent, positions);
+            }
+        }
+    }
+
+    /**
+     * Split the text into lower case words stripped of their diacritics, so that "Évaluation"
+     * is found by typing "eval".
+     */
+    @NonNull
+    static String[] tokenize(@NonNull String text) {
+        final String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("").toLowerCase(Locale.ROOT);
+        final List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(normalized)) {
+            if (!token.isEmpty() && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    @NonNull
+    private static Set<CourseComponent> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<CourseComponent, Boolean>());
+    }
+}
@@ -0,0 +1,180 @@
+package org.edx.mobile.course;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.edx.mobile.exception.CourseContentNotValidException;
+import org.edx.mobile.model.course.BlockModel;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.model.course.DiscussionBlockModel;
+import org.edx.mobile.model.course.DiscussionData;
+import org.edx.mobile.model.course.HtmlBlockModel;
+import org.edx.mobile.model.course.IBlock;
+import org.edx.mobile.model.course.VideoBlockModel;
+import org.edx.mobile.model.course.VideoData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Patches an already normalized course with a refreshed {@link CourseStructureV1Model} by
+ * comparing the blocks by id, so that only the changed nodes are touched and the nodes that are
+ * referenced by the UI stay valid.
+ */
+public class CourseStructurePatcher {
+
+    public static class Change {
+        public enum Type {
+            /**
+             * Values of the component have changed, its children are the same.
+             */
+            UPDATED,
+            /**
+             * Children of the component have been added, removed or reordered, so its whole
+             * subtree has been rebuilt.
+             */
+            CHILDREN_CHANGED
+        }
+
+        @NonNull
+        public final Type type;
+        @NonNull
+        public final CourseComponent component;
+
+        Change(@NonNull Type type, @NonNull CourseComponent component) {
+            this.type = type;
+            this.component = component;
+        }
+    }
+
+    public static class Result {
+        /**
+         * The patched course, or the newly normalized one if the previous course couldn't be
+         * patched.
+         */
+        @NonNull
+        public final CourseComponent course;
+        /**
+         * Changes applied to the previous course, <code>null</code> if the course has been
+         * normalized from scratch.
+         */
+        @Nullable
+        public final List<Change> changes;
+
+        Result(@NonNull CourseComponent course, @Nullable List<Change> changes) {
+            this.course = course;
+            this.changes = changes;
+        }
+
+        /**
+         * @return <code>true</code> if the same nodes are still in place, only their values may
+         * have changed.
+         */
+        public boolean isStructureUnchanged() {
+            if (changes == null) {
+                return false;
+            }
+            for (Change change : changes) {
+                if (change.type == Change.Type.CHILDREN_CHANGED) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Patch the previous course with the new course structure.
+     *
+     * @param previousCourse Previously normalized course, can be null if there is none.
+     * @param model          The new course structure.
+     * @param courseId       Id of the course.
+     * @return The patched course along with the applied changes.
+     */
+    @NonNull
+    public static Result patch(@Nullable CourseComponent previousCourse,
+                               @NonNull CourseStructureV1Model model,
+                               @NonNull String courseId) throws CourseContentNotValidException {
+        final BlockModel topBlock = model.getBlockById(model.root);
+        if (previousCourse == null || topBlock == null ||
+                !previousCourse.getId().equals(topBlock.id) ||
+                previousCourse.getType() != topBlock.type) {
+            return new Result((CourseComponent) CourseAPI.normalizeCourseStructure(model, courseId), null);
+        }
+        final List<Change> changes = new ArrayList<>();
+        patch(model, previousCourse, topBlock, changes);
+        if (!changes.isEmpty()) {
+            previousCourse.computeAggregates();
+        }
+        return new Result(previousCourse, Collections.unmodifiableList(changes));
+    }
+
+    private static void patch(@NonNull CourseStructureV1Model model,
+                              @NonNull CourseComponent component, @NonNull BlockModel block,
+                              @NonNull List<Change> changes) {
+        boolean updated = component.update(block);
+        if (block.isContainer() && component.hasPendingChildren() &&
+                CourseAPI.hasOnlyLeaves(model, block)) {
+            // No need to create the leaves just to compare them, as nothing refers to them yet
+            updated |= component.updatePendingChildren(model, block);
+        }
+        if (updated) {
+            changes.add(new Change(Change.Type.UPDATED, component));
+        }
+        if (!block.isContainer() || component.hasPendingChildren()) {
+            return;
+        }
+        final List<BlockModel> newChildren = model.getDescendants(block);
+        final List<IBlock> children = component.getChildren();
+        if (!isSameStructure(children, newChildren)) {
+            component.removeAllChildren();
+            for (BlockModel child : newChildren) {
+                CourseAPI.normalizeCourseStructure(model, child, component);
+            }
+            component.trimChildren();
+            changes.add(new Change(Change.Type.CHILDREN_CHANGED, component));
+            return;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            patch(model, (CourseComponent) children.get(i), newChildren.get(i), changes);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if both lists hold the same blocks in the same order, and every
+     * existing component is of the class that the new block would be normalized to.
+     */
+    private static boolean isSameStructure(@NonNull List<IBlock> children,
+                                           @NonNull List<BlockModel> newChildren) {
+        if (children.size() != newChildren.size()) {
+            return false;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            final IBlock child = children.get(i);
+            final BlockModel newChild = newChildren.get(i);
+            if (!child.getId().equals(newChild.id) || child.getType() != newChild.type ||
+                    child.getClass() != getComponentClass(newChild)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mirrors the choice of component made by {@link CourseAPI#normalizeCourseStructure}.
+     */
+    @NonNull
+    private static Class<? extends CourseComponent> getComponentClass(@NonNull BlockModel block) {
+        if (block.isContainer()) {
+            return CourseComponent.class;
+        } else if (BlockType.VIDEO == block.type && block.data instanceof VideoData) {
+            return VideoBlockModel.class;
+        } else if (BlockType.DISCUSSION == block.type && block.data instanceof DiscussionData) {
+            return DiscussionBlockModel.class;
+        }
+        return HtmlBlockModel.class;
+    }
+}
@@ -0,0 +1,109 @@
+package org.edx.mobile.course;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.util.IOUtils;
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Course structures imported from course packages, for the courses whose structure isn't in the
+ * HTTP cache, as on devices that have never gone online with the course. The structure fetched
+ * from the server takes precedence, and replaces the imported one once it is cached.
+ */
+@Singleton
+public class ImportedCourseStructures {
+    private static final String DIRECTORY = "imported_courses";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    @NonNull
+    private final File directory;
+    @NonNull
+    private final Gson gson;
+
+    @Inject
+    public ImportedCourseStructures(@NonNull Context context, @NonNull Gson gson) {
+        this.directory = new File(context.getFilesDir(), DIRECTORY);
+        this.gson = gson;
+    }
+
+    /**
+     * Save the structure of a course, replacing any saved before.
+     *
+     * @param courseId Id of the course.
+     * @param json     Course structure, as the blocks API returns it.
+     */
+    public void put(@NonNull String courseId, @NonNull String json) throws IOException {
+        final CourseStructureV1Model model;
+        try {
+            model = gson.fromJson(json, CourseStructureV1Model.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid course structure", e);
+        }
+        if (model == null || model.root == null || model.blockData == null) {
+            throw new IOException("Invalid course structure");
+        }
+        directory.mkdirs();
+        final File file = getFile(courseId);
+        final File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(json.getBytes(UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to save the course structure to " + file);
+        }
+    }
+
+    /**
+     * @param courseId Id of the course.
+     * @return The saved structure of the course, or null if it hasn't been imported.
+     */
+    @Nullable
+    public CourseStructureV1Model get(@NonNull String courseId) {
+        final File file = getFile(courseId);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(IOUtils.toString(file, UTF_8), CourseStructureV1Model.class);
+        } catch (IOException | JsonParseException e) {
+            logger.error(e);
+            return null;
+        }
+    }
+
+    /**
+     * Delete the saved structure of a course, once its structure has been fetched from the
+     * server.
+     *
+     * @param courseId Id of the course.
+     */
+    public void remove(@NonNull String courseId) {
+        final File file = getFile(courseId);
+        if (file.exists() && !file.delete()) {
+            logger.warn("Delete failed: " + file.getPath());
+        }
+    }
+
+    @NonNull
+    private File getFile(@NonNull String courseId) {
+        return new File(directory, Sha1Util.SHA1(courseId));
+    }
+}
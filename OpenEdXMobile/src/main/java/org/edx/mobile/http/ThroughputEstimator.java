@@ -0,0 +1,193 @@
+package org.edx.mobile.http;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.http.interceptor.ThroughputInterceptor;
+import org.edx.mobile.module.analytics.Analytics;
+import org.edx.mobile.module.analytics.AnalyticsRegistry;
+import org.edx.mobile.module.prefs.PrefManager;
+import org.edx.mobile.util.Config;
+import org.edx.mobile.util.NetworkUtil;
+
+/**
+ * Estimates the download speed from the responses the app downloads anyway, i.e. videos and API
+ * responses, which are reported to it by the {@link ThroughputInterceptor}.
+ * <p>
+ * The bytes read while one or more responses are being downloaded are sampled into windows of up
+ * to {@link #MAX_SAMPLE_MS}, so that concurrent downloads are measured as the combined throughput
+ * of the network rather than that of each download. Windows with too few bytes to tell anything
+ * apart from the latency, like those of small API responses, are dropped. The samples are
+ * smoothed into an exponentially weighted moving average per type of network, which is persisted
+ * so that the estimate survives restarts of the app.
+ */
+@Singleton
+public class ThroughputEstimator {
+    /**
+     * Least no of bytes a sample has to contain to count.
+     */
+    public static final long MIN_SAMPLE_BYTES = 32 * 1024;
+    /**
+     * Longest window of time a sample covers, after which a new sample is started.
+     */
+    public static final long MAX_SAMPLE_MS = 2 * DateUtils.SECOND_IN_MILLIS;
+    /**
+     * Weight of a new sample in the moving average.
+     */
+    public static final float SMOOTHING_FACTOR = 0.25f;
+    /**
+     * Least time between two writes of the estimates to the preferences.
+     */
+    private static final long PERSIST_INTERVAL_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+
+    private enum NetworkType {
+        WIFI(PrefManager.Key.THROUGHPUT_KBPS_WIFI, Analytics.Values.WIFI),
+        MOBILE(PrefManager.Key.THROUGHPUT_KBPS_MOBILE, Analytics.Values.CELL_DATA);
+
+        @NonNull
+        final String prefKey;
+        @NonNull
+        final String analyticsValue;
+
+        NetworkType(@NonNull String prefKey, @NonNull String analyticsValue) {
+            this.prefKey = prefKey;
+            this.analyticsValue = analyticsValue;
+        }
+    }
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final Config config;
+    @NonNull
+    private final AnalyticsRegistry analyticsRegistry;
+    @NonNull
+    private final PrefManager prefManager;
+
+    // Guarded by this
+    private final float[] estimates = new float[NetworkType.values().length];
+    private int activeTransfers;
+    private long sampleStartedAt;
+    private long sampleBytes;
+    private long persistedAt = -PERSIST_INTERVAL_MS;
+    private boolean hasUnpersistedEstimates;
+    private boolean isReportPending = true;
+
+    @Inject
+    public ThroughputEstimator(@NonNull Context context, @NonNull Config config,
+                               @NonNull AnalyticsRegistry analyticsRegistry) {
+        this.context = context;
+        this.config = config;
+        this.analyticsRegistry = analyticsRegistry;
+        this.prefManager = new PrefManager(context, PrefManager.Pref.WIFI);
+        for (NetworkType networkType : NetworkType.values()) {
+            estimates[networkType.ordinal()] = prefManager.getFloat(networkType.prefKey, 0f);
+        }
+    }
+
+    /**
+     * @return The estimated download speed over the active network in KB/s, 0 if unknown.
+     */
+    public synchronized float getThroughputKbps() {
+        final NetworkType networkType = getNetworkType();
+        return networkType == null ? 0 : estimates[networkType.ordinal()];
+    }
+
+    /**
+     * Called when the device connects to a network. The first estimate over the new connection
+     * gets reported to the analytics.
+     */
+    public synchronized void onNetworkChanged() {
+        isReportPending = true;
+        // The bytes sampled so far don't tell anything about the new network
+        sampleStartedAt = SystemClock.elapsedRealtime();
+        sampleBytes = 0;
+        if (hasUnpersistedEstimates) {
+            persist();
+        }
+    }
+
+    /**
+     * Called when the body of a response starts being downloaded.
+     */
+    public synchronized void onTransferStarted() {
+        if (activeTransfers++ == 0) {
+            sampleStartedAt = SystemClock.elapsedRealtime();
+            sampleBytes = 0;
+        }
+    }
+
+    /**
+     * Called whenever bytes of the body of a response have been downloaded.
+     */
+    public synchronized void onBytesTransferred(long byteCount) {
+        sampleBytes += byteCount;
+        if (SystemClock.elapsedRealtime() - sampleStartedAt >= MAX_SAMPLE_MS) {
+            endSample();
+        }
+    }
+
+    /**
+     * Called when the body of a response has been downloaded, or has been closed before.
+     */
+    public synchronized void onTransferEnded() {
+        if (activeTransfers > 0 && --activeTransfers == 0) {
+            endSample();
+        }
+    }
+
+    private void endSample() {
+        final long now = SystemClock.elapsedRealtime();
+        final long elapsedMs = now - sampleStartedAt;
+        if (sampleBytes >= MIN_SAMPLE_BYTES && elapsedMs > 0) {
+            addSample(sampleBytes * DateUtils.SECOND_IN_MILLIS / 1024f / elapsedMs);
+        }
+        sampleStartedAt = now;
+        sampleBytes = 0;
+    }
+
+    private void addSample(float throughputKbps) {
+        final NetworkType networkType = getNetworkType();
+        if (networkType == null) {
+            return;
+        }
+        final int index = networkType.ordinal();
+        estimates[index] = estimates[index] <= 0 ? throughputKbps :
+                SMOOTHING_FACTOR * throughputKbps + (1 - SMOOTHING_FACTOR) * estimates[index];
+        hasUnpersistedEstimates = true;
+        if (SystemClock.elapsedRealtime() - persistedAt >= PERSIST_INTERVAL_MS) {
+            persist();
+        }
+        if (isReportPending && config.isSpeedTestEnabled()) {
+            isReportPending = false;
+            analyticsRegistry.trackUserConnectionSpeed(networkType.analyticsValue,
+                    estimates[index]);
+        }
+    }
+
+    private void persist() {
+        for (NetworkType networkType : NetworkType.values()) {
+            prefManager.put(networkType.prefKey, estimates[networkType.ordinal()]);
+        }
+        persistedAt = SystemClock.elapsedRealtime();
+        hasUnpersistedEstimates = false;
+    }
+
+    @Nullable
+    private NetworkType getNetworkType() {
+        if (NetworkUtil.isConnectedWifi(context)) {
+            return NetworkType.WIFI;
+        }
+        if (NetworkUtil.isConnectedMobile(context)) {
+            return NetworkType.MOBILE;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package org.edx.mobile.http.interceptor;
+
+import androidx.annotation.NonNull;
+
+import org.edx.mobile.http.ThroughputEstimator;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * A network interceptor that counts the bytes of the response bodies as they are read, and
+ * reports them to the {@link ThroughputEstimator}. Responses served from the cache don't go
+ * through network interceptors, so they are left out of the estimates.
+ */
+public class ThroughputInterceptor implements Interceptor {
+    @NonNull
+    private final ThroughputEstimator throughputEstimator;
+
+    public ThroughputInterceptor(@NonNull ThroughputEstimator throughputEstimator) {
+        this.throughputEstimator = throughputEstimator;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        final Response response = chain.proceed(chain.request());
+        final ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .body(new CountingResponseBody(body, throughputEstimator))
+                .build();
+    }
+
+    private static class CountingResponseBody extends ResponseBody {
+        @NonNull
+        private final ResponseBody body;
+        @NonNull
+        private final ThroughputEstimator throughputEstimator;
+        private BufferedSource source;
+
+        CountingResponseBody(@NonNull ResponseBody body,
+                             @NonNull ThroughputEstimator throughputEstimator) {
+            this.body = body;
+            this.throughputEstimator = throughputEstimator;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            if (source == null) {
+                source = Okio.buffer(new CountingSource(body.source(), throughputEstimator));
+            }
+            return source;
+        }
+    }
+
+    private static class CountingSource extends ForwardingSource {
+        @NonNull
+        private final ThroughputEstimator throughputEstimator;
+        private boolean isStarted;
+        private boolean isEnded;
+
+        CountingSource(@NonNull Source delegate, @NonNull ThroughputEstimator throughputEstimator) {
+            super(delegate);
+            this.throughputEstimator = throughputEstimator;
+        }
+
+        @Override
+        public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+            if (!isStarted) {
+                isStarted = true;
+                throughputEstimator.onTransferStarted();
+            }
+            final long bytesRead;
+            try {
+                bytesRead = super.read(sink, byteCount);
+            } catch (IOException e) {
+                end();
+                throw e;
+            }
+            if (bytesRead == -1) {
+                end();
+            } else {
+                throughputEstimator.onBytesTransferred(bytesRead);
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            end();
+            super.close();
+        }
+
+        private void end() {
+            if (isStarted && !isEnded) {
+                isEnded = true;
+                throughputEstimator.onTransferEnded();
+            }
+        }
+    }
+}
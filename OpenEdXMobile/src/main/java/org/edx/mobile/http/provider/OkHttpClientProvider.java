@@ -9,12 +9,14 @@ import com.google.inject.Singleton;
 
 import org.edx.mobile.BuildConfig;
 import org.edx.mobile.R;
+import org.edx.mobile.http.ThroughputEstimator;
 import org.edx.mobile.http.authenticator.OauthRefreshTokenAuthenticator;
 import org.edx.mobile.http.interceptor.NewVersionBroadcastInterceptor;
 import org.edx.mobile.http.interceptor.NoCacheHeaderStrippingInterceptor;
 import org.edx.mobile.http.interceptor.OauthHeaderRequestInterceptor;
 import org.edx.mobile.http.interceptor.StaleIfErrorHandlingInterceptor;
 import org.edx.mobile.http.interceptor.StaleIfErrorInterceptor;
+import org.edx.mobile.http.interceptor.ThroughputInterceptor;
 import org.edx.mobile.http.interceptor.UserAgentInterceptor;
 import org.edx.mobile.http.util.Tls12SocketFactory;
 
@@ -41,6 +43,9 @@ public interface OkHttpClientProvider extends Provider<OkHttpClient> {
         @Inject
         private Context context;
 
+        @Inject
+        private ThroughputEstimator throughputEstimator;
+
         private final OkHttpClient[] clients = new OkHttpClient[1 << 2];
 
         @NonNull
@@ -80,6 +85,7 @@ public interface OkHttpClientProvider extends Provider<OkHttpClient> {
                     interceptors.add(new StaleIfErrorHandlingInterceptor());
                     builder.networkInterceptors().add(new NoCacheHeaderStrippingInterceptor());
                 }
+                builder.networkInterceptors().add(new ThroughputInterceptor(throughputEstimator));
                 interceptors.add(new UserAgentInterceptor(
                         System.getProperty("http.agent") + " " +
                                 context.getString(R.string.app_name) + "/" +
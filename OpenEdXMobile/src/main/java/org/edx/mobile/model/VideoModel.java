@@ -49,6 +49,11 @@ public interface VideoModel {
 
     long getLastPlayedOffset();
 
+    /**
+     * Returns the time the video was last played, in unix timestamp format, or 0 if unknown.
+     */
+    long getLastPlayedOn();
+
     String getLmsUrl();
     
     boolean isCourseActive();
@@ -1,21 +1,40 @@
 package org.edx.mobile.model.course;
 
+import androidx.annotation.NonNull;
+
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Created by hanning on 6/1/15.
+ * <p>
+ * Path of a component from the root of its course down to the component itself. It is
+ * immutable, so that each component computes its path once and keeps it, see
+ * {@link CourseComponent#getPath()}.
  */
 public class BlockPath implements Serializable{
-    private List<CourseComponent> path = new ArrayList<>();
+    private final CourseComponent[] path;
+
+    BlockPath(@NonNull CourseComponent root) {
+        path = new CourseComponent[]{root};
+    }
 
-    public void addPathNodeToPathFront(CourseComponent component){
-        path.add(0, component);
+    BlockPath(@NonNull BlockPath parentPath, @NonNull CourseComponent component) {
+        path = Arrays.copyOf(parentPath.path, parentPath.path.length + 1);
+        path[parentPath.path.length] = component;
     }
+
     public List<CourseComponent> getPath(){
-        return Collections.unmodifiableList(path);
+        return Collections.unmodifiableList(Arrays.asList(path));
+    }
+
+    /**
+     * @return no of nodes on the path, i.e. the depth of its last node plus one.
+     */
+    public int size() {
+        return path.length;
     }
 
     /**
@@ -24,8 +43,7 @@ public class BlockPath implements Serializable{
      * @return can be null for overflow.
      */
     public CourseComponent get(int index){
-        int size = path.size();
-        return size > index ? path.get(index) : null;
+        return path.length > index ? path[index] : null;
     }
 
     /**
@@ -35,7 +53,7 @@ public class BlockPath implements Serializable{
     public String getPathString(){
         StringBuilder sb = new StringBuilder();
         for( CourseComponent comp : path){
-            sb.append(comp.getId() + "/");
+            sb.append(comp.getId()).append('/');
         }
         return sb.toString();
     }
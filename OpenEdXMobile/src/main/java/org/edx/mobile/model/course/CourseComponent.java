@@ -3,6 +3,7 @@ package org.edx.mobile.model.course;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.edx.mobile.R;
 import org.edx.mobile.base.MainApplication;
@@ -10,19 +11,34 @@ import org.edx.mobile.logger.Logger;
 import org.edx.mobile.model.Filter;
 import org.edx.mobile.model.api.AuthorizationDenialReason;
 import org.edx.mobile.model.api.IPathNode;
+import org.edx.mobile.util.StringInterner;
 import org.edx.mobile.util.VideoUtil;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.Set;
 
 /**
  * Default implementation of IBlock
  */
 public class CourseComponent implements IBlock, IPathNode {
     protected final static Logger logger = new Logger(CourseComponent.class.getName());
+    /**
+     * Shared by all the nodes without children, which are the majority of the nodes in a course,
+     * to avoid keeping an empty list per leaf.
+     */
+    private static final List<CourseComponent> NO_CHILDREN = Collections.emptyList();
+    // Formats, due dates, denial messages and course ids repeat across every block of a course
+    private static final StringInterner VALUES = new StringInterner(4096);
     private String id;
     private String blockId;
     private BlockType type;
@@ -31,17 +47,54 @@ public class CourseComponent implements IBlock, IPathNode {
     private boolean multiDevice;
     private String blockUrl;
     private String webUrl;
-    private BlockCount blockCount;
+    // Inlined video count of the server's BlockCount to avoid an object per node
+    private int blockVideoCount;
+    // Created from the inlined count on first access, which hardly any node gets
+    private transient BlockCount blockCount;
     private int completion;
     protected CourseComponent parent;
     protected CourseComponent root;
-    protected List<CourseComponent> children = new ArrayList<>();
+    protected List<CourseComponent> children = NO_CHILDREN;
     private String courseId;
     private String format;
     private String dueDate;
     private String authorizationDenialMessage;
     private AuthorizationDenialReason authorizationDenialReason;
 
+    /*
+     * Aggregates of the video leaves under this node, computed bottom-up by
+     * {@link #computeAggregates()} and kept up to date on completion changes so that the outline
+     * rows can be bound without walking the subtree.
+     */
+    private boolean aggregatesValid;
+    private int blocksCount;
+    private int videoCount;
+    private int downloadableVideosCount;
+    private long downloadableVideosSize;
+    private int completedVideosCount;
+
+    // Position of this node within the children of its parent
+    private int indexInParent;
+    /*
+     * Flattened leaves of the course in course order, built once by
+     * {@link #buildLeafSequences()} and only held by the root, along with the position of each
+     * leaf within them so that the previous/next units are a matter of index arithmetic.
+     */
+    private transient LeafSequence leafSequence;
+    private transient LeafSequence videoLeafSequence;
+    private int leafIndex = -1;
+    private int videoLeafIndex = -1;
+
+    /*
+     * Course structure and block of this node, as long as its leaf children haven't been created
+     * yet, see {@link #setPendingChildren}.
+     */
+    private transient volatile CourseStructureV1Model pendingModel;
+    private transient BlockModel pendingBlock;
+
+    // Path from the root down to this node, computed on first use by {@link #getPath()}
+    private transient BlockPath path;
+
     public CourseComponent() {
     }
 
@@ -54,12 +107,13 @@ public class CourseComponent implements IBlock, IPathNode {
         this.multiDevice = other.multiDevice;
         this.blockUrl = other.blockUrl;
         this.webUrl = other.webUrl;
-        this.blockCount = other.blockCount;
+        this.blockVideoCount = other.blockVideoCount;
         this.completion = other.completion;
+        this.indexInParent = other.indexInParent;
         this.parent = null;
         this.root = new CourseComponent();
         this.root.courseId = other.root.courseId;
-        this.children = other.children;
+        this.children = other.getChildComponents();
         this.courseId = other.courseId;
         this.format = other.format;
         this.dueDate = other.dueDate;
@@ -80,22 +134,78 @@ public class CourseComponent implements IBlock, IPathNode {
         this.blockUrl = blockModel.studentViewUrl;
         this.webUrl = blockModel.lmsWebUrl;
         this.multiDevice = blockModel.studentViewMultiDevice;
-        this.format = blockModel.format;
-        this.dueDate = blockModel.dueDate;
-        this.authorizationDenialMessage = blockModel.authorizationDenialMessage;
+        // These values repeat across the blocks of a course, so only one copy of each is kept
+        this.format = intern(blockModel.format);
+        this.dueDate = intern(blockModel.dueDate);
+        this.authorizationDenialMessage = intern(blockModel.authorizationDenialMessage);
         this.authorizationDenialReason = blockModel.authorizationDenialReason;
-        this.blockCount = blockModel.blockCounts == null ? new BlockCount() : blockModel.blockCounts;
+        this.blockVideoCount = blockModel.blockCounts == null ? 0 : blockModel.blockCounts.videoCount;
         this.completion = blockModel.completion;
         this.parent = parent;
         if (parent == null) {
             this.root = this;
         } else {
-            parent.getChildren().add(this);
+            if (parent.children == NO_CHILDREN) {
+                parent.children = new ArrayList<>();
+            }
+            this.indexInParent = parent.children.size();
+            parent.children.add(this);
+            parent.invalidateAggregates();
             //we cache the root to improve the performance
             this.root = (CourseComponent) parent.getRoot();
+            // the structure of the course has changed, so the flattened leaves are stale
+            invalidateLeafSequences();
         }
     }
 
+    /**
+     * Update the values of this node with the ones of the given block, which should have the
+     * same id, leaving the structure of the tree untouched.
+     *
+     * @return <code>true</code> if any of the values has changed.
+     */
+    public boolean update(@NonNull BlockModel blockModel) {
+        final int newBlockVideoCount = blockModel.blockCounts == null ? 0 : blockModel.blockCounts.videoCount;
+        final boolean changed = !TextUtils.equals(name, blockModel.displayName)
+                || graded != blockModel.graded
+                || multiDevice != blockModel.studentViewMultiDevice
+                || !TextUtils.equals(blockUrl, blockModel.studentViewUrl)
+                || !TextUtils.equals(webUrl, blockModel.lmsWebUrl)
+                || !TextUtils.equals(format, blockModel.format)
+                || !TextUtils.equals(dueDate, blockModel.dueDate)
+                || !TextUtils.equals(authorizationDenialMessage, blockModel.authorizationDenialMessage)
+                || authorizationDenialReason != blockModel.authorizationDenialReason
+                || blockVideoCount != newBlockVideoCount
+                || completion != blockModel.completion;
+        if (changed) {
+            this.name = blockModel.displayName;
+            this.graded = blockModel.graded;
+            this.multiDevice = blockModel.studentViewMultiDevice;
+            this.blockUrl = blockModel.studentViewUrl;
+            this.webUrl = blockModel.lmsWebUrl;
+            this.format = intern(blockModel.format);
+            this.dueDate = intern(blockModel.dueDate);
+            this.authorizationDenialMessage = intern(blockModel.authorizationDenialMessage);
+            this.authorizationDenialReason = blockModel.authorizationDenialReason;
+            this.blockVideoCount = newBlockVideoCount;
+            if (completion != blockModel.completion) {
+                setCompleted(blockModel.completion);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Detach all the children of this node, so that a new set of children can be added.
+     */
+    public void removeAllChildren() {
+        children = NO_CHILDREN;
+        pendingModel = null;
+        pendingBlock = null;
+        invalidateAggregates();
+        invalidateLeafSequences();
+    }
+
     @Override
     public String getId() {
         return id;
@@ -171,23 +281,38 @@ public class CourseComponent implements IBlock, IPathNode {
 
     @Override
     public BlockCount getBlockCount() {
+        if (blockCount == null) {
+            final BlockCount count = new BlockCount();
+            count.videoCount = blockVideoCount;
+            blockCount = count;
+        }
         return blockCount;
     }
 
     @Override
     public void setBlockCount(BlockCount count) {
-        this.blockCount = blockCount;
+        this.blockVideoCount = count == null ? 0 : count.videoCount;
+        this.blockCount = null;
     }
 
     @Override
     public boolean isCompleted() {
+        final CourseStructureV1Model model = pendingModel;
+        if (model != null) {
+            // Avoid creating the children just to check their completion
+            return isAllPendingChildCompleted(model) || this.completion == 1;
+        }
         // Checking the children completion locally first as discussion blocks completion isn't handling on server side
         return isAllChildCompleted() || this.completion == 1;
     }
 
     @Override
     public void setCompleted(int completion) {
+        final boolean wasCompleted = this.completion == 1;
         this.completion = completion;
+        if (wasCompleted != (completion == 1) && isVideoLeaf()) {
+            updateCompletedVideosCount(completion == 1 ? 1 : -1);
+        }
         if (getType() != BlockType.DISCUSSION) {
             updateDiscussionComponentsCompletion();
         }
@@ -219,10 +344,8 @@ public class CourseComponent implements IBlock, IPathNode {
 
     @Override
     public boolean isCompletedForVideos() {
-        for (VideoBlockModel videoBlockModel : getVideos())
-            if (!videoBlockModel.isCompleted())
-                return false;
-        return true;
+        ensureAggregates();
+        return completedVideosCount == videoCount;
     }
 
     /**
@@ -245,6 +368,72 @@ public class CourseComponent implements IBlock, IPathNode {
         return getChildren().size() > 0;
     }
 
+    /**
+     * Same as {@link #isAllChildCompleted()} but checks the blocks of the children that haven't
+     * been created yet. The discussion blocks get marked completed once they are created.
+     */
+    private boolean isAllPendingChildCompleted(@NonNull CourseStructureV1Model model) {
+        final int count = model.getDescendantsCount(pendingBlock);
+        boolean hasChildren = false;
+        for (int i = 0; i < count; i++) {
+            final BlockModel block = model.getDescendant(pendingBlock, i);
+            if (block == null) {
+                continue;
+            }
+            hasChildren = true;
+            if (block.type != BlockType.DISCUSSION && block.completion != 1) {
+                return false;
+            }
+        }
+        return hasChildren;
+    }
+
+    /**
+     * Mark the blocks of the given ids in the subtree of this node completed. The blocks of the
+     * children that haven't been created yet are marked without creating them.
+     *
+     * @param blockIds  Ids of the blocks that have been completed locally.
+     * @param confirmed Collects the ids of the blocks that were already marked completed, i.e.
+     *                  whose completion is known to the server.
+     */
+    public void applyCompletions(@NonNull Set<String> blockIds, @NonNull Set<String> confirmed) {
+        if (pendingModel != null) {
+            synchronized (this) {
+                final CourseStructureV1Model model = pendingModel;
+                if (model != null) {
+                    boolean changed = false;
+                    final int count = model.getDescendantsCount(pendingBlock);
+                    for (int i = 0; i < count; i++) {
+                        final BlockModel block = model.getDescendant(pendingBlock, i);
+                        if (block == null || !blockIds.contains(block.id)) {
+                            continue;
+                        }
+                        if (block.completion == 1) {
+                            confirmed.add(block.id);
+                        } else {
+                            block.completion = 1;
+                            changed = true;
+                        }
+                    }
+                    if (changed) {
+                        invalidateAggregates();
+                    }
+                    return;
+                }
+            }
+        }
+        for (CourseComponent child : children) {
+            if (blockIds.contains(child.getId())) {
+                if (child.completion == 1) {
+                    confirmed.add(child.getId());
+                } else {
+                    child.setCompleted(1);
+                }
+            }
+            child.applyCompletions(blockIds, confirmed);
+        }
+    }
+
     @Override
     public CourseComponent getParent() {
         return parent;
@@ -252,7 +441,152 @@ public class CourseComponent implements IBlock, IPathNode {
 
     @Override
     public List<IBlock> getChildren() {
-        return (List) children;
+        return (List) getChildComponents();
+    }
+
+    /**
+     * Defer the creation of the children of this node, which should all be leaves, till they are
+     * first accessed. The outline only shows the containers, so most of the leaves of a course
+     * don't need to exist before the learner navigates into a unit.
+     * <p>
+     * The aggregates and completion of this node are computed from the blocks in the meantime.
+     *
+     * @param model Course structure holding the blocks of the children.
+     * @param block Block of this node.
+     */
+    public void setPendingChildren(@NonNull CourseStructureV1Model model, @NonNull BlockModel block) {
+        this.pendingBlock = block;
+        this.pendingModel = model;
+    }
+
+    /**
+     * @return <code>true</code> if the children of this node haven't been created yet.
+     */
+    public boolean hasPendingChildren() {
+        return pendingModel != null;
+    }
+
+    /**
+     * @return the block of this node whose children haven't been created yet, null if there is
+     * none.
+     */
+    @Nullable
+    public BlockModel getPendingBlock() {
+        return pendingModel != null ? pendingBlock : null;
+    }
+
+    /**
+     * Point the children of this node that haven't been created yet to the blocks of a refreshed
+     * course structure.
+     *
+     * @param model Refreshed course structure.
+     * @param block Refreshed block of this node, all its children should be leaves.
+     * @return <code>true</code> if the refreshed children differ from the previous ones.
+     */
+    public synchronized boolean updatePendingChildren(@NonNull CourseStructureV1Model model,
+                                                      @NonNull BlockModel block) {
+        final CourseStructureV1Model previousModel = pendingModel;
+        if (previousModel == null) {
+            throw new IllegalStateException("Children of " + id + " have already been created");
+        }
+        final int count = model.getDescendantsCount(block);
+        boolean changed = count != previousModel.getDescendantsCount(pendingBlock);
+        for (int i = 0; i < count && !changed; i++) {
+            final BlockModel previous = previousModel.getDescendant(pendingBlock, i);
+            final BlockModel current = model.getDescendant(block, i);
+            if (previous == null || current == null) {
+                changed = previous != current;
+            } else {
+                changed = !previous.id.equals(current.id) || previous.type != current.type ||
+                        previous.completion != current.completion ||
+                        !TextUtils.equals(previous.displayName, current.displayName) ||
+                        (previous.data instanceof VideoData ?
+                                !previous.data.equals(current.data) : current.data instanceof VideoData);
+            }
+        }
+        this.pendingBlock = block;
+        this.pendingModel = model;
+        if (changed) {
+            invalidateAggregates();
+            invalidateLeafSequences();
+        }
+        return changed;
+    }
+
+    @NonNull
+    private List<CourseComponent> getChildComponents() {
+        if (pendingModel != null) {
+            createPendingChildren();
+        }
+        return children;
+    }
+
+    private synchronized void createPendingChildren() {
+        final CourseStructureV1Model model = pendingModel;
+        if (model == null) {
+            return;
+        }
+        // The aggregates computed from the blocks and the flattened leaves still hold, so don't
+        // let the new children invalidate the ones of the ancestors
+        final boolean aggregatesWereValid = aggregatesValid;
+        aggregatesValid = false;
+        final CourseComponent top = root != null ? root : this;
+        final LeafSequence leaves = top.leafSequence;
+        final LeafSequence videoLeaves = top.videoLeafSequence;
+        final int count = model.getDescendantsCount(pendingBlock);
+        for (int i = 0; i < count; i++) {
+            final BlockModel block = model.getDescendant(pendingBlock, i);
+            if (block != null) {
+                createLeaf(block, this);
+            }
+        }
+        trimChildren();
+        pendingBlock = null;
+        pendingModel = null;
+        if (aggregatesWereValid) {
+            computeAggregates();
+        }
+        if (leaves != null && videoLeaves != null) {
+            top.leafSequence = leaves;
+            top.videoLeafSequence = videoLeaves;
+            // This node stands for its leaves in the sequences, which tell their positions
+            int nextLeafIndex = leaves.getOffset(this);
+            int nextVideoLeafIndex = videoLeaves.getOffset(this);
+            for (CourseComponent child : children) {
+                child.leafIndex = nextLeafIndex++;
+                child.videoLeafIndex = child.isVideoLeaf() && nextVideoLeafIndex >= 0 ?
+                        nextVideoLeafIndex++ : -1;
+            }
+        }
+    }
+
+    /**
+     * Create the children that haven't been created yet before serializing this node, as the
+     * course structure they would be created from isn't serialized.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (pendingModel != null) {
+            createPendingChildren();
+        }
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Create the component of a leaf block, based on its type and data.
+     *
+     * @param block  Block of the leaf.
+     * @param parent Parent component to add the leaf to.
+     * @return The created component.
+     */
+    @NonNull
+    public static CourseComponent createLeaf(@NonNull BlockModel block, @NonNull CourseComponent parent) {
+        if (BlockType.VIDEO == block.type && block.data instanceof VideoData) {
+            return new VideoBlockModel(block, parent);
+        } else if (BlockType.DISCUSSION == block.type && block.data instanceof DiscussionData) {
+            return new DiscussionBlockModel(block, parent);
+        } else { //everything else.. we fallback to html component
+            return new HtmlBlockModel(block, parent);
+        }
     }
 
     @Override
@@ -269,6 +603,16 @@ public class CourseComponent implements IBlock, IPathNode {
         this.multiDevice = multiDevice;
     }
 
+    /**
+     * Release the spare capacity of the children list, to be called once all the children of
+     * this node have been added.
+     */
+    public void trimChildren() {
+        if (children instanceof ArrayList) {
+            ((ArrayList<CourseComponent>) children).trimToSize();
+        }
+    }
+
     public boolean isContainer() {
         return type != null ? type.isContainer() : (children != null && children.size() > 0);
     }
@@ -282,7 +626,7 @@ public class CourseComponent implements IBlock, IPathNode {
     public List<CourseComponent> getChildContainers() {
         List<CourseComponent> childContainers = new ArrayList<>();
         if (children != null) {
-            for (CourseComponent c : children) {
+            for (CourseComponent c : getChildComponents()) {
                 if (c.isContainer())
                     childContainers.add(c);
             }
@@ -299,7 +643,7 @@ public class CourseComponent implements IBlock, IPathNode {
     public List<CourseComponent> getChildLeafs() {
         List<CourseComponent> childLeafs = new ArrayList<>();
         if (children != null) {
-            for (CourseComponent c : children) {
+            for (CourseComponent c : getChildComponents()) {
                 if (!c.isContainer())
                     childLeafs.add(c);
             }
@@ -309,6 +653,9 @@ public class CourseComponent implements IBlock, IPathNode {
 
     /**
      * recursively find the first node by matcher. return null if get nothing.
+     * <p>
+     * The matcher is applied to the nodes themselves, so the leaves that haven't been created
+     * yet get created on the way; use {@link #findById(String)} to look up a node by its id.
      */
     public CourseComponent find(Filter<CourseComponent> matcher) {
         if (matcher.apply(this))
@@ -316,7 +663,7 @@ public class CourseComponent implements IBlock, IPathNode {
         if (!isContainer())
             return null;
         CourseComponent found = null;
-        for (CourseComponent c : children) {
+        for (CourseComponent c : getChildComponents()) {
             found = c.find(matcher);
             if (found != null)
                 return found;
@@ -324,6 +671,50 @@ public class CourseComponent implements IBlock, IPathNode {
         return null;
     }
 
+    /**
+     * Find the node of the given id in the subtree of this node. Of the leaves that haven't been
+     * created yet, only the ones of the unit holding the node get created, as their blocks are
+     * matched by id beforehand.
+     *
+     * @param id Id of the node.
+     * @return The node, or null if it isn't in the subtree.
+     */
+    @Nullable
+    public CourseComponent findById(@NonNull String id) {
+        if (id.equals(this.id)) {
+            return this;
+        }
+        if (pendingModel != null && !hasPendingBlock(id)) {
+            return null;
+        }
+        for (CourseComponent c : getChildComponents()) {
+            final CourseComponent found = c.findById(id);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether a child of this node that hasn't been created yet has the given id.
+     */
+    private synchronized boolean hasPendingBlock(@NonNull String id) {
+        final CourseStructureV1Model model = pendingModel;
+        if (model == null) {
+            // The children have been created in the meantime
+            return true;
+        }
+        final int count = model.getDescendantsCount(pendingBlock);
+        for (int i = 0; i < count; i++) {
+            final BlockModel block = model.getDescendant(pendingBlock, i);
+            if (block != null && id.equals(block.id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * return all videos blocks under this node
      */
@@ -360,14 +751,139 @@ public class CourseComponent implements IBlock, IPathNode {
      * and {@link VideoData#onlyOnWeb} set to <code>false</code>
      */
     public int getDownloadableVideosCount() {
-        int downloadableCount = 0;
-        List<VideoBlockModel> videos = getVideos();
-        for (VideoBlockModel video : videos) {
-            if (VideoUtil.isVideoDownloadable(video.getData())) {
-                downloadableCount++;
+        ensureAggregates();
+        return downloadableVideosCount;
+    }
+
+    /**
+     * @return count of the blocks in the subtree of this node, including itself.
+     */
+    public int getBlocksCount() {
+        ensureAggregates();
+        return blocksCount;
+    }
+
+    /**
+     * @return count of all the video blocks under this node, same as the size of
+     * {@link #getVideos()} but without walking the subtree.
+     */
+    public int getVideosCount() {
+        ensureAggregates();
+        return videoCount;
+    }
+
+    /**
+     * @return total size in bytes of the preferred encodings of the downloadable videos under
+     * this node, excluding the videos whose size is unknown.
+     */
+    public long getDownloadableVideosSize() {
+        ensureAggregates();
+        return downloadableVideosSize;
+    }
+
+    /**
+     * @return count of the completed video blocks under this node.
+     */
+    public int getCompletedVideosCount() {
+        ensureAggregates();
+        return completedVideosCount;
+    }
+
+    /**
+     * Compute the aggregates of this node and all of its descendants bottom-up. It is
+     * called once after the course structure is normalized, later on the aggregates are
+     * maintained incrementally or recomputed lazily if the subtree changes.
+     */
+    public void computeAggregates() {
+        blocksCount = 1;
+        videoCount = 0;
+        downloadableVideosCount = 0;
+        downloadableVideosSize = 0;
+        completedVideosCount = 0;
+        if (isVideoLeaf()) {
+            final VideoBlockModel video = (VideoBlockModel) this;
+            videoCount = 1;
+            if (video.getData() != null && VideoUtil.isVideoDownloadable(video.getData())) {
+                downloadableVideosCount = 1;
+                downloadableVideosSize = Math.max(0, video.getPreferredVideoEncodingSize());
+            }
+            completedVideosCount = completion == 1 ? 1 : 0;
+        } else if (pendingModel != null) {
+            computePendingAggregates(pendingModel);
+        } else {
+            for (CourseComponent child : children) {
+                child.computeAggregates();
+                blocksCount += child.blocksCount;
+                videoCount += child.videoCount;
+                downloadableVideosCount += child.downloadableVideosCount;
+                downloadableVideosSize += child.downloadableVideosSize;
+                completedVideosCount += child.completedVideosCount;
             }
         }
-        return downloadableCount;
+        aggregatesValid = true;
+    }
+
+    /**
+     * Compute the aggregates of this node from the blocks of the children that haven't been
+     * created yet, the same way they would be computed from the components.
+     */
+    private void computePendingAggregates(@NonNull CourseStructureV1Model model) {
+        final int count = model.getDescendantsCount(pendingBlock);
+        for (int i = 0; i < count; i++) {
+            final BlockModel block = model.getDescendant(pendingBlock, i);
+            if (block == null) {
+                continue;
+            }
+            blocksCount++;
+            if (BlockType.VIDEO == block.type && block.data instanceof VideoData) {
+                final VideoData data = (VideoData) block.data;
+                videoCount++;
+                if (VideoUtil.isVideoDownloadable(data)) {
+                    final VideoInfo videoInfo = data.encodedVideos.getPreferredVideoInfoForDownloading();
+                    downloadableVideosCount++;
+                    if (videoInfo != null) {
+                        downloadableVideosSize += Math.max(0, videoInfo.fileSize);
+                    }
+                }
+                if (block.completion == 1) {
+                    completedVideosCount++;
+                }
+            }
+        }
+    }
+
+    private void ensureAggregates() {
+        if (!aggregatesValid) {
+            computeAggregates();
+        }
+    }
+
+    /**
+     * Mark the aggregates of this node and its ancestors as stale, they will be recomputed on
+     * the next access.
+     */
+    private void invalidateAggregates() {
+        CourseComponent node = this;
+        while (node != null && node.aggregatesValid) {
+            node.aggregatesValid = false;
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Propagate the change in completed videos count to this node and its ancestors. Nodes
+     * having stale aggregates are skipped as their ancestors are stale as well.
+     */
+    private void updateCompletedVideosCount(int delta) {
+        CourseComponent node = this;
+        while (node != null && node.aggregatesValid) {
+            node.completedVideosCount += delta;
+            node = node.parent;
+        }
+    }
+
+    private boolean isVideoLeaf() {
+        return type == BlockType.VIDEO && this instanceof VideoBlockModel;
     }
 
     /**
@@ -383,7 +899,221 @@ public class CourseComponent implements IBlock, IPathNode {
         if (sibling == null) {
             return false;  //it wont happen. TODO - should we log here?
         }
-        return sibling.indexOf(this) == sibling.size() - 1;
+        return indexInParent == sibling.size() - 1;
+    }
+
+    /**
+     * Flatten the leaves of the whole course in course order and store the position of each leaf
+     * within them. It is called once after the course structure is normalized, later on the
+     * sequences are rebuilt lazily if the structure changes.
+     * <p>
+     * The leaves that haven't been created yet are not created, their parent stands for them in
+     * the sequences until they are reached.
+     */
+    public void buildLeafSequences() {
+        if (root != null && root != this) {
+            root.buildLeafSequences();
+            return;
+        }
+        final LeafSequence.Builder leaves = new LeafSequence.Builder();
+        final LeafSequence.Builder videoLeaves = new LeafSequence.Builder();
+        collectLeaves(leaves, videoLeaves);
+        leafSequence = leaves.build(false);
+        videoLeafSequence = videoLeaves.build(true);
+    }
+
+    /**
+     * Same as {@link #fetchAllLeafComponents} for all the types, but adds the nodes whose
+     * children haven't been created yet in place of their leaves.
+     */
+    private void collectLeaves(@NonNull LeafSequence.Builder leaves,
+                               @NonNull LeafSequence.Builder videoLeaves) {
+        if (pendingModel != null) {
+            synchronized (this) {
+                final CourseStructureV1Model model = pendingModel;
+                if (model != null) {
+                    int count = 0;
+                    int videoCount = 0;
+                    final int descendantsCount = model.getDescendantsCount(pendingBlock);
+                    for (int i = 0; i < descendantsCount; i++) {
+                        final BlockModel block = model.getDescendant(pendingBlock, i);
+                        if (block != null) {
+                            count++;
+                            if (BlockType.VIDEO == block.type && block.data instanceof VideoData) {
+                                videoCount++;
+                            }
+                        }
+                    }
+                    leaves.add(this, count);
+                    videoLeaves.add(this, videoCount);
+                    return;
+                }
+            }
+        }
+        if (!isContainer()) {
+            leafIndex = -1;
+            videoLeafIndex = -1;
+            if (type != null) {
+                leafIndex = leaves.size();
+                leaves.add(this, 1);
+                if (isVideoLeaf()) {
+                    videoLeafIndex = videoLeaves.size();
+                    videoLeaves.add(this, 1);
+                }
+            }
+            return;
+        }
+        for (CourseComponent child : children) {
+            child.collectLeaves(leaves, videoLeaves);
+        }
+    }
+
+    /**
+     * @param videosOnly <code>true</code> to only include the video blocks
+     * @return an immutable list of all the leaves of the course in course order. The leaves that
+     * haven't been created yet get created as they are accessed, so the list should only be
+     * accessed by position, rather than iterated or copied, to keep them from being created.
+     */
+    public List<CourseComponent> getLeafSequence(boolean videosOnly) {
+        return getLeafArray(videosOnly);
+    }
+
+    /**
+     * @param videosOnly <code>true</code> to look up in the sequence of video blocks only
+     * @return position of this node in {@link #getLeafSequence(boolean)}, <code>-1</code> if
+     * this node isn't part of it.
+     */
+    public int getLeafIndex(boolean videosOnly) {
+        // make sure the indexes are up to date
+        getLeafArray(videosOnly);
+        return videosOnly ? videoLeafIndex : leafIndex;
+    }
+
+    /**
+     * @return the leaf that comes after this one in course order, null if there is none.
+     */
+    @Nullable
+    public CourseComponent getNextLeaf(boolean videosOnly) {
+        final int index = getLeafIndex(videosOnly);
+        final LeafSequence leaves = getLeafArray(videosOnly);
+        return index >= 0 && index + 1 < leaves.size() ? leaves.get(index + 1) : null;
+    }
+
+    /**
+     * @return the leaf that comes before this one in course order, null if there is none.
+     */
+    @Nullable
+    public CourseComponent getPreviousLeaf(boolean videosOnly) {
+        final int index = getLeafIndex(videosOnly);
+        return index > 0 ? getLeafArray(videosOnly).get(index - 1) : null;
+    }
+
+    @NonNull
+    private LeafSequence getLeafArray(boolean videosOnly) {
+        final CourseComponent top = root != null ? root : this;
+        LeafSequence leaves = videosOnly ? top.videoLeafSequence : top.leafSequence;
+        if (leaves == null) {
+            top.buildLeafSequences();
+            leaves = videosOnly ? top.videoLeafSequence : top.leafSequence;
+        }
+        return leaves;
+    }
+
+    private void invalidateLeafSequences() {
+        final CourseComponent top = root != null ? root : this;
+        top.leafSequence = null;
+        top.videoLeafSequence = null;
+    }
+
+    /**
+     * Leaves of a course in course order, made of the leaves themselves and of the nodes whose
+     * leaf children haven't been created yet, each of which stands for all of its leaves. The
+     * leaves of such a node are created when one of them is accessed.
+     */
+    private static class LeafSequence extends AbstractList<CourseComponent>
+            implements RandomAccess {
+        @NonNull
+        private final CourseComponent[] entries;
+        // Position of the first leaf of each entry, in increasing order
+        @NonNull
+        private final int[] offsets;
+        private final int size;
+        private final boolean videosOnly;
+
+        LeafSequence(@NonNull CourseComponent[] entries, @NonNull int[] offsets, int size,
+                     boolean videosOnly) {
+            this.entries = entries;
+            this.offsets = offsets;
+            this.size = size;
+            this.videosOnly = videosOnly;
+        }
+
+        @Override
+        public CourseComponent get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            int entry = Arrays.binarySearch(offsets, index);
+            if (entry < 0) {
+                entry = -entry - 2;
+            }
+            final CourseComponent node = entries[entry];
+            if (!node.isContainer()) {
+                return node;
+            }
+            int position = index - offsets[entry];
+            for (CourseComponent child : node.getChildComponents()) {
+                if ((!videosOnly || child.isVideoLeaf()) && position-- == 0) {
+                    return child;
+                }
+            }
+            throw new IllegalStateException("Leaves of " + node.getId() + " have changed");
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return Position of the first leaf of an entry, -1 if it isn't part of the sequence.
+         */
+        int getOffset(@NonNull CourseComponent node) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] == node) {
+                    return offsets[i];
+                }
+            }
+            return -1;
+        }
+
+        static class Builder {
+            private final List<CourseComponent> entries = new ArrayList<>();
+            private int[] offsets = new int[16];
+            private int size;
+
+            int size() {
+                return size;
+            }
+
+            void add(@NonNull CourseComponent entry, int count) {
+                if (count == 0) {
+                    return;
+                }
+                if (entries.size() == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[entries.size()] = size;
+                entries.add(entry);
+                size += count;
+            }
+
+            @NonNull
+            LeafSequence build(boolean videosOnly) {
+                return new LeafSequence(entries.toArray(new CourseComponent[0]),
+                        Arrays.copyOf(offsets, entries.size()), size, videosOnly);
+            }
+        }
     }
 
     /**
@@ -396,7 +1126,7 @@ public class CourseComponent implements IBlock, IPathNode {
         if (!isContainer() && types.contains(type)) {
             leaves.add(this);
         } else {
-            for (CourseComponent comp : children) {
+            for (CourseComponent comp : getChildComponents()) {
                 comp.fetchAllLeafComponents(leaves, types);
             }
         }
@@ -405,6 +1135,9 @@ public class CourseComponent implements IBlock, IPathNode {
     /**
      * get the ancestor based on level, level = 0, means itself.
      * if level is out of the boundary, just return the toppest one
+     * <p>
+     * Note that any other level skips one more node than it says, e.g. level 1 is the grandparent,
+     * which the callers rely on.
      *
      * @param level
      * @return it will never return null.
@@ -412,13 +1145,9 @@ public class CourseComponent implements IBlock, IPathNode {
     public CourseComponent getAncestor(int level) {
         if (parent == null || level == 0)
             return this;
-
-        IBlock root = parent;
-        while (level != 0 && root.getParent() != null) {
-            root = root.getParent();
-            level--;
-        }
-        return (CourseComponent) root;
+        final BlockPath path = getPath();
+        final int index = path.size() - 2 - level;
+        return path.get(level < 0 || index < 0 ? 0 : index);
     }
 
     /**
@@ -427,16 +1156,22 @@ public class CourseComponent implements IBlock, IPathNode {
     public CourseComponent getAncestor(EnumSet<BlockType> types) {
         if (types.contains(type))
             return this;
-        IBlock ancestor = parent;
-        if (ancestor == null)
-            return null;
-        do {
+        final BlockPath path = getPath();
+        for (int i = path.size() - 2; i >= 0; i--) {
+            final CourseComponent ancestor = path.get(i);
             if (types.contains(ancestor.getType()))
-                return (CourseComponent) ancestor;
-        } while ((ancestor = ancestor.getParent()) != null);
+                return ancestor;
+        }
         return null;
     }
 
+    /**
+     * @return depth of this node in the course tree, 0 for the root.
+     */
+    public int getDepth() {
+        return getPath().size() - 1;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null || !(obj instanceof CourseComponent)) {
@@ -487,7 +1222,7 @@ public class CourseComponent implements IBlock, IPathNode {
 
     @Override
     public void setFormat(String format) {
-        this.format = format;
+        this.format = intern(format);
     }
 
     public String getDueDate() {
@@ -510,35 +1245,35 @@ public class CourseComponent implements IBlock, IPathNode {
 
     @Override
     public void setCourseId(String courseId) {
-        this.courseId = courseId;
+        this.courseId = intern(courseId);
+    }
+
+    @Nullable
+    private static String intern(@Nullable String value) {
+        return VALUES.intern(value);
     }
 
     /**
-     * calculate and construct a Path object
+     * Path from the root down to this node. It is computed once from the path of the parent and
+     * kept, as the parent of a node never changes.
      */
     public BlockPath getPath() {
-        BlockPath path = new BlockPath();
-        path.addPathNodeToPathFront(this);
-        CourseComponent nodeAbove = parent;
-        while (nodeAbove != null) {
-            path.addPathNodeToPathFront(nodeAbove);
-            nodeAbove = nodeAbove.getParent();
+        BlockPath path = this.path;
+        if (path == null) {
+            path = parent == null ? new BlockPath(this) : new BlockPath(parent.getPath(), this);
+            this.path = path;
         }
         return path;
     }
 
     public static CourseComponent getCommonAncestor(CourseComponent node1, CourseComponent node2) {
-        List<CourseComponent> path1 = node1.getPath().getPath();
-        List<CourseComponent> path2 = node2.getPath().getPath();
-        if (path1.isEmpty() || path2.isEmpty())
-            return null;
-        for (int i = path1.size() - 1; i >= 0; i--) {
-            CourseComponent comp1 = path1.get(i);
-            for (int j = path2.size() - 1; j >= 0; j--) {
-                CourseComponent comp2 = path2.get(j);
-                if (comp1.equals(comp2))
-                    return comp1;
-            }
+        final BlockPath path1 = node1.getPath();
+        final BlockPath path2 = node2.getPath();
+        // A common ancestor is at the same depth on both the paths
+        for (int i = Math.min(path1.size(), path2.size()) - 1; i >= 0; i--) {
+            final CourseComponent comp1 = path1.get(i);
+            if (comp1.equals(path2.get(i)))
+                return comp1;
         }
         return null;
     }
@@ -1,5 +1,8 @@
 package org.edx.mobile.model.course;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.google.gson.annotations.SerializedName;
 
 import java.io.Serializable;
@@ -21,6 +24,26 @@ public class CourseStructureV1Model implements Serializable {
         return blockData.get(id);
     }
 
+    /**
+     * @return no of descendant ids of the parent, to be used along with
+     * {@link #getDescendant(BlockModel, int)} to go through the descendants of a block without
+     * allocating a list, 0 if the parent isn't a container.
+     */
+    public int getDescendantsCount(@Nullable BlockModel parent) {
+        if (parent == null || !parent.isContainer() || null == parent.descendants)
+            return 0;
+        return parent.descendants.size();
+    }
+
+    /**
+     * @return the descendant at the given index of the parent's descendant ids, null if the
+     * server didn't send the block of that id.
+     */
+    @Nullable
+    public BlockModel getDescendant(@NonNull BlockModel parent, int index) {
+        return getBlockById(parent.descendants.get(index));
+    }
+
     /**
      * if parent is null, returns empty list.
      */
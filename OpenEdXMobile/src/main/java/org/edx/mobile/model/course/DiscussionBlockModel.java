@@ -15,6 +15,17 @@ public class DiscussionBlockModel extends CourseComponent {
         this.data = (DiscussionData) blockModel.data;
     }
 
+    @Override
+    public boolean update(@NonNull BlockModel blockModel) {
+        boolean changed = super.update(blockModel);
+        final DiscussionData newData = (DiscussionData) blockModel.data;
+        if (data == null ? newData != null : !data.equals(newData)) {
+            data = newData;
+            changed = true;
+        }
+        return changed;
+    }
+
     public DiscussionData getData() {
         return data;
     }
@@ -1,5 +1,6 @@
 package org.edx.mobile.model.course;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.webkit.URLUtil;
 
@@ -57,19 +58,47 @@ public class EncodedVideos implements Serializable {
      */
     @Nullable
     public VideoInfo getPreferredVideoInfoForDownloading() {
+        return getVideoInfoForDownloading(VideoQuality.MOBILE_LOW);
+    }
+
+    /**
+     * Extract the {@link VideoInfo} of the given quality for media downloading, or else of the
+     * preferred one.
+     *
+     * @param quality Quality of the video to download.
+     * @return {@link VideoInfo} to download
+     */
+    @Nullable
+    public VideoInfo getVideoInfoForDownloading(@NonNull VideoQuality quality) {
+        switch (quality) {
+            case MOBILE_HIGH:
+                if (isPreferredVideoInfo(mobileHigh)) {
+                    return mobileHigh;
+                }
+                break;
+            case FALLBACK:
+                if (isDownloadableFallback()) {
+                    return fallback;
+                }
+                break;
+        }
         if (isPreferredVideoInfo(mobileLow)) {
             return mobileLow;
         }
         if (isPreferredVideoInfo(mobileHigh)) {
             return mobileHigh;
         }
-        if (isPreferredVideoInfo(fallback) &&
-                !VideoUtil.videoHasFormat(fallback.url, VIDEO_FORMAT_M3U8)) {
+        if (isDownloadableFallback()) {
             return fallback;
         }
         return null;
     }
 
+    private boolean isDownloadableFallback() {
+        return isPreferredVideoInfo(fallback) &&
+                !VideoUtil.videoHasFormat(fallback.url, VIDEO_FORMAT_M3U8);
+    }
+
     private boolean isPreferredVideoInfo(@Nullable VideoInfo videoInfo) {
         return videoInfo != null &&
                 URLUtil.isNetworkUrl(videoInfo.url) &&
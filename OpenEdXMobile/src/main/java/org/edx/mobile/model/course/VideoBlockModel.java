@@ -29,6 +29,17 @@ public class VideoBlockModel extends CourseComponent implements HasDownloadEntry
         this.data = (VideoData)blockModel.data;
     }
 
+    @Override
+    public boolean update(@NonNull BlockModel blockModel) {
+        boolean changed = super.update(blockModel);
+        final VideoData newData = (VideoData) blockModel.data;
+        if (data == null ? newData != null : !data.equals(newData)) {
+            data = newData;
+            changed = true;
+        }
+        return changed;
+    }
+
     @Nullable
     public DownloadEntry getDownloadEntry(IStorage storage) {
         if (data.encodedVideos.getPreferredVideoInfo() == null) {
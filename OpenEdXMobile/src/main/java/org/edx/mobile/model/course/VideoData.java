@@ -33,8 +33,9 @@ public class VideoData extends BlockData {
 
         if (duration != videoData.duration) return false;
         if (onlyOnWeb != videoData.onlyOnWeb) return false;
-        if (!transcripts.equals(videoData.transcripts)) return false;
-        return encodedVideos.equals(videoData.encodedVideos);
+        if (transcripts != null ? !transcripts.equals(videoData.transcripts) : videoData.transcripts != null)
+            return false;
+        return encodedVideos != null ? encodedVideos.equals(videoData.encodedVideos) : videoData.encodedVideos == null;
 
     }
 }
@@ -0,0 +1,10 @@
+package org.edx.mobile.model.course;
+
+/**
+ * Encodings of a video that can be downloaded, from the smallest to the largest.
+ */
+public enum VideoQuality {
+    MOBILE_LOW,
+    MOBILE_HIGH,
+    FALLBACK
+}
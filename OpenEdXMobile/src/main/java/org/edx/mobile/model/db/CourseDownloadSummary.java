@@ -0,0 +1,32 @@
+package org.edx.mobile.model.db;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Aggregates of the downloaded videos of a course, as maintained in the
+ * {@link org.edx.mobile.module.db.DbStructure.Table#COURSE_DOWNLOADS} table.
+ */
+public class CourseDownloadSummary {
+    @NonNull
+    public final String courseId;
+    /**
+     * No of videos downloaded completely.
+     */
+    public final int downloadedCount;
+    /**
+     * Total size of the videos downloaded completely, in bytes.
+     */
+    public final long downloadedBytes;
+    /**
+     * No of videos being downloaded.
+     */
+    public final int downloadingCount;
+
+    public CourseDownloadSummary(@NonNull String courseId, int downloadedCount,
+                                 long downloadedBytes, int downloadingCount) {
+        this.courseId = courseId;
+        this.downloadedCount = downloadedCount;
+        this.downloadedBytes = downloadedBytes;
+        this.downloadingCount = downloadingCount;
+    }
+}
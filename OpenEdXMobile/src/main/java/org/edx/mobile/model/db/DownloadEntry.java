@@ -7,14 +7,16 @@ import com.google.inject.Inject;
 
 import org.edx.mobile.R;
 import org.edx.mobile.core.IEdxEnvironment;
+import org.edx.mobile.http.ThroughputEstimator;
 import org.edx.mobile.interfaces.SectionItemInterface;
 import org.edx.mobile.model.VideoModel;
 import org.edx.mobile.model.api.EncodingsModel;
 import org.edx.mobile.model.api.TranscriptModel;
 import org.edx.mobile.model.download.NativeDownloadModel;
-import org.edx.mobile.module.prefs.PrefManager;
 import org.edx.mobile.util.JavaUtil;
 
+import roboguice.RoboGuice;
+
 public class DownloadEntry implements SectionItemInterface, VideoModel {
 
     public static enum WatchedState { UNWATCHED, PARTIALLY_WATCHED, WATCHED}
@@ -43,6 +45,7 @@ public class DownloadEntry implements SectionItemInterface, VideoModel {
     public String section;
     public long downloadedOn;
     public long lastPlayedOffset;
+    public long lastPlayedOn;
     public int isCourseActive = 1; // default is TRUE
     public boolean isVideoForWebOnly; //default is FALSE
     public String lmsUrl;
@@ -196,6 +199,11 @@ public class DownloadEntry implements SectionItemInterface, VideoModel {
         return lastPlayedOffset;
     }
 
+    @Override
+    public long getLastPlayedOn() {
+        return lastPlayedOn;
+    }
+
     @Override
     public String getLmsUrl() {
         return lmsUrl;
@@ -249,13 +257,49 @@ public class DownloadEntry implements SectionItemInterface, VideoModel {
         duration = video.getDuration();
     }
 
+    /**
+     * @return A copy of this entry, to download the video in another encoding than the one this
+     * entry may be shared with the course components in.
+     */
+    public DownloadEntry copy() {
+        final DownloadEntry copy = new DownloadEntry();
+        copy.id = id;
+        copy.username = username;
+        copy.title = title;
+        copy.filepath = filepath;
+        copy.size = size;
+        copy.duration = duration;
+        copy.watched = watched;
+        copy.downloaded = downloaded;
+        copy.videoId = videoId;
+        copy.url = url;
+        copy.url_hls = url_hls;
+        copy.url_high_quality = url_high_quality;
+        copy.url_low_quality = url_low_quality;
+        copy.url_youtube = url_youtube;
+        copy.dmId = dmId;
+        copy.eid = eid;
+        copy.chapter = chapter;
+        copy.section = section;
+        copy.downloadedOn = downloadedOn;
+        copy.lastPlayedOffset = lastPlayedOffset;
+        copy.lastPlayedOn = lastPlayedOn;
+        copy.isCourseActive = isCourseActive;
+        copy.isVideoForWebOnly = isVideoForWebOnly;
+        copy.lmsUrl = lmsUrl;
+        copy.transcript = transcript;
+        copy.videoThumbnail = videoThumbnail;
+        copy.environment = environment;
+        return copy;
+    }
+
     public String getBestEncodingUrl(Context context) {
         if (!TextUtils.isEmpty(url_hls)) {
             return url_hls;
         }
 
-        PrefManager prefs = new PrefManager(context, PrefManager.Pref.WIFI);
-        float kbs = prefs.getFloat(PrefManager.Key.SPEED_TEST_KBPS, 0.0f);
+        float kbs = RoboGuice.getInjector(context).getInstance(ThroughputEstimator.class)
+                .getThroughputKbps();
         float thresholdKps = (float)context.getResources().getInteger(R.integer.threshold_kbps_for_video);
 
         EncodingsModel.EncodingLevel level = kbs > thresholdKps ?
@@ -49,6 +49,7 @@ public class DatabaseModelFactory {
         de.section = c.getString(c.getColumnIndex(DbStructure.Column.SECTION));
         de.downloadedOn = c.getLong(c.getColumnIndex(DbStructure.Column.DOWNLOADED_ON));
         de.lastPlayedOffset = c.getLong(c.getColumnIndex(DbStructure.Column.LAST_PLAYED_OFFSET));
+        de.lastPlayedOn = c.getLong(c.getColumnIndex(DbStructure.Column.LAST_PLAYED_ON));
         de.isCourseActive = c.getInt(c.getColumnIndex(DbStructure.Column.IS_COURSE_ACTIVE));
         de.isVideoForWebOnly = c.getInt(c.getColumnIndex(DbStructure.Column.VIDEO_FOR_WEB_ONLY)) == 1;
         de.lmsUrl = c.getString(c.getColumnIndex(DbStructure.Column.UNIT_URL));
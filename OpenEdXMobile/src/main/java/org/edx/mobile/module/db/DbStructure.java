@@ -12,11 +12,16 @@ public final class DbStructure {
     // Updated to Version 5 to create a new table to record learning history for assessment
     // Updated to Version 6 to swap every occurrence of username field to its SHA1 hash
     // Updated to Version 7 to add a new field for HLS url encodings
-    public static final int VERSION = 7;
+    // Updated to Version 8 to add a new field for the time a video was last played
+    // Updated to Version 9 to add a table of the download aggregates of each course
+    // Updated to Version 10 to add a table of the video files shared by downloads, by their content
+    public static final int VERSION = 10;
 
     public static final class Table {
         public static final String DOWNLOADS = "downloads";
         public static final String ASSESSMENT = "assessment";
+        public static final String COURSE_DOWNLOADS = "course_downloads";
+        public static final String VIDEO_FILES = "video_files";
     }
 
     public static final class Column {
@@ -41,6 +46,8 @@ public final class DbStructure {
         // date in unix timestamp format
         public static final String DOWNLOADED_ON = "downloaded_on";
         public static final String LAST_PLAYED_OFFSET = "last_played_offset";
+        // date in unix timestamp format
+        public static final String LAST_PLAYED_ON = "last_played_on";
         public static final String IS_COURSE_ACTIVE = "is_course_active";
         public static final String UNIT_URL = "unit_url";
         public static final String VIDEO_FOR_WEB_ONLY = "video_for_web_only";
@@ -51,5 +58,14 @@ public final class DbStructure {
         public static final String ASSESSMENT_TB_USERNAME = "username";
         public static final String ASSESSMENT_TB_UNIT_ID = "unit_id";
         public static final String ASSESSMENT_TB_UNIT_WATCHED = "unit_watched";
+
+        //table for download aggregates of each course, kept up to date by triggers on downloads
+        public static final String DOWNLOADED_COUNT = "downloaded_count";
+        public static final String DOWNLOADED_BYTES = "downloaded_bytes";
+        public static final String DOWNLOADING_COUNT = "downloading_count";
+
+        //table for video files stored by their content, kept up to date by triggers on downloads
+        public static final String CONTENT_SHA1 = "content_sha1";
+        public static final String REF_COUNT = "ref_count";
     }
 }
@@ -5,11 +5,14 @@ import androidx.annotation.Nullable;
 
 import org.edx.mobile.model.VideoModel;
 import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.db.CourseDownloadSummary;
 import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
 import org.edx.mobile.model.db.DownloadEntry.WatchedState;
 import org.edx.mobile.module.db.impl.DatabaseFactory;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This interface represents a database object. All the methods that are required by UI layer
@@ -247,6 +250,19 @@ public interface IDatabase {
      */
     Long addVideoData(VideoModel de, DataCallback<Long> callback);
 
+    /**
+     * Adds the given videos that aren't in the database yet, and then updates the download info
+     * of given downloads, all in a single transaction.
+     *
+     * @param videos    - Videos to add
+     * @param downloads - Videos among the added ones, which have been enqueued for downloading
+     * @param callback
+     * @return - No of videos of which the download info is updated
+     */
+    Integer addDownloads(@NonNull List<? extends VideoModel> videos,
+                         @NonNull List<? extends VideoModel> downloads,
+                         @Nullable DataCallback<Integer> callback);
+
     /**
      * Returns VideoEntry for the passed VideoId
      *
@@ -266,6 +282,18 @@ public interface IDatabase {
     VideoModel getVideoByVideoUrl(String videoUrl, DataCallback<VideoModel> callback);
 
 
+    /**
+     * Returns the {@link VideoModel}s which are downloaded or download is in progress for any of
+     * given videoUrls, in a single query.
+     *
+     * @param videoUrls
+     * @param callback
+     * @return
+     */
+    List<VideoModel> getVideosByVideoUrls(@NonNull Collection<String> videoUrls,
+                                          @Nullable DataCallback<List<VideoModel>> callback);
+
+
     /**
      * Marks given Video as online and sets dmid to -1 so that this video is identified as
      * NOT_DOWNLOADED. File path for this video is made empty so as to avoid access to non-existing
@@ -374,6 +402,77 @@ public interface IDatabase {
     Integer updateDownloadCompleteInfoByDmId(long dmId, VideoModel de,
                                              DataCallback<Integer> callback);
 
+    /**
+     * Update the file path of the downloaded videos stored in a file, of any user, after the file
+     * has been moved, along with the path of the file in the video files stored by content.
+     *
+     * @param filepath    Path the file has been moved from.
+     * @param newFilepath Path the file has been moved to.
+     * @return No of videos updated.
+     */
+    Integer updateDownloadedVideoFilePath(String filepath, String newFilepath,
+                                          DataCallback<Integer> callback);
+
+    /**
+     * Add a video file stored by its content, unless it has been added already. The downloaded
+     * videos referring to the file, of any user, are counted as they are saved.
+     *
+     * @param filepath    Path of the file.
+     * @param contentSha1 SHA1 of the content of the file.
+     * @param size        Size of the file in bytes.
+     * @return Row id of the file, or -1 if it had been added already.
+     */
+    Long addVideoFile(String filepath, String contentSha1, long size,
+                      DataCallback<Long> callback);
+
+    /**
+     * Returns the paths of the video files stored by content with the given content.
+     *
+     * @param contentSha1 SHA1 of the content of the files.
+     * @param size        Size of the files in bytes.
+     * @return Paths of the files.
+     */
+    List<String> getVideoFilePathsByContent(String contentSha1, long size,
+                                            DataCallback<List<String>> callback);
+
+    /**
+     * Returns the paths of the video files stored by content that any downloaded video refers to.
+     *
+     * @return Paths of the files.
+     */
+    List<String> getReferencedVideoFilePaths(DataCallback<List<String>> callback);
+
+    /**
+     * Return true if any downloaded video, of any user, refers to the video file stored by
+     * content at the given path.
+     */
+    Boolean isVideoFileReferenced(String filepath, DataCallback<Boolean> callback);
+
+    /**
+     * Delete a video file stored by content from the database, unless any downloaded video refers
+     * to it.
+     *
+     * @param filepath Path of the file.
+     * @return No of files deleted.
+     */
+    Integer deleteUnreferencedVideoFile(String filepath, DataCallback<Integer> callback);
+
+    /**
+     * Returns the no of bytes saved by the downloaded videos referring to the same video files,
+     * instead of each one having its own file.
+     *
+     * @return Bytes saved.
+     */
+    Long getVideoFileBytesSaved(DataCallback<Long> callback);
+
+    /**
+     * Returns the no of downloaded videos, of any user, referring to each video file stored by
+     * content that any of them refers to.
+     *
+     * @return Reference counts by the paths of the files.
+     */
+    Map<String, Integer> getVideoFileRefCounts(DataCallback<Map<String, Integer>> callback);
+
     /**
      * Returns list of all videos from the database.
      *
@@ -457,6 +556,27 @@ public interface IDatabase {
      */
     Boolean isAnyVideoDownloadingInCourse(DataCallback<Boolean> callback, String courseId);
 
+    /**
+     * Returns the download aggregates of each course, for the logged in user, read from a table
+     * that is kept up to date with the downloads instead of going through every video. Courses
+     * without any video downloaded or being downloaded are left out.
+     *
+     * @return The aggregates of each course.
+     */
+    List<CourseDownloadSummary> getCourseDownloadSummaries(
+            DataCallback<List<CourseDownloadSummary>> callback);
+
+    /**
+     * Same as {@link #getCourseDownloadSummaries(DataCallback)}, for a single course.
+     *
+     * @param courseId Course's ID.
+     * @return The aggregates of the course, or null if no video of it is downloaded or being
+     * downloaded.
+     */
+    @Nullable
+    CourseDownloadSummary getCourseDownloadSummary(@NonNull String courseId,
+                                                   DataCallback<CourseDownloadSummary> callback);
+
     /**
      * Return true if any Video is marked as Downloading for a section in the database for logged
      * in user
@@ -58,6 +58,7 @@ class DbHelper extends SQLiteOpenHelper {
                 + DbStructure.Column.SECTION                + " TEXT, "
                 + DbStructure.Column.DOWNLOADED_ON          + " INTEGER, "
                 + DbStructure.Column.LAST_PLAYED_OFFSET     + " INTEGER, "
+                + DbStructure.Column.LAST_PLAYED_ON         + " INTEGER, "
                 + DbStructure.Column.IS_COURSE_ACTIVE       + " BOOLEAN, "
                 + DbStructure.Column.UNIT_URL               + " TEXT, "
                 + DbStructure.Column.VIDEO_FOR_WEB_ONLY     + " BOOLEAN "
@@ -65,6 +66,8 @@ class DbHelper extends SQLiteOpenHelper {
         db.execSQL(sql);
 
         createAssessmentTable(db);
+        createCourseDownloadsTable(db);
+        createVideoFilesTable(db);
 
         logger.debug("Database created");
     }
@@ -80,6 +83,137 @@ class DbHelper extends SQLiteOpenHelper {
         db.execSQL(sql);
     }
 
+    /**
+     * Creates the table of the download aggregates of each course, along with the triggers that
+     * keep it up to date with every insert, update and delete of the downloads, so that the
+     * aggregates can be read from a row per course instead of going through every video.
+     * The rows whose counts drop to zero are deleted.
+     */
+    private void createCourseDownloadsTable(SQLiteDatabase db) {
+        String sql = "CREATE TABLE "                        + DbStructure.Table.COURSE_DOWNLOADS
+                + " ("
+                + DbStructure.Column.USERNAME               + " TEXT NOT NULL, "
+                + DbStructure.Column.EID                    + " TEXT NOT NULL, "
+                + DbStructure.Column.DOWNLOADED_COUNT       + " INTEGER NOT NULL DEFAULT 0, "
+                + DbStructure.Column.DOWNLOADED_BYTES       + " INTEGER NOT NULL DEFAULT 0, "
+                + DbStructure.Column.DOWNLOADING_COUNT      + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + DbStructure.Column.USERNAME + ", " + DbStructure.Column.EID + ")"
+                + ")";
+        db.execSQL(sql);
+
+        db.execSQL("CREATE TRIGGER " + DbStructure.Table.COURSE_DOWNLOADS + "_after_insert"
+                + " AFTER INSERT ON " + DbStructure.Table.DOWNLOADS
+                + " BEGIN "
+                + addToCourseDownloads("NEW", "+")
+                + " END");
+        db.execSQL("CREATE TRIGGER " + DbStructure.Table.COURSE_DOWNLOADS + "_after_delete"
+                + " AFTER DELETE ON " + DbStructure.Table.DOWNLOADS
+                + " BEGIN "
+                + addToCourseDownloads("OLD", "-")
+                + " END");
+        db.execSQL("CREATE TRIGGER " + DbStructure.Table.COURSE_DOWNLOADS + "_after_update"
+                + " AFTER UPDATE OF " + DbStructure.Column.DOWNLOADED + ", "
+                + DbStructure.Column.SIZE + ", " + DbStructure.Column.USERNAME + ", "
+                + DbStructure.Column.EID + " ON " + DbStructure.Table.DOWNLOADS
+                + " BEGIN "
+                + addToCourseDownloads("OLD", "-")
+                + addToCourseDownloads("NEW", "+")
+                + " END");
+    }
+
+    /**
+     * @param row  Row of the downloads to add to the aggregates of its course, NEW or OLD.
+     * @param sign + to add the row, - to subtract it.
+     * @return Statements of a trigger that add a row to the aggregates of its course.
+     */
+    private static String addToCourseDownloads(String row, String sign) {
+        final String username = "COALESCE(" + row + "." + DbStructure.Column.USERNAME + ", '')";
+        final String eid = "COALESCE(" + row + "." + DbStructure.Column.EID + ", '')";
+        final String where = " WHERE " + DbStructure.Column.USERNAME + "=" + username
+                + " AND " + DbStructure.Column.EID + "=" + eid;
+        return "INSERT OR IGNORE INTO " + DbStructure.Table.COURSE_DOWNLOADS
+                + " (" + DbStructure.Column.USERNAME + ", " + DbStructure.Column.EID + ")"
+                + " VALUES (" + username + ", " + eid + "); "
+                + "UPDATE " + DbStructure.Table.COURSE_DOWNLOADS + " SET "
+                + DbStructure.Column.DOWNLOADED_COUNT + "=" + DbStructure.Column.DOWNLOADED_COUNT
+                + sign + downloadedCount(row) + ", "
+                + DbStructure.Column.DOWNLOADED_BYTES + "=" + DbStructure.Column.DOWNLOADED_BYTES
+                + sign + downloadedBytes(row) + ", "
+                + DbStructure.Column.DOWNLOADING_COUNT + "=" + DbStructure.Column.DOWNLOADING_COUNT
+                + sign + downloadingCount(row)
+                + where + "; "
+                + "DELETE FROM " + DbStructure.Table.COURSE_DOWNLOADS
+                + where
+                + " AND " + DbStructure.Column.DOWNLOADED_COUNT + "=0"
+                + " AND " + DbStructure.Column.DOWNLOADING_COUNT + "=0; ";
+    }
+
+    private static String downloadedCount(String row) {
+        return "(CASE WHEN " + row + "." + DbStructure.Column.DOWNLOADED + "="
+                + DownloadEntry.DownloadedState.DOWNLOADED.ordinal() + " THEN 1 ELSE 0 END)";
+    }
+
+    private static String downloadedBytes(String row) {
+        return "(CASE WHEN " + row + "." + DbStructure.Column.DOWNLOADED + "="
+                + DownloadEntry.DownloadedState.DOWNLOADED.ordinal() + " THEN COALESCE(CAST("
+                + row + "." + DbStructure.Column.SIZE + " AS INTEGER), 0) ELSE 0 END)";
+    }
+
+    private static String downloadingCount(String row) {
+        return "(CASE WHEN " + row + "." + DbStructure.Column.DOWNLOADED + "="
+                + DownloadEntry.DownloadedState.DOWNLOADING.ordinal() + " THEN 1 ELSE 0 END)";
+    }
+
+    /**
+     * Creates the table of the video files stored by their content, which the downloads of any
+     * user refer to by their paths, along with the triggers that count the downloaded videos
+     * referring to each of them, so that a file is only deleted once no video refers to it.
+     */
+    private void createVideoFilesTable(SQLiteDatabase db) {
+        String sql = "CREATE TABLE "                        + DbStructure.Table.VIDEO_FILES
+                + " ("
+                + DbStructure.Column.FILEPATH               + " TEXT PRIMARY KEY, "
+                + DbStructure.Column.CONTENT_SHA1           + " TEXT NOT NULL, "
+                + DbStructure.Column.SIZE                   + " INTEGER NOT NULL, "
+                + DbStructure.Column.REF_COUNT              + " INTEGER NOT NULL DEFAULT 0"
+                + ")";
+        db.execSQL(sql);
+        db.execSQL("CREATE INDEX " + DbStructure.Table.VIDEO_FILES + "_"
+                + DbStructure.Column.CONTENT_SHA1 + " ON " + DbStructure.Table.VIDEO_FILES
+                + " (" + DbStructure.Column.CONTENT_SHA1 + ")");
+
+        db.execSQL("CREATE TRIGGER " + DbStructure.Table.VIDEO_FILES + "_after_insert"
+                + " AFTER INSERT ON " + DbStructure.Table.DOWNLOADS
+                + " BEGIN "
+                + referToVideoFile("NEW", "+")
+                + " END");
+        db.execSQL("CREATE TRIGGER " + DbStructure.Table.VIDEO_FILES + "_after_delete"
+                + " AFTER DELETE ON " + DbStructure.Table.DOWNLOADS
+                + " BEGIN "
+                + referToVideoFile("OLD", "-")
+                + " END");
+        db.execSQL("CREATE TRIGGER " + DbStructure.Table.VIDEO_FILES + "_after_update"
+                + " AFTER UPDATE OF " + DbStructure.Column.DOWNLOADED + ", "
+                + DbStructure.Column.FILEPATH + " ON " + DbStructure.Table.DOWNLOADS
+                + " BEGIN "
+                + referToVideoFile("OLD", "-")
+                + referToVideoFile("NEW", "+")
+                + " END");
+    }
+
+    /**
+     * @param row  Row of the downloads to count in the references to its file, NEW or OLD.
+     * @param sign + to add the reference, - to remove it.
+     * @return Statement of a trigger that counts a row in the references to its file.
+     */
+    private static String referToVideoFile(String row, String sign) {
+        return "UPDATE " + DbStructure.Table.VIDEO_FILES + " SET "
+                + DbStructure.Column.REF_COUNT + "=" + DbStructure.Column.REF_COUNT
+                + sign + downloadedCount(row)
+                + " WHERE " + DbStructure.Column.FILEPATH + "=" + row + "."
+                + DbStructure.Column.FILEPATH + "; ";
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         String upgradeToV2 =
@@ -103,6 +237,9 @@ class DbHelper extends SQLiteOpenHelper {
         String upgradeToV7 = "ALTER TABLE " + DbStructure.Table.DOWNLOADS + " ADD COLUMN "
                         + DbStructure.Column.URL_HLS + " TEXT ";
 
+        String upgradeToV8 = "ALTER TABLE " + DbStructure.Table.DOWNLOADS + " ADD COLUMN "
+                        + DbStructure.Column.LAST_PLAYED_ON + " INTEGER ";
+
         if (oldVersion == 1) {
             // upgrade from 1 to 2
             db.execSQL(upgradeToV2);
@@ -215,6 +352,40 @@ class DbHelper extends SQLiteOpenHelper {
                     new String[]{String.valueOf(DownloadEntry.DownloadedState.ONLINE.ordinal())});
         }
 
+        if (oldVersion < 8) {
+            // upgrade to version 8
+            db.execSQL(upgradeToV8);
+        }
+
+        if (oldVersion < 9) {
+            // upgrade to version 9
+            db.beginTransaction();
+            try {
+                createCourseDownloadsTable(db);
+                // Aggregate the existing downloads, which the triggers haven't seen
+                db.execSQL("INSERT INTO " + DbStructure.Table.COURSE_DOWNLOADS + " ("
+                        + DbStructure.Column.USERNAME + ", " + DbStructure.Column.EID + ", "
+                        + DbStructure.Column.DOWNLOADED_COUNT + ", "
+                        + DbStructure.Column.DOWNLOADED_BYTES + ", "
+                        + DbStructure.Column.DOWNLOADING_COUNT + ")"
+                        + " SELECT COALESCE(" + DbStructure.Column.USERNAME + ", ''), COALESCE("
+                        + DbStructure.Column.EID + ", ''), SUM(" + downloadedCount("d") + "), SUM("
+                        + downloadedBytes("d") + "), SUM(" + downloadingCount("d") + ")"
+                        + " FROM " + DbStructure.Table.DOWNLOADS + " d"
+                        + " GROUP BY 1, 2"
+                        + " HAVING SUM(" + downloadedCount("d") + ") > 0"
+                        + " OR SUM(" + downloadingCount("d") + ") > 0");
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        if (oldVersion < 10) {
+            // upgrade to version 10, the files downloaded before aren't shared
+            createVideoFilesTable(db);
+        }
+
     }
 
     /**
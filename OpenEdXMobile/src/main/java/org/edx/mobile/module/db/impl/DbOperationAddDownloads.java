@@ -0,0 +1,66 @@
+package org.edx.mobile.module.db.impl;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.module.db.DbStructure;
+
+import java.util.List;
+
+/**
+ * Adds the videos that aren't in the database yet, and updates the download info of the videos
+ * that have been enqueued for downloading, all in a single transaction.
+ */
+class DbOperationAddDownloads extends DbOperationBase<Integer> {
+
+    private static final String WHERE_VIDEO = DbStructure.Column.VIDEO_ID + "=? AND "
+            + DbStructure.Column.USERNAME + "=?";
+
+    private List<? extends VideoModel> videos;
+    private List<? extends VideoModel> downloads;
+    private String username;
+
+    DbOperationAddDownloads(List<? extends VideoModel> videos,
+                            List<? extends VideoModel> downloads, String username) {
+        this.videos = videos;
+        this.downloads = downloads;
+        this.username = username;
+    }
+
+    @Override
+    public Integer execute(SQLiteDatabase db) {
+        if (videos == null || downloads == null) {
+            throw new IllegalArgumentException("videos and downloads must be provided");
+        }
+
+        int count = 0;
+        db.beginTransaction();
+        try {
+            for (VideoModel video : videos) {
+                final String[] whereArgs = {video.getVideoId(), username};
+                if (DatabaseUtils.queryNumEntries(db, DbStructure.Table.DOWNLOADS,
+                        WHERE_VIDEO, whereArgs) == 0) {
+                    db.insert(DbStructure.Table.DOWNLOADS, null,
+                            IDatabaseImpl.getVideoValues(video, username));
+                }
+            }
+            for (VideoModel download : downloads) {
+                count += db.update(DbStructure.Table.DOWNLOADS,
+                        IDatabaseImpl.getDownloadInfoValues(download), WHERE_VIDEO,
+                        new String[]{download.getVideoId(), username});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return count;
+    }
+
+    @Override
+    public Integer getDefaultValue() {
+        return 0;
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.edx.mobile.module.db.impl;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.edx.mobile.model.db.CourseDownloadSummary;
+import org.edx.mobile.module.db.DbStructure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class DbOperationGetCourseDownloadSummaries extends DbOperationSelect<List<CourseDownloadSummary>> {
+
+    private static final String[] COLUMNS = {DbStructure.Column.EID,
+            DbStructure.Column.DOWNLOADED_COUNT, DbStructure.Column.DOWNLOADED_BYTES,
+            DbStructure.Column.DOWNLOADING_COUNT};
+
+    DbOperationGetCourseDownloadSummaries(String whereClause, String[] whereArgs) {
+        super(false, DbStructure.Table.COURSE_DOWNLOADS, COLUMNS, whereClause, whereArgs, null);
+    }
+
+    @Override
+    public List<CourseDownloadSummary> execute(SQLiteDatabase db) {
+        List<CourseDownloadSummary> list = new ArrayList<>();
+
+        Cursor c = getCursor(db);
+        try {
+            while (c.moveToNext()) {
+                list.add(new CourseDownloadSummary(c.getString(0), c.getInt(1), c.getLong(2),
+                        c.getInt(3)));
+            }
+        } finally {
+            c.close();
+        }
+
+        return list;
+    }
+
+    @Override
+    public List<CourseDownloadSummary> getDefaultValue() {
+        return new ArrayList<>();
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.edx.mobile.module.db.impl;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Sums up a column, or an expression of the columns, of the selected rows.
+ */
+class DbOperationGetSum<T extends Number> extends DbOperationSelect<T> {
+
+    private Class<T> sumType;
+
+    DbOperationGetSum(String table, String column, String whereClause, String[] whereArgs,
+                      Class<T> sumType) {
+        super(false, table, new String[]{"TOTAL(" + column + ")"}, whereClause, whereArgs, null);
+        this.sumType = sumType;
+    }
+
+    @Override
+    public T execute(SQLiteDatabase db) {
+        Cursor c = getCursor(db);
+        long sum = c.moveToFirst() ? c.getLong(0) : 0;
+        c.close();
+
+        return toSumType(sum);
+    }
+
+    @Override
+    public T getDefaultValue() {
+        return toSumType(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T toSumType(long sum) {
+        if (sumType == Integer.class) {
+            return (T) Integer.valueOf((int) sum);
+        }
+        return (T) Long.valueOf(sum);
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.edx.mobile.module.db.impl;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.edx.mobile.module.db.DbStructure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class DbOperationGetVideoFileRefCounts extends DbOperationSelect<Map<String, Integer>> {
+
+    private static final String[] COLUMNS = {DbStructure.Column.FILEPATH,
+            DbStructure.Column.REF_COUNT};
+
+    DbOperationGetVideoFileRefCounts() {
+        super(false, DbStructure.Table.VIDEO_FILES, COLUMNS,
+                DbStructure.Column.REF_COUNT + ">0", null, null);
+    }
+
+    @Override
+    public Map<String, Integer> execute(SQLiteDatabase db) {
+        Map<String, Integer> refCounts = new HashMap<>();
+
+        Cursor c = getCursor(db);
+        try {
+            while (c.moveToNext()) {
+                refCounts.put(c.getString(0), c.getInt(1));
+            }
+        } finally {
+            c.close();
+        }
+
+        return refCounts;
+    }
+
+    @Override
+    public Map<String, Integer> getDefaultValue() {
+        return new HashMap<>();
+    }
+
+}
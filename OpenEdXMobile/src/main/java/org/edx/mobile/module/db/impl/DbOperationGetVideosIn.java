@@ -0,0 +1,85 @@
+package org.edx.mobile.module.db.impl;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.module.db.DatabaseModelFactory;
+import org.edx.mobile.util.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Gets the videos whose column has one of the given values. The values are queried in chunks, as
+ * SQLite limits the number of variables a query can bind to 999.
+ */
+class DbOperationGetVideosIn extends DbOperationBase<List<VideoModel>> {
+
+    static final int MAX_VALUES_PER_QUERY = 900;
+
+    @NonNull
+    private final String table;
+    @NonNull
+    private final String whereClause;
+    @NonNull
+    private final String[] whereArgs;
+    @NonNull
+    private final String column;
+    @NonNull
+    private final List<String> values;
+
+    /**
+     * @param whereClause Condition the videos have to meet besides having one of the values.
+     * @param whereArgs   Arguments of the condition.
+     * @param column      Column to match the values against.
+     * @param values      Values to look for.
+     */
+    DbOperationGetVideosIn(@NonNull String table, @NonNull String whereClause,
+                           @NonNull String[] whereArgs, @NonNull String column,
+                           @NonNull Collection<String> values) {
+        this.table = table;
+        this.whereClause = whereClause;
+        this.whereArgs = whereArgs;
+        this.column = column;
+        this.values = new ArrayList<>(values);
+    }
+
+    @Override
+    public List<VideoModel> execute(SQLiteDatabase db) {
+        List<VideoModel> list = new ArrayList<>();
+
+        for (int start = 0; start < values.size(); start += MAX_VALUES_PER_QUERY) {
+            final List<String> chunk = values.subList(start,
+                    Math.min(start + MAX_VALUES_PER_QUERY, values.size()));
+            final List<String> args = new ArrayList<>(whereArgs.length + chunk.size());
+            Collections.addAll(args, whereArgs);
+            args.addAll(chunk);
+            final CharSequence placeholders = TextUtils.join(",",
+                    Collections.<CharSequence>nCopies(chunk.size(), "?"));
+
+            Cursor c = db.query(false, table, null,
+                    whereClause + " AND " + column + " IN (" + placeholders + ")",
+                    args.toArray(new String[0]), null, null, null, null);
+            try {
+                while (c.moveToNext()) {
+                    list.add(DatabaseModelFactory.getModel(c));
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public List<VideoModel> getDefaultValue() {
+        return new ArrayList<>();
+    }
+
+}
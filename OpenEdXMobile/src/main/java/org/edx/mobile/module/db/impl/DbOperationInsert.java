@@ -7,10 +7,16 @@ class DbOperationInsert extends DbOperationBase<Long> {
     
     private String table;
     private ContentValues values;
+    private int conflictAlgorithm;
     
     DbOperationInsert(String table, ContentValues values) {
+        this(table, values, SQLiteDatabase.CONFLICT_NONE);
+    }
+
+    DbOperationInsert(String table, ContentValues values, int conflictAlgorithm) {
         this.table = table;
         this.values = values;
+        this.conflictAlgorithm = conflictAlgorithm;
     }
 
     @Override
@@ -23,7 +29,9 @@ class DbOperationInsert extends DbOperationBase<Long> {
             throw new IllegalArgumentException("values must be provided");
         }
         
-        long id = db.insert(table, null, values);
+        long id = conflictAlgorithm == SQLiteDatabase.CONFLICT_NONE ?
+                db.insert(table, null, values) :
+                db.insertWithOnConflict(table, null, values, conflictAlgorithm);
         
         return id;
     }
@@ -0,0 +1,61 @@
+package org.edx.mobile.module.db.impl;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.module.db.DbStructure;
+
+/**
+ * Points the downloaded videos of any user stored in a file at the path the file has been moved
+ * to, and moves the file along with its references in the video files stored by content, all in
+ * a single transaction.
+ */
+class DbOperationMoveVideoFile extends DbOperationBase<Integer> {
+
+    private String filepath;
+    private String newFilepath;
+
+    DbOperationMoveVideoFile(String filepath, String newFilepath) {
+        this.filepath = filepath;
+        this.newFilepath = newFilepath;
+    }
+
+    @Override
+    public Integer execute(SQLiteDatabase db) {
+        if (filepath == null || newFilepath == null) {
+            throw new IllegalArgumentException("filepath and newFilepath must be provided");
+        }
+
+        db.beginTransaction();
+        try {
+            // The references are moved by the triggers as the videos are updated
+            db.execSQL("INSERT OR IGNORE INTO " + DbStructure.Table.VIDEO_FILES + " ("
+                    + DbStructure.Column.FILEPATH + ", " + DbStructure.Column.CONTENT_SHA1 + ", "
+                    + DbStructure.Column.SIZE + ") SELECT ?, "
+                    + DbStructure.Column.CONTENT_SHA1 + ", " + DbStructure.Column.SIZE
+                    + " FROM " + DbStructure.Table.VIDEO_FILES
+                    + " WHERE " + DbStructure.Column.FILEPATH + "=?",
+                    new Object[]{newFilepath, filepath});
+
+            final ContentValues values = new ContentValues();
+            values.put(DbStructure.Column.FILEPATH, newFilepath);
+            final int count = db.update(DbStructure.Table.DOWNLOADS, values,
+                    DbStructure.Column.FILEPATH + "=? AND " + DbStructure.Column.DOWNLOADED + "=?",
+                    new String[]{filepath, String.valueOf(DownloadedState.DOWNLOADED.ordinal())});
+
+            db.delete(DbStructure.Table.VIDEO_FILES, DbStructure.Column.FILEPATH + "=? AND "
+                    + DbStructure.Column.REF_COUNT + "<=0", new String[]{filepath});
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public Integer getDefaultValue() {
+        return 0;
+    }
+
+}
@@ -2,6 +2,7 @@ package org.edx.mobile.module.db.impl;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -12,6 +13,7 @@ import com.google.inject.Singleton;
 import org.apache.commons.lang.ArrayUtils;
 import org.edx.mobile.model.VideoModel;
 import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.db.CourseDownloadSummary;
 import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
 import org.edx.mobile.model.db.DownloadEntry.WatchedState;
 import org.edx.mobile.module.db.DataCallback;
@@ -22,8 +24,10 @@ import org.edx.mobile.util.Sha1Util;
 import org.edx.mobile.util.TextUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
@@ -45,10 +49,10 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
 
     @Override
     public Boolean isAnyVideoDownloading(final DataCallback<Boolean> callback) {
-        DbOperationExists op = new DbOperationExists(false, DbStructure.Table.DOWNLOADS, null,
-                DbStructure.Column.USERNAME + "=? AND " + DbStructure.Column.DOWNLOADED + "=?",
-                new String[]{username(), String.valueOf(DownloadedState.DOWNLOADING.ordinal())},
-                null);
+        DbOperationExists op = new DbOperationExists(false, DbStructure.Table.COURSE_DOWNLOADS,
+                null, DbStructure.Column.USERNAME + "=? AND "
+                + DbStructure.Column.DOWNLOADING_COUNT + ">0",
+                new String[]{username()}, null);
         op.setCallback(callback);
         return enqueue(op);
     }
@@ -341,6 +345,7 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
                                            final DataCallback<Integer> callback) {
         ContentValues values = new ContentValues();
         values.put(DbStructure.Column.WATCHED, status.ordinal());
+        values.put(DbStructure.Column.LAST_PLAYED_ON, System.currentTimeMillis());
 
         DbOperationUpdate op = new DbOperationUpdate(DbStructure.Table.DOWNLOADS, values,
                 DbStructure.Column.VIDEO_ID + "=? AND " + DbStructure.Column.USERNAME + "=?",
@@ -355,6 +360,7 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
                                                final DataCallback<Integer> callback) {
         ContentValues values = new ContentValues();
         values.put(DbStructure.Column.LAST_PLAYED_OFFSET, offset);
+        values.put(DbStructure.Column.LAST_PLAYED_ON, System.currentTimeMillis());
 
         DbOperationUpdate op = new DbOperationUpdate(DbStructure.Table.DOWNLOADS, values,
                 DbStructure.Column.VIDEO_ID + "=? AND " + DbStructure.Column.USERNAME + "=?",
@@ -368,30 +374,8 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
     public Long addVideoData(final VideoModel de, final DataCallback<Long> callback) {
         VideoModel result = getVideoEntryByVideoId(de.getVideoId(), null);
         if (result == null) {
-            ContentValues values = new ContentValues();
-            values.put(DbStructure.Column.USERNAME, username());
-            values.put(DbStructure.Column.TITLE, de.getTitle());
-            values.put(DbStructure.Column.VIDEO_ID, de.getVideoId());
-            values.put(DbStructure.Column.SIZE, de.getSize());
-            values.put(DbStructure.Column.DURATION, de.getDuration());
-            values.put(DbStructure.Column.FILEPATH, de.getFilePath());
-            values.put(DbStructure.Column.URL, de.getVideoUrl());
-            values.put(DbStructure.Column.URL_HLS, de.getHLSVideoUrl());
-            values.put(DbStructure.Column.URL_HIGH_QUALITY, de.getHighQualityVideoUrl());
-            values.put(DbStructure.Column.URL_LOW_QUALITY, de.getLowQualityVideoUrl());
-            values.put(DbStructure.Column.URL_YOUTUBE, de.getYoutubeVideoUrl());
-            values.put(DbStructure.Column.WATCHED, de.getWatchedStateOrdinal());
-            values.put(DbStructure.Column.DOWNLOADED, de.getDownloadedStateOrdinal());
-            values.put(DbStructure.Column.DM_ID, de.getDmId());
-            values.put(DbStructure.Column.EID, de.getEnrollmentId());
-            values.put(DbStructure.Column.CHAPTER, de.getChapterName());
-            values.put(DbStructure.Column.SECTION, de.getSectionName());
-            values.put(DbStructure.Column.LAST_PLAYED_OFFSET, de.getLastPlayedOffset());
-            values.put(DbStructure.Column.UNIT_URL, de.getLmsUrl());
-            values.put(DbStructure.Column.IS_COURSE_ACTIVE, de.isCourseActive());
-            values.put(DbStructure.Column.VIDEO_FOR_WEB_ONLY, de.isVideoForWebOnly());
-
-            DbOperationInsert op = new DbOperationInsert(DbStructure.Table.DOWNLOADS, values);
+            DbOperationInsert op = new DbOperationInsert(DbStructure.Table.DOWNLOADS,
+                    getVideoValues(de, username()));
             op.setCallback(callback);
             return enqueue(op);
         } else {
@@ -404,6 +388,63 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
         return 0L;
     }
 
+    @Override
+    public Integer addDownloads(@NonNull List<? extends VideoModel> videos,
+                                @NonNull List<? extends VideoModel> downloads,
+                                @Nullable DataCallback<Integer> callback) {
+        DbOperationAddDownloads op = new DbOperationAddDownloads(videos, downloads, username());
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    /**
+     * Returns the values of all the columns of a new row for given video.
+     */
+    @NonNull
+    static ContentValues getVideoValues(@NonNull VideoModel de, String username) {
+        ContentValues values = new ContentValues();
+        values.put(DbStructure.Column.USERNAME, username);
+        values.put(DbStructure.Column.TITLE, de.getTitle());
+        values.put(DbStructure.Column.VIDEO_ID, de.getVideoId());
+        values.put(DbStructure.Column.SIZE, de.getSize());
+        values.put(DbStructure.Column.DURATION, de.getDuration());
+        values.put(DbStructure.Column.FILEPATH, de.getFilePath());
+        values.put(DbStructure.Column.URL, de.getVideoUrl());
+        values.put(DbStructure.Column.URL_HLS, de.getHLSVideoUrl());
+        values.put(DbStructure.Column.URL_HIGH_QUALITY, de.getHighQualityVideoUrl());
+        values.put(DbStructure.Column.URL_LOW_QUALITY, de.getLowQualityVideoUrl());
+        values.put(DbStructure.Column.URL_YOUTUBE, de.getYoutubeVideoUrl());
+        values.put(DbStructure.Column.WATCHED, de.getWatchedStateOrdinal());
+        values.put(DbStructure.Column.DOWNLOADED, de.getDownloadedStateOrdinal());
+        values.put(DbStructure.Column.DOWNLOADED_ON, de.getDownloadedOn());
+        values.put(DbStructure.Column.DM_ID, de.getDmId());
+        values.put(DbStructure.Column.EID, de.getEnrollmentId());
+        values.put(DbStructure.Column.CHAPTER, de.getChapterName());
+        values.put(DbStructure.Column.SECTION, de.getSectionName());
+        values.put(DbStructure.Column.LAST_PLAYED_OFFSET, de.getLastPlayedOffset());
+        values.put(DbStructure.Column.LAST_PLAYED_ON, de.getLastPlayedOn());
+        values.put(DbStructure.Column.UNIT_URL, de.getLmsUrl());
+        values.put(DbStructure.Column.IS_COURSE_ACTIVE, de.isCourseActive());
+        values.put(DbStructure.Column.VIDEO_FOR_WEB_ONLY, de.isVideoForWebOnly());
+        return values;
+    }
+
+    /**
+     * Returns the values of the columns holding the download info of given video.
+     */
+    @NonNull
+    static ContentValues getDownloadInfoValues(@NonNull VideoModel model) {
+        ContentValues values = new ContentValues();
+        values.put(DbStructure.Column.DM_ID, model.getDmId());
+        values.put(DbStructure.Column.DOWNLOADED, model.getDownloadedStateOrdinal());
+        values.put(DbStructure.Column.DOWNLOADED_ON, model.getDownloadedOn());
+        values.put(DbStructure.Column.DURATION, model.getDuration());
+        values.put(DbStructure.Column.FILEPATH, model.getFilePath());
+        values.put(DbStructure.Column.SIZE, model.getSize());
+        values.put(DbStructure.Column.IS_COURSE_ACTIVE, model.isCourseActive());
+        return values;
+    }
+
 
     /**
      * Returns download entry for given video id.
@@ -432,6 +473,17 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
         return enqueue(op);
     }
 
+    @Override
+    public List<VideoModel> getVideosByVideoUrls(@NonNull Collection<String> videoUrls,
+                                                 @Nullable DataCallback<List<VideoModel>> callback) {
+        DbOperationGetVideosIn op = new DbOperationGetVideosIn(DbStructure.Table.DOWNLOADS,
+                DbStructure.Column.DOWNLOADED + "!=? AND " + DbStructure.Column.USERNAME + "=?",
+                new String[]{String.valueOf(DownloadedState.ONLINE.ordinal()), username()},
+                DbStructure.Column.URL, videoUrls);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
     @Override
     public Integer deleteVideoByVideoId(VideoModel video, DataCallback<Integer> callback) {
         DbOperationDelete op = new DbOperationDelete(DbStructure.Table.DOWNLOADS,
@@ -465,15 +517,8 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
     @Override
     public Integer updateDownloadingVideoInfoByVideoId(VideoModel model,
                                                        DataCallback<Integer> callback) {
-        ContentValues values = new ContentValues();
-        values.put(DbStructure.Column.DM_ID, model.getDmId());
-        values.put(DbStructure.Column.DOWNLOADED, model.getDownloadedStateOrdinal());
-        values.put(DbStructure.Column.DURATION, model.getDuration());
-        values.put(DbStructure.Column.FILEPATH, model.getFilePath());
-        values.put(DbStructure.Column.SIZE, model.getSize());
-        values.put(DbStructure.Column.IS_COURSE_ACTIVE, model.isCourseActive());
-
-        DbOperationUpdate op = new DbOperationUpdate(DbStructure.Table.DOWNLOADS, values,
+        DbOperationUpdate op = new DbOperationUpdate(DbStructure.Table.DOWNLOADS,
+                getDownloadInfoValues(model),
                 DbStructure.Column.VIDEO_ID + "=? AND " + DbStructure.Column.USERNAME + "=?",
                 new String[]{model.getVideoId(), username()});
         op.setCallback(callback);
@@ -528,11 +573,9 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
 
     @Override
     public Integer getVideosDownloadedCount(final DataCallback<Integer> callback) {
-        DbOperationGetCount op = new DbOperationGetCount(false, DbStructure.Table.DOWNLOADS,
-                null, DbStructure.Column.DOWNLOADED + "=? AND "
-                + DbStructure.Column.USERNAME + "=?",
-                new String[]{String.valueOf(DownloadedState.DOWNLOADED.ordinal()),
-                        username()}, null);
+        DbOperationGetSum<Integer> op = new DbOperationGetSum<>(
+                DbStructure.Table.COURSE_DOWNLOADS, DbStructure.Column.DOWNLOADED_COUNT,
+                DbStructure.Column.USERNAME + "=?", new String[]{username()}, Integer.class);
         op.setCallback(callback);
         return enqueue(op);
 
@@ -581,6 +624,84 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
         return enqueue(op);
     }
 
+    @Override
+    public Integer updateDownloadedVideoFilePath(String filepath, String newFilepath,
+                                                 DataCallback<Integer> callback) {
+        DbOperationMoveVideoFile op = new DbOperationMoveVideoFile(filepath, newFilepath);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public Long addVideoFile(String filepath, String contentSha1, long size,
+                             DataCallback<Long> callback) {
+        ContentValues values = new ContentValues();
+        values.put(DbStructure.Column.FILEPATH, filepath);
+        values.put(DbStructure.Column.CONTENT_SHA1, contentSha1);
+        values.put(DbStructure.Column.SIZE, size);
+
+        DbOperationInsert op = new DbOperationInsert(DbStructure.Table.VIDEO_FILES, values,
+                SQLiteDatabase.CONFLICT_IGNORE);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public List<String> getVideoFilePathsByContent(String contentSha1, long size,
+                                                   DataCallback<List<String>> callback) {
+        DbOperationGetColumn<String> op = new DbOperationGetColumn<String>(false,
+                DbStructure.Table.VIDEO_FILES, new String[]{DbStructure.Column.FILEPATH},
+                DbStructure.Column.CONTENT_SHA1 + "=? AND " + DbStructure.Column.SIZE + "=?",
+                new String[]{contentSha1, String.valueOf(size)},
+                DbStructure.Column.REF_COUNT + " DESC", String.class);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public List<String> getReferencedVideoFilePaths(DataCallback<List<String>> callback) {
+        DbOperationGetColumn<String> op = new DbOperationGetColumn<String>(false,
+                DbStructure.Table.VIDEO_FILES, new String[]{DbStructure.Column.FILEPATH},
+                DbStructure.Column.REF_COUNT + ">0", null, null, String.class);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public Boolean isVideoFileReferenced(String filepath, DataCallback<Boolean> callback) {
+        DbOperationExists op = new DbOperationExists(false, DbStructure.Table.VIDEO_FILES, null,
+                DbStructure.Column.FILEPATH + "=? AND " + DbStructure.Column.REF_COUNT + ">0",
+                new String[]{filepath}, null);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public Integer deleteUnreferencedVideoFile(String filepath, DataCallback<Integer> callback) {
+        DbOperationDelete op = new DbOperationDelete(DbStructure.Table.VIDEO_FILES,
+                DbStructure.Column.FILEPATH + "=? AND " + DbStructure.Column.REF_COUNT + "<=0",
+                new String[]{filepath});
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public Long getVideoFileBytesSaved(DataCallback<Long> callback) {
+        DbOperationGetSum<Long> op = new DbOperationGetSum<>(DbStructure.Table.VIDEO_FILES,
+                DbStructure.Column.SIZE + "*(" + DbStructure.Column.REF_COUNT + "-1)",
+                DbStructure.Column.REF_COUNT + ">1", null, Long.class);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public Map<String, Integer> getVideoFileRefCounts(
+            DataCallback<Map<String, Integer>> callback) {
+        DbOperationGetVideoFileRefCounts op = new DbOperationGetVideoFileRefCounts();
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
     @Override
     public List<VideoModel> getAllVideos(String username,
                                          final DataCallback<List<VideoModel>> callback) {
@@ -736,15 +857,47 @@ public class IDatabaseImpl extends IDatabaseBaseImpl implements IDatabase {
     @Override
     public Boolean isAnyVideoDownloadingInCourse(final DataCallback<Boolean> callback,
                                                  String courseId) {
-        DbOperationExists op = new DbOperationExists(false, DbStructure.Table.DOWNLOADS, null,
-                DbStructure.Column.EID + "=? AND " + DbStructure.Column.USERNAME + "=? AND "
-                        + DbStructure.Column.DOWNLOADED + "=?",
-                new String[]{courseId, username(),
-                        String.valueOf(DownloadedState.DOWNLOADING.ordinal())}, null);
+        DbOperationExists op = new DbOperationExists(false, DbStructure.Table.COURSE_DOWNLOADS,
+                null, DbStructure.Column.EID + "=? AND " + DbStructure.Column.USERNAME + "=? AND "
+                        + DbStructure.Column.DOWNLOADING_COUNT + ">0",
+                new String[]{courseId, username()}, null);
+        op.setCallback(callback);
+        return enqueue(op);
+    }
+
+    @Override
+    public List<CourseDownloadSummary> getCourseDownloadSummaries(
+            final DataCallback<List<CourseDownloadSummary>> callback) {
+        DbOperationGetCourseDownloadSummaries op = new DbOperationGetCourseDownloadSummaries(
+                DbStructure.Column.USERNAME + "=?", new String[]{username()});
         op.setCallback(callback);
         return enqueue(op);
     }
 
+    @Nullable
+    @Override
+    public CourseDownloadSummary getCourseDownloadSummary(
+            @NonNull String courseId, final DataCallback<CourseDownloadSummary> callback) {
+        DbOperationGetCourseDownloadSummaries op = new DbOperationGetCourseDownloadSummaries(
+                DbStructure.Column.EID + "=? AND " + DbStructure.Column.USERNAME + "=?",
+                new String[]{courseId, username()});
+        if (callback != null) {
+            op.setCallback(new DataCallback<List<CourseDownloadSummary>>() {
+                @Override
+                public void onResult(List<CourseDownloadSummary> summaries) {
+                    callback.sendResult(summaries.isEmpty() ? null : summaries.get(0));
+                }
+
+                @Override
+                public void onFail(Exception ex) {
+                    callback.sendException(ex);
+                }
+            });
+        }
+        final List<CourseDownloadSummary> summaries = enqueue(op);
+        return summaries == null || summaries.isEmpty() ? null : summaries.get(0);
+    }
+
     @Override
     public Boolean isAnyVideoDownloadingInSection(final DataCallback<Boolean> callback,
                                                   String courseId, String section) {
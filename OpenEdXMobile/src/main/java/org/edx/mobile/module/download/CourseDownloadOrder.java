@@ -0,0 +1,146 @@
+package org.edx.mobile.module.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.db.DownloadEntry;
+import org.edx.mobile.module.db.IDatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Orders the downloads of the videos of a course by their position in the course, so that the
+ * videos a learner is going to watch next get downloaded first, instead of in the arbitrary order
+ * they get enqueued in. The videos following the unit being viewed are served before the others.
+ */
+@Singleton
+public class CourseDownloadOrder {
+    /**
+     * No of videos, starting from the unit being viewed, to download before the others.
+     */
+    public static final int PRIORITIZED_VIDEOS = 3;
+
+    @NonNull
+    private final IDownloadManager dm;
+    @NonNull
+    private final IDatabase db;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Unit to prioritize the videos from next, the ones paged past in the meantime are skipped
+    private final AtomicReference<CourseComponent> pendingUnit = new AtomicReference<>();
+
+    @Inject
+    public CourseDownloadOrder(@NonNull IDownloadManager dm, @NonNull IDatabase db) {
+        this.dm = dm;
+        this.db = db;
+    }
+
+    /**
+     * Set the positions of the downloads of videos, before they are enqueued.
+     *
+     * @param downloads Downloads of the videos.
+     * @param videos    Blocks of the videos in the same order, or nulls for the videos that
+     *                  aren't blocks of a course, which keep the order they're enqueued in.
+     */
+    public void setPositions(@NonNull List<DownloadEntry> downloads,
+                             @NonNull List<? extends CourseComponent> videos) {
+        final Map<String, Map<String, Integer>> positionsByCourse = new HashMap<>();
+        for (int i = 0; i < downloads.size(); i++) {
+            final DownloadEntry download = downloads.get(i);
+            final CourseComponent video = videos.get(i);
+            final String courseId = download.getEnrollmentId();
+            final int position = video == null ? -1 : video.getLeafIndex(true);
+            if (courseId == null || download.url == null || position < 0) {
+                continue;
+            }
+            Map<String, Integer> positions = positionsByCourse.get(courseId);
+            if (positions == null) {
+                positions = new HashMap<>();
+                positionsByCourse.put(courseId, positions);
+            }
+            positions.put(download.url, position);
+        }
+        for (Map.Entry<String, Map<String, Integer>> entry : positionsByCourse.entrySet()) {
+            dm.setDownloadPositions(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Download the videos of a unit and the ones following it before the other videos, and the
+     * course before the other courses. The downloads are looked up in the background.
+     *
+     * @param unit Unit being viewed.
+     */
+    public void prioritizeFrom(@NonNull CourseComponent unit) {
+        if (pendingUnit.getAndSet(unit) == null) {
+            executor.execute(() -> prioritize(pendingUnit.getAndSet(null)));
+        }
+    }
+
+    private void prioritize(@NonNull CourseComponent unit) {
+        final String courseId = unit.getCourseId();
+        final int index = unit.getLeafIndex(false);
+        if (courseId == null || courseId.isEmpty() || index < 0) {
+            return;
+        }
+        final List<CourseComponent> videos = unit.getRoot().getLeafSequence(true);
+        final int first = getFirstVideoFrom(unit, index, videos);
+        final List<String> urls = new ArrayList<>();
+        for (int i = first; i < videos.size() && i < first + PRIORITIZED_VIDEOS; i++) {
+            final String url = getDownloadingUrl(videos.get(i).getId());
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        if (!urls.isEmpty()) {
+            dm.prioritizeDownloads(courseId, urls);
+        }
+    }
+
+    /**
+     * @return Position, among the videos of the course, of the first one at or after a unit. It
+     * is searched by position rather than by going through the units following the unit, so that
+     * only the units of a few subsections get created.
+     */
+    private static int getFirstVideoFrom(@NonNull CourseComponent unit, int index,
+                                         @NonNull List<CourseComponent> videos) {
+        final int videoIndex = unit.getLeafIndex(true);
+        if (videoIndex >= 0) {
+            return videoIndex;
+        }
+        int low = 0;
+        int high = videos.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (videos.get(middle).getLeafIndex(false) < index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Url of the download of a video, or null if it isn't being downloaded.
+     */
+    @Nullable
+    private String getDownloadingUrl(@NonNull String videoId) {
+        final VideoModel video = db.getVideoEntryByVideoId(videoId, null);
+        if (video == null || video.getDownloadedStateOrdinal() !=
+                DownloadEntry.DownloadedState.DOWNLOADING.ordinal()) {
+            return null;
+        }
+        return video.getVideoUrl();
+    }
+}
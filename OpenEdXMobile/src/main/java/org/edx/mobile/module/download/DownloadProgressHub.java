@@ -0,0 +1,355 @@
+package org.edx.mobile.module.download;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.model.download.NativeDownloadModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single source of the progress of the downloads in progress. The active downloads are read from
+ * the {@link IDownloadManager} in one query per {@link #SAMPLE_INTERVAL_MS}, however many screens
+ * are showing their progress, and the downloads that have changed since the previous sample are
+ * pushed to the subscribed {@link Listener}s.
+ * <p>
+ * The progress queries of the app are answered from the latest sample as well, so they don't
+ * query the download manager again within the same interval. The queries on the main thread never
+ * wait for a sample, they are answered from the latest one while a newer one is taken in the
+ * background. Neither do they query the downloads that aren't active: those are answered from the
+ * downloads cached when they stopped being active, or queried in the background and left out till
+ * then.
+ */
+@Singleton
+public class DownloadProgressHub {
+    public static final long SAMPLE_INTERVAL_MS = DateUtils.SECOND_IN_MILLIS;
+    /**
+     * Most no of inactive downloads to cache, past which the cache is cleared.
+     */
+    private static final int MAX_INACTIVE_DOWNLOADS = 1000;
+    /**
+     * Cached in place of the downloads the download manager doesn't know about.
+     */
+    private static final NativeDownloadModel UNKNOWN_DOWNLOAD = new NativeDownloadModel();
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the downloads whose progress or status has changed. A
+         * download that has finished or has been removed is reported once more with its final
+         * status, if the download manager still knows about it.
+         * <p>
+         * A listener is called with all the active downloads once it subscribes.
+         */
+        void onDownloadProgressChanged(@NonNull List<NativeDownloadModel> changedDownloads);
+    }
+
+    @NonNull
+    private final IDownloadManager dm;
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object sampleHandlerLock = new Object();
+    // Guarded by sampleHandlerLock, as it is needed on the main thread while a sample is taken
+    @Nullable
+    private Handler sampleHandler;
+    private final ExecutorService resampleExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean isResampling = new AtomicBoolean();
+
+    // Written while holding the lock of this, and read without it on the main thread
+    @NonNull
+    private volatile Map<Long, NativeDownloadModel> activeDownloads = Collections.emptyMap();
+    private volatile long sampledAt = -SAMPLE_INTERVAL_MS;
+    // Downloads that aren't active, which have finished or have been removed, by their ids
+    private final Map<Long, NativeDownloadModel> inactiveDownloads = new ConcurrentHashMap<>();
+
+    private final Runnable sampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (listeners.isEmpty()) {
+                return;
+            }
+            publish(sample());
+            getSampleHandler().postDelayed(this, SAMPLE_INTERVAL_MS);
+        }
+    };
+
+    @Inject
+    public DownloadProgressHub(@NonNull IDownloadManager dm) {
+        this.dm = dm;
+    }
+
+    /**
+     * Start pushing the changes in the progress of the downloads to a listener, till it
+     * {@link #unsubscribe unsubscribes}.
+     */
+    public void subscribe(@NonNull final Listener listener) {
+        if (!listeners.add(listener)) {
+            return;
+        }
+        if (listeners.size() == 1) {
+            getSampleHandler().post(sampleRunnable);
+        } else {
+            getSampleHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    final List<NativeDownloadModel> downloads =
+                            new ArrayList<>(activeDownloads.values());
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (listeners.contains(listener)) {
+                                listener.onDownloadProgressChanged(downloads);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    public void unsubscribe(@NonNull Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            synchronized (sampleHandlerLock) {
+                if (sampleHandler != null) {
+                    sampleHandler.removeCallbacks(sampleRunnable);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The download with the given id as of the latest sample, which is queried from the
+     * download manager if it isn't active.
+     */
+    @Nullable
+    public NativeDownloadModel getDownload(long dmid) {
+        final NativeDownloadModel download = getActiveDownloads().get(dmid);
+        return download != null ? download : dm.getDownload(dmid);
+    }
+
+    /**
+     * Same as {@link IDownloadManager#getAverageProgressForDownloads(long[])}, answered from the
+     * latest sample.
+     */
+    public int getAverageProgressForDownloads(@NonNull long[] dmids) {
+        int count = 0;
+        float aggrPercent = 0;
+        for (NativeDownloadModel download : getDownloads(dmids)) {
+            count++;
+            if (download.size > 0) {
+                aggrPercent += 100f * download.downloaded / download.size;
+            }
+        }
+        return count == 0 ? 0 : (int) (aggrPercent / count);
+    }
+
+    /**
+     * @return Average progress of all the active downloads.
+     */
+    public int getAverageProgress() {
+        final Map<Long, NativeDownloadModel> activeDownloads = getActiveDownloads();
+        if (activeDownloads.isEmpty()) {
+            return 0;
+        }
+        float aggrPercent = 0;
+        for (NativeDownloadModel download : activeDownloads.values()) {
+            if (download.size > 0) {
+                aggrPercent += 100f * download.downloaded / download.size;
+            }
+        }
+        return (int) (aggrPercent / activeDownloads.size());
+    }
+
+    /**
+     * Same as {@link IDownloadManager#getProgressDetailsForDownloads(long[])}, answered from the
+     * latest sample.
+     */
+    @Nullable
+    public NativeDownloadModel getProgressDetailsForDownloads(@NonNull long[] dmids) {
+        final NativeDownloadModel downloadProgressModel = new NativeDownloadModel();
+        for (NativeDownloadModel download : getDownloads(dmids)) {
+            downloadProgressModel.downloadCount++;
+            downloadProgressModel.downloaded += download.downloaded;
+            downloadProgressModel.size += download.size;
+        }
+        return downloadProgressModel.downloadCount == 0 ? null : downloadProgressModel;
+    }
+
+    /**
+     * @return The downloads with the given ids that the download manager knows about, the active
+     * ones as of the latest sample, and the others as cached. On the main thread, the inactive
+     * downloads that aren't cached yet are queried in the background and left out.
+     */
+    @NonNull
+    private List<NativeDownloadModel> getDownloads(@NonNull long[] dmids) {
+        final Map<Long, NativeDownloadModel> activeDownloads = getActiveDownloads();
+        final List<NativeDownloadModel> downloads = new ArrayList<>(dmids.length);
+        final List<Long> uncachedDmids = new ArrayList<>();
+        for (long dmid : dmids) {
+            NativeDownloadModel download = activeDownloads.get(dmid);
+            if (download == null) {
+                download = inactiveDownloads.get(dmid);
+            }
+            if (download == null) {
+                uncachedDmids.add(dmid);
+            } else if (download != UNKNOWN_DOWNLOAD) {
+                downloads.add(download);
+            }
+        }
+        if (uncachedDmids.isEmpty()) {
+            return downloads;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            resampleExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    cacheInactiveDownloads(uncachedDmids);
+                }
+            });
+        } else {
+            downloads.addAll(cacheInactiveDownloads(uncachedDmids));
+        }
+        return downloads;
+    }
+
+    /**
+     * Query and cache the downloads that aren't active.
+     *
+     * @return The downloads the download manager knows about.
+     */
+    @NonNull
+    private List<NativeDownloadModel> cacheInactiveDownloads(@NonNull List<Long> dmids) {
+        final List<NativeDownloadModel> downloads = new ArrayList<>();
+        for (Long dmid : dmids) {
+            if (inactiveDownloads.containsKey(dmid)) {
+                continue;
+            }
+            final NativeDownloadModel download = dm.getDownload(dmid);
+            if (download != null) {
+                downloads.add(download);
+            }
+            cacheInactiveDownload(dmid, download);
+        }
+        return downloads;
+    }
+
+    private void cacheInactiveDownload(long dmid, @Nullable NativeDownloadModel download) {
+        if (inactiveDownloads.size() >= MAX_INACTIVE_DOWNLOADS) {
+            inactiveDownloads.clear();
+        }
+        inactiveDownloads.put(dmid, download != null ? download : UNKNOWN_DOWNLOAD);
+    }
+
+    /**
+     * @return The active downloads by their ids, sampled again if the latest sample is older than
+     * {@link #SAMPLE_INTERVAL_MS}. On the main thread, the latest sample is returned right away,
+     * and the new one is taken in the background.
+     */
+    @NonNull
+    private Map<Long, NativeDownloadModel> getActiveDownloads() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            if (isStale() && isResampling.compareAndSet(false, true)) {
+                resampleExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        isResampling.set(false);
+                        getActiveDownloads();
+                    }
+                });
+            }
+            return activeDownloads;
+        }
+        synchronized (this) {
+            if (isStale()) {
+                // Nobody is subscribed, or the subscription is between samples, so sample right
+                // away and hand the changes over to the subscribers as well
+                publish(sample());
+            }
+            return activeDownloads;
+        }
+    }
+
+    private boolean isStale() {
+        return SystemClock.elapsedRealtime() - sampledAt >= SAMPLE_INTERVAL_MS;
+    }
+
+    /**
+     * Query the active downloads.
+     *
+     * @return The downloads that have changed since the previous sample.
+     */
+    @NonNull
+    private synchronized List<NativeDownloadModel> sample() {
+        final Map<Long, NativeDownloadModel> previousDownloads = activeDownloads;
+        final Map<Long, NativeDownloadModel> downloads = new HashMap<>();
+        final List<NativeDownloadModel> changedDownloads = new ArrayList<>();
+        for (NativeDownloadModel download : dm.getActiveDownloads()) {
+            downloads.put(download.dmid, download);
+            inactiveDownloads.remove(download.dmid);
+            final NativeDownloadModel previous = previousDownloads.get(download.dmid);
+            if (previous == null || previous.downloaded != download.downloaded ||
+                    previous.size != download.size || previous.status != download.status) {
+                changedDownloads.add(download);
+            }
+        }
+        for (Long dmid : previousDownloads.keySet()) {
+            if (!downloads.containsKey(dmid)) {
+                final NativeDownloadModel download = dm.getDownload(dmid);
+                if (download != null) {
+                    changedDownloads.add(download);
+                }
+                cacheInactiveDownload(dmid, download);
+            }
+        }
+        activeDownloads = Collections.unmodifiableMap(downloads);
+        sampledAt = SystemClock.elapsedRealtime();
+        return changedDownloads;
+    }
+
+    private void publish(@NonNull final List<NativeDownloadModel> changedDownloads) {
+        if (changedDownloads.isEmpty() || listeners.isEmpty()) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : listeners) {
+                    listener.onDownloadProgressChanged(changedDownloads);
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private Handler getSampleHandler() {
+        synchronized (sampleHandlerLock) {
+            if (sampleHandler == null) {
+                final HandlerThread handlerThread = new HandlerThread("DownloadProgressHub",
+                        Process.THREAD_PRIORITY_BACKGROUND);
+                handlerThread.start();
+                sampleHandler = new Handler(handlerThread.getLooper());
+            }
+            return sampleHandler;
+        }
+    }
+}
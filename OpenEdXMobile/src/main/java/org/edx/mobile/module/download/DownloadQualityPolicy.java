@@ -0,0 +1,142 @@
+package org.edx.mobile.module.download;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.R;
+import org.edx.mobile.http.ThroughputEstimator;
+import org.edx.mobile.model.course.EncodedVideos;
+import org.edx.mobile.model.course.VideoInfo;
+import org.edx.mobile.model.course.VideoQuality;
+import org.edx.mobile.util.MemoryUtil;
+import org.edx.mobile.util.NetworkUtil;
+import org.edx.mobile.util.ResourceUtil;
+import org.edx.mobile.util.TextUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses the quality of the videos to download in a batch, based on the estimated download
+ * speed, whether the network is metered and the free storage.
+ * <p>
+ * The smaller mobile encoding is downloaded by default. The higher one is downloaded instead
+ * when the network isn't metered, and the whole batch would download within
+ * {@link #MAX_HIGH_QUALITY_SECONDS} while taking up at most {@link #MAX_STORAGE_SHARE} of the
+ * free storage. Videos without the chosen encoding fall back to the preferred one.
+ */
+@Singleton
+public class DownloadQualityPolicy {
+    /**
+     * Longest time a batch may take to download at the higher quality.
+     */
+    public static final long MAX_HIGH_QUALITY_SECONDS = 30 * 60;
+    /**
+     * Largest share of the free storage a batch may take up at the higher quality.
+     */
+    public static final float MAX_STORAGE_SHARE = 0.5f;
+
+    /**
+     * Quality chosen for a batch of videos, along with what it takes to download them.
+     */
+    public static class Plan {
+        @NonNull
+        public final VideoQuality quality;
+        /**
+         * Download speed the estimate is based on, in KB/s, 0 if unknown.
+         */
+        public final float throughputKbps;
+
+        Plan(@NonNull VideoQuality quality, float throughputKbps) {
+            this.quality = quality;
+            this.throughputKbps = throughputKbps;
+        }
+
+        /**
+         * @return Seconds it would take to download the given no of bytes, -1 if unknown.
+         */
+        public long getEstimatedSeconds(long bytes) {
+            return throughputKbps > 0 ? (long) Math.ceil(bytes / (throughputKbps * 1024)) : -1;
+        }
+
+        /**
+         * @return Text telling the size of a download and the time it is estimated to take.
+         */
+        @NonNull
+        public CharSequence getEstimate(@NonNull Context context, long bytes) {
+            final Map<String, CharSequence> keyValMap = new HashMap<>();
+            keyValMap.put("size", MemoryUtil.format(context, bytes));
+            final String duration = TextUtils.getVideoDurationString(context,
+                    getEstimatedSeconds(bytes));
+            if (duration == null) {
+                return ResourceUtil.getFormattedString(context.getResources(),
+                        R.string.download_estimate_size, keyValMap);
+            }
+            keyValMap.put("duration", duration);
+            return ResourceUtil.getFormattedString(context.getResources(),
+                    R.string.download_estimate, keyValMap);
+        }
+    }
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final ThroughputEstimator throughputEstimator;
+
+    @Inject
+    public DownloadQualityPolicy(@NonNull Context context,
+                                 @NonNull ThroughputEstimator throughputEstimator) {
+        this.context = context;
+        this.throughputEstimator = throughputEstimator;
+    }
+
+    /**
+     * Choose the quality to download a batch of videos in, for the current network and storage.
+     *
+     * @param videos Encodings of the videos in the batch.
+     */
+    @NonNull
+    public Plan plan(@NonNull List<EncodedVideos> videos) {
+        return plan(videos, throughputEstimator.getThroughputKbps(),
+                NetworkUtil.isActiveNetworkMetered(context),
+                MemoryUtil.getAvailableExternalMemory(context));
+    }
+
+    @NonNull
+    public static Plan plan(@NonNull List<EncodedVideos> videos, float throughputKbps,
+                            boolean metered, long freeBytes) {
+        final Plan highQualityPlan = new Plan(VideoQuality.MOBILE_HIGH, throughputKbps);
+        final long lowQualityBytes = getTotalBytes(videos, VideoQuality.MOBILE_LOW);
+        final long highQualityBytes = getTotalBytes(videos, VideoQuality.MOBILE_HIGH);
+        if (highQualityBytes > lowQualityBytes && !metered && throughputKbps > 0
+                && highQualityPlan.getEstimatedSeconds(highQualityBytes) <= MAX_HIGH_QUALITY_SECONDS
+                && highQualityBytes <= freeBytes * MAX_STORAGE_SHARE) {
+            return highQualityPlan;
+        }
+        return new Plan(VideoQuality.MOBILE_LOW, throughputKbps);
+    }
+
+    private static long getTotalBytes(@NonNull List<EncodedVideos> videos,
+                                      @NonNull VideoQuality quality) {
+        long totalBytes = 0;
+        for (EncodedVideos video : videos) {
+            final VideoInfo videoInfo = getVideoInfo(video, quality);
+            if (videoInfo != null && videoInfo.fileSize > 0) {
+                totalBytes += videoInfo.fileSize;
+            }
+        }
+        return totalBytes;
+    }
+
+    @Nullable
+    private static VideoInfo getVideoInfo(@Nullable EncodedVideos video,
+                                          @NonNull VideoQuality quality) {
+        return video == null ? null : video.getVideoInfoForDownloading(quality);
+    }
+}
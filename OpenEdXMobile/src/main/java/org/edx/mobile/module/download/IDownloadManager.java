@@ -1,8 +1,13 @@
 package org.edx.mobile.module.download;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import org.edx.mobile.model.download.NativeDownloadModel;
 
 import java.io.File;
+import java.util.List;
+import java.util.Map;
 
 public interface IDownloadManager {
 
@@ -13,6 +18,13 @@ public interface IDownloadManager {
      * @return
      */
     NativeDownloadModel getDownload(long dmid);
+
+    /**
+     * Returns the downloads that are pending, running or paused, read in a single query.
+     * @return
+     */
+    @NonNull
+    List<NativeDownloadModel> getActiveDownloads();
     
     /**
      * Add a new download for the given URL and returns dmid.
@@ -26,6 +38,14 @@ public interface IDownloadManager {
      */
     long addDownload(File destFolder, String url, boolean wifiOnly, String title);
 
+    /**
+     * Same as {@link #addDownload(File, String, boolean, String)}, along with the course the
+     * download belongs to, so that the downloads can be queued per course.
+     * @param courseId Id of the course of the video, if any.
+     */
+    long addDownload(File destFolder, String url, boolean wifiOnly, String title,
+                     @Nullable String courseId);
+
     /**
      * Cancel downloads and remove them from the download manager.  Each download will be stopped if
      * it was running, and it will no longer be accessible through the download manager.
@@ -36,6 +56,23 @@ public interface IDownloadManager {
      */
     int removeDownloads(long... dmids);
 
+    /**
+     * Set the positions in a course of its downloads, so that they are served in course order.
+     * Download managers that can't order their downloads ignore this.
+     * @param courseId Id of the course.
+     * @param positions Positions of the downloads, by their urls.
+     */
+    void setDownloadPositions(@NonNull String courseId, @NonNull Map<String, Integer> positions);
+
+    /**
+     * Serve the given downloads of a course first, in the given order, as for the videos
+     * following the one being watched. Download managers that can't order their downloads ignore
+     * this.
+     * @param courseId Id of the course.
+     * @param urls Urls of the downloads.
+     */
+    void prioritizeDownloads(@NonNull String courseId, @NonNull List<String> urls);
+
     /**
      * Returns progress of download for given dmid.
      * Returns 0 (zero) if the download has not yet been started.
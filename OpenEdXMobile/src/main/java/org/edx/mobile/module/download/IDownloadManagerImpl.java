@@ -9,6 +9,9 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -17,6 +20,9 @@ import org.edx.mobile.model.download.NativeDownloadModel;
 import org.edx.mobile.util.Sha1Util;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class IDownloadManagerImpl implements IDownloadManager {
@@ -43,29 +49,8 @@ public class IDownloadManagerImpl implements IDownloadManager {
 
             Cursor cursor = dm.query(query);
             if (cursor.moveToFirst()) {
-                long downloaded = cursor.getLong(cursor
-                                .getColumnIndex(DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR));
-                long size = cursor.getLong(cursor
-                        .getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES));
-                String filepath = cursor.getString(cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_URI));
-                if (Build.VERSION.SDK_INT > Build.VERSION_CODES.M) {
-                    if (filepath != null) {
-                        filepath = Uri.parse(filepath).getPath();
-                    }
-                } else {
-                    filepath = cursor.getString(cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_FILENAME));
-                }
-                int status = cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_STATUS));
-
+                final NativeDownloadModel ndm = readDownload(cursor);
                 cursor.close();
-
-                NativeDownloadModel ndm = new NativeDownloadModel();
-                ndm.dmid = dmid;
-                ndm.downloaded = downloaded;
-                ndm.size = size;
-                ndm.filepath = filepath;
-                ndm.status = status;
-
                 return ndm;
             }
             cursor.close();
@@ -112,6 +97,65 @@ public class IDownloadManagerImpl implements IDownloadManager {
         return dmid;
     }
 
+    @Override
+    @NonNull
+    public synchronized List<NativeDownloadModel> getActiveDownloads() {
+        final List<NativeDownloadModel> downloads = new ArrayList<>();
+        //Need to check first if the download manager service is enabled
+        if (!isDownloadManagerEnabled())
+            return downloads;
+
+        try {
+            final Query query = new Query();
+            query.setFilterByStatus(DownloadManager.STATUS_PENDING |
+                    DownloadManager.STATUS_RUNNING | DownloadManager.STATUS_PAUSED);
+            final Cursor cursor = dm.query(query);
+            while (cursor.moveToNext()) {
+                downloads.add(readDownload(cursor));
+            }
+            cursor.close();
+        } catch (Exception e) {
+            logger.error(e);
+        }
+        return downloads;
+    }
+
+    /**
+     * Reads the download at the current position of a cursor of the download manager.
+     */
+    @NonNull
+    private static NativeDownloadModel readDownload(@NonNull Cursor cursor) {
+        long downloaded = cursor.getLong(cursor
+                        .getColumnIndex(DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR));
+        long size = cursor.getLong(cursor
+                .getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES));
+        String filepath = cursor.getString(cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_URI));
+        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.M) {
+            if (filepath != null) {
+                filepath = Uri.parse(filepath).getPath();
+            }
+        } else {
+            filepath = cursor.getString(cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_FILENAME));
+        }
+        int status = cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_STATUS));
+
+        NativeDownloadModel ndm = new NativeDownloadModel();
+        ndm.dmid = cursor.getLong(cursor.getColumnIndex(DownloadManager.COLUMN_ID));
+        ndm.downloadCount = 1;
+        ndm.downloaded = downloaded;
+        ndm.size = size;
+        ndm.filepath = filepath;
+        ndm.status = status;
+        return ndm;
+    }
+
+    @Override
+    public long addDownload(File destFolder, String url, boolean wifiOnly, String title,
+                            @Nullable String courseId) {
+        // The system download manager has no notion of courses
+        return addDownload(destFolder, url, wifiOnly, title);
+    }
+
     @Override
     public synchronized int removeDownloads(long... dmids) {
         //Need to check first if the download manager service is enabled
@@ -121,6 +165,17 @@ public class IDownloadManagerImpl implements IDownloadManager {
         return 0;
     }
 
+    @Override
+    public void setDownloadPositions(@NonNull String courseId,
+                                     @NonNull Map<String, Integer> positions) {
+        // The system download manager serves the downloads in its own order
+    }
+
+    @Override
+    public void prioritizeDownloads(@NonNull String courseId, @NonNull List<String> urls) {
+        // The system download manager serves the downloads in its own order
+    }
+
     @Override
     public synchronized int getProgressForDownload(long dmid) {
         return getAverageProgressForDownloads(new long[] {dmid});
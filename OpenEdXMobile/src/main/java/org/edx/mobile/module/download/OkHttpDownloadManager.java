@@ -0,0 +1,216 @@
+package org.edx.mobile.module.download;
+
+import android.app.DownloadManager;
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.event.NetworkConnectivityChangeEvent;
+import org.edx.mobile.http.provider.OkHttpClientProvider;
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.download.NativeDownloadModel;
+import org.edx.mobile.util.NetworkUtil;
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import de.greenrobot.event.EventBus;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.logging.HttpLoggingInterceptor;
+
+/**
+ * {@link IDownloadManager} that downloads the videos in app with {@link SegmentedDownloadEngine},
+ * instead of handing them to the system download manager. Progress is read from memory rather
+ * than queried from the download provider.
+ * <p>
+ * Finished downloads are broadcast to {@link DownloadCompleteReceiver} the same way as the system
+ * download manager does, so the rest of the app handles them alike.
+ */
+@Singleton
+public class OkHttpDownloadManager implements IDownloadManager, SegmentedDownloadEngine.Listener {
+    private static final String JOURNAL_DIRECTORY = "downloads";
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final SegmentedDownloadEngine engine;
+
+    @Inject
+    public OkHttpDownloadManager(@NonNull final Context context,
+                                 @NonNull OkHttpClientProvider okHttpClientProvider) {
+        this.context = context.getApplicationContext();
+        engine = new SegmentedDownloadEngine(createClient(okHttpClientProvider),
+                new File(context.getFilesDir(), JOURNAL_DIRECTORY), this,
+                new SegmentedDownloadEngine.NetworkPolicy() {
+                    @Override
+                    public boolean canDownload(boolean wifiOnly) {
+                        return wifiOnly ? NetworkUtil.isConnectedWifi(context) :
+                                NetworkUtil.isConnected(context);
+                    }
+                });
+        EventBus.getDefault().register(this);
+        // Resume the downloads left over from the previous app session
+        engine.schedule();
+    }
+
+    /**
+     * @return A client like the non OAuth based one of the app, which doesn't log the bodies, as
+     * that would buffer the whole videos in memory.
+     */
+    @NonNull
+    private static OkHttpClient createClient(@NonNull OkHttpClientProvider okHttpClientProvider) {
+        final OkHttpClient.Builder builder = okHttpClientProvider.getNonOAuthBased().newBuilder();
+        for (Iterator<Interceptor> iterator = builder.interceptors().iterator(); iterator.hasNext(); ) {
+            if (iterator.next() instanceof HttpLoggingInterceptor) {
+                iterator.remove();
+            }
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("unused")
+    public void onEvent(NetworkConnectivityChangeEvent event) {
+        // Start the downloads that were waiting for a suitable network
+        engine.schedule();
+    }
+
+    @Override
+    public void onDownloadFinished(@NonNull SegmentedDownload download) {
+        final Intent intent = new Intent(DownloadManager.ACTION_DOWNLOAD_COMPLETE);
+        intent.setClass(context, DownloadCompleteReceiver.class);
+        intent.putExtra(DownloadManager.EXTRA_DOWNLOAD_ID, download.getDmid());
+        context.sendBroadcast(intent);
+    }
+
+    /**
+     * Serve the downloads of a course before the ones of the courses with a lower priority.
+     */
+    public void setCoursePriority(@NonNull String courseId, int priority) {
+        engine.setCoursePriority(courseId, priority);
+    }
+
+    @Override
+    public void setDownloadPositions(@NonNull String courseId,
+                                     @NonNull Map<String, Integer> positions) {
+        engine.setDownloadPositions(courseId, positions);
+    }
+
+    @Override
+    public void prioritizeDownloads(@NonNull String courseId, @NonNull List<String> urls) {
+        engine.prioritizeDownloads(courseId, urls);
+    }
+
+    /**
+     * @param maxConcurrentDownloads No of files to download at a time.
+     */
+    public void setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        engine.setMaxConcurrentDownloads(maxConcurrentDownloads);
+    }
+
+    @Override
+    @Nullable
+    public NativeDownloadModel getDownload(long dmid) {
+        final SegmentedDownload download = engine.getDownload(dmid);
+        return download == null ? null : download.toNativeDownloadModel();
+    }
+
+    @Override
+    @NonNull
+    public List<NativeDownloadModel> getActiveDownloads() {
+        final List<NativeDownloadModel> downloads = new ArrayList<>();
+        for (SegmentedDownload download : engine.getDownloads()) {
+            final int status = download.getStatus();
+            if (status != DownloadManager.STATUS_SUCCESSFUL && status != DownloadManager.STATUS_FAILED) {
+                downloads.add(download.toNativeDownloadModel());
+            }
+        }
+        return downloads;
+    }
+
+    @Override
+    public long addDownload(File destFolder, String url, boolean wifiOnly, String title) {
+        return addDownload(destFolder, url, wifiOnly, title, null);
+    }
+
+    @Override
+    public long addDownload(File destFolder, String url, boolean wifiOnly, String title,
+                            @Nullable String courseId) {
+        if (url == null || url.trim().length() == 0) {
+            return -1;
+        }
+        url = url.trim();
+        logger.debug("Starting download: " + url);
+        return engine.addDownload(url, new File(destFolder, Sha1Util.SHA1(url)), wifiOnly,
+                title, courseId);
+    }
+
+    @Override
+    public int removeDownloads(long... dmids) {
+        int removed = 0;
+        for (long dmid : dmids) {
+            if (engine.removeDownload(dmid)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int getProgressForDownload(long dmid) {
+        return getAverageProgressForDownloads(new long[]{dmid});
+    }
+
+    @Override
+    public boolean isDownloadComplete(long dmid) {
+        final SegmentedDownload download = engine.getDownload(dmid);
+        return download != null && download.getStatus() == DownloadManager.STATUS_SUCCESSFUL;
+    }
+
+    @Override
+    public int getAverageProgressForDownloads(long[] dmids) {
+        int count = 0;
+        float aggrPercent = 0;
+        for (long dmid : dmids) {
+            final SegmentedDownload download = engine.getDownload(dmid);
+            if (download != null) {
+                count++;
+                if (download.getSize() > 0) {
+                    aggrPercent += 100f * download.getDownloadedBytes() / download.getSize();
+                }
+            }
+        }
+        return count == 0 ? 0 : (int) (aggrPercent / count);
+    }
+
+    @Override
+    @Nullable
+    public NativeDownloadModel getProgressDetailsForDownloads(long[] dmids) {
+        final NativeDownloadModel downloadProgressModel = new NativeDownloadModel();
+        for (long dmid : dmids) {
+            final SegmentedDownload download = engine.getDownload(dmid);
+            if (download != null) {
+                downloadProgressModel.downloadCount++;
+                downloadProgressModel.downloaded += download.getDownloadedBytes();
+                downloadProgressModel.size += download.getSize();
+            }
+        }
+        return downloadProgressModel.downloadCount == 0 ? null : downloadProgressModel;
+    }
+
+    @Override
+    public boolean isDownloadManagerEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,236 @@
+package org.edx.mobile.module.download;
+
+import android.app.DownloadManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.edx.mobile.model.download.NativeDownloadModel;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Call;
+
+/**
+ * A download of {@link SegmentedDownloadEngine}. The file is split into segments that are
+ * fetched in parallel with HTTP range requests. The progress of each segment is kept in a
+ * journal, so that an interrupted download resumes where each of its segments stopped.
+ * <p>
+ * The status of a download is one of the status constants of {@link DownloadManager}, so that
+ * it can be reported the same way as the downloads of the system download manager.
+ */
+public class SegmentedDownload {
+    private static final int JOURNAL_VERSION = 1;
+
+    final long dmid;
+    @NonNull
+    final String url;
+    @NonNull
+    final File file;
+    final boolean wifiOnly;
+    @Nullable
+    final String title;
+    @Nullable
+    final String courseId;
+    /**
+     * Order in which the downloads were added, used to schedule them first come first served.
+     */
+    final long sequence;
+
+    volatile int status = DownloadManager.STATUS_PENDING;
+    /**
+     * Size of the file, -1 till it is known.
+     */
+    volatile long size = -1;
+
+    /*
+     * First and last byte of each segment, both inclusive, along with the no of bytes of each
+     * segment downloaded so far. Null till the download has been split into segments, and also
+     * if the server doesn't support range requests.
+     */
+    @Nullable
+    long[] segmentStarts;
+    @Nullable
+    long[] segmentEnds;
+    @Nullable
+    AtomicLongArray segmentDownloaded;
+    /**
+     * Bytes downloaded so far, if the download isn't split into segments.
+     */
+    volatile long downloaded;
+
+    volatile boolean cancelled;
+    /**
+     * Whether a segment has failed, so that the other segments stop as well.
+     */
+    volatile boolean failed;
+    /**
+     * Requests in progress, so that they can be cancelled.
+     */
+    final List<Call> calls = new ArrayList<>();
+
+    SegmentedDownload(long dmid, @NonNull String url, @NonNull File file, boolean wifiOnly,
+                      @Nullable String title, @Nullable String courseId, long sequence) {
+        this.dmid = dmid;
+        this.url = url;
+        this.file = file;
+        this.wifiOnly = wifiOnly;
+        this.title = title;
+        this.courseId = courseId;
+        this.sequence = sequence;
+    }
+
+    public long getDmid() {
+        return dmid;
+    }
+
+    @Nullable
+    public String getCourseId() {
+        return courseId;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @NonNull
+    public File getFile() {
+        return file;
+    }
+
+    public long getDownloadedBytes() {
+        final AtomicLongArray segmentDownloaded = this.segmentDownloaded;
+        if (segmentDownloaded == null) {
+            return downloaded;
+        }
+        long total = 0;
+        for (int i = 0; i < segmentDownloaded.length(); i++) {
+            total += segmentDownloaded.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Split the download into segments of about the same size.
+     *
+     * @param size          Size of the file.
+     * @param segmentsCount No of segments.
+     */
+    void split(long size, int segmentsCount) {
+        this.size = size;
+        segmentStarts = new long[segmentsCount];
+        segmentEnds = new long[segmentsCount];
+        segmentDownloaded = new AtomicLongArray(segmentsCount);
+        final long segmentSize = size / segmentsCount;
+        for (int i = 0; i < segmentsCount; i++) {
+            segmentStarts[i] = i * segmentSize;
+            segmentEnds[i] = i == segmentsCount - 1 ? size - 1 : (i + 1) * segmentSize - 1;
+        }
+    }
+
+    @NonNull
+    NativeDownloadModel toNativeDownloadModel() {
+        final NativeDownloadModel model = new NativeDownloadModel();
+        model.dmid = dmid;
+        model.downloadCount = 1;
+        model.downloaded = getDownloadedBytes();
+        model.size = size;
+        model.filepath = file.getAbsolutePath();
+        model.status = status;
+        return model;
+    }
+
+    /**
+     * Write the state of the download to its journal. The journal is replaced atomically, so
+     * that a crash while writing it leaves the previous one intact.
+     */
+    synchronized void writeJournal(@NonNull File journal) throws IOException {
+        if (cancelled) {
+            // The download has been removed along with its journal
+            return;
+        }
+        final File temp = new File(journal.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(JOURNAL_VERSION);
+            out.writeLong(dmid);
+            out.writeUTF(url);
+            out.writeUTF(file.getAbsolutePath());
+            out.writeBoolean(wifiOnly);
+            writeNullableString(out, title);
+            writeNullableString(out, courseId);
+            out.writeLong(sequence);
+            out.writeInt(status);
+            out.writeLong(size);
+            out.writeLong(downloaded);
+            final long[] segmentStarts = this.segmentStarts;
+            final long[] segmentEnds = this.segmentEnds;
+            final AtomicLongArray segmentDownloaded = this.segmentDownloaded;
+            if (segmentStarts == null || segmentEnds == null || segmentDownloaded == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(segmentStarts.length);
+                for (int i = 0; i < segmentStarts.length; i++) {
+                    out.writeLong(segmentStarts[i]);
+                    out.writeLong(segmentEnds[i]);
+                    out.writeLong(segmentDownloaded.get(i));
+                }
+            }
+        }
+        if (!temp.renameTo(journal)) {
+            throw new IOException("Unable to replace the journal " + journal);
+        }
+    }
+
+    @NonNull
+    static SegmentedDownload readJournal(@NonNull File journal) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journal))) {
+            final int version = in.readInt();
+            if (version != JOURNAL_VERSION) {
+                throw new IOException("Unknown journal version " + version);
+            }
+            final SegmentedDownload download = new SegmentedDownload(in.readLong(),
+                    in.readUTF(), new File(in.readUTF()), in.readBoolean(),
+                    readNullableString(in), readNullableString(in), in.readLong());
+            download.status = in.readInt();
+            download.size = in.readLong();
+            download.downloaded = in.readLong();
+            final int segmentsCount = in.readInt();
+            if (segmentsCount > 0) {
+                download.segmentStarts = new long[segmentsCount];
+                download.segmentEnds = new long[segmentsCount];
+                download.segmentDownloaded = new AtomicLongArray(segmentsCount);
+                for (int i = 0; i < segmentsCount; i++) {
+                    download.segmentStarts[i] = in.readLong();
+                    download.segmentEnds[i] = in.readLong();
+                    download.segmentDownloaded.set(i, in.readLong());
+                }
+            }
+            return download;
+        }
+    }
+
+    private static void writeNullableString(@NonNull DataOutputStream out,
+                                            @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(@NonNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
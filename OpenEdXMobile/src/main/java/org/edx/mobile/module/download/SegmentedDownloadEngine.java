@@ -0,0 +1,667 @@
+package org.edx.mobile.module.download;
+
+import android.app.DownloadManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.edx.mobile.logger.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Downloads files over HTTP with OkHttp. Each file is split into segments that are downloaded in
+ * parallel using range requests, and the progress of the segments is journaled so that the
+ * downloads resume after a failure or an app restart.
+ * <p>
+ * Downloads are queued per course: the course with the highest priority is served first, which
+ * by default is the course whose download was added last or prioritized last. The downloads of a
+ * course are served in the order of their {@link #setDownloadPositions positions} in the course,
+ * the {@link #prioritizeDownloads prioritized} ones first, and otherwise in the order they were
+ * added. At most {@link #setMaxConcurrentDownloads} files are downloaded at a time.
+ * <p>
+ * This class doesn't depend on Android other than for the status constants of
+ * {@link DownloadManager}, so that it can be tested against a local HTTP server.
+ */
+public class SegmentedDownloadEngine {
+    private static final String JOURNAL_EXTENSION = ".journal";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Segments are not made smaller than this, as the overhead of a request would outweigh the
+     * gain of the parallelism.
+     */
+    static final long MIN_SEGMENT_SIZE = 2 * 1024 * 1024;
+    /**
+     * No of bytes after which the progress of a segment gets journaled.
+     */
+    private static final long JOURNAL_INTERVAL_BYTES = 1024 * 1024;
+    private static final int MAX_RETRIES = 3;
+    /**
+     * Time for which the journal of a finished download is kept, so that its completion can be
+     * picked up when the app is restarted before it has been handled. The journals of the
+     * downloads finished before that are deleted as they are loaded.
+     */
+    public static final long FINISHED_JOURNAL_RETENTION_MS = TimeUnit.DAYS.toMillis(1);
+    /**
+     * Ids of the downloads start way past the ids of the system download manager, so that the
+     * downloads of both can't be mistaken for each other.
+     */
+    private static final long FIRST_DMID = 1L << 32;
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+
+    public interface Listener {
+        /**
+         * Called on a background thread when a download has completed or failed.
+         */
+        void onDownloadFinished(@NonNull SegmentedDownload download);
+    }
+
+    public interface NetworkPolicy {
+        /**
+         * @return true if the downloads can run on the current network.
+         */
+        boolean canDownload(boolean wifiOnly);
+    }
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    @NonNull
+    private final OkHttpClient client;
+    @NonNull
+    private final File journalDir;
+    @NonNull
+    private final Listener listener;
+    @NonNull
+    private final NetworkPolicy networkPolicy;
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            runnable -> new Thread(runnable, "SegmentedDownload-" + threadCount.incrementAndGet()));
+
+    private final Map<Long, SegmentedDownload> downloads = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final List<SegmentedDownload> queue = new ArrayList<>();
+    private final Set<SegmentedDownload> running = new HashSet<>();
+    private final Map<String, Integer> coursePriorities = new HashMap<>();
+    private final Map<String, Long> courseLastSequences = new HashMap<>();
+    // Positions of the downloads of each course, by their urls
+    private final Map<String, Map<String, Integer>> coursePositions = new HashMap<>();
+    // Ranks of the prioritized downloads of each course, by their urls
+    private final Map<String, Map<String, Integer>> courseRanks = new HashMap<>();
+    private int maxConcurrentDownloads = 2;
+    private int maxSegmentsPerDownload = 4;
+    private long nextDmid = FIRST_DMID;
+    private long nextSequence;
+
+    /**
+     * @param client        Client to download the files with.
+     * @param journalDir    Directory to keep the journals of the downloads in. Downloads that
+     *                      haven't completed in a previous session are queued again, and the
+     *                      ones that finished long ago are forgotten.
+     * @param listener      Listener for finished downloads.
+     * @param networkPolicy Policy deciding whether the downloads can run on the current network.
+     */
+    public SegmentedDownloadEngine(@NonNull OkHttpClient client, @NonNull File journalDir,
+                                   @NonNull Listener listener, @NonNull NetworkPolicy networkPolicy) {
+        this.client = client;
+        this.journalDir = journalDir;
+        this.listener = listener;
+        this.networkPolicy = networkPolicy;
+        loadJournals();
+    }
+
+    private synchronized void loadJournals() {
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            logger.warn("Unable to create the journal directory " + journalDir);
+            return;
+        }
+        final File[] journals = journalDir.listFiles();
+        if (journals == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (File journal : journals) {
+            if (!journal.getName().endsWith(JOURNAL_EXTENSION)) {
+                continue;
+            }
+            final SegmentedDownload download;
+            try {
+                download = SegmentedDownload.readJournal(journal);
+            } catch (IOException e) {
+                logger.error(e);
+                journal.delete();
+                continue;
+            }
+            nextDmid = Math.max(nextDmid, download.dmid + 1);
+            nextSequence = Math.max(nextSequence, download.sequence + 1);
+            final boolean finished = download.status == DownloadManager.STATUS_SUCCESSFUL
+                    || download.status == DownloadManager.STATUS_FAILED;
+            if (finished && journal.lastModified() < now - FINISHED_JOURNAL_RETENTION_MS) {
+                // The journal is last written when the download finishes
+                if (!journal.delete()) {
+                    logger.warn("Unable to delete the journal " + journal);
+                }
+                continue;
+            }
+            downloads.put(download.dmid, download);
+            if (!finished) {
+                download.status = DownloadManager.STATUS_PENDING;
+                enqueue(download);
+            }
+        }
+    }
+
+    /**
+     * Add a download to the queue.
+     *
+     * @param url      URL of the file.
+     * @param file     File to download to.
+     * @param wifiOnly Whether the download may only run over Wi-Fi.
+     * @param title    Title of the download.
+     * @param courseId Id of the course the file belongs to, if any.
+     * @return Id of the download.
+     */
+    public synchronized long addDownload(@NonNull String url, @NonNull File file, boolean wifiOnly,
+                                         @Nullable String title, @Nullable String courseId) {
+        final SegmentedDownload download = new SegmentedDownload(nextDmid++, url, file, wifiOnly,
+                title, courseId, nextSequence++);
+        downloads.put(download.dmid, download);
+        saveJournal(download);
+        enqueue(download);
+        schedule();
+        return download.dmid;
+    }
+
+    private void enqueue(@NonNull SegmentedDownload download) {
+        queue.add(download);
+        if (download.courseId != null) {
+            final Long last = courseLastSequences.get(download.courseId);
+            if (last == null || last < download.sequence) {
+                courseLastSequences.put(download.courseId, download.sequence);
+            }
+        }
+    }
+
+    @Nullable
+    public SegmentedDownload getDownload(long dmid) {
+        return downloads.get(dmid);
+    }
+
+    @NonNull
+    public Collection<SegmentedDownload> getDownloads() {
+        return downloads.values();
+    }
+
+    /**
+     * Cancel a download, and delete its file and journal.
+     *
+     * @return true if the download existed.
+     */
+    public boolean removeDownload(long dmid) {
+        final SegmentedDownload download;
+        synchronized (this) {
+            download = downloads.remove(dmid);
+            if (download == null) {
+                return false;
+            }
+            queue.remove(download);
+            forget(download);
+            cancel(download);
+        }
+        synchronized (download) {
+            // Under the lock of the download, so that no journal gets written after this
+            getJournal(download).delete();
+        }
+        download.file.delete();
+        schedule();
+        return true;
+    }
+
+    /**
+     * Serve the downloads of a course before the ones of the courses with a lower priority.
+     * Courses without a priority have a priority of 0.
+     */
+    public synchronized void setCoursePriority(@NonNull String courseId, int priority) {
+        coursePriorities.put(courseId, priority);
+    }
+
+    /**
+     * Serve the downloads of a course in the order of their positions in the course, instead of
+     * the order they were added in, which is arbitrary when they are added in parallel. The
+     * positions can be set before the downloads are added, and are kept until the downloads
+     * finish or are removed.
+     *
+     * @param courseId  Id of the course.
+     * @param positions Positions in the course of the downloads, by their urls.
+     */
+    public synchronized void setDownloadPositions(@NonNull String courseId,
+                                                  @NonNull Map<String, Integer> positions) {
+        Map<String, Integer> coursePositions = this.coursePositions.get(courseId);
+        if (coursePositions == null) {
+            coursePositions = new HashMap<>();
+            this.coursePositions.put(courseId, coursePositions);
+        }
+        coursePositions.putAll(positions);
+    }
+
+    /**
+     * Serve the given downloads of a course before its other downloads, in the given order, and
+     * the course before the other courses of the same priority, as for the videos following the
+     * one being watched. Replaces the downloads prioritized before for the course. The downloads
+     * running already aren't interrupted.
+     *
+     * @param courseId Id of the course.
+     * @param urls     Urls of the downloads, in the order to serve them in.
+     */
+    public synchronized void prioritizeDownloads(@NonNull String courseId,
+                                                 @NonNull List<String> urls) {
+        final Map<String, Integer> ranks = new HashMap<>();
+        for (String url : urls) {
+            if (!ranks.containsKey(url)) {
+                ranks.put(url, ranks.size());
+            }
+        }
+        courseRanks.put(courseId, ranks);
+        courseLastSequences.put(courseId, nextSequence++);
+        schedule();
+    }
+
+    public synchronized void setMaxConcurrentDownloads(int maxConcurrentDownloads) {
+        this.maxConcurrentDownloads = Math.max(1, maxConcurrentDownloads);
+        schedule();
+    }
+
+    public synchronized void setMaxSegmentsPerDownload(int maxSegmentsPerDownload) {
+        this.maxSegmentsPerDownload = Math.max(1, maxSegmentsPerDownload);
+    }
+
+    /**
+     * Start the queued downloads, as many as allowed. Should be called when the network changes,
+     * so that the downloads waiting for a suitable network get started.
+     */
+    public synchronized void schedule() {
+        while (running.size() < maxConcurrentDownloads) {
+            SegmentedDownload next = null;
+            for (SegmentedDownload download : queue) {
+                if (!networkPolicy.canDownload(download.wifiOnly)) {
+                    download.status = DownloadManager.STATUS_PAUSED;
+                    continue;
+                }
+                if (next == null || compare(download, next) < 0) {
+                    next = download;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            queue.remove(next);
+            running.add(next);
+            next.status = DownloadManager.STATUS_RUNNING;
+            final SegmentedDownload download = next;
+            executor.execute(() -> runDownload(download));
+        }
+    }
+
+    /**
+     * Order of the downloads to be served in.
+     */
+    private int compare(@NonNull SegmentedDownload first, @NonNull SegmentedDownload second) {
+        final int priority = Integer.compare(getCoursePriority(second.courseId),
+                getCoursePriority(first.courseId));
+        if (priority != 0) {
+            return priority;
+        }
+        final int recency = Long.compare(getCourseLastSequence(second),
+                getCourseLastSequence(first));
+        if (recency != 0) {
+            return recency;
+        }
+        final int rank = Integer.compare(getPosition(courseRanks, first),
+                getPosition(courseRanks, second));
+        if (rank != 0) {
+            return rank;
+        }
+        final int position = Integer.compare(getPosition(coursePositions, first),
+                getPosition(coursePositions, second));
+        if (position != 0) {
+            return position;
+        }
+        return Long.compare(first.sequence, second.sequence);
+    }
+
+    /**
+     * @return Position of a download in the given positions of the downloads of its course, or
+     * {@link Integer#MAX_VALUE} if it has none, so that it's served after the ones having one.
+     */
+    private static int getPosition(@NonNull Map<String, Map<String, Integer>> positionsByCourse,
+                                   @NonNull SegmentedDownload download) {
+        final Map<String, Integer> positions = download.courseId == null ? null :
+                positionsByCourse.get(download.courseId);
+        final Integer position = positions == null ? null : positions.get(download.url);
+        return position == null ? Integer.MAX_VALUE : position;
+    }
+
+    /**
+     * Drop the position and the rank of a download that has finished or been removed.
+     */
+    private void forget(@NonNull SegmentedDownload download) {
+        if (download.courseId == null) {
+            return;
+        }
+        final Map<String, Integer> positions = coursePositions.get(download.courseId);
+        if (positions != null) {
+            positions.remove(download.url);
+            if (positions.isEmpty()) {
+                coursePositions.remove(download.courseId);
+            }
+        }
+        final Map<String, Integer> ranks = courseRanks.get(download.courseId);
+        if (ranks != null) {
+            ranks.remove(download.url);
+        }
+    }
+
+    private int getCoursePriority(@Nullable String courseId) {
+        final Integer priority = courseId == null ? null : coursePriorities.get(courseId);
+        return priority == null ? 0 : priority;
+    }
+
+    private long getCourseLastSequence(@NonNull SegmentedDownload download) {
+        final Long sequence = download.courseId == null ? null :
+                courseLastSequences.get(download.courseId);
+        return sequence == null ? download.sequence : sequence;
+    }
+
+    private void runDownload(@NonNull SegmentedDownload download) {
+        boolean finished = false;
+        try {
+            download(download);
+            download.status = DownloadManager.STATUS_SUCCESSFUL;
+            finished = true;
+        } catch (CancellationException e) {
+            logger.debug("Download cancelled: " + download.url);
+        } catch (IOException e) {
+            if (!download.cancelled && !networkPolicy.canDownload(download.wifiOnly)) {
+                // Wait for a suitable network instead of failing, as the system download manager does
+                logger.debug("Download paused for network: " + download.url);
+                download.status = DownloadManager.STATUS_PAUSED;
+            } else if (!download.cancelled) {
+                logger.error(e);
+                download.status = DownloadManager.STATUS_FAILED;
+                finished = true;
+            }
+        }
+        synchronized (this) {
+            running.remove(download);
+            if (download.cancelled) {
+                return;
+            }
+            saveJournal(download);
+            if (finished) {
+                forget(download);
+            } else {
+                enqueue(download);
+            }
+        }
+        if (finished) {
+            listener.onDownloadFinished(download);
+        }
+        schedule();
+    }
+
+    private void download(@NonNull SegmentedDownload download) throws IOException {
+        download.failed = false;
+        if (download.segmentStarts == null && !probe(download)) {
+            // The server doesn't support range requests, so the file has been downloaded in one go
+            return;
+        }
+        final long[] segmentStarts = download.segmentStarts;
+        final long[] segmentEnds = download.segmentEnds;
+        final AtomicLongArray segmentDownloaded = download.segmentDownloaded;
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < segmentStarts.length; i++) {
+            final int segment = i;
+            if (segmentStarts[i] + segmentDownloaded.get(i) > segmentEnds[i]) {
+                continue;
+            }
+            futures.add(executor.submit(() -> {
+                downloadSegment(download, segment);
+                return null;
+            }));
+        }
+        IOException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                cancel(download);
+                throw new CancellationException();
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof CancellationException) {
+                    throw (CancellationException) cause;
+                }
+                if (failure == null) {
+                    // Stop the other segments as well, their progress is kept in the journal
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                    download.failed = true;
+                    cancelCalls(download);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Find out the size of the file and whether the server supports range requests, and split
+     * the download into segments if it does. Otherwise download the file in a single request.
+     *
+     * @return true if the download has been split into segments.
+     */
+    private boolean probe(@NonNull SegmentedDownload download) throws IOException {
+        final Request request = new Request.Builder()
+                .url(download.url)
+                .header("Range", "bytes=0-")
+                .build();
+        try (Response response = execute(download, request)) {
+            final ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Unexpected response " + response.code() + " for " + download.url);
+            }
+            final long size = getTotalSize(response);
+            if (response.code() == 206 && size > 0) {
+                final int segmentsCount = (int) Math.max(1, Math.min(maxSegmentsPerDownload,
+                        size / MIN_SEGMENT_SIZE));
+                download.split(size, segmentsCount);
+                prepareFile(download);
+                saveJournal(download);
+                return true;
+            }
+            // No range support, so the download can't be resumed either
+            download.size = body.contentLength();
+            download.downloaded = 0;
+            try (RandomAccessFile file = openFile(download)) {
+                file.setLength(0);
+                copy(download, body.byteStream(), file, -1);
+            }
+            return false;
+        }
+    }
+
+    private void downloadSegment(@NonNull SegmentedDownload download, int segment) throws IOException {
+        int retries = 0;
+        while (true) {
+            final long start = download.segmentStarts[segment]
+                    + download.segmentDownloaded.get(segment);
+            final long end = download.segmentEnds[segment];
+            if (start > end) {
+                return;
+            }
+            final Request request = new Request.Builder()
+                    .url(download.url)
+                    .header("Range", "bytes=" + start + "-" + end)
+                    .build();
+            try (Response response = execute(download, request);
+                 RandomAccessFile file = openFile(download)) {
+                final ResponseBody body = response.body();
+                if (response.code() != 206 || body == null) {
+                    throw new IOException("Unexpected response " + response.code()
+                            + " for a range of " + download.url);
+                }
+                file.seek(start);
+                copy(download, body.byteStream(), file, segment);
+            } catch (IOException e) {
+                if (download.cancelled) {
+                    throw new CancellationException();
+                }
+                if (download.failed || ++retries > MAX_RETRIES) {
+                    throw e;
+                }
+                logger.debug("Retrying segment " + segment + " of " + download.url + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copy the body of a response to the file.
+     *
+     * @param segment Segment being downloaded, -1 if the download isn't split into segments.
+     */
+    private void copy(@NonNull SegmentedDownload download, @NonNull InputStream in,
+                      @NonNull RandomAccessFile file, int segment) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long unjournaled = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (download.cancelled) {
+                throw new CancellationException();
+            }
+            if (segment >= 0) {
+                // Never write past the end of the segment, even if the server sends more
+                final long remaining = download.segmentEnds[segment] - download.segmentStarts[segment]
+                        + 1 - download.segmentDownloaded.get(segment);
+                read = (int) Math.min(read, remaining);
+                file.write(buffer, 0, read);
+                download.segmentDownloaded.addAndGet(segment, read);
+                if (remaining == read) {
+                    break;
+                }
+            } else {
+                file.write(buffer, 0, read);
+                download.downloaded += read;
+            }
+            unjournaled += read;
+            if (segment >= 0 && unjournaled >= JOURNAL_INTERVAL_BYTES) {
+                unjournaled = 0;
+                saveJournal(download);
+            }
+        }
+        if (segment >= 0) {
+            saveJournal(download);
+        }
+    }
+
+    @NonNull
+    private Response execute(@NonNull SegmentedDownload download,
+                             @NonNull Request request) throws IOException {
+        final Call call = client.newCall(request);
+        synchronized (download.calls) {
+            if (download.cancelled) {
+                throw new CancellationException();
+            }
+            download.calls.add(call);
+        }
+        try {
+            return call.execute();
+        } finally {
+            synchronized (download.calls) {
+                download.calls.remove(call);
+            }
+        }
+    }
+
+    private void cancel(@NonNull SegmentedDownload download) {
+        download.cancelled = true;
+        cancelCalls(download);
+    }
+
+    private static void cancelCalls(@NonNull SegmentedDownload download) {
+        synchronized (download.calls) {
+            for (Call call : download.calls) {
+                call.cancel();
+            }
+        }
+    }
+
+    private static void prepareFile(@NonNull SegmentedDownload download) throws IOException {
+        try (RandomAccessFile file = openFile(download)) {
+            file.setLength(download.size);
+        }
+    }
+
+    @NonNull
+    private static RandomAccessFile openFile(@NonNull SegmentedDownload download) throws IOException {
+        final File parent = download.file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create the directory " + parent);
+        }
+        return new RandomAccessFile(download.file, "rw");
+    }
+
+    /**
+     * @return Total size of the file from the Content-Range header of a partial response, or
+     * else the length of the body, -1 if unknown.
+     */
+    private static long getTotalSize(@NonNull Response response) {
+        final String contentRange = response.header("Content-Range");
+        if (contentRange != null) {
+            final Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange);
+            if (matcher.matches()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        final ResponseBody body = response.body();
+        return body == null ? -1 : body.contentLength();
+    }
+
+    private void saveJournal(@NonNull SegmentedDownload download) {
+        try {
+            download.writeJournal(getJournal(download));
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+    @NonNull
+    private File getJournal(@NonNull SegmentedDownload download) {
+        return new File(journalDir, download.dmid + JOURNAL_EXTENSION);
+    }
+}
@@ -0,0 +1,112 @@
+package org.edx.mobile.module.prefs;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Keeps the completion of the blocks marked completed on the device, so that it outlives the
+ * course data in memory and can be sent to server in batches.
+ */
+@Singleton
+public class CompletionPrefs {
+    @NonNull
+    private final PrefManager pref;
+
+    @Inject
+    public CompletionPrefs(@NonNull Context context) {
+        pref = new PrefManager(context, PrefManager.Pref.COMPLETION);
+    }
+
+    @NonNull
+    public synchronized Set<String> getCompletedBlocks(@NonNull String courseId) {
+        return pref.getStringSet(getCompletedBlocksKey(courseId));
+    }
+
+    /**
+     * Mark a block completed locally.
+     *
+     * @param courseId Id of the course.
+     * @param blockId  Id of the block.
+     * @param unsynced Whether the completion still has to be sent to server.
+     */
+    public synchronized void addCompletedBlock(@NonNull String courseId, @NonNull String blockId,
+                                               boolean unsynced) {
+        final Set<String> completed = getCompletedBlocks(courseId);
+        if (completed.add(blockId)) {
+            pref.put(getCompletedBlocksKey(courseId), completed);
+        }
+        if (unsynced) {
+            final Set<String> blocks = getUnsyncedBlocks(courseId);
+            if (blocks.add(blockId)) {
+                pref.put(getUnsyncedBlocksKey(courseId), blocks);
+            }
+            final Set<String> courses = getCoursesWithUnsyncedBlocks();
+            if (courses.add(courseId)) {
+                pref.put(PrefManager.Key.UNSYNCED_COMPLETION_COURSES, courses);
+            }
+        }
+    }
+
+    /**
+     * Forget the local completion of the blocks whose completion is known to server, unless it is
+     * yet to be sent.
+     */
+    public synchronized void removeCompletedBlocks(@NonNull String courseId,
+                                                   @NonNull Collection<String> blockIds) {
+        final Set<String> completed = getCompletedBlocks(courseId);
+        final Set<String> unsynced = getUnsyncedBlocks(courseId);
+        boolean changed = false;
+        for (String blockId : blockIds) {
+            if (!unsynced.contains(blockId)) {
+                changed |= completed.remove(blockId);
+            }
+        }
+        if (changed) {
+            pref.put(getCompletedBlocksKey(courseId), completed);
+        }
+    }
+
+    @NonNull
+    public synchronized Set<String> getUnsyncedBlocks(@NonNull String courseId) {
+        return pref.getStringSet(getUnsyncedBlocksKey(courseId));
+    }
+
+    /**
+     * Mark the completion of the blocks as sent to server.
+     */
+    public synchronized void removeUnsyncedBlocks(@NonNull String courseId,
+                                                  @NonNull Collection<String> blockIds) {
+        final Set<String> blocks = getUnsyncedBlocks(courseId);
+        if (!blocks.removeAll(blockIds)) {
+            return;
+        }
+        pref.put(getUnsyncedBlocksKey(courseId), blocks);
+        if (blocks.isEmpty()) {
+            final Set<String> courses = getCoursesWithUnsyncedBlocks();
+            courses.remove(courseId);
+            pref.put(PrefManager.Key.UNSYNCED_COMPLETION_COURSES, courses);
+        }
+    }
+
+    @NonNull
+    public synchronized Set<String> getCoursesWithUnsyncedBlocks() {
+        return pref.getStringSet(PrefManager.Key.UNSYNCED_COMPLETION_COURSES);
+    }
+
+    @NonNull
+    private static String getCompletedBlocksKey(@NonNull String courseId) {
+        return String.format(PrefManager.Key.COMPLETED_BLOCKS_FOR_COURSE_ID, courseId);
+    }
+
+    @NonNull
+    private static String getUnsyncedBlocksKey(@NonNull String courseId) {
+        return String.format(PrefManager.Key.UNSYNCED_BLOCKS_FOR_COURSE_ID, courseId);
+    }
+}
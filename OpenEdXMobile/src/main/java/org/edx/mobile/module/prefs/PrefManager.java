@@ -7,7 +7,9 @@ import androidx.annotation.Nullable;
 
 import org.edx.mobile.base.MainApplication;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This is a Utility for reading and writing to shared preferences.
@@ -84,6 +86,17 @@ public class PrefManager {
         edit.putInt(key, value).commit();
     }
 
+    /**
+     * Puts given key-value pair to the Shared Preferences.
+     *
+     * @param key
+     * @param value - Set of Strings
+     */
+    public void put(String key, Set<String> value) {
+        Editor edit = context.getSharedPreferences(prefName, Context.MODE_PRIVATE).edit();
+        edit.putStringSet(key, value).commit();
+    }
+
     /**
      * Returns String value for the given key, null if no value is found.
      *
@@ -164,6 +177,26 @@ public class PrefManager {
                 .getInt(key, -1);
     }
 
+    /**
+     * Returns a modifiable copy of the Set of Strings for the given key, an empty Set if no
+     * value is found.
+     *
+     * @param key
+     * @return Set of Strings
+     */
+    @NonNull
+    public Set<String> getStringSet(String key) {
+        if (context != null) {
+            final Set<String> value = context.getSharedPreferences(prefName, Context.MODE_PRIVATE)
+                    .getStringSet(key, null);
+            if (value != null) {
+                // The Set returned by Shared Preferences must not be modified
+                return new HashSet<>(value);
+            }
+        }
+        return new HashSet<>();
+    }
+
     public static class AppInfoPrefManager extends PrefManager {
         public AppInfoPrefManager(Context context) {
             super(context, PrefManager.Pref.APP_INFO);
@@ -254,9 +287,11 @@ public class PrefManager {
         public static final String REMOTE_FEATURES = "remote_features";
         public static final String APP_INFO = "pref_app_info";
         public static final String USER_PREF = "pref_user";
+        public static final String COMPLETION = "pref_completion";
 
         public static String[] getAll() {
-            return new String[]{LOGIN, WIFI, VIDEOS, FEATURES, REMOTE_FEATURES, APP_INFO, USER_PREF};
+            return new String[]{LOGIN, WIFI, VIDEOS, FEATURES, REMOTE_FEATURES, APP_INFO, USER_PREF,
+                    COMPLETION};
         }
 
         public static String[] getAllPreferenceFileNames() {
@@ -285,7 +320,9 @@ public class PrefManager {
         public static final String TRANSCRIPT_LANGUAGE = "transcript_language";
         public static final String PLAYBACK_SPEED = "playback_speed";
         public static final String ANALYTICS_KEY_BACKEND = "segment_backend";
-        public static final String SPEED_TEST_KBPS = "speed_test_kbps";
+        // Preferences to save the estimated download speed per type of network
+        public static final String THROUGHPUT_KBPS_WIFI = "throughput_kbps_wifi";
+        public static final String THROUGHPUT_KBPS_MOBILE = "throughput_kbps_mobile";
         public static final String APP_VERSION_NAME = "app_version_name";
         public static final String APP_VERSION_CODE = "app_version_code";
         public static final String NOTIFICATION_PROFILE_JSON = "notification_profile_json";
@@ -305,6 +342,24 @@ public class PrefManager {
         public static final String BULK_DOWNLOAD_FOR_COURSE_ID = "BULK_DOWNLOAD_%s";
         // Preference to save value prop status
         public static final String VALUE_PROP = "VALUE_PROP";
+        // Preference to keep the ids of the blocks completed locally for a Course ID
+        public static final String COMPLETED_BLOCKS_FOR_COURSE_ID = "COMPLETED_BLOCKS_%s";
+        // Preference to keep the ids of the completed blocks yet to be sent to server for a Course ID
+        public static final String UNSYNCED_BLOCKS_FOR_COURSE_ID = "UNSYNCED_BLOCKS_%s";
+        // Preference to keep the IDs of the courses having completions yet to be sent to server
+        public static final String UNSYNCED_COMPLETION_COURSES = "UNSYNCED_COMPLETION_COURSES";
+        // Preference to keep the IDs of the courses accessed recently
+        public static final String RECENT_COURSES = "RECENT_COURSES";
+        // Preference to save the storage limit for the downloaded videos, in bytes
+        public static final String DOWNLOAD_STORAGE_QUOTA = "DOWNLOAD_STORAGE_QUOTA";
+        // Preference to save the time the downloaded files were last reconciled with the database
+        public static final String DOWNLOADS_RECONCILED_ON = "DOWNLOADS_RECONCILED_ON";
+        // Preference to save the write throughput measured for a storage volume, by its path
+        public static final String VOLUME_WRITE_KBPS_FOR_PATH = "VOLUME_WRITE_KBPS_%s";
+        // Preference to save the read throughput measured for a storage volume, by its path
+        public static final String VOLUME_READ_KBPS_FOR_PATH = "VOLUME_READ_KBPS_%s";
+        // Preference to keep the app directory the downloaded videos are being moved to
+        public static final String DOWNLOAD_MIGRATION_TARGET = "DOWNLOAD_MIGRATION_TARGET";
     }
 
     public static final class Value {
@@ -5,16 +5,29 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.edx.mobile.model.api.ProfileModel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Singleton
 public class UserPrefs {
 
+    /**
+     * Max no of recently accessed courses to remember.
+     */
+    private static final int MAX_RECENT_COURSES = 10;
+
     private Context context;
 
+    private final Gson gson = new GsonBuilder().create();
+
     @NonNull
     private final LoginPrefs loginPrefs;
 
@@ -43,8 +56,56 @@ public class UserPrefs {
         return prefManger.getBoolean(PrefManager.Key.DOWNLOAD_TO_SDCARD, false);
     }
 
+    /**
+     * @return Most no of bytes the downloaded videos may take up, or 0 if there is no limit.
+     */
+    public long getDownloadStorageQuota() {
+        final PrefManager prefManger = new PrefManager(context, PrefManager.Pref.USER_PREF);
+        return Math.max(0, prefManger.getLong(PrefManager.Key.DOWNLOAD_STORAGE_QUOTA));
+    }
+
+    /**
+     * @param quota Most no of bytes the downloaded videos may take up, or 0 for no limit.
+     */
+    public void setDownloadStorageQuota(long quota) {
+        final PrefManager prefManger = new PrefManager(context, PrefManager.Pref.USER_PREF);
+        prefManger.put(PrefManager.Key.DOWNLOAD_STORAGE_QUOTA, Math.max(0, quota));
+    }
+
     @Nullable
     public ProfileModel getProfile() {
         return loginPrefs.getCurrentUserProfile();
     }
+
+    /**
+     * @return Ids of the courses accessed recently, the most recent first.
+     */
+    @NonNull
+    public synchronized List<String> getRecentCourseIds() {
+        final PrefManager prefManger = new PrefManager(context, PrefManager.Pref.USER_PREF);
+        final String json = prefManger.getString(PrefManager.Key.RECENT_COURSES);
+        if (json == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(gson.fromJson(json, String[].class)));
+    }
+
+    /**
+     * Move a course to the front of the recently accessed courses.
+     *
+     * @param courseId Id of the course.
+     */
+    public synchronized void addRecentCourseId(@NonNull String courseId) {
+        final List<String> courseIds = getRecentCourseIds();
+        if (!courseIds.isEmpty() && courseIds.get(0).equals(courseId)) {
+            return;
+        }
+        courseIds.remove(courseId);
+        courseIds.add(0, courseId);
+        while (courseIds.size() > MAX_RECENT_COURSES) {
+            courseIds.remove(courseIds.size() - 1);
+        }
+        final PrefManager prefManger = new PrefManager(context, PrefManager.Pref.USER_PREF);
+        prefManger.put(PrefManager.Key.RECENT_COURSES, gson.toJson(courseIds));
+    }
 }
@@ -0,0 +1,360 @@
+package org.edx.mobile.module.storage;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Format of the course packages, which bundle the downloaded videos of a course along with their
+ * transcripts and the course structure into a single file, to be imported on devices without
+ * connectivity:
+ * <pre>
+ * MAGIC | data of the entries | index | index offset (long) | index length (int) | MAGIC
+ * </pre>
+ * The index, in JSON, lists the entries along with the offsets, sizes and SHA1 hashes of their
+ * data, so that any entry can be read without going through the ones before it. The data is
+ * copied between the package and the files with {@link FileChannel#transferTo}, which the kernel
+ * carries out without copying the bytes through the app.
+ */
+public class CoursePackage {
+
+    public static final int VERSION = 1;
+    /**
+     * Extension of the names of the package files.
+     */
+    public static final String FILE_EXTENSION = ".edxcourse";
+    /**
+     * MIME type the package files are shared with.
+     */
+    public static final String MIME_TYPE = "application/octet-stream";
+
+    private static final byte[] MAGIC = {'E', 'D', 'X', 'C', 'P', 'K', 'G', '1'};
+    private static final int TRAILER_SIZE = 8 + 4 + MAGIC.length;
+    /**
+     * Largest index to read, so that a corrupted package isn't read into memory whole.
+     */
+    private static final int MAX_INDEX_SIZE = 16 * 1024 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Contents of a package.
+     */
+    public static class Index {
+        @SerializedName("version")
+        public int version = VERSION;
+
+        @SerializedName("course_id")
+        public String courseId;
+
+        @SerializedName("created_on")
+        public long createdOn;
+
+        /**
+         * Course structure, as the blocks API returns it.
+         */
+        @SerializedName("structure")
+        public Entry structure;
+
+        @SerializedName("videos")
+        public List<VideoEntry> videos = new ArrayList<>();
+
+        @SerializedName("transcripts")
+        public List<TranscriptEntry> transcripts = new ArrayList<>();
+    }
+
+    /**
+     * Data stored in a package.
+     */
+    public static class Entry {
+        @SerializedName("offset")
+        public long offset;
+
+        @SerializedName("size")
+        public long size;
+
+        @SerializedName("sha1")
+        public String sha1;
+    }
+
+    /**
+     * File of a downloaded video, along with the info to register it in the downloads. Videos
+     * sharing a url share their data.
+     */
+    public static class VideoEntry extends Entry {
+        @SerializedName("video_id")
+        public String videoId;
+
+        @SerializedName("title")
+        public String title;
+
+        @SerializedName("url")
+        public String url;
+
+        @SerializedName("url_hls")
+        public String urlHls;
+
+        @SerializedName("url_high_quality")
+        public String urlHighQuality;
+
+        @SerializedName("url_low_quality")
+        public String urlLowQuality;
+
+        @SerializedName("url_youtube")
+        public String urlYoutube;
+
+        @SerializedName("duration")
+        public long duration;
+
+        @SerializedName("chapter")
+        public String chapter;
+
+        @SerializedName("section")
+        public String section;
+
+        @SerializedName("unit_url")
+        public String unitUrl;
+    }
+
+    /**
+     * Transcript file, cached by its url.
+     */
+    public static class TranscriptEntry extends Entry {
+        @SerializedName("url")
+        public String url;
+    }
+
+    /**
+     * Writes the entries of a package one after another, and then the index.
+     */
+    public static class Writer implements Closeable {
+        @NonNull
+        private final RandomAccessFile file;
+        @NonNull
+        private final FileChannel channel;
+        @NonNull
+        private final Gson gson;
+        @NonNull
+        public final Index index = new Index();
+
+        public Writer(@NonNull File file, @NonNull String courseId,
+                      @NonNull Gson gson) throws IOException {
+            this.file = new RandomAccessFile(file, "rw");
+            this.file.setLength(0);
+            this.channel = this.file.getChannel();
+            this.gson = gson;
+            index.courseId = courseId;
+            index.createdOn = System.currentTimeMillis();
+            writeFully(ByteBuffer.wrap(MAGIC));
+        }
+
+        /**
+         * Append the contents of a file as the data of an entry.
+         */
+        @NonNull
+        public <T extends Entry> T add(@NonNull T entry, @NonNull File source) throws IOException {
+            entry.offset = channel.position();
+            try (FileChannel in = new FileInputStream(source).getChannel()) {
+                entry.size = in.size();
+                transferFully(in, 0, entry.size, channel);
+            }
+            entry.sha1 = Sha1Util.SHA1(channel, entry.offset, entry.size);
+            return entry;
+        }
+
+        /**
+         * Append bytes as the data of an entry.
+         */
+        @NonNull
+        public <T extends Entry> T add(@NonNull T entry, @NonNull byte[] data) throws IOException {
+            entry.offset = channel.position();
+            entry.size = data.length;
+            writeFully(ByteBuffer.wrap(data));
+            entry.sha1 = Sha1Util.SHA1(channel, entry.offset, entry.size);
+            return entry;
+        }
+
+        /**
+         * Write the index after the entries, and sync the package to the storage.
+         */
+        public void finish() throws IOException {
+            final byte[] indexBytes = gson.toJson(index).getBytes(UTF_8);
+            final long indexOffset = channel.position();
+            writeFully(ByteBuffer.wrap(indexBytes));
+            final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(indexOffset).putInt(indexBytes.length).put(MAGIC).flip();
+            writeFully(trailer);
+            channel.force(true);
+        }
+
+        private void writeFully(@NonNull ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the index of a package, and the entries listed in it.
+     */
+    public static class Reader implements Closeable {
+        @NonNull
+        private final RandomAccessFile file;
+        @NonNull
+        private final FileChannel channel;
+        private final long indexOffset;
+        @NonNull
+        private final Index index;
+
+        public Reader(@NonNull File file, @NonNull Gson gson) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+            this.channel = this.file.getChannel();
+            try {
+                final long size = channel.size();
+                if (size < MAGIC.length + TRAILER_SIZE || !Arrays.equals(MAGIC,
+                        read(0, MAGIC.length).array())) {
+                    throw new IOException("Not a course package: " + file);
+                }
+                final ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+                indexOffset = trailer.getLong();
+                final int indexLength = trailer.getInt();
+                final byte[] magic = new byte[MAGIC.length];
+                trailer.get(magic);
+                if (!Arrays.equals(MAGIC, magic) || indexOffset < MAGIC.length ||
+                        indexLength <= 0 || indexLength > MAX_INDEX_SIZE ||
+                        indexOffset + indexLength != size - TRAILER_SIZE) {
+                    throw new IOException("Course package is incomplete: " + file);
+                }
+                final Index index;
+                try {
+                    index = gson.fromJson(new String(read(indexOffset, indexLength).array(),
+                            UTF_8), Index.class);
+                } catch (JsonParseException e) {
+                    throw new IOException("Index of course package is corrupted: " + file, e);
+                }
+                if (index == null || index.courseId == null || index.version > VERSION) {
+                    throw new IOException("Unsupported course package: " + file);
+                }
+                this.index = index;
+            } catch (IOException e) {
+                this.file.close();
+                throw e;
+            }
+        }
+
+        @NonNull
+        public Index getIndex() {
+            return index;
+        }
+
+        /**
+         * Read the data of an entry, verifying it against its hash.
+         */
+        @NonNull
+        public byte[] read(@NonNull Entry entry) throws IOException {
+            checkBounds(entry);
+            if (entry.size > MAX_INDEX_SIZE) {
+                throw new IOException("Entry too large to read into memory");
+            }
+            verify(channel, entry.offset, entry);
+            return read(entry.offset, (int) entry.size).array();
+        }
+
+        /**
+         * Copy the data of an entry to a file, verifying the copy against its hash. The data is
+         * copied to a partial file first, which replaces the file once verified.
+         */
+        public void extract(@NonNull Entry entry, @NonNull File target) throws IOException {
+            checkBounds(entry);
+            final File partial = new File(target.getPath() + DownloadMigrator.PARTIAL_SUFFIX);
+            try {
+                try (FileOutputStream out = new FileOutputStream(partial)) {
+                    transferFully(channel, entry.offset, entry.size, out.getChannel());
+                    out.getFD().sync();
+                }
+                try (FileChannel in = new FileInputStream(partial).getChannel()) {
+                    verify(in, 0, entry);
+                }
+                if (!partial.renameTo(target)) {
+                    throw new IOException("Unable to rename " + partial + " to " + target);
+                }
+            } finally {
+                if (partial.exists() && !partial.delete()) {
+                    partial.deleteOnExit();
+                }
+            }
+        }
+
+        private void checkBounds(@NonNull Entry entry) throws IOException {
+            if (entry.offset < MAGIC.length || entry.size < 0 ||
+                    entry.offset + entry.size > indexOffset) {
+                throw new IOException("Entry out of the bounds of the package");
+            }
+        }
+
+        @NonNull
+        private ByteBuffer read(long position, int length) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    private static void verify(@NonNull FileChannel channel, long position,
+                               @NonNull Entry entry) throws IOException {
+        final String sha1 = Sha1Util.SHA1(channel, position, entry.size);
+        if (!sha1.equals(entry.sha1)) {
+            throw new IOException("Entry is corrupted, expected SHA1 " + entry.sha1 + " but was "
+                    + sha1);
+        }
+    }
+
+    private static void transferFully(@NonNull FileChannel in, long position, long size,
+                                      @NonNull FileChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < size) {
+            final long count = in.transferTo(position + transferred, size - transferred, out);
+            if (count <= 0) {
+                throw new EOFException("Unable to copy " + (size - transferred) + " more bytes");
+            }
+            transferred += count;
+        }
+    }
+
+    // Make this class non-instantiable
+    private CoursePackage() {
+        throw new UnsupportedOperationException();
+    }
+}
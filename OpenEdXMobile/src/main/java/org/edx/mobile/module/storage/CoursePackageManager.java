@@ -0,0 +1,403 @@
+package org.edx.mobile.module.storage;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.course.ImportedCourseStructures;
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.model.course.VideoBlockModel;
+import org.edx.mobile.model.db.DownloadEntry;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.storage.CoursePackage.TranscriptEntry;
+import org.edx.mobile.module.storage.CoursePackage.VideoEntry;
+import org.edx.mobile.player.TranscriptManager;
+import org.edx.mobile.util.Config;
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * Exports the downloaded videos of a course, along with their transcripts and the course
+ * structure, to a {@link CoursePackage}, and imports them from it on another device, so that a
+ * course downloaded once can be shared without downloading it again.
+ * <p>
+ * Exporting and importing take time, so they should be called on a background thread.
+ */
+@Singleton
+public class CoursePackageManager {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Outcome of an import.
+     */
+    public static class Report {
+        /**
+         * No of videos registered as downloaded.
+         */
+        public final int videoCount;
+        /**
+         * No of transcripts added to the cache.
+         */
+        public final int transcriptCount;
+        /**
+         * No of videos left out because they are downloaded or being downloaded already.
+         */
+        public final int skippedVideoCount;
+        /**
+         * No of videos and transcripts left out because their data is corrupted.
+         */
+        public final int corruptedCount;
+
+        Report(int videoCount, int transcriptCount, int skippedVideoCount, int corruptedCount) {
+            this.videoCount = videoCount;
+            this.transcriptCount = transcriptCount;
+            this.skippedVideoCount = skippedVideoCount;
+            this.corruptedCount = corruptedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "videos=" + videoCount + ", transcripts=" + transcriptCount + ", skipped="
+                    + skippedVideoCount + ", corrupted=" + corruptedCount;
+        }
+    }
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    @NonNull
+    private final IDatabase db;
+    @NonNull
+    private final CourseAPI courseApi;
+    @NonNull
+    private final TranscriptManager transcriptManager;
+    @NonNull
+    private final DownloadPlacement placement;
+    @NonNull
+    private final VideoFileStore store;
+    @NonNull
+    private final ImportedCourseStructures importedCourseStructures;
+    @NonNull
+    private final Config config;
+    @NonNull
+    private final Gson gson;
+
+    @Inject
+    public CoursePackageManager(@NonNull IDatabase db, @NonNull CourseAPI courseApi,
+                                @NonNull TranscriptManager transcriptManager,
+                                @NonNull DownloadPlacement placement,
+                                @NonNull VideoFileStore store,
+                                @NonNull ImportedCourseStructures importedCourseStructures,
+                                @NonNull Config config, @NonNull Gson gson) {
+        this.db = db;
+        this.courseApi = courseApi;
+        this.transcriptManager = transcriptManager;
+        this.placement = placement;
+        this.store = store;
+        this.importedCourseStructures = importedCourseStructures;
+        this.config = config;
+        this.gson = gson;
+    }
+
+    /**
+     * Export the downloaded videos of a course, their transcripts, and the course structure to a
+     * package. The package is written to a temporary file first, so an interrupted export
+     * doesn't leave a partial package behind.
+     *
+     * @param courseId Id of the course, whose structure has to be cached.
+     * @param target   File to write the package to.
+     * @return The index of the package.
+     */
+    @NonNull
+    public CoursePackage.Index exportPackage(@NonNull String courseId,
+                                             @NonNull File target) throws Exception {
+        final CourseStructureV1Model model = courseApi.getCourseStructureModelFromCache(
+                config.getApiUrlVersionConfig().getBlocksApiVersion(), courseId);
+        final CourseComponent course = (CourseComponent) CourseAPI.normalizeCourseStructure(
+                model, courseId);
+
+        final File temp = new File(target.getPath() + DownloadMigrator.PARTIAL_SUFFIX);
+        final CoursePackage.Index index;
+        try (CoursePackage.Writer writer = new CoursePackage.Writer(temp, courseId, gson)) {
+            index = writer.index;
+            index.structure = writer.add(new CoursePackage.Entry(),
+                    gson.toJson(model).getBytes(UTF_8));
+
+            // Videos sharing a url share the data of the first one
+            final Map<String, VideoEntry> entriesByUrl = new HashMap<>();
+            for (VideoModel video : db.getAllVideosByCourse(courseId, null)) {
+                if (video.getDownloadedStateOrdinal() != DownloadedState.DOWNLOADED.ordinal() ||
+                        TextUtils.isEmpty(video.getFilePath()) ||
+                        TextUtils.isEmpty(video.getVideoUrl())) {
+                    continue;
+                }
+                final VideoEntry entry = toVideoEntry(video);
+                final VideoEntry entryByUrl = entriesByUrl.get(video.getVideoUrl());
+                if (entryByUrl != null) {
+                    entry.offset = entryByUrl.offset;
+                    entry.size = entryByUrl.size;
+                    entry.sha1 = entryByUrl.sha1;
+                } else {
+                    final File file = new File(video.getFilePath());
+                    if (!file.isFile()) {
+                        continue;
+                    }
+                    writer.add(entry, file);
+                    entriesByUrl.put(video.getVideoUrl(), entry);
+                }
+                index.videos.add(entry);
+            }
+
+            final Set<String> transcriptUrls = new HashSet<>();
+            for (VideoBlockModel block : course.getVideos()) {
+                if (block.getData() != null && block.getData().transcripts != null) {
+                    transcriptUrls.addAll(block.getData().transcripts.values());
+                }
+            }
+            for (String url : transcriptUrls) {
+                final File file = TextUtils.isEmpty(url) ? null :
+                        transcriptManager.getCacheFile(url);
+                if (file != null && file.isFile()) {
+                    final TranscriptEntry entry = new TranscriptEntry();
+                    entry.url = url;
+                    index.transcripts.add(writer.add(entry, file));
+                }
+            }
+            writer.finish();
+        } catch (Exception e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Unable to rename " + temp + " to " + target);
+        }
+        logger.debug("Course " + courseId + " exported: " + index.videos.size() + " videos, "
+                + index.transcripts.size() + " transcripts");
+        return index;
+    }
+
+    /**
+     * Import a package, registering its videos as downloaded and adding its transcripts to the
+     * cache, without downloading them again. The data of each entry is verified against its hash
+     * once copied, and the corrupted entries are left out. The video files are added to the
+     * {@link VideoFileStore}, sharing the files of the same content stored already. Only packages
+     * of the courses the user is enrolled in are imported.
+     *
+     * @param source The package.
+     * @return The outcome of the import.
+     */
+    @NonNull
+    public Report importPackage(@NonNull File source) throws IOException {
+        try (CoursePackage.Reader reader = new CoursePackage.Reader(source, gson)) {
+            final CoursePackage.Index index = reader.getIndex();
+            if (TextUtils.isEmpty(index.courseId) ||
+                    !courseApi.isCourseEnrolled(index.courseId)) {
+                throw new IOException("Package of a course the user isn't enrolled in: "
+                        + index.courseId);
+            }
+            int corruptedCount = 0;
+
+            // Only used until the structure is fetched from the server
+            if (index.structure != null) {
+                importedCourseStructures.put(index.courseId,
+                        new String(reader.read(index.structure), UTF_8));
+            }
+
+            int transcriptCount = 0;
+            for (TranscriptEntry entry : index.transcripts) {
+                final File file = TextUtils.isEmpty(entry.url) ? null :
+                        transcriptManager.getCacheFile(entry.url);
+                if (file == null || file.exists()) {
+                    continue;
+                }
+                try {
+                    reader.extract(entry, file);
+                    transcriptCount++;
+                } catch (IOException e) {
+                    logger.error(e);
+                    corruptedCount++;
+                }
+            }
+
+            // Leave out the videos downloaded or being downloaded already
+            final List<VideoEntry> entries = new ArrayList<>();
+            final Map<String, VideoModel> videosByUrl = new HashMap<>();
+            final Set<String> newUrls = new HashSet<>();
+            long requiredBytes = 0;
+            int skippedVideoCount = 0;
+            for (VideoEntry entry : index.videos) {
+                final VideoModel video = db.getVideoEntryByVideoId(entry.videoId, null);
+                if (TextUtils.isEmpty(entry.url) || (video != null &&
+                        video.getDownloadedStateOrdinal() != DownloadedState.ONLINE.ordinal())) {
+                    skippedVideoCount++;
+                    continue;
+                }
+                if (!videosByUrl.containsKey(entry.url)) {
+                    videosByUrl.put(entry.url, db.getVideoByVideoUrl(entry.url, null));
+                }
+                final VideoModel videoByUrl = videosByUrl.get(entry.url);
+                if (videoByUrl != null && videoByUrl.getDownloadedStateOrdinal() !=
+                        DownloadedState.DOWNLOADED.ordinal()) {
+                    skippedVideoCount++;
+                    continue;
+                }
+                if (videoByUrl == null && newUrls.add(entry.url)) {
+                    requiredBytes += entry.size;
+                }
+                entries.add(entry);
+            }
+            final File directory = entries.isEmpty() ? null :
+                    placement.getDownloadDirectory(requiredBytes);
+            if (!entries.isEmpty() && directory == null) {
+                throw new IOException("Download directory not available");
+            }
+
+            final List<DownloadEntry> downloads = new ArrayList<>();
+            final Map<String, File> filesByUrl = new HashMap<>();
+            final Map<File, String> sha1sByFile = new HashMap<>();
+            for (VideoEntry entry : entries) {
+                final DownloadEntry download = toDownloadEntry(entry, index.courseId);
+                final VideoModel videoByUrl = videosByUrl.get(entry.url);
+                final File file;
+                if (videoByUrl != null) {
+                    // The file of the video is on the device already
+                    download.setDownloadInfo(videoByUrl);
+                    file = TextUtils.isEmpty(videoByUrl.getFilePath()) ? null :
+                            new File(videoByUrl.getFilePath());
+                } else if (filesByUrl.containsKey(entry.url)) {
+                    file = filesByUrl.get(entry.url);
+                } else {
+                    file = new File(directory, Sha1Util.SHA1(entry.url));
+                    try {
+                        reader.extract(entry, file);
+                    } catch (IOException e) {
+                        logger.error(e);
+                        corruptedCount++;
+                        continue;
+                    }
+                    filesByUrl.put(entry.url, file);
+                    sha1sByFile.put(file, entry.sha1);
+                }
+                // Each video is only registered as downloaded if its file matches its entry,
+                // as the entries sharing a url only have the data of the first one extracted
+                if (!isVerified(entry, file, sha1sByFile.get(file))) {
+                    logger.warn("Video file doesn't match the package: " + entry.videoId);
+                    corruptedCount++;
+                    continue;
+                }
+                if (videoByUrl == null) {
+                    download.filepath = file.getAbsolutePath();
+                }
+                downloads.add(download);
+            }
+            if (!downloads.isEmpty()) {
+                synchronized (store) {
+                    final Map<String, String> storedPaths = new HashMap<>();
+                    for (Map.Entry<File, String> fileEntry : sha1sByFile.entrySet()) {
+                        try {
+                            storedPaths.put(fileEntry.getKey().getAbsolutePath(), store.put(
+                                    fileEntry.getKey(), fileEntry.getValue()).getAbsolutePath());
+                        } catch (IOException e) {
+                            logger.error(e);
+                        }
+                    }
+                    for (DownloadEntry download : downloads) {
+                        final String storedPath = storedPaths.get(download.filepath);
+                        if (storedPath != null) {
+                            download.filepath = storedPath;
+                        }
+                    }
+                    db.addDownloads(downloads, downloads, null);
+                    // Files with the same content as a stored file aren't needed anymore
+                    for (File file : sha1sByFile.keySet()) {
+                        if (file.exists() && !file.getAbsolutePath().equals(
+                                storedPaths.get(file.getAbsolutePath())) && !file.delete()) {
+                            logger.warn("Delete failed: " + file.getPath());
+                        }
+                    }
+                }
+                EventBus.getDefault().post(new DownloadCompletedEvent());
+            }
+
+            final Report report = new Report(downloads.size(), transcriptCount,
+                    skippedVideoCount, corruptedCount);
+            logger.debug("Course " + index.courseId + " imported: " + report);
+            return report;
+        }
+    }
+
+    /**
+     * @param file          File of the video, or null if it has none.
+     * @param extractedSha1 SHA1 the file has been verified against when extracted, or null if it
+     *                      was on the device already.
+     * @return Whether the file has the size and, if extracted, the content of an entry.
+     */
+    private static boolean isVerified(@NonNull VideoEntry entry, @Nullable File file,
+                                      @Nullable String extractedSha1) {
+        if (file == null || !file.isFile() || file.length() != entry.size) {
+            return false;
+        }
+        return extractedSha1 == null || extractedSha1.equals(entry.sha1);
+    }
+
+    @NonNull
+    private static VideoEntry toVideoEntry(@NonNull VideoModel video) {
+        final VideoEntry entry = new VideoEntry();
+        entry.videoId = video.getVideoId();
+        entry.title = video.getTitle();
+        entry.url = video.getVideoUrl();
+        entry.urlHls = video.getHLSVideoUrl();
+        entry.urlHighQuality = video.getHighQualityVideoUrl();
+        entry.urlLowQuality = video.getLowQualityVideoUrl();
+        entry.urlYoutube = video.getYoutubeVideoUrl();
+        entry.duration = video.getDuration();
+        entry.chapter = video.getChapterName();
+        entry.section = video.getSectionName();
+        entry.unitUrl = video.getLmsUrl();
+        return entry;
+    }
+
+    @NonNull
+    private static DownloadEntry toDownloadEntry(@NonNull VideoEntry entry,
+                                                 @NonNull String courseId) {
+        final DownloadEntry download = new DownloadEntry();
+        download.videoId = entry.videoId;
+        download.title = entry.title;
+        download.url = entry.url;
+        download.url_hls = entry.urlHls;
+        download.url_high_quality = entry.urlHighQuality;
+        download.url_low_quality = entry.urlLowQuality;
+        download.url_youtube = entry.urlYoutube;
+        download.duration = entry.duration;
+        download.size = entry.size;
+        download.eid = courseId;
+        download.chapter = entry.chapter;
+        download.section = entry.section;
+        download.lmsUrl = entry.unitUrl;
+        download.downloaded = DownloadedState.DOWNLOADED;
+        download.downloadedOn = System.currentTimeMillis();
+        return download;
+    }
+}
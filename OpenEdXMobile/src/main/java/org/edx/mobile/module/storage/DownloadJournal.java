@@ -0,0 +1,325 @@
+package org.edx.mobile.module.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the transitions of the downloads between their states. A transition is
+ * written to the journal before any of its steps is carried out, and is committed once all of
+ * them are done, so that the transitions interrupted by a crash can be found and completed, or
+ * rolled back, on the next start of the app.
+ * <p>
+ * The journal is a file of records appended one after another. Each record is checksummed, so a
+ * record torn by a crash while being written is told apart from a complete one, and it and the
+ * records after it are ignored.
+ */
+public class DownloadJournal {
+
+    public enum Operation {
+        /**
+         * Enqueue the downloads of the videos and save them in the database.
+         */
+        ENQUEUE,
+        /**
+         * Remove the downloads of the videos, their files, and their rows in the database.
+         */
+        REMOVE
+    }
+
+    /**
+     * A transition written to the journal.
+     */
+    public static class Entry {
+        public final long id;
+        @NonNull
+        public final Operation operation;
+        /**
+         * Hashed username the videos belong to, or null for the logged in user.
+         */
+        @Nullable
+        public final String username;
+        @NonNull
+        public final List<String> videoIds;
+        @NonNull
+        public final List<String> urls;
+        @NonNull
+        public final List<String> filepaths;
+        /**
+         * Ids of the downloads in the download manager. The downloads being enqueued are added as
+         * they are enqueued.
+         */
+        @NonNull
+        public final List<Long> dmids;
+
+        Entry(long id, @NonNull Operation operation, @Nullable String username,
+              @NonNull List<String> videoIds, @NonNull List<String> urls,
+              @NonNull List<String> filepaths, @NonNull List<Long> dmids) {
+            this.id = id;
+            this.operation = operation;
+            this.username = username;
+            this.videoIds = videoIds;
+            this.urls = urls;
+            this.filepaths = filepaths;
+            this.dmids = dmids;
+        }
+    }
+
+    private static final byte RECORD_BEGIN = 1;
+    private static final byte RECORD_DMID = 2;
+    private static final byte RECORD_COMMIT = 3;
+
+    /**
+     * Size the journal may grow to before it is truncated, once no transition is in progress.
+     */
+    private static final long COMPACT_THRESHOLD_BYTES = 64 * 1024;
+
+    @NonNull
+    private final File file;
+    /**
+     * Ids are based on the time, so that they don't clash with the ids of a previous session.
+     */
+    private long nextId = System.currentTimeMillis() << 20;
+    /**
+     * Ids of the transitions begun but not committed yet.
+     */
+    private final Set<Long> openIds = new HashSet<>();
+    /**
+     * Transitions left over from the previous sessions, or null if they haven't been read yet.
+     */
+    @Nullable
+    private List<Entry> pendingEntries;
+
+    public DownloadJournal(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Write a transition to the journal, before carrying out any of its steps.
+     */
+    @NonNull
+    public synchronized Entry begin(@NonNull Operation operation, @Nullable String username,
+                                    @NonNull List<String> videoIds, @NonNull List<String> urls,
+                                    @NonNull List<String> filepaths,
+                                    @NonNull List<Long> dmids) throws IOException {
+        load();
+        final Entry entry = new Entry(nextId++, operation, username, videoIds, urls,
+                filepaths, new ArrayList<>(dmids));
+        append(toBeginRecord(entry), true);
+        openIds.add(entry.id);
+        return entry;
+    }
+
+    /**
+     * Add the id of a download enqueued for a transition. This isn't synced to the storage, as
+     * the downloads can also be matched by their urls if it is lost.
+     */
+    public synchronized void addDmid(@NonNull Entry entry, long dmid) throws IOException {
+        entry.dmids.add(dmid);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_DMID);
+        out.writeLong(entry.id);
+        out.writeLong(dmid);
+        append(bytes.toByteArray(), false);
+    }
+
+    /**
+     * Mark a transition as done, after all of its steps are carried out.
+     */
+    public synchronized void commit(@NonNull Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_COMMIT);
+        out.writeLong(entry.id);
+        append(bytes.toByteArray(), true);
+        openIds.remove(entry.id);
+        if (openIds.isEmpty() && file.length() > COMPACT_THRESHOLD_BYTES) {
+            // Nothing in the journal is needed anymore
+            if (!file.delete()) {
+                throw new IOException("Unable to truncate the journal " + file);
+            }
+        }
+    }
+
+    /**
+     * @return The transitions left over from the previous sessions of the app, that have been
+     * begun but not committed, in the order they were begun. They have to be completed or rolled
+     * back, and then committed.
+     */
+    @NonNull
+    public synchronized List<Entry> getPendingEntries() throws IOException {
+        load();
+        final List<Entry> entries = new ArrayList<>();
+        for (Entry entry : pendingEntries) {
+            if (openIds.contains(entry.id)) {
+                entries.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Read the transitions left over from the previous sessions, and rewrite the journal with
+     * just them, so that any torn record is dropped before new records are appended.
+     */
+    private void load() throws IOException {
+        if (pendingEntries != null) {
+            return;
+        }
+        final Map<Long, Entry> entries = new LinkedHashMap<>();
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                byte[] record;
+                while ((record = readRecord(in)) != null) {
+                    readEntry(new DataInputStream(new ByteArrayInputStream(record)), entries);
+                }
+            }
+            final File temp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+                for (Entry entry : entries.values()) {
+                    writeRecord(new DataOutputStream(fileOut), toBeginRecord(entry));
+                }
+                fileOut.getFD().sync();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rewrite the journal " + file);
+            }
+        }
+        pendingEntries = new ArrayList<>(entries.values());
+        for (Entry entry : pendingEntries) {
+            openIds.add(entry.id);
+        }
+    }
+
+    @NonNull
+    private static byte[] toBeginRecord(@NonNull Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_BEGIN);
+        out.writeLong(entry.id);
+        out.writeInt(entry.operation.ordinal());
+        out.writeBoolean(entry.username != null);
+        if (entry.username != null) {
+            out.writeUTF(entry.username);
+        }
+        writeStrings(out, entry.videoIds);
+        writeStrings(out, entry.urls);
+        writeStrings(out, entry.filepaths);
+        out.writeInt(entry.dmids.size());
+        for (long dmid : entry.dmids) {
+            out.writeLong(dmid);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void append(@NonNull byte[] record, boolean sync) throws IOException {
+        try (FileOutputStream fileOut = new FileOutputStream(file, true)) {
+            writeRecord(new DataOutputStream(fileOut), record);
+            if (sync) {
+                fileOut.getFD().sync();
+            }
+        }
+    }
+
+    private static void writeRecord(@NonNull DataOutputStream out,
+                                    @NonNull byte[] record) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        out.writeInt(record.length);
+        out.write(record);
+        out.writeLong(crc.getValue());
+        out.flush();
+    }
+
+    /**
+     * @return The next record, or null if there are no more complete records.
+     */
+    @Nullable
+    private static byte[] readRecord(@NonNull DataInputStream in) throws IOException {
+        try {
+            final int length = in.readInt();
+            if (length <= 0 || length > in.available()) {
+                return null;
+            }
+            final byte[] record = new byte[length];
+            in.readFully(record);
+            final CRC32 crc = new CRC32();
+            crc.update(record);
+            return crc.getValue() == in.readLong() ? record : null;
+        } catch (EOFException e) {
+            // The last record was torn
+            return null;
+        }
+    }
+
+    private static void readEntry(@NonNull DataInputStream in,
+                                  @NonNull Map<Long, Entry> entries) throws IOException {
+        final byte type = in.readByte();
+        final long id = in.readLong();
+        switch (type) {
+            case RECORD_BEGIN: {
+                final Operation operation = Operation.values()[in.readInt()];
+                final String username = in.readBoolean() ? in.readUTF() : null;
+                final List<String> videoIds = readStrings(in);
+                final List<String> urls = readStrings(in);
+                final List<String> filepaths = readStrings(in);
+                final int dmidsCount = in.readInt();
+                final List<Long> dmids = new ArrayList<>(dmidsCount);
+                for (int i = 0; i < dmidsCount; i++) {
+                    dmids.add(in.readLong());
+                }
+                entries.put(id, new Entry(id, operation, username, videoIds, urls, filepaths,
+                        dmids));
+                break;
+            }
+            case RECORD_DMID: {
+                final Entry entry = entries.get(id);
+                if (entry != null) {
+                    entry.dmids.add(in.readLong());
+                }
+                break;
+            }
+            case RECORD_COMMIT:
+                entries.remove(id);
+                break;
+            default:
+                throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    private static void writeStrings(@NonNull DataOutputStream out,
+                                     @NonNull List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    @NonNull
+    private static List<String> readStrings(@NonNull DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,266 @@
+package org.edx.mobile.module.storage;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Process;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.api.ProfileModel;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.prefs.LoginPrefs;
+import org.edx.mobile.module.prefs.PrefManager;
+import org.edx.mobile.util.FileUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves the downloaded videos of the logged in user to another storage volume in the background,
+ * one file at a time, such as when the user switches the downloads to or from the SD card.
+ * <p>
+ * Each file is copied to a partial file next to its final place, which is renamed once the copy
+ * is complete, and only then are the videos pointed at it and the original file deleted. The
+ * target of the migration is saved, so a migration cut short by the app being killed or the SD
+ * card being removed is resumed on the next start, carrying on from the partial file.
+ * <p>
+ * Files in the {@link VideoFileStore} are moved to the store of the target volume, along with
+ * the videos of the other users referring to them.
+ */
+@Singleton
+public class DownloadMigrator {
+
+    /**
+     * Suffix of the files being copied to the target volume.
+     */
+    public static final String PARTIAL_SUFFIX = ".part";
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    /**
+     * No of bytes at the end of a partial file compared with the original file before resuming
+     * the copy, as they may not have made it to the storage before the copy was cut short.
+     */
+    private static final int VERIFIED_TAIL_BYTES = 64 * 1024;
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @NonNull
+    private final IDatabase db;
+    @NonNull
+    private final DownloadPlacement placement;
+    @NonNull
+    private final LoginPrefs loginPrefs;
+    @NonNull
+    private final VideoFileStore store;
+    @NonNull
+    private final PrefManager prefManager;
+    @Nullable
+    private CancellationSignal cancellationSignal;
+
+    @Inject
+    public DownloadMigrator(@NonNull Context context, @NonNull IDatabase db,
+                            @NonNull DownloadPlacement placement,
+                            @NonNull LoginPrefs loginPrefs, @NonNull VideoFileStore store) {
+        this.db = db;
+        this.placement = placement;
+        this.loginPrefs = loginPrefs;
+        this.store = store;
+        this.prefManager = new PrefManager(context, PrefManager.Pref.USER_PREF);
+    }
+
+    /**
+     * Move the downloaded videos to a storage volume in the background, cancelling any migration
+     * to another volume.
+     *
+     * @param targetAppDir App directory of the volume to move the videos to.
+     */
+    public void migrateInBackground(@NonNull File targetAppDir) {
+        prefManager.put(PrefManager.Key.DOWNLOAD_MIGRATION_TARGET, targetAppDir.getAbsolutePath());
+        schedule(targetAppDir);
+    }
+
+    /**
+     * Resume the migration left unfinished in the previous sessions of the app, if any.
+     */
+    public void resumeInBackground() {
+        final String target = prefManager.getString(PrefManager.Key.DOWNLOAD_MIGRATION_TARGET);
+        if (!TextUtils.isEmpty(target)) {
+            schedule(new File(target));
+        }
+    }
+
+    private synchronized void schedule(@NonNull File targetAppDir) {
+        if (cancellationSignal != null) {
+            cancellationSignal.cancel();
+        }
+        final CancellationSignal signal = new CancellationSignal();
+        cancellationSignal = signal;
+        executor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            final ProfileModel profile = loginPrefs.getCurrentUserProfile();
+            // The volume may not be mounted, in which case it is tried again on the next start
+            if (signal.isCanceled() || profile == null || !targetAppDir.isDirectory()) {
+                return;
+            }
+            try {
+                final int movedFileCount = migrate(targetAppDir, profile.username, signal);
+                logger.debug("Downloaded videos moved to " + targetAppDir + ": " + movedFileCount
+                        + " files");
+                if (!signal.isCanceled()) {
+                    prefManager.put(PrefManager.Key.DOWNLOAD_MIGRATION_TARGET, (String) null);
+                }
+            } catch (Exception e) {
+                logger.error(e);
+            }
+        });
+    }
+
+    /**
+     * Move the files of the downloaded videos to a storage volume, unless it is too slow for
+     * them, stopping when it runs out of free storage.
+     *
+     * @param targetAppDir App directory of the volume to move the videos to.
+     * @param username     User the videos belong to.
+     * @param signal       Signal to stop the migration at, leaving the file being copied to be
+     *                     resumed.
+     * @return No of files moved.
+     */
+    public int migrate(@NonNull File targetAppDir, @NonNull String username,
+                       @NonNull CancellationSignal signal) throws IOException {
+        DownloadPlacement.Throughput throughput = placement.getThroughput(targetAppDir);
+        if (throughput == null) {
+            throughput = DownloadPlacement.benchmark(targetAppDir);
+        }
+        if (!throughput.isFastEnough()) {
+            logger.warn("Not moving the downloaded videos to a slow volume: " + throughput);
+            return 0;
+        }
+        final File targetUserDirectory = FileUtil.prepareUserVideoDirectory(targetAppDir,
+                username);
+        final File targetStoreDirectory = FileUtil.getVideoStoreDirectory(targetAppDir);
+        final Set<String> filepaths = new LinkedHashSet<>();
+        for (VideoModel video : db.getAllVideos(null, null)) {
+            if (video.getDownloadedStateOrdinal() != DownloadedState.DOWNLOADED.ordinal() ||
+                    TextUtils.isEmpty(video.getFilePath())) {
+                continue;
+            }
+            final File directory = new File(video.getFilePath()).getParentFile();
+            if (!targetUserDirectory.equals(directory) &&
+                    !targetStoreDirectory.equals(directory)) {
+                filepaths.add(video.getFilePath());
+            }
+        }
+
+        int movedFileCount = 0;
+        for (String filepath : filepaths) {
+            final File source = new File(filepath);
+            // Files on a volume that isn't mounted are moved on the next try
+            if (!source.isFile()) {
+                continue;
+            }
+            final boolean isStored = VideoFileStore.isStored(filepath);
+            final File targetDirectory = isStored ? targetStoreDirectory : targetUserDirectory;
+            targetDirectory.mkdirs();
+            if (targetDirectory.getUsableSpace() <
+                    source.length() + DownloadPlacement.FREE_SPACE_MARGIN_BYTES) {
+                logger.warn("Not enough storage to move the downloaded videos to " + targetAppDir);
+                break;
+            }
+            final File target = new File(targetDirectory, source.getName());
+            final File partial = new File(targetDirectory, source.getName() + PARTIAL_SUFFIX);
+            // The file may have been copied already, before the videos were pointed at it
+            final boolean isCopied = target.isFile() && target.length() == source.length();
+            if (!isCopied && !copyResumable(source, partial, signal)) {
+                break;
+            }
+            // The copy is made without the lock of the store, but the file is only swapped for
+            // the copy while holding it, as when the videos are saved or removed
+            synchronized (store) {
+                if (!isCopied && !partial.renameTo(target)) {
+                    throw new IOException("Unable to rename " + partial + " to " + target);
+                }
+                final Integer updated = db.updateDownloadedVideoFilePath(filepath,
+                        target.getAbsolutePath(), null);
+                if (updated != null && updated > 0) {
+                    if (!source.delete()) {
+                        logger.warn("Delete failed: " + source.getPath());
+                    }
+                    movedFileCount++;
+                } else if (isStored) {
+                    // The videos have been removed in the meantime, but the stored file may be
+                    // shared with other videos on the target volume
+                    store.release(target.getAbsolutePath());
+                } else if (!target.delete()) {
+                    // The videos have been removed in the meantime
+                    logger.warn("Delete failed: " + target.getPath());
+                }
+            }
+        }
+        return movedFileCount;
+    }
+
+    /**
+     * Copy a file to a partial file, carrying on from where a previous copy to it left off. The
+     * end of the partial file is checked against the file first, and the copy is started over if
+     * they differ.
+     *
+     * @return True if the copy is complete and synced to the storage, false if it was cancelled.
+     */
+    public static boolean copyResumable(@NonNull File source, @NonNull File partial,
+                                        @NonNull CancellationSignal signal) throws IOException {
+        final byte[] buffer = new byte[BUFFER_BYTES];
+        try (RandomAccessFile in = new RandomAccessFile(source, "r")) {
+            long offset = partial.isFile() ? partial.length() : 0;
+            if (offset > in.length() || !isTailIntact(in, partial, offset)) {
+                offset = 0;
+            }
+            in.seek(offset);
+            try (FileOutputStream out = new FileOutputStream(partial, offset > 0)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (signal.isCanceled()) {
+                        return false;
+                    }
+                    out.write(buffer, 0, read);
+                }
+                out.getFD().sync();
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTailIntact(@NonNull RandomAccessFile in, @NonNull File partial,
+                                        long length) throws IOException {
+        if (length == 0) {
+            return true;
+        }
+        final int tailLength = (int) Math.min(VERIFIED_TAIL_BYTES, length);
+        final byte[] expected = new byte[tailLength];
+        final byte[] actual = new byte[tailLength];
+        in.seek(length - tailLength);
+        in.readFully(expected);
+        try (RandomAccessFile out = new RandomAccessFile(partial, "r")) {
+            out.seek(length - tailLength);
+            out.readFully(actual);
+        }
+        return Arrays.equals(expected, actual);
+    }
+}
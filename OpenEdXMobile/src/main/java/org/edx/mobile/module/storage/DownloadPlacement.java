@@ -0,0 +1,374 @@
+package org.edx.mobile.module.storage;
+
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.api.ProfileModel;
+import org.edx.mobile.module.prefs.PrefManager;
+import org.edx.mobile.module.prefs.UserPrefs;
+import org.edx.mobile.util.Config;
+import org.edx.mobile.util.FileUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Picks the storage volume to download each video to, from the free storage of the volumes and
+ * their throughput, so that the downloads don't go to a removable storage too slow to play them
+ * back smoothly.
+ * <p>
+ * The write and read throughput of each volume is benchmarked once, in the background, and
+ * saved, as removable storages are told apart by their paths. The write throughput is
+ * {@link #benchmarkWrite measured} first, and the read throughput is {@link #benchmarkRead
+ * measured} in a later session, on the probe file written then, so that it is read from the
+ * storage rather than from the page cache. Until a volume is benchmarked, it is assumed to be
+ * fast enough.
+ */
+@Singleton
+public class DownloadPlacement {
+
+    /**
+     * Least throughput, in KB/s, of a volume for the videos to be downloaded and played back from
+     * it without stuttering.
+     */
+    public static final long MIN_WRITE_KBPS = 2 * 1024;
+    public static final long MIN_READ_KBPS = 4 * 1024;
+
+    /**
+     * Storage to leave free on a volume besides the downloads placed on it.
+     */
+    public static final long FREE_SPACE_MARGIN_BYTES = 50 * 1024 * 1024;
+
+    private static final String PROBE_FILE = ".throughput_probe";
+    private static final int PROBE_SIZE_BYTES = 4 * 1024 * 1024;
+    private static final int PROBE_BUFFER_BYTES = 256 * 1024;
+
+    /**
+     * Throughput measured for a volume.
+     */
+    public static class Throughput {
+        public final long writeKbps;
+        public final long readKbps;
+
+        public Throughput(long writeKbps, long readKbps) {
+            this.writeKbps = writeKbps;
+            this.readKbps = readKbps;
+        }
+
+        public boolean isFastEnough() {
+            return writeKbps >= MIN_WRITE_KBPS && readKbps >= MIN_READ_KBPS;
+        }
+
+        @Override
+        public String toString() {
+            return "write=" + writeKbps + "KB/s, read=" + readKbps + "KB/s";
+        }
+    }
+
+    /**
+     * A storage volume a video may be downloaded to.
+     */
+    @VisibleForTesting
+    public static class Volume {
+        /**
+         * App directory of the volume.
+         */
+        @NonNull
+        public final File directory;
+        public final long freeBytes;
+        /**
+         * Throughput of the volume, or null if it hasn't been benchmarked yet.
+         */
+        @Nullable
+        public final Throughput throughput;
+        /**
+         * Whether the user prefers to download to the volume.
+         */
+        public final boolean isPreferred;
+
+        public Volume(@NonNull File directory, long freeBytes, @Nullable Throughput throughput,
+                      boolean isPreferred) {
+            this.directory = directory;
+            this.freeBytes = freeBytes;
+            this.throughput = throughput;
+            this.isPreferred = isPreferred;
+        }
+
+        boolean isFastEnough() {
+            return throughput == null || throughput.isFastEnough();
+        }
+
+        long getSlowestKbps() {
+            return throughput == null ? Long.MAX_VALUE :
+                    Math.min(throughput.writeKbps, throughput.readKbps);
+        }
+    }
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    // Directories the probe file has been written to in this session, which may still be cached
+    private final Set<String> probedDirectories =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final Config config;
+    @NonNull
+    private final UserPrefs userPrefs;
+    @NonNull
+    private final PrefManager prefManager;
+
+    @Inject
+    public DownloadPlacement(@NonNull Context context, @NonNull Config config,
+                             @NonNull UserPrefs userPrefs) {
+        this.context = context;
+        this.config = config;
+        this.userPrefs = userPrefs;
+        this.prefManager = new PrefManager(context, PrefManager.Pref.APP_INFO);
+    }
+
+    /**
+     * Returns the directory of the logged in user to download videos to, on the volume picked
+     * by {@link #pick}.
+     *
+     * @param requiredBytes No of bytes the downloads need.
+     * @return The directory, or null if no volume is available or no user is logged in.
+     */
+    @Nullable
+    public File getDownloadDirectory(long requiredBytes) {
+        final ProfileModel profile = userPrefs.getProfile();
+        final Volume volume = pick(getVolumes(), requiredBytes);
+        if (volume == null || profile == null) {
+            return null;
+        }
+        return FileUtil.prepareUserVideoDirectory(volume.directory, profile.username);
+    }
+
+    /**
+     * Returns the free storage of the volume picked by {@link #pick} for downloads, which is where
+     * {@link #getDownloadDirectory} puts them.
+     *
+     * @param requiredBytes No of bytes the downloads need.
+     * @return Free bytes of the volume, or 0 if no volume is available.
+     */
+    public long getAvailableBytes(long requiredBytes) {
+        final Volume volume = pick(getVolumes(), requiredBytes);
+        return volume == null ? 0 : volume.freeBytes;
+    }
+
+    /**
+     * @return The volumes videos may be downloaded to, whether or not they have been
+     * benchmarked. Volumes not benchmarked yet are benchmarked in the background.
+     */
+    @NonNull
+    public List<Volume> getVolumes() {
+        final List<Volume> volumes = new ArrayList<>();
+        final File removableStorageAppDir = config.isDownloadToSDCardEnabled() ?
+                FileUtil.getRemovableStorageAppDir(context) : null;
+        final boolean prefersRemovableStorage = removableStorageAppDir != null &&
+                userPrefs.isDownloadToSDCardEnabled();
+        final File externalAppDir = FileUtil.getExternalAppDir(context);
+        if (externalAppDir != null) {
+            volumes.add(createVolume(externalAppDir, !prefersRemovableStorage));
+        }
+        if (removableStorageAppDir != null) {
+            volumes.add(createVolume(removableStorageAppDir, prefersRemovableStorage));
+        }
+        for (Volume volume : volumes) {
+            if (volume.throughput == null) {
+                benchmarkInBackground();
+                break;
+            }
+        }
+        return volumes;
+    }
+
+    @NonNull
+    private Volume createVolume(@NonNull File directory, boolean isPreferred) {
+        return new Volume(directory, directory.getUsableSpace(), getThroughput(directory),
+                isPreferred);
+    }
+
+    /**
+     * Pick the volume to download to. Out of the volumes with enough free storage, the preferred
+     * one is picked unless it is too slow, in which case the fastest one is picked instead. If no
+     * volume has enough free storage, the preferred one is picked all the same, so that the
+     * download fails the way it would without the placement.
+     *
+     * @param volumes       Volumes to pick from.
+     * @param requiredBytes No of bytes the downloads need.
+     * @return The volume, or null if there are no volumes.
+     */
+    @Nullable
+    public static Volume pick(@NonNull List<Volume> volumes, long requiredBytes) {
+        Volume picked = null;
+        Volume preferred = null;
+        for (Volume volume : volumes) {
+            if (volume.isPreferred) {
+                preferred = volume;
+            }
+            if (volume.freeBytes < requiredBytes + FREE_SPACE_MARGIN_BYTES) {
+                continue;
+            }
+            if (picked == null || isBetter(volume, picked)) {
+                picked = volume;
+            }
+        }
+        if (picked != null) {
+            return picked;
+        }
+        return preferred != null ? preferred : volumes.isEmpty() ? null : volumes.get(0);
+    }
+
+    private static boolean isBetter(@NonNull Volume volume, @NonNull Volume than) {
+        if (volume.isFastEnough() != than.isFastEnough()) {
+            return volume.isFastEnough();
+        }
+        if (volume.isFastEnough() && volume.isPreferred != than.isPreferred) {
+            return volume.isPreferred;
+        }
+        return volume.getSlowestKbps() > than.getSlowestKbps();
+    }
+
+    /**
+     * @return The saved throughput of a volume, or null if it hasn't been benchmarked.
+     */
+    @Nullable
+    public Throughput getThroughput(@NonNull File directory) {
+        final long writeKbps = prefManager.getLong(String.format(
+                PrefManager.Key.VOLUME_WRITE_KBPS_FOR_PATH, directory.getAbsolutePath()));
+        final long readKbps = prefManager.getLong(String.format(
+                PrefManager.Key.VOLUME_READ_KBPS_FOR_PATH, directory.getAbsolutePath()));
+        return writeKbps < 0 || readKbps < 0 ? null : new Throughput(writeKbps, readKbps);
+    }
+
+    /**
+     * Benchmark the volumes that haven't been benchmarked yet, on a background thread.
+     */
+    public void benchmarkInBackground() {
+        if (!isScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                final List<File> directories = new ArrayList<>();
+                Collections.addAll(directories, FileUtil.getExternalAppDir(context),
+                        FileUtil.getRemovableStorageAppDir(context));
+                for (File directory : directories) {
+                    if (directory != null && getThroughput(directory) == null) {
+                        benchmark(directory);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error(e);
+            } finally {
+                isScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Carry out the next step of the benchmark of a volume: measure its write throughput, or its
+     * read throughput if the probe file has been written in an earlier session.
+     */
+    private void benchmark(@NonNull File directory) throws IOException {
+        if (probedDirectories.contains(directory.getAbsolutePath())) {
+            return;
+        }
+        final String writeKey = String.format(PrefManager.Key.VOLUME_WRITE_KBPS_FOR_PATH,
+                directory.getAbsolutePath());
+        final String readKey = String.format(PrefManager.Key.VOLUME_READ_KBPS_FOR_PATH,
+                directory.getAbsolutePath());
+        if (prefManager.getLong(writeKey) >= 0) {
+            final long readKbps = benchmarkRead(directory);
+            if (readKbps >= 0) {
+                prefManager.put(readKey, readKbps);
+                logger.debug("Volume " + directory + " benchmarked: " + getThroughput(directory));
+                return;
+            }
+            // The probe file is gone, so write it again
+        }
+        probedDirectories.add(directory.getAbsolutePath());
+        prefManager.put(writeKey, benchmarkWrite(directory));
+    }
+
+    /**
+     * Measure the write throughput of a volume by writing a probe file to it, synced to the
+     * storage. The file is left on the volume for {@link #benchmarkRead}.
+     *
+     * @param directory Directory on the volume to write the probe file to.
+     * @return The write throughput in KB/s.
+     */
+    public static long benchmarkWrite(@NonNull File directory) throws IOException {
+        final File probe = new File(directory, PROBE_FILE);
+        final byte[] buffer = new byte[PROBE_BUFFER_BYTES];
+        final long start = SystemClock.elapsedRealtimeNanos();
+        try (FileOutputStream out = new FileOutputStream(probe)) {
+            for (int written = 0; written < PROBE_SIZE_BYTES; written += buffer.length) {
+                out.write(buffer);
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            probe.delete();
+            throw e;
+        }
+        return toKbps(PROBE_SIZE_BYTES, SystemClock.elapsedRealtimeNanos() - start);
+    }
+
+    /**
+     * Measure the read throughput of a volume by reading the probe file written by
+     * {@link #benchmarkWrite}, which is then deleted. It should be called in a later session than
+     * the file was written in, as the file is likely to be in the page cache until then.
+     *
+     * @param directory Directory on the volume the probe file was written to.
+     * @return The read throughput in KB/s, or -1 if there is no complete probe file.
+     */
+    public static long benchmarkRead(@NonNull File directory) throws IOException {
+        final File probe = new File(directory, PROBE_FILE);
+        if (probe.length() < PROBE_SIZE_BYTES) {
+            probe.delete();
+            return -1;
+        }
+        final byte[] buffer = new byte[PROBE_BUFFER_BYTES];
+        try {
+            final long start = SystemClock.elapsedRealtimeNanos();
+            try (FileInputStream in = new FileInputStream(probe)) {
+                while (in.read(buffer) != -1) {
+                    // Just read through the file
+                }
+            }
+            return toKbps(PROBE_SIZE_BYTES, SystemClock.elapsedRealtimeNanos() - start);
+        } finally {
+            if (probe.exists() && !probe.delete()) {
+                probe.deleteOnExit();
+            }
+        }
+    }
+
+    private static long toKbps(long bytes, long nanos) {
+        return bytes * 1000000000L / 1024 / Math.max(1, nanos);
+    }
+}
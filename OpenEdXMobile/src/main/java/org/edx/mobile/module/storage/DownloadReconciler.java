@@ -0,0 +1,322 @@
+package org.edx.mobile.module.storage;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.api.ProfileModel;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.model.download.NativeDownloadModel;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.module.prefs.LoginPrefs;
+import org.edx.mobile.module.prefs.PrefManager;
+import org.edx.mobile.util.FileUtil;
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * Reconciles the video files on the storage with the downloads in the database, in both
+ * directions: files that no download refers to are deleted, and downloaded videos whose files
+ * have gone missing are marked as online again.
+ * <p>
+ * The paths known to the database are put in a hash set up front, and the download directories
+ * are then walked one entry at a time, so the work is linear in the no of files and downloads.
+ * The store directories of the {@link VideoFileStore} are walked as well, keeping the files that
+ * the videos of any user refer to.
+ */
+@Singleton
+public class DownloadReconciler {
+
+    /**
+     * Least time between two reconciliations run in the background.
+     */
+    public static final long MIN_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Files modified more recently than this are left alone, as they may belong to a download
+     * that has just been enqueued and isn't in the database yet.
+     */
+    public static final long GRACE_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String NO_MEDIA_FILE = ".nomedia";
+
+    /**
+     * Outcome of a reconciliation.
+     */
+    public static class Report {
+        /**
+         * No of files deleted because no download refers to them.
+         */
+        public final int deletedFileCount;
+        /**
+         * No of bytes freed by deleting the files.
+         */
+        public final long reclaimedBytes;
+        /**
+         * No of downloaded videos marked as online because their files have gone missing.
+         */
+        public final int repairedVideoCount;
+
+        Report(int deletedFileCount, long reclaimedBytes, int repairedVideoCount) {
+            this.deletedFileCount = deletedFileCount;
+            this.reclaimedBytes = reclaimedBytes;
+            this.repairedVideoCount = repairedVideoCount;
+        }
+
+        @Override
+        public String toString() {
+            return "deletedFiles=" + deletedFileCount + ", reclaimedBytes=" + reclaimedBytes
+                    + ", repairedVideos=" + repairedVideoCount;
+        }
+    }
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+
+    @NonNull
+    private final Context context;
+    @NonNull
+    private final IDatabase db;
+    @NonNull
+    private final IDownloadManager dm;
+    @NonNull
+    private final LoginPrefs loginPrefs;
+    @NonNull
+    private final VideoFileStore store;
+
+    @Inject
+    public DownloadReconciler(@NonNull Context context, @NonNull IDatabase db,
+                              @NonNull IDownloadManager dm, @NonNull LoginPrefs loginPrefs,
+                              @NonNull VideoFileStore store) {
+        this.context = context;
+        this.db = db;
+        this.dm = dm;
+        this.loginPrefs = loginPrefs;
+        this.store = store;
+    }
+
+    /**
+     * Reconcile the download directories of the logged in user on a background thread, unless
+     * they have been reconciled within the last {@link #MIN_INTERVAL_MS}.
+     */
+    public void reconcileInBackground() {
+        final ProfileModel profile = loginPrefs.getCurrentUserProfile();
+        if (profile == null) {
+            return;
+        }
+        final PrefManager prefManager = new PrefManager(context, PrefManager.Pref.USER_PREF);
+        final long reconciledOn = prefManager.getLong(PrefManager.Key.DOWNLOADS_RECONCILED_ON);
+        final long now = System.currentTimeMillis();
+        if (reconciledOn > 0 && now - reconciledOn < MIN_INTERVAL_MS) {
+            return;
+        }
+        if (!isScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                final Report report = reconcile(getDownloadDirectories(profile.username));
+                prefManager.put(PrefManager.Key.DOWNLOADS_RECONCILED_ON, now);
+                logger.debug("Downloads reconciled: " + report + ", bytes saved by shared files: "
+                        + store.getBytesSaved());
+            } catch (Exception e) {
+                logger.error(e);
+            } finally {
+                isScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Reconcile the given download directories with the downloads in the database. Downloaded
+     * videos are only marked as online if their files were expected in one of the directories,
+     * so the downloads on a removable storage that isn't mounted are kept.
+     *
+     * @param directories Directories the videos are downloaded to.
+     */
+    @NonNull
+    public Report reconcile(@NonNull List<File> directories) throws IOException {
+        // Paths of the files referred to by the downloads, mapped to the downloaded videos
+        final Map<String, List<VideoModel>> downloadedVideosByPath = new HashMap<>();
+        final Set<String> keptPaths = new HashSet<>();
+        // Downloads in progress may not have a path yet, but their files are named after the url
+        final Set<String> keptNames = new HashSet<>();
+        keptNames.add(NO_MEDIA_FILE);
+        // Files being moved to another volume are copied to partial files, to be resumed
+        final boolean isMigrating = !TextUtils.isEmpty(new PrefManager(context,
+                PrefManager.Pref.USER_PREF).getString(PrefManager.Key.DOWNLOAD_MIGRATION_TARGET));
+        for (VideoModel video : db.getAllVideos(null, null)) {
+            if (video.getDownloadedStateOrdinal() == DownloadedState.ONLINE.ordinal()) {
+                continue;
+            }
+            final String path = video.getFilePath();
+            if (!TextUtils.isEmpty(path)) {
+                keptPaths.add(path);
+                if (video.getDownloadedStateOrdinal() == DownloadedState.DOWNLOADED.ordinal()) {
+                    List<VideoModel> videosOfPath = downloadedVideosByPath.get(path);
+                    if (videosOfPath == null) {
+                        videosOfPath = new ArrayList<>();
+                        downloadedVideosByPath.put(path, videosOfPath);
+                    }
+                    videosOfPath.add(video);
+                }
+            }
+            if (!TextUtils.isEmpty(video.getVideoUrl())) {
+                final String name = Sha1Util.SHA1(video.getVideoUrl());
+                keptNames.add(name);
+                if (isMigrating) {
+                    keptNames.add(name + DownloadMigrator.PARTIAL_SUFFIX);
+                }
+            }
+        }
+        for (NativeDownloadModel download : dm.getActiveDownloads()) {
+            if (!TextUtils.isEmpty(download.filepath)) {
+                keptPaths.add(download.filepath);
+            }
+        }
+        // Stored files may be referred to by the videos of the other users
+        for (String path : store.getReferencedPaths()) {
+            keptPaths.add(path);
+            if (isMigrating) {
+                keptNames.add(new File(path).getName() + DownloadMigrator.PARTIAL_SUFFIX);
+            }
+        }
+
+        final Set<String> scannedDirectories = new HashSet<>();
+        final OrphanCollector collector = new OrphanCollector(keptPaths, keptNames,
+                System.currentTimeMillis() - GRACE_PERIOD_MS);
+        for (File directory : directories) {
+            if (directory.isDirectory()) {
+                scannedDirectories.add(directory.getAbsolutePath());
+                forEachFile(directory, collector);
+            }
+        }
+
+        int repairedVideoCount = 0;
+        for (Map.Entry<String, List<VideoModel>> entry : downloadedVideosByPath.entrySet()) {
+            final File file = new File(entry.getKey());
+            if (collector.foundPaths.contains(entry.getKey()) ||
+                    !scannedDirectories.contains(file.getParentFile().getAbsolutePath())) {
+                continue;
+            }
+            for (VideoModel video : entry.getValue()) {
+                repairedVideoCount += db.updateVideoAsOnlineByVideoId(video.getVideoId(), null);
+            }
+        }
+        if (repairedVideoCount > 0) {
+            EventBus.getDefault().post(new DownloadedVideoDeletedEvent());
+        }
+
+        return new Report(collector.deletedFileCount, collector.reclaimedBytes,
+                repairedVideoCount);
+    }
+
+    @NonNull
+    private List<File> getDownloadDirectories(@NonNull String username) {
+        final List<File> directories = new ArrayList<>();
+        final File externalAppDir = FileUtil.getExternalAppDir(context);
+        if (externalAppDir != null) {
+            directories.add(FileUtil.getUserVideoDirectory(externalAppDir, username));
+            directories.add(FileUtil.getVideoStoreDirectory(externalAppDir));
+        }
+        final File removableStorageAppDir = FileUtil.getRemovableStorageAppDir(context);
+        if (removableStorageAppDir != null) {
+            directories.add(FileUtil.getUserVideoDirectory(removableStorageAppDir, username));
+            directories.add(FileUtil.getVideoStoreDirectory(removableStorageAppDir));
+        }
+        return directories;
+    }
+
+    /**
+     * Visit the entries of a directory one at a time, reading them lazily where the platform
+     * allows.
+     */
+    private static void forEachFile(@NonNull File directory, @NonNull FileVisitor visitor)
+            throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory.toPath())) {
+                for (Path entry : entries) {
+                    visitor.visit(entry.toFile());
+                }
+            }
+        } else {
+            final String[] names = directory.list();
+            if (names != null) {
+                for (String name : names) {
+                    visitor.visit(new File(directory, name));
+                }
+            }
+        }
+    }
+
+    private interface FileVisitor {
+        void visit(@NonNull File file);
+    }
+
+    /**
+     * Deletes the files that aren't kept, and keeps track of the kept ones found.
+     */
+    private static class OrphanCollector implements FileVisitor {
+        @NonNull
+        private final Set<String> keptPaths;
+        @NonNull
+        private final Set<String> keptNames;
+        private final long modifiedBefore;
+        @NonNull
+        final Set<String> foundPaths = new HashSet<>();
+        int deletedFileCount;
+        long reclaimedBytes;
+
+        OrphanCollector(@NonNull Set<String> keptPaths, @NonNull Set<String> keptNames,
+                        long modifiedBefore) {
+            this.keptPaths = keptPaths;
+            this.keptNames = keptNames;
+            this.modifiedBefore = modifiedBefore;
+        }
+
+        @Override
+        public void visit(@NonNull File file) {
+            final String path = file.getAbsolutePath();
+            if (keptPaths.contains(path)) {
+                foundPaths.add(path);
+            } else if (!keptNames.contains(file.getName()) &&
+                    file.lastModified() < modifiedBefore) {
+                final long size = FileUtil.getSizeRecursive(file);
+                FileUtil.deleteRecursive(file);
+                if (!file.exists()) {
+                    deletedFileCount++;
+                    reclaimedBytes += size;
+                }
+            }
+        }
+    }
+}
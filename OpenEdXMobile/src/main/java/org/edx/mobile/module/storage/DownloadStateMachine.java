@@ -0,0 +1,598 @@
+package org.edx.mobile.module.storage;
+
+import android.app.DownloadManager;
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.db.DownloadEntry;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.model.download.NativeDownloadModel;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.module.storage.DownloadJournal.Entry;
+import org.edx.mobile.module.storage.DownloadJournal.Operation;
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * Moves the downloads of the videos between their {@link DownloadedState states}, keeping the
+ * download manager, the files and the database consistent with each other:
+ * <pre>
+ * ONLINE --enqueue--> DOWNLOADING --complete--> DOWNLOADED
+ *   ^                      |                        |
+ *   +-------remove---------+-----------remove-------+
+ * </pre>
+ * The transitions that take more than a single write to the database are written ahead to a
+ * {@link DownloadJournal}, so that {@link #recover()} only has to look at the transitions that
+ * were interrupted, instead of scanning all the downloads for inconsistencies.
+ */
+@Singleton
+public class DownloadStateMachine {
+
+    /**
+     * Steps of the transitions, after which a crash leaves them interrupted.
+     */
+    public static final String STEP_BEGUN = "begun";
+    public static final String STEP_ENQUEUED = "enqueued";
+    public static final String STEP_DMID_RECORDED = "dmid_recorded";
+    public static final String STEP_SAVED = "saved";
+    public static final String STEP_DOWNLOADS_REMOVED = "downloads_removed";
+    public static final String STEP_FILE_DELETED = "file_deleted";
+    public static final String STEP_ROW_DELETED = "row_deleted";
+
+    /**
+     * Most time spent on checking the completion of the downloads in progress when recovering,
+     * so that the recovery takes a bounded time however many downloads there are. The rest are
+     * checked when they complete, or on the next start of the app. The files of the completed
+     * downloads are {@link #storeFiles stored} afterwards, as hashing them takes time.
+     */
+    public static final long RECOVERY_BUDGET_MS = 2000;
+
+    /**
+     * Most no of downloads to enqueue in the download manager at the same time.
+     */
+    private static final int MAX_PARALLEL_ENQUEUES = 4;
+
+    private static final String JOURNAL_FILE = "download_journal";
+
+    /**
+     * Notified of the steps of the transitions, for the tests to simulate crashes between them.
+     */
+    @VisibleForTesting
+    public interface StepListener {
+        void onStep(@NonNull String step);
+    }
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+
+    @NonNull
+    private final IDatabase db;
+    @NonNull
+    private final IDownloadManager dm;
+    @NonNull
+    private final VideoFileStore store;
+    @NonNull
+    private final DownloadJournal journal;
+    @Nullable
+    private StepListener stepListener;
+
+    @Inject
+    public DownloadStateMachine(@NonNull Context context, @NonNull IDatabase db,
+                                @NonNull IDownloadManager dm, @NonNull VideoFileStore store) {
+        this(db, dm, store, new DownloadJournal(new File(context.getFilesDir(), JOURNAL_FILE)));
+    }
+
+    @VisibleForTesting
+    public DownloadStateMachine(@NonNull IDatabase db, @NonNull IDownloadManager dm,
+                                @NonNull VideoFileStore store, @NonNull DownloadJournal journal) {
+        this.db = db;
+        this.dm = dm;
+        this.store = store;
+        this.journal = journal;
+    }
+
+    @VisibleForTesting
+    public void setStepListener(@Nullable StepListener stepListener) {
+        this.stepListener = stepListener;
+    }
+
+    /**
+     * @return Whether a download may move from one state to another.
+     */
+    public static boolean canTransition(@NonNull DownloadedState from,
+                                        @NonNull DownloadedState to) {
+        switch (from) {
+            case ONLINE:
+                return to == DownloadedState.DOWNLOADING;
+            case DOWNLOADING:
+                return to == DownloadedState.DOWNLOADED || to == DownloadedState.ONLINE;
+            case DOWNLOADED:
+                return to == DownloadedState.ONLINE;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Enqueue the downloads of videos in the download manager, at most
+     * {@link #MAX_PARALLEL_ENQUEUES} at a time, and save the videos along with their downloads in
+     * the database. Videos sharing the url of a download that already exists are mapped to it.
+     *
+     * @param videos            Videos to save.
+     * @param videosToDownload  Videos to download, one for each url.
+     * @param downloadDirectory Directory to download to, or null if it isn't available, in which
+     *                          case the videos are saved without downloading them.
+     * @param wifiOnly          Whether to download only over Wi-Fi.
+     * @return No of videos that are being downloaded.
+     */
+    public int enqueue(@NonNull List<? extends VideoModel> videos,
+                       @NonNull Collection<? extends VideoModel> videosToDownload,
+                       @Nullable File downloadDirectory, boolean wifiOnly) {
+        // Look up the downloads already marked for any of the urls at once
+        final Map<String, VideoModel> videosByExistingUrl = new HashMap<>();
+        if (!videosToDownload.isEmpty()) {
+            final List<String> urls = new ArrayList<>();
+            for (VideoModel video : videosToDownload) {
+                urls.add(video.getVideoUrl());
+            }
+            for (VideoModel video : db.getVideosByVideoUrls(urls, null)) {
+                if (video.getDmId() >= 0 && !videosByExistingUrl.containsKey(video.getVideoUrl())) {
+                    videosByExistingUrl.put(video.getVideoUrl(), video);
+                }
+            }
+        }
+
+        // There is no any download ever marked for the rest of the urls, so add them
+        final List<VideoModel> newVideos = new ArrayList<>();
+        if (downloadDirectory != null) {
+            for (VideoModel video : videosToDownload) {
+                if (!videosByExistingUrl.containsKey(video.getVideoUrl())) {
+                    newVideos.add(video);
+                }
+            }
+        }
+        final List<String> videoIds = new ArrayList<>();
+        final List<String> newUrls = new ArrayList<>();
+        for (VideoModel video : videos) {
+            videoIds.add(video.getVideoId());
+        }
+        for (VideoModel video : newVideos) {
+            newUrls.add(video.getVideoUrl());
+        }
+        // Saving the videos alone is a single transaction, which needs no journaling
+        final Entry entry = newVideos.isEmpty() ? null : begin(Operation.ENQUEUE, null, videoIds,
+                newUrls, Collections.<String>emptyList(), Collections.<Long>emptyList());
+        final Map<String, NativeDownloadModel> newDownloads = enqueueDownloads(entry, newVideos,
+                downloadDirectory, wifiOnly);
+
+        // Map the download info to the videos, and save all of them at once
+        final List<VideoModel> downloads = new ArrayList<>();
+        for (VideoModel video : videos) {
+            if (video.isVideoForWebOnly()) {
+                continue;
+            }
+            final VideoModel videoByUrl = videosByExistingUrl.get(video.getVideoUrl());
+            final NativeDownloadModel download = newDownloads.get(video.getVideoUrl());
+            if (videoByUrl != null) {
+                // download for this URL already exists, just map download info to given video
+                video.setDownloadInfo(videoByUrl);
+                downloads.add(video);
+            } else if (download != null) {
+                // copy download info
+                video.setDownloadingInfo(download);
+                downloads.add(video);
+            }
+        }
+        final int noOfRows = db.addDownloads(videos, downloads, null);
+        logger.debug("Video download info updated for " + noOfRows + " videos");
+        onStep(STEP_SAVED);
+        commit(entry);
+
+        return downloads.size();
+    }
+
+    /**
+     * @return The downloads that have been enqueued, by their urls.
+     */
+    @NonNull
+    private Map<String, NativeDownloadModel> enqueueDownloads(@Nullable Entry entry,
+                                                              @NonNull List<VideoModel> videos,
+                                                              @Nullable File downloadDirectory,
+                                                              boolean wifiOnly) {
+        final Map<String, NativeDownloadModel> downloads = new HashMap<>();
+        if (videos.isEmpty() || downloadDirectory == null) {
+            return downloads;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(MAX_PARALLEL_ENQUEUES, videos.size()));
+        try {
+            final List<Future<NativeDownloadModel>> futures = new ArrayList<>();
+            for (final VideoModel video : videos) {
+                futures.add(executor.submit(() -> {
+                    long dmid = dm.addDownload(downloadDirectory, video.getVideoUrl(), wifiOnly,
+                            video.getTitle(), video.getEnrollmentId());
+                    //Download did not start for the video because of an issue in DownloadManager
+                    return dmid == -1 ? null : dm.getDownload(dmid);
+                }));
+            }
+            for (int i = 0; i < videos.size(); i++) {
+                try {
+                    final NativeDownloadModel download = futures.get(i).get();
+                    if (download != null) {
+                        onStep(STEP_ENQUEUED);
+                        if (entry != null) {
+                            try {
+                                journal.addDmid(entry, download.dmid);
+                            } catch (IOException e) {
+                                logger.error(e);
+                            }
+                        }
+                        onStep(STEP_DMID_RECORDED);
+                        downloads.put(videos.get(i).getVideoUrl(), download);
+                    }
+                } catch (ExecutionException e) {
+                    logger.error(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.error(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+        return downloads;
+    }
+
+    /**
+     * Mark the download of the videos of a download as complete, along with the info of its
+     * file, if the download manager has completed it. The file is then moved to the
+     * {@link VideoFileStore}, or deleted in favour of a stored file with the same content, on a
+     * background thread, as hashing it takes time.
+     *
+     * @return One of the videos of the download, or null if it isn't complete, or has been
+     * marked already.
+     */
+    @Nullable
+    public VideoModel complete(long dmId) {
+        final DownloadEntry e = markComplete(dmId);
+        if (e != null) {
+            final List<String> filepaths = Collections.singletonList(e.filepath);
+            backgroundExecutor.execute(() -> storeFiles(filepaths));
+        }
+        return e;
+    }
+
+    /**
+     * Wait for the files of the completed downloads to be stored.
+     */
+    @VisibleForTesting
+    public void awaitStoredFiles() throws InterruptedException, ExecutionException {
+        backgroundExecutor.submit(() -> { }).get();
+    }
+
+    /**
+     * Mark a download as complete, leaving its file where it has been downloaded to be
+     * {@link #storeFiles stored} afterwards.
+     */
+    @Nullable
+    private DownloadEntry markComplete(long dmId) {
+        final NativeDownloadModel nm = dm.getDownload(dmId);
+        if (nm == null || nm.status != DownloadManager.STATUS_SUCCESSFUL) {
+            // download not yet successful
+            logger.debug("Download not yet completed");
+            return null;
+        }
+        final DownloadEntry e = (DownloadEntry) db.getDownloadEntryByDmId(dmId, null);
+        if (e == null || !canTransition(e.downloaded, DownloadedState.DOWNLOADED)) {
+            return null;
+        }
+        e.downloaded = DownloadedState.DOWNLOADED;
+        e.filepath = nm.filepath;
+        if (e.size <= 0) {
+            e.size = nm.size;
+        }
+        e.downloadedOn = System.currentTimeMillis();
+        // update file duration
+        if (e.duration == 0) {
+            try {
+                MediaMetadataRetriever r = new MediaMetadataRetriever();
+                FileInputStream in = new FileInputStream(new File(e.filepath));
+                r.setDataSource(in.getFD());
+                int duration = Integer.parseInt(
+                        r.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+                e.duration = duration / 1000;
+                logger.debug("Duration updated to : " + duration);
+                in.close();
+            } catch (Exception ex) {
+                logger.error(ex);
+            }
+        }
+        // A single write to the database, which needs no journaling
+        db.updateDownloadCompleteInfoByDmId(dmId, e, null);
+        return e;
+    }
+
+    /**
+     * Remove videos from the database, along with their downloads and files. Files in the
+     * {@link VideoFileStore} are only deleted once no video of any user refers to them.
+     *
+     * @param username        Hashed username the videos belong to, or null for the logged in
+     *                        user.
+     * @param removeDownloads Whether to remove the downloads and files of the videos, or just the
+     *                        videos, as when other videos share their downloads.
+     * @return No of videos removed.
+     */
+    public int remove(@NonNull List<? extends VideoModel> videos, @Nullable String username,
+                      boolean removeDownloads) {
+        final List<String> videoIds = new ArrayList<>();
+        final List<String> filepaths = new ArrayList<>();
+        final List<Long> dmids = new ArrayList<>();
+        for (VideoModel video : videos) {
+            videoIds.add(video.getVideoId());
+            if (removeDownloads) {
+                dmids.add(video.getDmId());
+                if (!TextUtils.isEmpty(video.getFilePath())) {
+                    filepaths.add(video.getFilePath());
+                }
+            }
+        }
+        final Entry entry = begin(Operation.REMOVE, username, videoIds,
+                Collections.<String>emptyList(), filepaths, dmids);
+        final int removed = removeSteps(videoIds, username, filepaths, dmids);
+        commit(entry);
+        return removed;
+    }
+
+    private int removeSteps(@NonNull List<String> videoIds, @Nullable String username,
+                            @NonNull List<String> filepaths, @NonNull List<Long> dmids) {
+        if (!dmids.isEmpty()) {
+            final long[] dmidArray = new long[dmids.size()];
+            for (int i = 0; i < dmidArray.length; i++) {
+                dmidArray[i] = dmids.get(i);
+            }
+            final int downloadsRemoved = dm.removeDownloads(dmidArray);
+            logger.debug("Number of downloads removed by Download Manager: " + downloadsRemoved);
+        }
+        onStep(STEP_DOWNLOADS_REMOVED);
+        final List<String> storedFilepaths = new ArrayList<>();
+        for (String filepath : filepaths) {
+            if (VideoFileStore.isStored(filepath)) {
+                storedFilepaths.add(filepath);
+                continue;
+            }
+            deleteFile(filepath);
+            onStep(STEP_FILE_DELETED);
+        }
+        int removed = 0;
+        for (String videoId : videoIds) {
+            final DownloadEntry video = new DownloadEntry();
+            video.videoId = videoId;
+            final Integer count = username == null ? db.deleteVideoByVideoId(video, null) :
+                    db.deleteVideoByVideoId(video, username, null);
+            if (count != null) {
+                removed += count;
+            }
+            onStep(STEP_ROW_DELETED);
+        }
+        // Stored files are released once the videos no longer refer to them
+        for (String filepath : storedFilepaths) {
+            store.release(filepath);
+            onStep(STEP_FILE_DELETED);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes the physical file identified by given absolute file path.
+     * DownloadManager actually deletes the physical file when remove method is called.
+     * So, this method might not be required for removing downloads.
+     *
+     * @param filepath The file to delete
+     */
+    private void deleteFile(@NonNull String filepath) {
+        final File file = new File(filepath);
+        if (file.exists() && !file.delete()) {
+            logger.warn("Delete failed: " + file.getPath());
+        }
+    }
+
+    /**
+     * Run {@link #recover()} on a background thread, followed by {@link #storeFiles} for the
+     * files of the downloads it has marked as complete.
+     */
+    public void recoverInBackground() {
+        backgroundExecutor.execute(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                final List<String> filepaths = recover();
+                if (!filepaths.isEmpty()) {
+                    backgroundExecutor.execute(() -> storeFiles(filepaths));
+                }
+            } catch (Exception e) {
+                logger.error(e);
+            }
+        });
+    }
+
+    /**
+     * Complete or roll back the transitions interrupted in the previous sessions of the app, and
+     * then mark the downloads the download manager has completed in the meantime as complete,
+     * for up to {@link #RECOVERY_BUDGET_MS}. Their files are left where they have been
+     * downloaded, as hashing them would take most of the budget.
+     *
+     * @return Paths of the files of the downloads marked as complete, to {@link #storeFiles store}
+     * afterwards.
+     */
+    @NonNull
+    public List<String> recover() throws IOException {
+        for (Entry entry : journal.getPendingEntries()) {
+            switch (entry.operation) {
+                case ENQUEUE:
+                    rollBackEnqueue(entry);
+                    break;
+                case REMOVE:
+                    // Removal is carried out again, as each of its steps can be repeated
+                    removeSteps(entry.videoIds, entry.username, entry.filepaths, entry.dmids);
+                    EventBus.getDefault().post(new DownloadedVideoDeletedEvent());
+                    break;
+            }
+            journal.commit(entry);
+            logger.debug("Recovered interrupted download transition: " + entry.operation);
+        }
+
+        final long deadline = SystemClock.elapsedRealtime() + RECOVERY_BUDGET_MS;
+        final List<String> filepaths = new ArrayList<>();
+        final List<Long> dmids = db.getAllDownloadingVideosDmidList(null);
+        if (dmids == null) {
+            return filepaths;
+        }
+        for (Long dmid : new LinkedHashSet<>(dmids)) {
+            if (SystemClock.elapsedRealtime() > deadline) {
+                break;
+            }
+            final DownloadEntry completed = markComplete(dmid);
+            if (completed != null) {
+                filepaths.add(completed.filepath);
+                EventBus.getDefault().post(new DownloadCompletedEvent());
+            }
+        }
+        return filepaths;
+    }
+
+    /**
+     * Move the files of completed downloads to the {@link VideoFileStore}, pointing their videos
+     * at the stored files, or delete them in favour of stored files with the same content. A file
+     * whose video has been removed in the meantime is gone, and is skipped.
+     *
+     * @param filepaths Paths the files have been downloaded to.
+     */
+    public void storeFiles(@NonNull List<String> filepaths) {
+        for (String filepath : filepaths) {
+            final File file = new File(filepath);
+            if (!file.isFile() || VideoFileStore.isStored(filepath)) {
+                continue;
+            }
+            // Hashed without holding the lock, as the file isn't shared until it is stored
+            final String sha1;
+            try {
+                sha1 = VideoFileStore.hash(file);
+            } catch (IOException ex) {
+                logger.error(ex);
+                continue;
+            }
+            synchronized (store) {
+                if (!file.isFile()) {
+                    continue;
+                }
+                try {
+                    final File storedFile = store.put(file, sha1);
+                    if (storedFile.equals(file)) {
+                        continue;
+                    }
+                    db.updateDownloadedVideoFilePath(filepath, storedFile.getAbsolutePath(), null);
+                    if (file.exists() && !file.delete()) {
+                        logger.warn("Delete failed: " + file.getPath());
+                    }
+                } catch (IOException ex) {
+                    logger.error(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the downloads of an interrupted enqueue that haven't been saved in the database.
+     * Downloads whose ids didn't make it to the journal are matched by the names of their files,
+     * which are derived from their urls.
+     */
+    private void rollBackEnqueue(@NonNull Entry entry) {
+        final Set<Long> dmids = new HashSet<>(entry.dmids);
+        final Set<String> fileNames = new HashSet<>();
+        for (String url : entry.urls) {
+            fileNames.add(Sha1Util.SHA1(url));
+        }
+        if (!fileNames.isEmpty()) {
+            for (NativeDownloadModel download : dm.getActiveDownloads()) {
+                if (!TextUtils.isEmpty(download.filepath) &&
+                        fileNames.contains(new File(download.filepath).getName())) {
+                    dmids.add(download.dmid);
+                }
+            }
+        }
+        for (long dmid : dmids) {
+            final Integer count = db.getVideoCountBydmId(dmid, null);
+            if (count != null && count == 0) {
+                dm.removeDownloads(dmid);
+            }
+        }
+    }
+
+    /**
+     * @return The journal entry of a transition, or null if the journal couldn't be written, in
+     * which case the transition is carried out all the same, as losing the journal only loses
+     * the recovery from a crash.
+     */
+    @Nullable
+    private Entry begin(@NonNull Operation operation, @Nullable String username,
+                        @NonNull List<String> videoIds, @NonNull List<String> urls,
+                        @NonNull List<String> filepaths, @NonNull List<Long> dmids) {
+        Entry entry = null;
+        try {
+            entry = journal.begin(operation, username, videoIds, urls, filepaths, dmids);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        onStep(STEP_BEGUN);
+        return entry;
+    }
+
+    private void commit(@Nullable Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        try {
+            journal.commit(entry);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+    private void onStep(@NonNull String step) {
+        if (stepListener != null) {
+            stepListener.onStep(step);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.edx.mobile.module.storage;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.PluralsRes;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.R;
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.model.db.DownloadEntry.WatchedState;
+import org.edx.mobile.module.db.DataCallback;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.prefs.UserPrefs;
+import org.edx.mobile.util.MemoryUtil;
+import org.edx.mobile.util.ResourceUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the downloaded videos within the storage quota set by the user and the free storage of
+ * the volume the {@link DownloadPlacement} downloads to. Room for new downloads is made by
+ * removing the videos that have been watched fully, the least recently played first.
+ * <p>
+ * The videos to remove are planned ahead in an {@link EvictionReport}, which can be shown as a
+ * dry run before any of them is actually {@link #evict evicted}. Both go through the database and
+ * the file system, so they are done in the background.
+ */
+@Singleton
+public class DownloadStorageManager {
+
+    /**
+     * Videos that would be removed to make room for a download, along with the room they free.
+     */
+    public static class EvictionReport {
+        /**
+         * Videos to remove, the least recently played first. Videos sharing a file are removed
+         * together.
+         */
+        @NonNull
+        public final List<VideoModel> videos;
+        /**
+         * No of files the videos are stored in.
+         */
+        public final int fileCount;
+        /**
+         * No of bytes that have to be freed for the download.
+         */
+        public final long requiredBytes;
+        /**
+         * No of bytes removing the videos frees.
+         */
+        public final long reclaimedBytes;
+        /**
+         * Whether the room is required because of the storage quota rather than the free storage.
+         */
+        public final boolean isLimitedByQuota;
+
+        EvictionReport(@NonNull List<VideoModel> videos, int fileCount, long requiredBytes,
+                       long reclaimedBytes, boolean isLimitedByQuota) {
+            this.videos = videos;
+            this.fileCount = fileCount;
+            this.requiredBytes = requiredBytes;
+            this.reclaimedBytes = reclaimedBytes;
+            this.isLimitedByQuota = isLimitedByQuota;
+        }
+
+        /**
+         * @return Whether removing the videos makes enough room for the download.
+         */
+        public boolean isSufficient() {
+            return reclaimedBytes >= requiredBytes;
+        }
+
+        public boolean isEmpty() {
+            return videos.isEmpty();
+        }
+
+        /**
+         * @return Text telling how many videos have been removed and how much room that freed.
+         */
+        @NonNull
+        public CharSequence getSummary(@NonNull Context context) {
+            return getSummary(context, R.plurals.download_room_made);
+        }
+
+        /**
+         * @return Text telling how many videos are going to be removed and how much room that
+         * frees, to confirm before they are.
+         */
+        @NonNull
+        public CharSequence getPlanSummary(@NonNull Context context) {
+            return getSummary(context, R.plurals.download_room_to_make);
+        }
+
+        @NonNull
+        private CharSequence getSummary(@NonNull Context context, @PluralsRes int pluralsResId) {
+            final Map<String, String> keyValMap = new HashMap<>();
+            keyValMap.put("count", String.valueOf(fileCount));
+            keyValMap.put("size", MemoryUtil.format(context, reclaimedBytes));
+            return ResourceUtil.getFormattedStringForQuantity(context.getResources(),
+                    pluralsResId, fileCount, keyValMap);
+        }
+    }
+
+    @NonNull
+    private final DownloadPlacement placement;
+    @NonNull
+    private final IDatabase db;
+    @NonNull
+    private final IStorage storage;
+    @NonNull
+    private final UserPrefs userPrefs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @Inject
+    public DownloadStorageManager(@NonNull DownloadPlacement placement, @NonNull IDatabase db,
+                                  @NonNull IStorage storage, @NonNull UserPrefs userPrefs) {
+        this.placement = placement;
+        this.db = db;
+        this.storage = storage;
+        this.userPrefs = userPrefs;
+    }
+
+    /**
+     * Plan in the background which videos to remove to make room for a download, without
+     * removing any of them.
+     *
+     * @param bytesToDownload Size of the download.
+     * @param callback        Receives the {@link EvictionReport}.
+     */
+    public void planEviction(long bytesToDownload,
+                             @NonNull DataCallback<EvictionReport> callback) {
+        executor.execute(() -> {
+            try {
+                callback.sendResult(plan(db.getAllVideos(null, null),
+                        db.getVideoFileRefCounts(null), bytesToDownload,
+                        userPrefs.getDownloadStorageQuota(),
+                        placement.getAvailableBytes(bytesToDownload)));
+            } catch (Exception ex) {
+                callback.sendException(ex);
+            }
+        });
+    }
+
+    /**
+     * Remove the videos of a report in the background, if removing them makes enough room.
+     *
+     * @param callback Receives whether there is enough room for the download now.
+     */
+    public void evict(@NonNull EvictionReport report, @NonNull DataCallback<Boolean> callback) {
+        executor.execute(() -> {
+            try {
+                if (report.isSufficient() && !report.isEmpty()) {
+                    storage.removeDownloads(report.videos);
+                }
+                callback.sendResult(report.isSufficient());
+            } catch (Exception ex) {
+                callback.sendException(ex);
+            }
+        });
+    }
+
+    /**
+     * Plan which videos to remove to make room for a download. The videos are planned by the
+     * files they are stored in, and a file only counts as freed if all the videos referring to
+     * it, of any user, are removed, as the {@link VideoFileStore} keeps it otherwise.
+     *
+     * @param videos          All the videos of the user.
+     * @param refCounts       No of videos of any user referring to each stored file, by its path.
+     * @param bytesToDownload Size of the download.
+     * @param quota           Most no of bytes the downloaded videos may take up, 0 if unlimited.
+     * @param availableBytes  Free storage of the volume the download goes to.
+     */
+    @NonNull
+    public static EvictionReport plan(@NonNull List<VideoModel> videos,
+                                      @NonNull Map<String, Integer> refCounts,
+                                      long bytesToDownload, long quota, long availableBytes) {
+        // Videos downloaded from the same url, or with the same content, share a file
+        final Map<String, List<VideoModel>> videosByFile = new LinkedHashMap<>();
+        for (VideoModel video : videos) {
+            if (video.getDownloadedStateOrdinal() == DownloadedState.ONLINE.ordinal()) {
+                continue;
+            }
+            final String file = video.getFilePath() != null ? video.getFilePath() :
+                    video.getVideoUrl();
+            if (file == null) {
+                continue;
+            }
+            List<VideoModel> videosOfFile = videosByFile.get(file);
+            if (videosOfFile == null) {
+                videosOfFile = new ArrayList<>();
+                videosByFile.put(file, videosOfFile);
+            }
+            videosOfFile.add(video);
+        }
+
+        long usedBytes = 0;
+        final List<List<VideoModel>> candidates = new ArrayList<>();
+        for (Map.Entry<String, List<VideoModel>> entry : videosByFile.entrySet()) {
+            final List<VideoModel> videosOfFile = entry.getValue();
+            usedBytes += Math.max(0, videosOfFile.get(0).getSize());
+            final Integer refCount = refCounts.get(entry.getKey());
+            if (isEvictable(videosOfFile) &&
+                    (refCount == null || refCount <= videosOfFile.size())) {
+                candidates.add(videosOfFile);
+            }
+        }
+
+        final long bytesOverStorage = bytesToDownload - availableBytes;
+        final long bytesOverQuota = quota > 0 ? usedBytes + bytesToDownload - quota : 0;
+        final long requiredBytes = Math.max(0, Math.max(bytesOverStorage, bytesOverQuota));
+
+        Collections.sort(candidates, (first, second) ->
+                Long.compare(getLastPlayedOn(first), getLastPlayedOn(second)));
+        final List<VideoModel> evictedVideos = new ArrayList<>();
+        int fileCount = 0;
+        long reclaimedBytes = 0;
+        for (List<VideoModel> videosOfFile : candidates) {
+            if (reclaimedBytes >= requiredBytes) {
+                break;
+            }
+            evictedVideos.addAll(videosOfFile);
+            fileCount++;
+            reclaimedBytes += Math.max(0, videosOfFile.get(0).getSize());
+        }
+        return new EvictionReport(evictedVideos, fileCount, requiredBytes, reclaimedBytes,
+                bytesOverQuota > bytesOverStorage);
+    }
+
+    /**
+     * @return Whether the file of the given videos may be removed, i.e. it has been downloaded,
+     * and all the videos using it have been watched fully.
+     */
+    private static boolean isEvictable(@NonNull List<VideoModel> videosOfFile) {
+        for (VideoModel video : videosOfFile) {
+            if (video.getDownloadedStateOrdinal() != DownloadedState.DOWNLOADED.ordinal() ||
+                    video.getWatchedStateOrdinal() != WatchedState.WATCHED.ordinal()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The time any of the given videos was last played, or downloaded if it has never
+     * been played since the time is tracked.
+     */
+    private static long getLastPlayedOn(@NonNull List<VideoModel> videosOfFile) {
+        long lastPlayedOn = 0;
+        for (VideoModel video : videosOfFile) {
+            lastPlayedOn = Math.max(lastPlayedOn, video.getLastPlayedOn() > 0 ?
+                    video.getLastPlayedOn() : video.getDownloadedOn());
+        }
+        return lastPlayedOn;
+    }
+}
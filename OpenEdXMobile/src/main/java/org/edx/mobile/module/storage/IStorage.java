@@ -23,6 +23,15 @@ public interface IStorage {
      */
     long addDownload(VideoModel model);
 
+    /**
+     * Adds Videos for Downloading in bulk. The existing downloads of all the videos are looked up
+     * at once, the new ones are enqueued in Native Download Manager a few at a time, and the
+     * Database is updated in a single transaction.
+     * @param models
+     * @return no of videos that were added to download
+     */
+    int addDownloads(@NonNull List<? extends VideoModel> models);
+
     /**
      * Removes a Video from the database as well as NativeDownloadManager
      * and removing the file stored in DB
@@ -153,6 +162,4 @@ public interface IStorage {
      * @param watchedStateCallback
      */
     void markVideoPlaying(DownloadEntry videoModel, DataCallback<Integer> watchedStateCallback);
-
-    void repairDownloadCompletionData();
 }
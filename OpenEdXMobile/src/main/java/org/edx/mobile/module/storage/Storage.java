@@ -1,8 +1,6 @@
 package org.edx.mobile.module.storage;
 
-import android.app.DownloadManager;
 import android.content.Context;
-import android.media.MediaMetadataRetriever;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.text.TextUtils;
@@ -10,11 +8,9 @@ import android.text.TextUtils;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
-import org.edx.mobile.core.IEdxEnvironment;
 import org.edx.mobile.course.CourseAPI;
 import org.edx.mobile.logger.Logger;
 import org.edx.mobile.model.VideoModel;
-import org.edx.mobile.model.api.ProfileModel;
 import org.edx.mobile.model.api.VideoResponseModel;
 import org.edx.mobile.model.course.CourseComponent;
 import org.edx.mobile.model.course.VideoBlockModel;
@@ -24,19 +20,21 @@ import org.edx.mobile.module.db.DataCallback;
 import org.edx.mobile.module.db.DatabaseModelFactory;
 import org.edx.mobile.module.db.IDatabase;
 import org.edx.mobile.module.db.impl.DatabaseFactory;
-import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.module.download.DownloadProgressHub;
 import org.edx.mobile.module.prefs.LoginPrefs;
 import org.edx.mobile.module.prefs.UserPrefs;
 import org.edx.mobile.module.prefs.VideoPrefs;
 import org.edx.mobile.util.Config;
-import org.edx.mobile.util.FileUtil;
 import org.edx.mobile.util.NetworkUtil;
 import org.edx.mobile.util.Sha1Util;
 import org.edx.mobile.view.BulkDownloadFragment;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.greenrobot.event.EventBus;
 
@@ -48,7 +46,11 @@ public class Storage implements IStorage {
     @Inject
     private IDatabase db;
     @Inject
-    private IDownloadManager dm;
+    private DownloadStateMachine stateMachine;
+    @Inject
+    private DownloadPlacement placement;
+    @Inject
+    private DownloadProgressHub progressHub;
     @Inject
     private UserPrefs pref;
     @Inject
@@ -60,89 +62,58 @@ public class Storage implements IStorage {
     @Inject
     private VideoPrefs videoPrefs;
 
-    @Inject
-    protected IEdxEnvironment environment;
-
     private final Logger logger = new Logger(getClass().getName());
 
 
     public long addDownload(VideoModel model) {
-        if(model.getVideoUrl()==null||model.getVideoUrl().length()<=0){
-            return -1;
-        }
-
-        VideoModel videoByUrl = db.getVideoByVideoUrl(model.getVideoUrl(), null);
-
-        db.addVideoData(model, null);
-
-        if(model.isVideoForWebOnly())
-            return -1;  //we may need to return different error code.
-                        //but for now we show same generic error message
-        //IVideoModel videoById = db.getVideoEntryByVideoId(model.getVideoId(), null);
-
-        if (videoByUrl == null || videoByUrl.getDmId() < 0) {
-            boolean downloadPreference = pref.isDownloadOverWifiOnly();
-            if(NetworkUtil.isOnZeroRatedNetwork(context, config)){
-                //If the device has zero rated network, then allow downloading
-                //on mobile network even if user has "Only on wifi" settings as ON
-                downloadPreference = false;
-            }
+        return addDownloads(Collections.singletonList(model)) > 0 ? model.getDmId() : -1;
+    }
 
-            // Fail the download if download directory isn't available
-            final File downloadDirectory = FileUtil.getDownloadDirectory(context, environment);
-            if (downloadDirectory == null) return -1;
-
-            // there is no any download ever marked for this URL
-            // so, add a download and map download info to given video
-            long dmid = dm.addDownload(downloadDirectory, model.getVideoUrl(),
-                    downloadPreference, model.getTitle());
-            if(dmid==-1){
-                //Download did not start for the video because of an issue in DownloadManager
-                return -1;
+    @Override
+    public int addDownloads(@NonNull List<? extends VideoModel> models) {
+        // Videos without a url can't be downloaded, nor are they saved
+        final List<VideoModel> videos = new ArrayList<>();
+        // The first video of each url to download, as more than one video may share a url
+        final Map<String, VideoModel> videosByUrl = new LinkedHashMap<>();
+        for (VideoModel model : models) {
+            if (TextUtils.isEmpty(model.getVideoUrl())) {
+                continue;
             }
-            NativeDownloadModel download = dm.getDownload(dmid);
-            if(download!=null){
-                // copy download info
-                model.setDownloadingInfo(download);
+            videos.add(model);
+            // Web only videos are saved, but not downloaded
+            if (!model.isVideoForWebOnly() && !videosByUrl.containsKey(model.getVideoUrl())) {
+                videosByUrl.put(model.getVideoUrl(), model);
             }
-        } else {
-            // download for this URL already exists, just map download info to given video
-            model.setDownloadInfo(videoByUrl);
+        }
+        if (videos.isEmpty()) {
+            return 0;
         }
 
-        db.updateDownloadingVideoInfoByVideoId(model, new DataCallback<Integer>() {
-            @Override
-            public void onResult(Integer noOfRows) {
-                if (noOfRows > 1) {
-                    logger.warn("Should have updated only one video, " +
-                            "but seems more than one videos are updated");
-                }
-                logger.debug("Video download info updated for " + noOfRows + " videos");
-            }
-
-            @Override
-            public void onFail(Exception ex) {
-                logger.error(ex);
-            }
-        });
-
-        return model.getDmId();
+        boolean downloadPreference = pref.isDownloadOverWifiOnly();
+        if (NetworkUtil.isOnZeroRatedNetwork(context, config)) {
+            //If the device has zero rated network, then allow downloading
+            //on mobile network even if user has "Only on wifi" settings as ON
+            downloadPreference = false;
+        }
+        // Fail the downloads if download directory isn't available
+        long requiredBytes = 0;
+        for (VideoModel model : videosByUrl.values()) {
+            requiredBytes += Math.max(0, model.getSize());
+        }
+        final File downloadDirectory = videosByUrl.isEmpty() ? null :
+                placement.getDownloadDirectory(requiredBytes);
+        return stateMachine.enqueue(videos, videosByUrl.values(), downloadDirectory,
+                downloadPreference);
     }
 
     @Override
     public int removeDownload(VideoModel model) {
         // FIXME: Refactor this function to use the list variant of removeDownload function below.
         int count = db.getVideoCountByVideoUrl(model.getVideoUrl(), null);
-        if (count <= 1) {
-            // if only one video exists, then mark it as DELETED
-            // Also, remove its downloaded file
-            dm.removeDownloads(model.getDmId());
-
-            deleteFile(model.getFilePath());
-        }
-
-        // anyways, we mark the video as DELETED
-        int videosDeleted = db.deleteVideoByVideoId(model, null);
+        // If only one video uses the download, remove the download and its file along with the
+        // video, otherwise just the video
+        int videosDeleted = stateMachine.remove(Collections.singletonList(model), null,
+                count <= 1);
         // Reset the state of Videos Bulk Download view whenever a delete happens
         videoPrefs.setBulkDownloadSwitchState(BulkDownloadFragment.SwitchState.DEFAULT, model.getEnrollmentId());
         EventBus.getDefault().post(new DownloadedVideoDeletedEvent());
@@ -152,7 +123,7 @@ public class Storage implements IStorage {
     @Override
     public int removeDownloads(List<VideoModel> modelList) {
         final int deletedVideos = removeDownloadsFromApp(modelList, null);
-        logger.debug("Number of downloads removed by Download Manager: " + deletedVideos);
+        logger.debug("Number of videos removed: " + deletedVideos);
         EventBus.getDefault().post(new DownloadedVideoDeletedEvent());
         return deletedVideos;
     }
@@ -184,56 +155,8 @@ public class Storage implements IStorage {
         if (result == null || result.size() <= 0) {
             return 0;
         }
-        // Remove all downloads from NativeDownloadManager
-        final long[] videoIds = new long[result.size()];
-        for (int i = 0; i < result.size(); i++) {
-            videoIds[i] = result.get(i).getDmId();
-        }
-        final int downloadsRemoved = dm.removeDownloads(videoIds);
-        // Remove all downloads from db
-        VideoModel model;
-        for (int i = 0; i < result.size(); i++) {
-            model = result.get(i);
-            if (username == null) {
-                db.deleteVideoByVideoId(model, null);
-            } else {
-                db.deleteVideoByVideoId(model, username, null);
-            }
-            deleteFile(model.getFilePath());
-        }
-        return downloadsRemoved;
-    }
-
-    /**
-     * Deletes the physical file identified by given absolute file path.
-     * Returns true if delete succeeds or if file does NOT exist, false otherwise.
-     * DownloadManager actually deletes the physical file when remove method is called.
-     * So, this method might not be required for removing downloads.
-     * @param filepath The file to delete
-     * @return true if delete succeeds or if file does NOT exist, false otherwise.
-     */
-    private boolean deleteFile(String filepath) {
-        try {
-            if(filepath != null) {
-                File file = new File(filepath);
-
-                if (file.exists()) {
-                    if (file.delete()) {
-                        logger.debug("Deleted: " + file.getPath());
-                        return true;
-                    } else {
-                        logger.warn("Delete failed: " + file.getPath());
-                    }
-                } else {
-                    logger.warn("Delete failed, file does NOT exist: " + file.getPath());
-                    return true;
-                }
-            }
-        } catch(Exception e) {
-            logger.error(e);
-        }
-
-        return false;
+        // Remove all downloads from NativeDownloadManager and db
+        return stateMachine.remove(result, username, true);
     }
 
     @Override
@@ -256,7 +179,7 @@ public class Storage implements IStorage {
             for (int i=0; i< dmidList.size(); i++) {
                 dmidArray[i] = dmidList.get(i);
             }
-            int progress = dm.getAverageProgressForDownloads(dmidArray);
+            int progress = progressHub.getAverageProgressForDownloads(dmidArray);
             callback.sendResult(progress);
         } catch(Exception ex) {
             callback.sendException(ex);
@@ -268,6 +191,11 @@ public class Storage implements IStorage {
     @Override
     public void getAverageDownloadProgress(final DataCallback<Integer> callback) {
         IDatabase db = DatabaseFactory.getInstance( DatabaseFactory.TYPE_DATABASE_NATIVE );
+        // Answered from the aggregates of the courses, without listing the downloads
+        if (!db.isAnyVideoDownloading(null)) {
+            callback.sendResult(0);
+            return;
+        }
         db.getListOfOngoingDownloads(new DataCallback<List<VideoModel>>() {
 
             @Override
@@ -277,7 +205,7 @@ public class Storage implements IStorage {
                     dmids[i] = result.get(i).getDmId();
                 }
 
-                int averageProgress = dm.getAverageProgressForDownloads(dmids);
+                int averageProgress = progressHub.getAverageProgressForDownloads(dmids);
                 callback.onResult(averageProgress);
             }
 
@@ -300,7 +228,7 @@ public class Storage implements IStorage {
                     dmids[i] = result.get(i).getDmId();
                 }
 
-                callback.onResult(dm.getProgressDetailsForDownloads(dmids));
+                callback.onResult(progressHub.getProgressDetailsForDownloads(dmids));
             }
 
             @Override
@@ -323,7 +251,7 @@ public class Storage implements IStorage {
                             dmids[i] = result.get(i).getDmId();
                         }
 
-                        callback.onResult(dm.getProgressDetailsForDownloads(dmids));
+                        callback.onResult(progressHub.getProgressDetailsForDownloads(dmids));
                     }
 
                     @Override
@@ -343,7 +271,7 @@ public class Storage implements IStorage {
         }
 
         try {
-            int progress = dm.getAverageProgressForDownloads(dmidArray);
+            int progress = progressHub.getAverageProgressForDownloads(dmidArray);
             callback.sendResult(progress);
         } catch(Exception ex) {
             logger.error(ex);
@@ -375,7 +303,7 @@ public class Storage implements IStorage {
 
     @Override
     public NativeDownloadModel getNativeDownload(long dmId) {
-        return dm.getDownload(dmId);
+        return progressHub.getDownload(dmId);
     }
 
     @Override
@@ -405,7 +333,7 @@ public class Storage implements IStorage {
             long[] dmidArray = new long[1];
             dmidArray[0] = dmId;
 
-            int progress = dm.getAverageProgressForDownloads(dmidArray);
+            int progress = progressHub.getAverageProgressForDownloads(dmidArray);
             callback.sendResult(progress);
         } catch(Exception ex) {
             logger.error(ex);
@@ -416,95 +344,18 @@ public class Storage implements IStorage {
     @Override
     public void markDownloadAsComplete(long dmId,
             DataCallback<VideoModel> callback) {
-        try{
-            NativeDownloadModel nm = dm.getDownload(dmId);
-            if (nm != null && nm.status == DownloadManager.STATUS_SUCCESSFUL) {
-                {
-                    DownloadEntry e = (DownloadEntry) db.getDownloadEntryByDmId(dmId, null);
-                    e.downloaded = DownloadEntry.DownloadedState.DOWNLOADED;
-                    e.filepath = nm.filepath;
-                    if(e.size<=0){
-                        e.size = nm.size;
-                    }
-                    e.downloadedOn = System.currentTimeMillis();
-                    // update file duration
-                    if(e.duration==0){
-                        try {
-                            MediaMetadataRetriever r = new MediaMetadataRetriever();
-                            FileInputStream in = new FileInputStream(new File(e.filepath));
-                            r.setDataSource(in.getFD());
-                            int duration = Integer
-                                    .parseInt(r
-                                            .extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
-                            e.duration = duration/1000;
-                            logger.debug("Duration updated to : " + duration);
-                            in.close();
-                        } catch (Exception ex) {
-                            logger.error(ex);
-                        }
-                    }
-                    db.updateDownloadCompleteInfoByDmId(dmId, e, null);
-                    callback.sendResult(e);
-                    EventBus.getDefault().post(new DownloadCompletedEvent());
-                }
-
-            } else {
-                // download not yet successful
-                logger.debug("Download not yet completed");
+        try {
+            final VideoModel video = stateMachine.complete(dmId);
+            if (video != null) {
+                callback.sendResult(video);
+                EventBus.getDefault().post(new DownloadCompletedEvent());
             }
-        }catch(Exception e){
+        } catch (Exception e) {
             callback.sendException(e);
             logger.error(e);
         }
     }
 
-    /**
-     * Checks progress of all the videos that are being downloaded.
-     * If progress of any of the downloads is 100%, then marks the video as DOWNLOADED.
-     * NOTE - precondition - used only for app upgrade
-     */
-    public void repairDownloadCompletionData() {
-
-            // attempt to repair the data
-            Thread maintenanceThread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        ProfileModel profile = loginPrefs.getCurrentUserProfile();
-                        if (profile == null) {
-                            // user no logged in
-                            return;
-                        }
-
-                        List<Long> dmidList = db.getAllDownloadingVideosDmidList(null);
-                        for (Long d : dmidList) {
-                            // for each downloading video, check the percentage progress
-                            boolean downloadComplete = dm.isDownloadComplete(d);
-                            if (downloadComplete) {
-                                // this means download is completed
-                                // so the video status should be marked as DOWNLOADED, not DOWNLOADING
-                                // update the video status
-                                markDownloadAsComplete(d, new DataCallback<VideoModel>() {
-                                    @Override
-                                    public void onResult(VideoModel result) {
-                                        logger.debug("Video download marked as completed, dmid=" + result.getDmId());
-                                    }
-
-                                    @Override
-                                    public void onFail(Exception ex) {
-                                        logger.error(ex);
-                                    }
-                                });
-                            }
-                        }
-                    } catch (Exception ex) {
-                        logger.error(ex);
-                    }
-                }
-            });
-            maintenanceThread.start();
-    }
-
     @Override
     public void markVideoPlaying(DownloadEntry videoModel, final DataCallback<Integer> watchedStateCallback) {
         try {
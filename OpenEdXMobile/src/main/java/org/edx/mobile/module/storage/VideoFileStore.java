@@ -0,0 +1,138 @@
+package org.edx.mobile.module.storage;
+
+import androidx.annotation.NonNull;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.util.AppConstants;
+import org.edx.mobile.util.Sha1Util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Stores the downloaded video files by their content, so that the same video downloaded for
+ * another course run, or by another user of the device, is stored once and shared by all the
+ * videos having it.
+ * <p>
+ * Each volume has a store directory next to the users' video directories, in which the files are
+ * named after the SHA1 of their content. The database counts the downloaded videos referring to
+ * each stored file, and a file is only deleted once the last of them is removed. The calls that
+ * put a file and save the videos referring to it should be made while holding the lock of the
+ * store, so that the file isn't released in between.
+ */
+@Singleton
+public class VideoFileStore {
+
+    private static final String NO_MEDIA_FILE = ".nomedia";
+
+    private final Logger logger = new Logger(getClass().getName());
+
+    @NonNull
+    private final IDatabase db;
+
+    @Inject
+    public VideoFileStore(@NonNull IDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * @return Whether a file is in a store directory.
+     */
+    public static boolean isStored(@NonNull String filepath) {
+        final File parent = new File(filepath).getParentFile();
+        return parent != null && AppConstants.Directories.VIDEO_STORE.equals(parent.getName());
+    }
+
+    /**
+     * @return SHA1 of the content of a file, by which it is {@link #put stored}. Hashing a video
+     * takes time, so it is done before taking the lock of the store.
+     */
+    @NonNull
+    public static String hash(@NonNull File file) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            return Sha1Util.SHA1(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Store a downloaded file by its content. If a file with the same content is stored already,
+     * it is returned instead, and the given file is left for the caller to delete once the videos
+     * refer to the stored one. Otherwise the file is moved to the store directory of its volume.
+     *
+     * @param file Downloaded file, in a user's video directory.
+     * @param sha1 SHA1 of the content of the file, as {@link #hash hashed}, or verified when
+     *             it is extracted from a {@link CoursePackage}.
+     * @return The stored file.
+     */
+    @NonNull
+    public synchronized File put(@NonNull File file, @NonNull String sha1) throws IOException {
+        if (isStored(file.getPath())) {
+            return file;
+        }
+        if (!file.isFile()) {
+            throw new IOException("Video file not found: " + file);
+        }
+        final long size = file.length();
+        for (String path : db.getVideoFilePathsByContent(sha1, size, null)) {
+            final File stored = new File(path);
+            if (stored.isFile() && stored.length() == size) {
+                logger.debug("Video file deduplicated, " + size + " bytes saved: " + file);
+                return stored;
+            }
+        }
+
+        final File directory = new File(file.getAbsoluteFile().getParentFile().getParentFile(),
+                AppConstants.Directories.VIDEO_STORE);
+        if (directory.mkdirs()) {
+            new File(directory, NO_MEDIA_FILE).createNewFile();
+        }
+        final File stored = new File(directory, sha1);
+        if (!file.renameTo(stored)) {
+            throw new IOException("Unable to move " + file + " to " + stored);
+        }
+        db.addVideoFile(stored.getAbsolutePath(), sha1, size, null);
+        return stored;
+    }
+
+    /**
+     * Delete a stored file, unless any downloaded video of any user still refers to it.
+     *
+     * @return Whether the file has been deleted.
+     */
+    public synchronized boolean release(@NonNull String filepath) {
+        if (db.isVideoFileReferenced(filepath, null)) {
+            return false;
+        }
+        final File file = new File(filepath);
+        if (file.exists() && !file.delete()) {
+            logger.warn("Delete failed: " + file.getPath());
+            return false;
+        }
+        db.deleteUnreferencedVideoFile(filepath, null);
+        return true;
+    }
+
+    /**
+     * @return Paths of the stored files that any downloaded video of any user refers to.
+     */
+    @NonNull
+    public List<String> getReferencedPaths() {
+        return db.getReferencedVideoFilePaths(null);
+    }
+
+    /**
+     * @return No of bytes saved by the downloaded videos sharing the stored files, instead of
+     * each of them having its own file.
+     */
+    public long getBytesSaved() {
+        final Long bytesSaved = db.getVideoFileBytesSaved(null);
+        return bytesSaved == null ? 0 : bytesSaved;
+    }
+}
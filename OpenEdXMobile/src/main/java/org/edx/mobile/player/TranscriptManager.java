@@ -10,6 +10,8 @@ import androidx.annotation.NonNull;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
+import org.edx.mobile.http.HttpStatusException;
+import org.edx.mobile.http.provider.OkHttpClientProvider;
 import org.edx.mobile.logger.Logger;
 import org.edx.mobile.util.AppConstants;
 import org.edx.mobile.util.FileUtil;
@@ -23,6 +25,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 import subtitleFile.FormatSRT;
 import subtitleFile.TimedTextObject;
@@ -31,11 +42,13 @@ import subtitleFile.TimedTextObject;
 public class TranscriptManager {
     private final Logger logger = new Logger(getClass().getName());
     private final Context context;
+    private final OkHttpClientProvider okHttpClientProvider;
     private AsyncTask<Void, Void, String> transcriptDownloader;
 
     @Inject
-    public TranscriptManager(Context context) {
+    public TranscriptManager(Context context, OkHttpClientProvider okHttpClientProvider) {
         this.context = context;
+        this.okHttpClientProvider = okHttpClientProvider;
     }
 
     /**
@@ -53,6 +66,19 @@ public class TranscriptManager {
     }
 
 
+    /**
+     * Returns the file the transcript of a url is cached in, which may not exist yet
+     * @param url - Url of Transcript
+     * @return The file, or null if the transcript directory isn't available
+     */
+    @Nullable
+    public File getCacheFile(@NonNull String url) {
+        final File transcriptDir = getTranscriptDir();
+        if (transcriptDir == null) return null;
+        return new File(transcriptDir, Sha1Util.SHA1(url));
+    }
+
+
     /**
      * This function is used to saved contents of a String to a file
      * @param url - Url of Transcript
@@ -179,6 +205,50 @@ public class TranscriptManager {
         }
     }
 
+    /**
+     * This function starts downloading the srt files of many videos at once, skipping the ones
+     * which are already downloaded. The requests go out together over the connection pool of the
+     * HTTP client, whose dispatcher bounds how many of them run at the same time.
+     *
+     * @param transcriptUrls - download urls of the transcripts
+     */
+    public void downloadTranscripts(@NonNull Collection<String> transcriptUrls) {
+        final OkHttpClient client = okHttpClientProvider.getWithOfflineCache();
+        for (final String transcriptUrl : new LinkedHashSet<>(transcriptUrls)) {
+            if (TextUtils.isEmpty(transcriptUrl) || has(transcriptUrl)) {
+                continue;
+            }
+            final Request request;
+            try {
+                request = new Request.Builder()
+                        .url(transcriptUrl)
+                        .get()
+                        .build();
+            } catch (IllegalArgumentException e) {
+                logger.error(e);
+                continue;
+            }
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    logger.error(e);
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) {
+                    try (ResponseBody body = response.body()) {
+                        if (!response.isSuccessful()) {
+                            throw new HttpStatusException(response);
+                        }
+                        put(transcriptUrl, body.string());
+                    } catch (IOException | HttpStatusException e) {
+                        logger.error(e);
+                    }
+                }
+            });
+        }
+    }
+
     /**
      * Utility method that convert the {@link InputStream} to {@link TimedTextObject} for the
      * transcript
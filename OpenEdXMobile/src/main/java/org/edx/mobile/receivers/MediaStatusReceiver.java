@@ -14,6 +14,7 @@ import org.edx.mobile.module.db.DataCallback;
 import org.edx.mobile.module.db.IDatabase;
 import org.edx.mobile.module.prefs.LoginPrefs;
 import org.edx.mobile.module.prefs.PrefManager;
+import org.edx.mobile.module.storage.DownloadMigrator;
 import org.edx.mobile.util.FileUtil;
 import org.edx.mobile.util.Sha1Util;
 import org.edx.mobile.util.VideoUtil;
@@ -34,6 +35,8 @@ public class MediaStatusReceiver extends RoboBroadcastReceiver {
     private IDatabase db;
     @Inject
     private LoginPrefs loginPrefs;
+    @Inject
+    private DownloadMigrator downloadMigrator;
 
     private PrefManager prefManager;
 
@@ -62,6 +65,8 @@ public class MediaStatusReceiver extends RoboBroadcastReceiver {
                 case Intent.ACTION_MEDIA_MOUNTED:
                     sdCardAvailable = true;
                     handleSDCardMounted(context, hashedUsername);
+                    // Carry on moving the downloaded videos cut short by the SD card's removal
+                    downloadMigrator.resumeInBackground();
                     break;
             }
             EventBus.getDefault().postSticky(new MediaStatusChangeEvent(sdCardAvailable));
@@ -0,0 +1,136 @@
+package org.edx.mobile.services;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.http.callback.Callback;
+import org.edx.mobile.logger.Logger;
+import org.edx.mobile.module.prefs.CompletionPrefs;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sends the completion of the blocks marked completed on the device to server. Completions are
+ * kept in {@link CompletionPrefs} till they are sent, and are sent in a single request per course
+ * shortly after the last one is marked, instead of a request per block.
+ * <p>
+ * All the methods of this class should be called on the main thread.
+ */
+@Singleton
+public class BlockCompletionSyncer {
+    protected final Logger logger = new Logger(getClass().getName());
+
+    /**
+     * Time to wait for more completions before sending them to server.
+     */
+    static final long BATCH_DELAY_MS = 5000;
+
+    /**
+     * No of completions in a course that get sent to server without waiting for more.
+     */
+    static final int MAX_BATCH_SIZE = 20;
+
+    @NonNull
+    private final CourseAPI courseApi;
+
+    @NonNull
+    private final CompletionPrefs completionPrefs;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Runnable syncRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isSyncScheduled = false;
+            syncPendingCompletions();
+        }
+    };
+
+    /**
+     * Courses whose completions are being sent to server.
+     */
+    private final Set<String> coursesInFlight = new HashSet<>();
+
+    private boolean isSyncScheduled;
+
+    @Inject
+    public BlockCompletionSyncer(@NonNull CourseAPI courseApi,
+                                 @NonNull CompletionPrefs completionPrefs) {
+        this.courseApi = courseApi;
+        this.completionPrefs = completionPrefs;
+        // Send the completions left over from the previous app session
+        if (!completionPrefs.getCoursesWithUnsyncedBlocks().isEmpty()) {
+            scheduleSync();
+        }
+    }
+
+    /**
+     * Mark a block completed and queue its completion to be sent to server.
+     *
+     * @param courseId Id of the course.
+     * @param blockId  Id of the block.
+     */
+    public void markBlockCompleted(@NonNull String courseId, @NonNull String blockId) {
+        completionPrefs.addCompletedBlock(courseId, blockId, true);
+        if (completionPrefs.getUnsyncedBlocks(courseId).size() >= MAX_BATCH_SIZE) {
+            syncCompletions(courseId);
+        } else {
+            scheduleSync();
+        }
+    }
+
+    /**
+     * Send all the completions yet to be sent to server right away.
+     */
+    public void syncPendingCompletions() {
+        for (String courseId : completionPrefs.getCoursesWithUnsyncedBlocks()) {
+            syncCompletions(courseId);
+        }
+    }
+
+    private void scheduleSync() {
+        if (!isSyncScheduled) {
+            isSyncScheduled = true;
+            handler.postDelayed(syncRunnable, BATCH_DELAY_MS);
+        }
+    }
+
+    private void syncCompletions(@NonNull final String courseId) {
+        if (coursesInFlight.contains(courseId)) {
+            // The completions marked meanwhile will be sent once the request finishes
+            return;
+        }
+        final Set<String> blockIds = completionPrefs.getUnsyncedBlocks(courseId);
+        if (blockIds.isEmpty()) {
+            return;
+        }
+        coursesInFlight.add(courseId);
+        courseApi.markBlocksCompletion(courseId, blockIds.toArray(new String[0]))
+                .enqueue(new Callback<JSONObject>() {
+                    @Override
+                    protected void onResponse(@NonNull JSONObject responseBody) {
+                        coursesInFlight.remove(courseId);
+                        completionPrefs.removeUnsyncedBlocks(courseId, blockIds);
+                        if (!completionPrefs.getUnsyncedBlocks(courseId).isEmpty()) {
+                            scheduleSync();
+                        }
+                    }
+
+                    @Override
+                    protected void onFailure(@NonNull Throwable error) {
+                        coursesInFlight.remove(courseId);
+                        // Completions stay queued and get sent along with the next ones
+                        logger.warn("Unable to send completions of course " + courseId + ": "
+                                + error.getMessage());
+                    }
+                });
+    }
+}
@@ -1,5 +1,11 @@
 package org.edx.mobile.services;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.LruCache;
 
 import androidx.annotation.NonNull;
@@ -9,43 +15,328 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.course.CourseSearchIndex;
+import org.edx.mobile.course.CourseStructurePatcher;
+import org.edx.mobile.exception.CourseContentNotValidException;
 import org.edx.mobile.logger.Logger;
-import org.edx.mobile.model.Filter;
 import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.module.prefs.CompletionPrefs;
+import org.edx.mobile.module.prefs.UserPrefs;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class manages the caching mechanism of courses data.
  */
 @Singleton
-public class CourseManager {
+public class CourseManager implements ComponentCallbacks2 {
     protected final Logger logger = new Logger(getClass().getName());
 
     /**
-     * This count represents the maximum no of courses that will be cached via app level cache.
+     * Rough estimate of the heap retained by a single block of a normalized course.
+     */
+    private static final int ESTIMATED_BLOCK_SIZE_IN_BYTES = 512;
+
+    /**
+     * Fraction of the app's memory class that the app level cache is allowed to use.
+     */
+    private static final int MEMORY_CLASS_FRACTION = 4;
+
+    /**
+     * No of recently accessed courses to load into the app level cache ahead of time.
      */
-    private final int NO_OF_COURSES_TO_CACHE = 15;
+    private static final int WARM_UP_COURSES_COUNT = 3;
 
     /**
-     * An app level cache to keep courses data in memory till ending of app session.
+     * Loads the courses ahead of time one by one, at a low priority to keep the UI responsive.
+     */
+    private static final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "CourseCacheWarmUp"));
+
+    /**
+     * An app level cache to keep courses data in memory till ending of app session. Its size is
+     * measured in no of blocks, so that a huge course takes as much room as many small ones.
      */
     private final LruCache<String, CourseComponent> cachedComponent;
 
+    /**
+     * The course last accessed, which the screens showing it expect to find in the app level
+     * cache, so it is kept even when it gets evicted from there.
+     */
+    // Guarded by this
+    @Nullable
+    private String currentCourseId;
+    @Nullable
+    private CourseComponent currentCourse;
+
+    /**
+     * Search indexes of the courses in app level cache, built on first use.
+     */
+    private final Map<String, CourseSearchIndex> searchIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented whenever the app level cache is cleared, so that the warm-ups started before
+     * don't fill it again.
+     */
+    private final AtomicInteger cacheGeneration = new AtomicInteger();
+
+    private final AtomicInteger warmOutlinesCount = new AtomicInteger();
+    private final AtomicLong warmOutlinesTime = new AtomicLong();
+    private final AtomicInteger coldOutlinesCount = new AtomicInteger();
+    private final AtomicLong coldOutlinesTime = new AtomicLong();
+
     @Inject
     CourseAPI courseApi;
 
-    public CourseManager() {
-        cachedComponent = new LruCache<>(NO_OF_COURSES_TO_CACHE);
+    @Inject
+    CompletionPrefs completionPrefs;
+
+    @Inject
+    UserPrefs userPrefs;
+
+    @Inject
+    public CourseManager(@NonNull Context context) {
+        final ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        final long cacheSizeInBytes = activityManager.getMemoryClass() * 1024L * 1024L
+                / MEMORY_CLASS_FRACTION;
+        final int maxBlocks = (int) (cacheSizeInBytes / ESTIMATED_BLOCK_SIZE_IN_BYTES);
+        cachedComponent = new LruCache<String, CourseComponent>(maxBlocks) {
+            @Override
+            protected int sizeOf(String courseId, CourseComponent courseComponent) {
+                // A course larger than the whole cache takes it up, instead of being evicted
+                // as soon as it is put
+                return Math.min(courseComponent.getBlocksCount(), maxBlocks);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String courseId,
+                                        CourseComponent oldValue, CourseComponent newValue) {
+                if (oldValue != newValue) {
+                    searchIndexes.remove(courseId);
+                }
+            }
+        };
+        context.getApplicationContext().registerComponentCallbacks(this);
     }
 
     public void clearAllAppLevelCache() {
+        cacheGeneration.incrementAndGet();
+        synchronized (this) {
+            currentCourseId = null;
+            currentCourse = null;
+        }
+        cachedComponent.evictAll();
+        searchIndexes.clear();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // The app is likely to be killed soon or the system is running out of memory
+            cachedComponent.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            cachedComponent.trimToSize(cachedComponent.maxSize() / 2);
+        }
+        logger.debug("Trimmed courses cache on level " + level + ": " + getCacheStats());
+    }
+
+    @Override
+    public void onLowMemory() {
         cachedComponent.evictAll();
     }
 
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    /**
+     * @return Usage statistics of the app level cache, i.e. its size in blocks, the no of
+     * hits, misses and evictions and the average time to first outline with and without the
+     * course in cache since the start of the app session.
+     */
+    @NonNull
+    public String getCacheStats() {
+        return String.format(Locale.US, "size=%d/%d blocks, courses=%d, hits=%d, misses=%d, evictions=%d, "
+                        + "time to first outline: warm=%d ms (%d), cold=%d ms (%d)",
+                cachedComponent.size(), cachedComponent.maxSize(), cachedComponent.snapshot().size(),
+                cachedComponent.hitCount(), cachedComponent.missCount(),
+                cachedComponent.evictionCount(),
+                average(warmOutlinesTime.get(), warmOutlinesCount.get()), warmOutlinesCount.get(),
+                average(coldOutlinesTime.get(), coldOutlinesCount.get()), coldOutlinesCount.get());
+    }
+
+    private static long average(long total, int count) {
+        return count == 0 ? 0 : total / count;
+    }
+
+    /**
+     * Record the time taken to show the outline of a course since it was opened.
+     *
+     * @param courseId          Id of the course.
+     * @param elapsedMillis     Time to first outline in milliseconds.
+     * @param fromAppLevelCache Whether the course was found in the app level cache.
+     */
+    public void recordTimeToFirstOutline(@NonNull String courseId, long elapsedMillis,
+                                         boolean fromAppLevelCache) {
+        if (fromAppLevelCache) {
+            warmOutlinesCount.incrementAndGet();
+            warmOutlinesTime.addAndGet(elapsedMillis);
+        } else {
+            coldOutlinesCount.incrementAndGet();
+            coldOutlinesTime.addAndGet(elapsedMillis);
+        }
+        logger.debug("Time to first outline of " + courseId + ": " + elapsedMillis + " ms"
+                + (fromAppLevelCache ? " (warm)" : " (cold)"));
+    }
+
+    /**
+     * Remember a course as accessed, so that it gets warmed up on the next app sessions.
+     *
+     * @param courseId Id of the course.
+     */
+    public void markCourseAccessed(@NonNull String courseId) {
+        userPrefs.addRecentCourseId(courseId);
+        final CourseComponent course = cachedComponent.get(courseId);
+        synchronized (this) {
+            if (course != null || !courseId.equals(currentCourseId)) {
+                currentCourse = course;
+            }
+            currentCourseId = courseId;
+        }
+    }
+
+    /**
+     * Load the most recently accessed of the enrolled courses from persistable cache into the app
+     * level cache in background, so that their outline shows up right away when opened.
+     *
+     * @param blocksApiVersion  Version of the API.
+     * @param enrolledCourseIds Ids of the courses the user is enrolled in.
+     */
+    public void warmUpAppLevelCache(@NonNull final String blocksApiVersion,
+                                    @NonNull Collection<String> enrolledCourseIds) {
+        final int generation = cacheGeneration.get();
+        int count = 0;
+        for (final String courseId : userPrefs.getRecentCourseIds()) {
+            if (count == WARM_UP_COURSES_COUNT) {
+                break;
+            }
+            if (!enrolledCourseIds.contains(courseId)) {
+                continue;
+            }
+            count++;
+            if (cachedComponent.snapshot().containsKey(courseId)) {
+                continue;
+            }
+            warmUpExecutor.execute(() -> {
+                // Skip the course if the cache got cleared or the course got loaded meanwhile
+                if (generation != cacheGeneration.get()
+                        || cachedComponent.snapshot().containsKey(courseId)) {
+                    return;
+                }
+                final long start = SystemClock.elapsedRealtime();
+                if (getCourseDataFromPersistableCache(blocksApiVersion, courseId) != null) {
+                    logger.debug("Warmed up " + courseId + " in "
+                            + (SystemClock.elapsedRealtime() - start) + " ms");
+                }
+            });
+        }
+    }
+
     public void addCourseDataInAppLevelCache(@NonNull String courseId,
                                              @NonNull CourseComponent courseComponent) {
+        applyLocalCompletions(courseId, courseComponent);
+        synchronized (this) {
+            if (courseId.equals(currentCourseId)) {
+                currentCourse = courseComponent;
+            }
+        }
         cachedComponent.put(courseId, courseComponent);
     }
 
+    /**
+     * Mark the blocks completed on the device completed in the course data as well, as the course
+     * data may come from a cache or the server may not have received their completion yet. The
+     * blocks that the server reports completed are no longer kept on the device.
+     *
+     * @param courseId        Id of the course.
+     * @param courseComponent Course data.
+     */
+    private void applyLocalCompletions(@NonNull String courseId,
+                                       @NonNull CourseComponent courseComponent) {
+        if (completionPrefs == null) {
+            return;
+        }
+        final Set<String> completedBlocks = completionPrefs.getCompletedBlocks(courseId);
+        if (completedBlocks.isEmpty()) {
+            return;
+        }
+        final Set<String> confirmedBlocks = new HashSet<>();
+        courseComponent.applyCompletions(completedBlocks, confirmedBlocks);
+        if (!confirmedBlocks.isEmpty()) {
+            completionPrefs.removeCompletedBlocks(courseId, confirmedBlocks);
+        }
+    }
+
+    /**
+     * Update the course data in app level cache with a refreshed course structure. The cached
+     * course is patched in place if possible, so that only the changed nodes get rebuilt.
+     *
+     * @param courseId Id of the course.
+     * @param model    The refreshed course structure.
+     * @return The updated course data along with the changes applied to the cached one.
+     */
+    @NonNull
+    public CourseStructurePatcher.Result updateCourseDataInAppLevelCache(
+            @NonNull String courseId, @NonNull CourseStructureV1Model model)
+            throws CourseContentNotValidException {
+        final CourseSearchIndex searchIndex = searchIndexes.get(courseId);
+        // Take the course out of the cache while patching as its size may change
+        final CourseComponent previous = cachedComponent.remove(courseId);
+        final CourseStructurePatcher.Result result = CourseStructurePatcher.patch(previous, model, courseId);
+        addCourseDataInAppLevelCache(courseId, result.course);
+        if (searchIndex != null && result.changes != null) {
+            // The same course has been patched, so its search index only needs to catch up
+            searchIndex.update(result.changes);
+            searchIndexes.put(courseId, searchIndex);
+        }
+        return result;
+    }
+
+    /**
+     * Obtain the search index of a course in app level cache, building it if needed.
+     *
+     * @param courseId Id of the course.
+     * @return Search index of the course. In case course data is not present in app level cache
+     * it will return null.
+     */
+    @Nullable
+    public CourseSearchIndex getSearchIndex(@NonNull String courseId) {
+        final CourseComponent course = getCourseDataFromAppLevelCache(courseId);
+        if (course == null) {
+            return null;
+        }
+        CourseSearchIndex searchIndex = searchIndexes.get(courseId);
+        if (searchIndex == null) {
+            searchIndex = new CourseSearchIndex(course);
+            searchIndexes.put(courseId, searchIndex);
+        }
+        return searchIndex;
+    }
+
     /**
      * Obtain the course data from app level cache.
      *
@@ -54,7 +345,13 @@ public class CourseManager {
      */
     @Nullable
     public CourseComponent getCourseDataFromAppLevelCache(@NonNull final String courseId) {
-        return cachedComponent.get(courseId);
+        final CourseComponent course = cachedComponent.get(courseId);
+        if (course != null) {
+            return course;
+        }
+        synchronized (this) {
+            return courseId.equals(currentCourseId) ? currentCourse : null;
+        }
     }
 
     /**
@@ -104,12 +401,7 @@ public class CourseManager {
         CourseComponent courseComponent = getCourseDataFromAppLevelCache(courseId);
         if (courseComponent == null)
             return null;
-        return courseComponent.find(new Filter<CourseComponent>() {
-            @Override
-            public boolean apply(CourseComponent courseComponent) {
-                return componentId.equals(courseComponent.getId());
-            }
-        });
+        return courseComponent.findById(componentId);
     }
 
     /**
@@ -127,11 +419,6 @@ public class CourseManager {
         CourseComponent courseComponent = getCachedCourseData(blocksApiVersion, courseId);
         if (courseComponent == null)
             return null;
-        return courseComponent.find(new Filter<CourseComponent>() {
-            @Override
-            public boolean apply(CourseComponent courseComponent) {
-                return componentId.equals(courseComponent.getId());
-            }
-        });
+        return courseComponent.findById(componentId);
     }
 }
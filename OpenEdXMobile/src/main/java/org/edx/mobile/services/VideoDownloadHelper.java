@@ -1,5 +1,7 @@
 package org.edx.mobile.services;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.DialogFragment;
 import androidx.fragment.app.FragmentActivity;
 import android.text.TextUtils;
@@ -10,19 +12,29 @@ import com.google.inject.Singleton;
 import org.edx.mobile.R;
 import org.edx.mobile.base.BaseFragmentActivity;
 import org.edx.mobile.logger.Logger;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.EncodedVideos;
 import org.edx.mobile.model.course.HasDownloadEntry;
+import org.edx.mobile.model.course.VideoBlockModel;
+import org.edx.mobile.model.course.VideoInfo;
 import org.edx.mobile.model.db.DownloadEntry;
 import org.edx.mobile.module.analytics.AnalyticsRegistry;
+import org.edx.mobile.module.db.DataCallback;
+import org.edx.mobile.module.download.CourseDownloadOrder;
+import org.edx.mobile.module.download.DownloadQualityPolicy;
 import org.edx.mobile.module.storage.BulkVideosDownloadCancelledEvent;
 import org.edx.mobile.module.storage.BulkVideosDownloadStartedEvent;
+import org.edx.mobile.module.storage.DownloadStorageManager;
 import org.edx.mobile.module.storage.IStorage;
 import org.edx.mobile.task.EnqueueDownloadTask;
 import org.edx.mobile.util.MediaConsentUtils;
 import org.edx.mobile.util.MemoryUtil;
+import org.edx.mobile.util.VideoUtil;
 import org.edx.mobile.view.dialog.DownloadSizeExceedDialog;
 import org.edx.mobile.view.dialog.IDialogCallback;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +70,15 @@ public class VideoDownloadHelper {
     @Inject
     private AnalyticsRegistry analyticsRegistry;
 
+    @Inject
+    private DownloadQualityPolicy qualityPolicy;
+
+    @Inject
+    private DownloadStorageManager storageManager;
+
+    @Inject
+    private CourseDownloadOrder downloadOrder;
+
 
     public void downloadVideos(final List<? extends HasDownloadEntry> model, final FragmentActivity activity,
                                final DownloadManagerCallback callback) {
@@ -82,56 +103,167 @@ public class VideoDownloadHelper {
     private void startDownloadVideos(List<? extends HasDownloadEntry> model, FragmentActivity activity, DownloadManagerCallback callback) {
         long downloadSize = 0;
         ArrayList<DownloadEntry> downloadList = new ArrayList<>();
+        // Encodings of the videos to download, if known, in the same order
+        final List<EncodedVideos> encodedVideos = new ArrayList<>();
+        // Blocks of the videos to download, if known, in the same order
+        final List<CourseComponent> videoBlocks = new ArrayList<>();
         int downloadCount = 0;
         for (HasDownloadEntry v : model) {
             DownloadEntry de = v.getDownloadEntry(storage);
-            if (!TextUtils.isEmpty(v.getDownloadUrl())) {
-                // Prefer download url to download
-                de.url = v.getDownloadUrl();
-            }
             if (null == de
                     || de.downloaded == DownloadEntry.DownloadedState.DOWNLOADING
                     || de.downloaded == DownloadEntry.DownloadedState.DOWNLOADED
                     || de.isVideoForWebOnly) {
                 continue;
             } else {
-                downloadSize = downloadSize
-                        + de.getSize();
+                // The entry may be shared, so the encoding to download is set on a copy
+                de = de.copy();
+                if (!TextUtils.isEmpty(v.getDownloadUrl())) {
+                    // Prefer download url to download
+                    de.url = v.getDownloadUrl();
+                }
                 downloadList.add(de);
+                encodedVideos.add(v instanceof VideoBlockModel ?
+                        ((VideoBlockModel) v).getData().encodedVideos : null);
+                videoBlocks.add(v instanceof CourseComponent ? (CourseComponent) v : null);
                 downloadCount++;
             }
         }
-        if (downloadSize > MemoryUtil
-                .getAvailableExternalMemory(activity)) {
-            ((BaseFragmentActivity) activity).showInfoMessage(activity.getString(R.string.file_size_exceeded));
-            callback.updateListUI();
-            EventBus.getDefault().post(new BulkVideosDownloadCancelledEvent());
-        } else {
-            if (isDownloadSizeWithinLimit(downloadSize, MemoryUtil.GB) && !downloadList.isEmpty()) {
-                startDownload(downloadList, activity, callback);
-
-                final DownloadEntry downloadEntry = downloadList.get(0);
-                analyticsRegistry.trackSubSectionBulkVideoDownload(downloadEntry.getSectionName(),
-                        downloadEntry.getChapterName(), downloadEntry.getEnrollmentId(),
-                        downloadCount);
-            } else {
-                showDownloadSizeExceedDialog(downloadList, downloadCount, activity, callback);
+        // Download the whole batch in the quality that suits the network and the storage
+        final DownloadQualityPolicy.Plan plan = qualityPolicy.plan(encodedVideos);
+        for (int i = 0; i < downloadList.size(); i++) {
+            final DownloadEntry de = downloadList.get(i);
+            setEncoding(de, encodedVideos.get(i), plan);
+            downloadSize = downloadSize
+                    + de.getSize();
+        }
+        // Download the videos in course order, as they get enqueued in parallel
+        downloadOrder.setPositions(downloadList, videoBlocks);
+        // Watched videos may have to be removed to make room for the download
+        final long totalSize = downloadSize;
+        final int totalCount = downloadCount;
+        storageManager.planEviction(downloadSize,
+                new DataCallback<DownloadStorageManager.EvictionReport>(true) {
+                    @Override
+                    public void onResult(DownloadStorageManager.EvictionReport evictionReport) {
+                        if (!evictionReport.isSufficient()) {
+                            showStorageExceededMessage(evictionReport, activity);
+                            callback.updateListUI();
+                            EventBus.getDefault().post(new BulkVideosDownloadCancelledEvent());
+                            return;
+                        }
+                        final CharSequence estimate = plan.getEstimate(activity, totalSize);
+                        if (isDownloadSizeWithinLimit(totalSize, MemoryUtil.GB) && !downloadList.isEmpty()) {
+                            makeRoomAndStartDownload(downloadList, evictionReport,
+                                    downloadList.size() > 1 ? estimate : null, activity, callback);
+
+                            final DownloadEntry downloadEntry = downloadList.get(0);
+                            analyticsRegistry.trackSubSectionBulkVideoDownload(downloadEntry.getSectionName(),
+                                    downloadEntry.getChapterName(), downloadEntry.getEnrollmentId(),
+                                    totalCount);
+                        } else {
+                            showDownloadSizeExceedDialog(downloadList, totalCount, estimate,
+                                    evictionReport, activity, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onFail(Exception ex) {
+                        logger.error(ex);
+                        callback.onDownloadFailedToStart();
+                    }
+                });
+    }
+
+    /**
+     * Point a copied entry at the encoding of a video to download in the planned quality.
+     *
+     * @param encodings Encodings of the video, if known.
+     */
+    private static void setEncoding(@NonNull DownloadEntry de, @Nullable EncodedVideos encodings,
+                                    @NonNull DownloadQualityPolicy.Plan plan) {
+        final VideoInfo videoInfo = encodings == null ? null :
+                encodings.getVideoInfoForDownloading(plan.quality);
+        if (videoInfo != null) {
+            de.url = videoInfo.url;
+            if (videoInfo.fileSize > 0) {
+                de.size = videoInfo.fileSize;
             }
         }
     }
 
+    private void showStorageExceededMessage(@NonNull DownloadStorageManager.EvictionReport evictionReport,
+                                            @NonNull FragmentActivity activity) {
+        ((BaseFragmentActivity) activity).showInfoMessage(activity.getString(
+                evictionReport.isLimitedByQuota ? R.string.download_quota_exceeded :
+                        R.string.file_size_exceeded));
+    }
+
+    /**
+     * Removes the videos of a {@link DownloadStorageManager.EvictionReport#isSufficient sufficient}
+     * eviction report to make room for the downloads, once the user has confirmed their removal,
+     * and then starts them.
+     *
+     * @param message Message to show along with the videos removed, if any.
+     */
+    private void makeRoomAndStartDownload(@NonNull final List<DownloadEntry> downloadList,
+                                          @NonNull final DownloadStorageManager.EvictionReport evictionReport,
+                                          @Nullable final CharSequence message,
+                                          @NonNull final FragmentActivity activity,
+                                          @NonNull final DownloadManagerCallback callback) {
+        if (evictionReport.isEmpty()) {
+            if (message != null) {
+                callback.showInfoMessage(message.toString());
+            }
+            startDownload(downloadList, activity, callback);
+            return;
+        }
+        ((BaseFragmentActivity) activity).showAlertDialog(
+                activity.getString(R.string.download_make_room_title),
+                evictionReport.getPlanSummary(activity).toString(),
+                activity.getString(R.string.download_make_room_button),
+                (dialog, which) -> storageManager.evict(evictionReport,
+                        new DataCallback<Boolean>(true) {
+                            @Override
+                            public void onResult(Boolean isRoomMade) {
+                                if (!isRoomMade) {
+                                    showStorageExceededMessage(evictionReport, activity);
+                                    callback.updateListUI();
+                                    return;
+                                }
+                                final CharSequence summary = evictionReport.getSummary(activity);
+                                callback.showInfoMessage(message == null ? summary.toString() :
+                                        message + "\n" + summary);
+                                startDownload(downloadList, activity, callback);
+                            }
+
+                            @Override
+                            public void onFail(Exception ex) {
+                                logger.error(ex);
+                                callback.onDownloadFailedToStart();
+                            }
+                        }),
+                activity.getString(R.string.label_cancel),
+                (dialog, which) -> {
+                    callback.updateListUI();
+                    EventBus.getDefault().post(new BulkVideosDownloadCancelledEvent());
+                });
+    }
+
     // Dialog fragment to display message to user regarding
     private void showDownloadSizeExceedDialog(final ArrayList<DownloadEntry> de,
-                                              final int noOfDownloads, final FragmentActivity activity, final DownloadManagerCallback callback) {
+                                              final int noOfDownloads, @NonNull CharSequence estimate,
+                                              @NonNull final DownloadStorageManager.EvictionReport evictionReport,
+                                              final FragmentActivity activity, final DownloadManagerCallback callback) {
         Map<String, String> dialogMap = new HashMap<String, String>();
         dialogMap.put("title", activity.getString(R.string.download_exceed_title));
-        dialogMap.put("message_1", activity.getString(R.string.download_exceed_message));
+        dialogMap.put("message_1", activity.getString(R.string.download_exceed_message) + "\n\n" + estimate);
         downloadFragment = DownloadSizeExceedDialog.newInstance(dialogMap,
                 new IDialogCallback() {
                     @Override
                     public void onPositiveClicked() {
                         if (!de.isEmpty()) {
-                            startDownload(de, activity, callback);
+                            makeRoomAndStartDownload(de, evictionReport, null, activity, callback);
 
                             final DownloadEntry downloadEntry = de.get(0);
                             analyticsRegistry.trackSubSectionBulkVideoDownload(downloadEntry.getSectionName(),
@@ -153,13 +285,42 @@ public class VideoDownloadHelper {
         downloadFragment.setCancelable(false);
     }
 
-    public void downloadVideo(DownloadEntry downloadEntry, final FragmentActivity activity, final DownloadManagerCallback callback) {
-        if (downloadEntry != null) {
-            List<DownloadEntry> downloadEntries = new ArrayList<>();
-            downloadEntries.add(downloadEntry);
-            startDownload(downloadEntries, activity, callback);
-            analyticsRegistry.trackSingleVideoDownload(downloadEntry.getVideoId(),
-                    downloadEntry.getEnrollmentId(), downloadEntry.getVideoUrl());
+    public void downloadVideo(VideoBlockModel video, final FragmentActivity activity, final DownloadManagerCallback callback) {
+        final DownloadEntry videoData = video == null ? null : video.getDownloadEntry(storage);
+        if (videoData != null) {
+            // The entry may be shared, so the encoding to download is set on a copy
+            final DownloadEntry downloadEntry = videoData.copy();
+            /*
+             * Assign preferred downloadable url to {@link DownloadEntry#url}
+             * to use this url to download. After downloading
+             * only downloaded video path will be used for streaming.
+             */
+            downloadEntry.url = VideoUtil.getPreferredVideoUrlForDownloading(video.getData());
+            final EncodedVideos encodings = video.getData().encodedVideos;
+            setEncoding(downloadEntry, encodings,
+                    qualityPolicy.plan(Collections.singletonList(encodings)));
+            storageManager.planEviction(downloadEntry.getSize(),
+                    new DataCallback<DownloadStorageManager.EvictionReport>(true) {
+                        @Override
+                        public void onResult(DownloadStorageManager.EvictionReport evictionReport) {
+                            if (!evictionReport.isSufficient()) {
+                                showStorageExceededMessage(evictionReport, activity);
+                                callback.updateListUI();
+                                return;
+                            }
+                            List<DownloadEntry> downloadEntries = new ArrayList<>();
+                            downloadEntries.add(downloadEntry);
+                            makeRoomAndStartDownload(downloadEntries, evictionReport, null, activity, callback);
+                            analyticsRegistry.trackSingleVideoDownload(downloadEntry.getVideoId(),
+                                    downloadEntry.getEnrollmentId(), downloadEntry.getVideoUrl());
+                        }
+
+                        @Override
+                        public void onFail(Exception ex) {
+                            logger.error(ex);
+                            callback.onDownloadFailedToStart();
+                        }
+                    });
         }
     }
 
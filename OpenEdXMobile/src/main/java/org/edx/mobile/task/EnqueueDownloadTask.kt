@@ -11,17 +11,11 @@ abstract class EnqueueDownloadTask(context: Context,
     lateinit var transcriptManager: TranscriptManager
 
     override fun call(): Long {
-        var count = 0
-        for (downloadEntry in downloadList) {
-            if (environment.storage.addDownload(downloadEntry) != -1L) {
-                count++
-                downloadEntry.transcript?.run {
-                    for (value in this.values) {
-                        transcriptManager.downloadTranscriptsForVideo(value, null)
-                    }
-                }
-            }
-        }
+        val count = environment.storage.addDownloads(downloadList)
+        // Fetch the transcripts of all the videos added to download in a single batch
+        transcriptManager.downloadTranscripts(downloadList
+                .filter { it.dmId != -1L }
+                .flatMap { it.transcript?.values ?: emptyList<String>() })
         return count.toLong()
     }
 
@@ -0,0 +1,65 @@
+package org.edx.mobile.task;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.google.inject.Inject;
+
+import org.edx.mobile.module.storage.CoursePackage;
+import org.edx.mobile.module.storage.CoursePackageManager;
+import org.edx.mobile.util.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Exports the downloaded videos of a course to a package in a document picked by the user. The
+ * package is written to a temporary file first, as it can't be written to the document directly.
+ */
+public abstract class ExportCoursePackageTask extends Task<CoursePackage.Index> {
+
+    @Inject
+    private CoursePackageManager packageManager;
+
+    @NonNull
+    private final String courseId;
+    @NonNull
+    private final Uri target;
+
+    public ExportCoursePackageTask(@NonNull Context context, @NonNull String courseId,
+                                   @NonNull Uri target) {
+        super(context);
+        this.courseId = courseId;
+        this.target = target;
+    }
+
+    @Override
+    public CoursePackage.Index call() throws Exception {
+        final File temp = new File(context.getExternalCacheDir(),
+                "course-package" + System.currentTimeMillis());
+        try {
+            final CoursePackage.Index index = packageManager.exportPackage(courseId, temp);
+            try (InputStream in = new FileInputStream(temp);
+                 OutputStream out = context.getContentResolver().openOutputStream(target)) {
+                if (out == null) {
+                    throw new IOException("Unable to open " + target);
+                }
+                IOUtils.copy(in, out);
+            }
+            return index;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Override
+    protected void onException(Exception ex) {
+        super.onException(ex);
+        logger.error(ex);
+    }
+}
@@ -0,0 +1,59 @@
+package org.edx.mobile.task;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.google.inject.Inject;
+
+import org.edx.mobile.module.storage.CoursePackageManager;
+import org.edx.mobile.util.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Imports a course package from a document picked by the user. The document is copied to a
+ * temporary file first, as the package is read at random positions.
+ */
+public abstract class ImportCoursePackageTask extends Task<CoursePackageManager.Report> {
+
+    @Inject
+    private CoursePackageManager packageManager;
+
+    @NonNull
+    private final Uri source;
+
+    public ImportCoursePackageTask(@NonNull Context context, @NonNull Uri source) {
+        super(context);
+        this.source = source;
+    }
+
+    @Override
+    public CoursePackageManager.Report call() throws Exception {
+        final File temp = new File(context.getExternalCacheDir(),
+                "course-package" + System.currentTimeMillis());
+        try {
+            try (InputStream in = context.getContentResolver().openInputStream(source);
+                 OutputStream out = new FileOutputStream(temp)) {
+                if (in == null) {
+                    throw new IOException("Unable to open " + source);
+                }
+                IOUtils.copy(in, out);
+            }
+            return packageManager.importPackage(temp);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    @Override
+    protected void onException(Exception ex) {
+        super.onException(ex);
+        logger.error(ex);
+    }
+}
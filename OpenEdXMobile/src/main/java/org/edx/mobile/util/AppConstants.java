@@ -56,5 +56,10 @@ public enum AppConstants {
          * downloaded videos.
          */
         public static final String SUBTITLES = "subtitles";
+        /**
+         * The name of the directory, next to the users' video directories, which is used to
+         * store the downloaded videos shared by all the users, by their content.
+         */
+        public static final String VIDEO_STORE = "store";
     }
 }
@@ -79,6 +79,7 @@ public class Config {
     private static final String WHATS_NEW_ENABLED = "WHATS_NEW_ENABLED";
     private static final String COURSE_VIDEOS_ENABLED = "COURSE_VIDEOS_ENABLED";
     private static final String DOWNLOAD_TO_SD_CARD_ENABLED = "DOWNLOAD_TO_SD_CARD_ENABLED";
+    private static final String SEGMENTED_DOWNLOADS_ENABLED = "SEGMENTED_DOWNLOADS_ENABLED";
 
     public static class ZeroRatingConfig {
         @SerializedName("ENABLED")
@@ -696,6 +697,7 @@ public class Config {
     }
 
     /**
+     * Whether the estimated download speed is reported to the analytics, once per connection.
      * Empty or no config returns false.
      * Otherwise, returns the value from the config.
      *
@@ -753,6 +755,14 @@ public class Config {
         return getBoolean(DOWNLOAD_TO_SD_CARD_ENABLED, false);
     }
 
+    /**
+     * @return true if the videos should be downloaded in app, in parallel segments, rather than
+     * through the system download manager.
+     */
+    public boolean isSegmentedDownloadsEnabled() {
+        return getBoolean(SEGMENTED_DOWNLOADS_ENABLED, false);
+    }
+
     @NonNull
     public ProgramConfig getProgramConfig() {
         return getObjectOrNewInstance(PROGRAM, ProgramConfig.class);
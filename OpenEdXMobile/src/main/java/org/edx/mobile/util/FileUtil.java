@@ -14,11 +14,7 @@ import androidx.annotation.RawRes;
 import androidx.fragment.app.FragmentActivity;
 
 import org.edx.mobile.R;
-import org.edx.mobile.core.IEdxEnvironment;
 import org.edx.mobile.logger.Logger;
-import org.edx.mobile.model.VideoModel;
-import org.edx.mobile.model.api.ProfileModel;
-import org.edx.mobile.module.prefs.UserPrefs;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -81,41 +77,24 @@ public class FileUtil {
     }
 
     /**
-     * Returns user storage directory under /Android/data/ folder for the currently logged in user
-     * or if the sd-card download is enabled the sd-card data location will be used.
-     * This is the folder where all video downloads should be kept.
+     * Returns the directory of a user to download the videos to, under the given app directory,
+     * creating it along with a .nomedia file, so that the videos don't show up in the gallery.
      *
-     * @param context
-     * @param environment
-     * @return
+     * @param appDir   App directory of a storage volume (such as Phone memory / SD-Card).
+     * @param username User name.
+     * @return The user's video directory.
      */
-    @Nullable
-    public static File getDownloadDirectory(Context context, IEdxEnvironment environment) {
-        final File downloadDir;
-        final UserPrefs userPref = environment.getUserPrefs();
-        if (environment.getConfig().isDownloadToSDCardEnabled() && userPref.isDownloadToSDCardEnabled()
-                && isRemovableStorageAvailable(context)) {
-            downloadDir = getRemovableStorageAppDir(context);
-        } else {
-            // If no removable storage found, set app internal storage directory
-            // as download directory
-            downloadDir = getExternalAppDir(context);
-        }
-
-        final ProfileModel profile = userPref.getProfile();
-        if (downloadDir != null && profile != null) {
-            final File usersVideosDir = getUserVideoDirectory(downloadDir, profile.username);
-            usersVideosDir.mkdirs();
-            try {
-                final File noMediaFile = new File(usersVideosDir, ".nomedia");
-                noMediaFile.createNewFile();
-            } catch (IOException ioException) {
-                logger.error(ioException);
-            }
-
-            return usersVideosDir;
+    @NonNull
+    public static File prepareUserVideoDirectory(@NonNull File appDir, @NonNull String username) {
+        final File usersVideosDir = getUserVideoDirectory(appDir, username);
+        usersVideosDir.mkdirs();
+        try {
+            final File noMediaFile = new File(usersVideosDir, ".nomedia");
+            noMediaFile.createNewFile();
+        } catch (IOException ioException) {
+            logger.error(ioException);
         }
-        return null;
+        return usersVideosDir;
     }
 
     /**
@@ -132,50 +111,15 @@ public class FileUtil {
     }
 
     /**
-     * Utility method to return all downloaded files from the External Storage (such as Phone memory and SD-Card).
-     *
-     * @param context The current context.
-     * @param profile Current User Profile.
-     * @return Return all files from the External Storage.
-     */
-    public static ArrayList<File> getAllFileFromExternalStorage(Context context, ProfileModel profile) {
-        final File externalAppDir = FileUtil.getUserVideoDirectory(FileUtil.getExternalAppDir(context)
-                , profile.username);
-        final ArrayList<File> extraFiles = new ArrayList<>();
-        if (externalAppDir.exists()) {
-            extraFiles.addAll(Arrays.asList(externalAppDir.listFiles()));
-        }
-        if (FileUtil.isRemovableStorageAvailable(context)) {
-            File removableStorageAppDir = FileUtil.getUserVideoDirectory(FileUtil.getRemovableStorageAppDir(context)
-                    , profile.username);
-            if (removableStorageAppDir.exists()) {
-                extraFiles.addAll(Arrays.asList(removableStorageAppDir.listFiles()));
-            }
-        }
-        return extraFiles;
-    }
-
-    /**
-     * Utility method to delete the extra files excluding files that paths are available in the database.
-     * and '.nomedia'(restrict media players to scan the media files) file.
+     * Utility method to return the directory that has the videos shared by all the users.
      *
-     * @param dbEntries  Files path that are exist in database.
-     * @param extraFiles Files needed to delete.
+     * @param appDir App directory of a storage volume (such as Phone memory / SD-Card).
+     * @return The video store directory.
      */
-    public static void deleteExtraFilesNotInDatabase(List<VideoModel> dbEntries, ArrayList<File> extraFiles) {
-        boolean fileExist;
-        for (File extraFile : extraFiles) {
-            final String path = extraFile.getAbsolutePath();
-            fileExist = false;
-            for (VideoModel videoModel : dbEntries) {
-                if (path.equals(videoModel.getFilePath())) {
-                    fileExist = true;
-                }
-            }
-            if (!fileExist && !path.endsWith(".nomedia")) {
-                FileUtil.deleteRecursive(extraFile);
-            }
-        }
+    @NonNull
+    public static File getVideoStoreDirectory(@NonNull File appDir) {
+        final File videosDir = new File(appDir, AppConstants.Directories.VIDEOS);
+        return new File(videosDir, AppConstants.Directories.VIDEO_STORE);
     }
 
     /**
@@ -253,6 +197,26 @@ public class FileUtil {
         fileOrDirectory.delete();
     }
 
+    /**
+     * Returns the size of a file, or of all the files in a directory recursively.
+     *
+     * @param fileOrDirectory The file or directory to measure.
+     * @return Size in bytes.
+     */
+    public static long getSizeRecursive(@NonNull File fileOrDirectory) {
+        if (!fileOrDirectory.isDirectory()) {
+            return fileOrDirectory.length();
+        }
+        long size = 0;
+        final File[] filesList = fileOrDirectory.listFiles();
+        if (filesList != null) {
+            for (File child : filesList) {
+                size += getSizeRecursive(child);
+            }
+        }
+        return size;
+    }
+
     /**
      * Check that the video file exists on a given file path
      *
@@ -4,13 +4,20 @@ import androidx.annotation.NonNull;
 
 import org.edx.mobile.logger.Logger;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public class Sha1Util {
     private static final Logger logger = new Logger(Sha1Util.class);
 
+    /**
+     * Size of the regions of a file mapped at a time while hashing it.
+     */
+    private static final long MAPPED_REGION_SIZE = 32 * 1024 * 1024;
+
     /**
      * @param text The plain text to hash.
      * @return SHA1 hash of the given text or the plain text if hashing failed.
@@ -27,6 +34,29 @@ public class Sha1Util {
         }
     }
 
+    /**
+     * @param channel  The file to hash.
+     * @param position Position of the region of the file to hash.
+     * @param size     Size of the region of the file to hash.
+     * @return SHA1 hash of the region of the file. The file is read through memory mapping, so
+     * its bytes aren't copied to the heap.
+     */
+    @NonNull
+    public static String SHA1(@NonNull FileChannel channel, long position, long size)
+            throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        for (long offset = 0; offset < size; offset += MAPPED_REGION_SIZE) {
+            md.update(channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                    Math.min(MAPPED_REGION_SIZE, size - offset)));
+        }
+        return convertToHex(md.digest());
+    }
+
     public static String convertToHex(@NonNull byte[] data) {
         StringBuilder buf = new StringBuilder();
         for (byte b : data) {
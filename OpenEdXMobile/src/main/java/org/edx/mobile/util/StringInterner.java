@@ -0,0 +1,53 @@
+package org.edx.mobile.util;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a single copy of equal strings, as {@link String#intern()} does, but in a pool of its own
+ * that holds at most a given no of strings, instead of the pool of the VM that is never trimmed.
+ * Once the pool is full it is cleared and filled again, which at worst leaves a few equal strings
+ * with more than one copy.
+ * <p>
+ * Safe to use from several threads at once, as when the course structures are normalized in
+ * parallel.
+ */
+public class StringInterner {
+    private final int maxSize;
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize Most no of strings to keep.
+     */
+    public StringInterner(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The copy kept of a string equal to the given one, or the given string itself if
+     * none is kept yet, in which case it is kept from now on.
+     */
+    @Nullable
+    public String intern(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        final String interned = strings.get(value);
+        if (interned != null) {
+            return interned;
+        }
+        if (strings.size() >= maxSize) {
+            strings.clear();
+        }
+        final String previous = strings.putIfAbsent(value, value);
+        return previous != null ? previous : value;
+    }
+
+    /**
+     * @return No of strings kept.
+     */
+    public int size() {
+        return strings.size();
+    }
+}
@@ -19,9 +19,7 @@ import androidx.annotation.NonNull;
 import com.google.inject.Inject;
 
 import org.edx.mobile.R;
-import org.edx.mobile.course.CourseAPI;
 import org.edx.mobile.event.VideoPlaybackEvent;
-import org.edx.mobile.http.callback.Callback;
 import org.edx.mobile.logger.Logger;
 import org.edx.mobile.model.api.TranscriptModel;
 import org.edx.mobile.model.course.VideoBlockModel;
@@ -34,7 +32,6 @@ import org.edx.mobile.player.TranscriptListener;
 import org.edx.mobile.player.TranscriptManager;
 import org.edx.mobile.util.LocaleUtils;
 import org.edx.mobile.view.adapters.TranscriptAdapter;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -109,8 +106,6 @@ public abstract class BaseCourseUnitVideoFragment extends CourseUnitFragment
     @Inject
     LoginPrefs loginPrefs;
     @Inject
-    private CourseAPI courseApi;
-    @Inject
     private TranscriptManager transcriptManager;
 
     private ViewTreeObserver.OnGlobalLayoutListener transcriptListLayoutListener;
@@ -361,13 +356,7 @@ public abstract class BaseCourseUnitVideoFragment extends CourseUnitFragment
                     .updateVideoWatchedState(v.videoId, DownloadEntry.WatchedState.WATCHED,
                             watchedStateCallback);
         }
-        markComponentCompleted();
-        courseApi.markBlocksCompletion(unit.getCourseId(), new String[]{unit.getId()}).enqueue(new Callback<JSONObject>() {
-            @Override
-            protected void onResponse(@NonNull JSONObject responseBody) {
-                // Nothing to do here
-            }
-        });
+        markComponentCompleted(true);
         // mark offset as zero, so that playback will resume from start next time
         saveCurrentPlaybackPosition(0);
     }
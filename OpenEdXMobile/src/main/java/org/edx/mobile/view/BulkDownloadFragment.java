@@ -36,6 +36,7 @@ import org.edx.mobile.model.course.VideoBlockModel;
 import org.edx.mobile.model.db.DownloadEntry;
 import org.edx.mobile.model.download.NativeDownloadModel;
 import org.edx.mobile.module.db.DataCallback;
+import org.edx.mobile.module.download.DownloadProgressHub;
 import org.edx.mobile.module.prefs.VideoPrefs;
 import org.edx.mobile.module.storage.BulkVideosDownloadCancelledEvent;
 import org.edx.mobile.module.storage.BulkVideosDownloadStartedEvent;
@@ -80,12 +81,13 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
     }
 
     private static final int DELETE_DELAY_MS = 4000;
-    private static final int DOWNLOAD_PROGRESS_DELAY_MS = 2000;
 
     private RowBulkDownloadBinding binding;
     private CourseOutlineAdapter.DownloadListener downloadListener;
     @Inject
     protected IEdxEnvironment environment;
+    @Inject
+    private DownloadProgressHub downloadProgressHub;
     private VideoPrefs prefManager;
     private SwitchState switchState = SwitchState.DEFAULT;
     private boolean isDeleteScheduled = false;
@@ -290,7 +292,7 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
         switchState = prefManager.getBulkDownloadSwitchState(videosStatus.courseComponentId);
 
         if (videosStatus.allVideosDownloaded()) {
-            bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+            stopDownloadProgressUpdates();
             binding.pbDownload.setVisibility(View.GONE);
 
             setViewState(FontAwesomeIcons.fa_film, Animation.NONE, R.string.download_complete,
@@ -334,7 +336,7 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
             ViewCompat.setImportantForAccessibility(binding.getRoot(), ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO);
             setSwitchAccessibility(R.string.switch_on_all_downloading);
         } else {
-            bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+            stopDownloadProgressUpdates();
             binding.pbDownload.setVisibility(View.GONE);
 
             setViewState(FontAwesomeIcons.fa_film, Animation.NONE,
@@ -428,7 +430,7 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
                     prefManager.setBulkDownloadSwitchState(switchState, videosStatus.courseComponentId);
                     // Delete all videos after a delay
                     startVideosDeletion();
-                    bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+                    stopDownloadProgressUpdates();
                     updateUI();
 
                     environment.getAnalyticsRegistry().trackBulkDownloadSwitchOff(
@@ -475,7 +477,7 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
         @Override
         public void run() {
             // Before starting deletion stop showing progress of downloads first
-            bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+            stopDownloadProgressUpdates();
             final int deleted = environment.getStorage().removeDownloads(removableVideos);
             isDeleteScheduled = false;
             logger.debug("TOTAL_VIDEOS: " + removableVideos.size() + " - DELETE_VIDEOS: " + deleted);
@@ -483,11 +485,27 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
     };
 
     private void initDownloadProgressView() {
-        // Safety check to avoid multiple timers running at the same time
         bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
         bgThreadHandler.post(PROGRESS_RUNNABLE);
+        downloadProgressHub.subscribe(downloadProgressListener);
     }
 
+    private void stopDownloadProgressUpdates() {
+        downloadProgressHub.unsubscribe(downloadProgressListener);
+        bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+    }
+
+    /**
+     * Refreshes the download progress whenever the progress of the downloads changes.
+     */
+    private final DownloadProgressHub.Listener downloadProgressListener = new DownloadProgressHub.Listener() {
+        @Override
+        public void onDownloadProgressChanged(@NonNull List<NativeDownloadModel> changedDownloads) {
+            bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+            bgThreadHandler.post(PROGRESS_RUNNABLE);
+        }
+    };
+
     final Runnable PROGRESS_RUNNABLE = new Runnable() {
 
         public void run() {
@@ -497,6 +515,7 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
             }
 
             if (!videosStatus.allVideosDownloading(switchState)) {
+                downloadProgressHub.unsubscribe(downloadProgressListener);
                 binding.pbDownload.post(new Runnable() {
                     @Override
                     public void run() {
@@ -543,8 +562,6 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
                                 logger.error(ex);
                             }
                         });
-
-                bgThreadHandler.postDelayed(this, DOWNLOAD_PROGRESS_DELAY_MS);
             }
         }
     };
@@ -570,7 +587,7 @@ public class BulkDownloadFragment extends BaseFragment implements BaseFragment.P
     @Override
     public void onStop() {
         super.onStop();
-        bgThreadHandler.removeCallbacks(PROGRESS_RUNNABLE);
+        stopDownloadProgressUpdates();
         EventBus.getDefault().unregister(this);
     }
 
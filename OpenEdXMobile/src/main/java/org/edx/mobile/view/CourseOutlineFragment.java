@@ -4,7 +4,10 @@ import android.Manifest;
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.content.Intent;
+import android.database.MatrixCursor;
 import android.os.Bundle;
+import android.provider.BaseColumns;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -20,6 +23,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.SearchView;
+import androidx.cursoradapter.widget.SimpleCursorAdapter;
 import androidx.databinding.DataBindingUtil;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
@@ -39,6 +44,8 @@ import org.edx.mobile.R;
 import org.edx.mobile.base.BaseFragment;
 import org.edx.mobile.base.BaseFragmentActivity;
 import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.course.CourseSearchIndex;
+import org.edx.mobile.course.CourseStructurePatcher;
 import org.edx.mobile.databinding.LayoutCourseDatesBannerBinding;
 import org.edx.mobile.deeplink.Screen;
 import org.edx.mobile.event.CourseDashboardRefreshEvent;
@@ -72,6 +79,7 @@ import org.edx.mobile.module.analytics.Analytics;
 import org.edx.mobile.module.storage.DownloadCompletedEvent;
 import org.edx.mobile.module.storage.DownloadedVideoDeletedEvent;
 import org.edx.mobile.module.storage.IStorage;
+import org.edx.mobile.services.BlockCompletionSyncer;
 import org.edx.mobile.services.EdxCookieManager;
 import org.edx.mobile.services.VideoDownloadHelper;
 import org.edx.mobile.util.ConfigUtil;
@@ -83,6 +91,7 @@ import org.edx.mobile.view.common.TaskProgressCallback;
 import org.edx.mobile.viewModel.CourseDateViewModel;
 import org.edx.mobile.viewModel.ViewModelFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -98,6 +107,9 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
     private final Logger logger = new Logger(getClass().getName());
     private static final int AUTOSCROLL_DELAY_MS = 500;
     private static final int SNACKBAR_SHOWTIME_MS = 5000;
+    private static final int MAX_SEARCH_RESULTS = 20;
+    private static final String SEARCH_COLUMN_TITLE = "title";
+    private static final String SEARCH_COLUMN_PARENT = "parent";
 
     private CourseOutlineAdapter adapter;
     private ListView listView;
@@ -113,12 +125,18 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
     // Flag to differentiate between single or multiple video download
     private boolean isSingleVideoDownload;
     private ActionMode deleteMode;
-    private DownloadEntry downloadEntry;
+    private VideoBlockModel downloadVideo;
     private List<? extends HasDownloadEntry> downloadEntries;
     private SwipeRefreshLayout swipeContainer;
 
     private Call<CourseStructureV1Model> getHierarchyCall;
 
+    /**
+     * Time at which the course outline was requested, used to track the time to first outline.
+     */
+    private long outlineRequestedAt;
+    private boolean isOutlineInAppLevelCache;
+
     private FullScreenErrorNotification errorNotification;
 
     @Inject
@@ -127,6 +145,9 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
     @Inject
     private VideoDownloadHelper downloadManager;
 
+    @Inject
+    private BlockCompletionSyncer completionSyncer;
+
     private CourseDateViewModel courseDateViewModel;
 
     private View loadingIndicator;
@@ -179,6 +200,8 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
         });
         UiUtil.setSwipeRefreshLayoutColors(swipeContainer);
         restore(bundle);
+        // The course can be searched from its outline
+        setHasOptionsMenu(isOnCourseOutline && !isVideoMode);
         initListView(view);
         initObserver();
         fetchCourseComponent();
@@ -188,6 +211,72 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
         return view;
     }
 
+    @Override
+    public void onCreateOptionsMenu(@NonNull Menu menu, @NonNull MenuInflater inflater) {
+        inflater.inflate(R.menu.course_outline_menu, menu);
+        initSearchView(menu.findItem(R.id.menu_item_search));
+    }
+
+    /**
+     * Suggest the sections, subsections and units of the course matching the query as it is
+     * typed, looked up in the search index of the course, and open the one picked.
+     */
+    private void initSearchView(@NonNull final MenuItem searchItem) {
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.course_search_hint));
+        final List<CourseComponent> results = new ArrayList<>();
+        final SimpleCursorAdapter suggestionsAdapter = new SimpleCursorAdapter(getContext(),
+                android.R.layout.simple_list_item_2, null,
+                new String[]{SEARCH_COLUMN_TITLE, SEARCH_COLUMN_PARENT},
+                new int[]{android.R.id.text1, android.R.id.text2}, 0);
+        searchView.setSuggestionsAdapter(suggestionsAdapter);
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                results.clear();
+                final CourseSearchIndex searchIndex = courseManager.getSearchIndex(
+                        courseData.getCourseId());
+                if (searchIndex != null) {
+                    results.addAll(searchIndex.search(query, MAX_SEARCH_RESULTS));
+                }
+                final MatrixCursor cursor = new MatrixCursor(new String[]{BaseColumns._ID,
+                        SEARCH_COLUMN_TITLE, SEARCH_COLUMN_PARENT});
+                for (int i = 0; i < results.size(); i++) {
+                    final CourseComponent component = results.get(i);
+                    final CourseComponent parent = component.getParent();
+                    // The sections are shown without their parent, which is the course itself
+                    cursor.addRow(new Object[]{i, component.getDisplayName(),
+                            parent == null || parent.getParent() == null ? null :
+                                    parent.getDisplayName()});
+                }
+                suggestionsAdapter.changeCursor(cursor);
+                return true;
+            }
+        });
+        searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+            @Override
+            public boolean onSuggestionSelect(int position) {
+                return false;
+            }
+
+            @Override
+            public boolean onSuggestionClick(int position) {
+                if (position < results.size()) {
+                    searchItem.collapseActionView();
+                    environment.getRouter().showCourseContainerOutline(CourseOutlineFragment.this,
+                            REQUEST_SHOW_COURSE_UNIT_DETAIL, courseData, courseUpgradeData,
+                            results.get(position).getId(), null, isVideoMode);
+                }
+                return true;
+            }
+        });
+    }
+
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
@@ -249,6 +338,11 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
 
     private void fetchCourseComponent() {
         final String courseId = courseData.getCourseId();
+        if (isOnCourseOutline) {
+            courseManager.markCourseAccessed(courseId);
+            outlineRequestedAt = SystemClock.elapsedRealtime();
+        }
+        isOutlineInAppLevelCache = true;
         if (courseComponentId != null) {
             final CourseComponent courseComponent = courseManager.getComponentByIdFromAppLevelCache(courseId, courseComponentId);
             if (courseComponent != null) {
@@ -264,6 +358,7 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
             loadData(courseComponent);
             return;
         }
+        isOutlineInAppLevelCache = false;
         // Check if course data is available in persistable cache
         loadingIndicator.setVisibility(View.VISIBLE);
         // Prepare the loader. Either re-connect with an existing one or start a new one.
@@ -325,13 +420,22 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
         final String blocksApiVersion = environment.getConfig().getApiUrlVersionConfig().getBlocksApiVersion();
         final String courseId = courseData.getCourseId();
         getHierarchyCall = courseApi.getCourseStructureWithoutStale(blocksApiVersion, courseId);
-        getHierarchyCall.enqueue(new CourseAPI.GetCourseStructureCallback(getActivity(), courseId,
+        getHierarchyCall.enqueue(new ErrorHandlingCallback<CourseStructureV1Model>(getActivity(),
                 progressCallback, errorNotification, null, this) {
             @Override
-            protected void onResponse(@NonNull final CourseComponent courseComponent) {
-                courseManager.addCourseDataInAppLevelCache(courseId, courseComponent);
-                loadData(validateCourseComponent(courseComponent));
+            protected void onResponse(@NonNull final CourseStructureV1Model model) {
+                final CourseStructurePatcher.Result result;
+                try {
+                    // Patch the course already on screen instead of rebuilding it from scratch
+                    result = courseManager.updateCourseDataInAppLevelCache(courseId, model);
+                } catch (CourseContentNotValidException e) {
+                    onFailure(e);
+                    return;
+                }
+                loadData(validateCourseComponent(result.course), result);
                 swipeContainer.setRefreshing(false);
+                // Server is reachable, so it's a good time to send the completions left behind
+                completionSyncer.syncPendingCompletions();
             }
 
             @Override
@@ -436,8 +540,8 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
                 }
 
                 @Override
-                public void download(DownloadEntry videoData) {
-                    downloadEntry = videoData;
+                public void download(VideoBlockModel video) {
+                    downloadVideo = video;
                     isSingleVideoDownload = true;
                     askForPermission(new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE},
                             PermissionsUtil.WRITE_STORAGE_PERMISSION_REQUEST);
@@ -498,7 +602,7 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
         switch (requestCode) {
             case PermissionsUtil.WRITE_STORAGE_PERMISSION_REQUEST:
                 if (isSingleVideoDownload) {
-                    downloadManager.downloadVideo(downloadEntry, getActivity(), CourseOutlineFragment.this);
+                    downloadManager.downloadVideo(downloadVideo, getActivity(), CourseOutlineFragment.this);
                 } else {
                     downloadManager.downloadVideos(downloadEntries, getActivity(), CourseOutlineFragment.this);
                 }
@@ -512,7 +616,7 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
     @Override
     public void onPermissionDenied(String[] permissions, int requestCode) {
         if (isSingleVideoDownload) {
-            downloadEntry = null;
+            downloadVideo = null;
         } else {
             if (downloadEntries != null) {
                 downloadEntries.clear();
@@ -645,6 +749,17 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
      * @param courseComponent Components of course to be load
      */
     private void loadData(@NonNull CourseComponent courseComponent) {
+        loadData(courseComponent, null);
+    }
+
+    /**
+     * Load data to the adapter
+     *
+     * @param courseComponent Components of course to be load
+     * @param patchResult     Result of patching the course with refreshed data, if any
+     */
+    private void loadData(@NonNull CourseComponent courseComponent,
+                          @Nullable CourseStructurePatcher.Result patchResult) {
         courseComponentId = courseComponent.getId();
         if (courseData == null || getActivity() == null)
             return;
@@ -660,7 +775,16 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
             canFetchBannerInfo = false;
         }
 
-        adapter.setData(courseComponent);
+        if (patchResult != null) {
+            adapter.applyChanges(courseComponent, patchResult);
+        } else {
+            adapter.setData(courseComponent);
+        }
+        if (outlineRequestedAt != 0) {
+            courseManager.recordTimeToFirstOutline(courseData.getCourseId(),
+                    SystemClock.elapsedRealtime() - outlineRequestedAt, isOutlineInAppLevelCache);
+            outlineRequestedAt = 0;
+        }
         if (adapter.hasCourseData()) {
             setUpBulkDownloadHeader(courseComponent);
             errorNotification.hideError();
@@ -829,22 +953,45 @@ public class CourseOutlineFragment extends OfflineSupportBaseFragment
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == REQUEST_SHOW_COURSE_UNIT_DETAIL && resultCode == Activity.RESULT_OK
                 && data != null) {
-            final CourseComponent outlineComp = courseManager.getComponentByIdFromAppLevelCache(
-                    courseData.getCourseId(), courseComponentId);
-            navigateToCourseUnit(data, courseData, outlineComp);
+            final CourseComponent outlineComp = getOutlineComponent();
+            if (outlineComp != null) {
+                navigateToCourseUnit(data, courseData, outlineComp);
+            }
         }
     }
 
     protected boolean isOnCourseOutline() {
         if (courseComponentId == null) return true;
-        final CourseComponent outlineComp = courseManager.getComponentByIdFromAppLevelCache(
-                courseData.getCourseId(), courseComponentId);
+        final CourseComponent outlineComp = getOutlineComponent();
+        if (outlineComp == null) {
+            // The course data isn't available, so this can only be told once it is loaded
+            return false;
+        }
         final BlockPath outlinePath = outlineComp.getPath();
         final int outlinePathSize = outlinePath.getPath().size();
 
         return outlinePathSize <= 1;
     }
 
+    /**
+     * @return The component this outline shows, from the app level cache, or else from the
+     * persistable cache, or null if the course data isn't available.
+     */
+    @Nullable
+    private CourseComponent getOutlineComponent() {
+        if (courseComponentId == null) {
+            return null;
+        }
+        final String courseId = courseData.getCourseId();
+        final CourseComponent outlineComp = courseManager.getComponentByIdFromAppLevelCache(
+                courseId, courseComponentId);
+        if (outlineComp != null) {
+            return outlineComp;
+        }
+        final String blocksApiVersion = environment.getConfig().getApiUrlVersionConfig().getBlocksApiVersion();
+        return courseManager.getComponentById(blocksApiVersion, courseId, courseComponentId);
+    }
+
     @SuppressWarnings("unused")
     public void onEventMainThread(DownloadCompletedEvent e) {
         adapter.notifyDataSetChanged();
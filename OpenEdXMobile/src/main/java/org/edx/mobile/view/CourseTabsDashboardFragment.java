@@ -1,10 +1,10 @@
 package org.edx.mobile.view;
 
+import android.app.Activity;
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.text.TextUtils;
-import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -15,23 +15,31 @@ import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.PluralsRes;
 import androidx.databinding.DataBindingUtil;
 
 import com.google.inject.Inject;
 import com.joanzapata.iconify.fonts.FontAwesomeIcons;
 
 import org.edx.mobile.R;
+import org.edx.mobile.base.BaseFragmentActivity;
 import org.edx.mobile.course.CourseAPI;
 import org.edx.mobile.databinding.FragmentDashboardErrorLayoutBinding;
 import org.edx.mobile.deeplink.ScreenDef;
 import org.edx.mobile.logger.Logger;
 import org.edx.mobile.model.FragmentItemModel;
 import org.edx.mobile.model.api.EnrolledCoursesResponse;
+import org.edx.mobile.model.download.NativeDownloadModel;
 import org.edx.mobile.module.analytics.Analytics;
 import org.edx.mobile.module.analytics.AnalyticsRegistry;
-import org.edx.mobile.module.db.DataCallback;
+import org.edx.mobile.module.download.DownloadProgressHub;
+import org.edx.mobile.module.storage.CoursePackage;
+import org.edx.mobile.module.storage.CoursePackageManager;
+import org.edx.mobile.task.ExportCoursePackageTask;
+import org.edx.mobile.task.ImportCoursePackageTask;
 import org.edx.mobile.util.DateUtil;
 import org.edx.mobile.util.NetworkUtil;
+import org.edx.mobile.util.ResourceUtil;
 import org.edx.mobile.util.UiUtil;
 import org.edx.mobile.util.images.ShareUtils;
 import org.edx.mobile.view.custom.ProgressWheel;
@@ -44,6 +52,8 @@ import static android.widget.FrameLayout.LayoutParams;
 
 public class CourseTabsDashboardFragment extends TabsBaseFragment {
     private static final String ARG_COURSE_NOT_FOUND = "ARG_COURSE_NOT_FOUND";
+    private static final int REQUEST_EXPORT_PACKAGE = 1;
+    private static final int REQUEST_IMPORT_PACKAGE = 2;
     protected final Logger logger = new Logger(getClass().getName());
 
     @Nullable
@@ -57,9 +67,13 @@ public class CourseTabsDashboardFragment extends TabsBaseFragment {
     @Inject
     private CourseAPI courseApi;
 
-    private final Handler handler = new Handler(Looper.getMainLooper());
-    private Runnable updateDownloadProgressRunnable;
+    @Inject
+    private DownloadProgressHub downloadProgressHub;
+
+    @Nullable
+    private DownloadProgressHub.Listener downloadProgressListener;
     private MenuItem downloadsMenuItem;
+    private ProgressWheel progressWheel;
 
     @NonNull
     public static CourseTabsDashboardFragment newInstance(
@@ -153,44 +167,91 @@ public class CourseTabsDashboardFragment extends TabsBaseFragment {
                 ShareUtils.showCourseShareMenu(getActivity(), getActivity().findViewById(R.id.menu_item_share),
                         courseData, analyticsRegistry, environment);
                 return true;
+            case R.id.menu_item_export_package:
+                startActivityForResult(new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType(CoursePackage.MIME_TYPE)
+                        .putExtra(Intent.EXTRA_TITLE, courseData.getCourse().getName()
+                                + CoursePackage.FILE_EXTENSION), REQUEST_EXPORT_PACKAGE);
+                return true;
+            case R.id.menu_item_import_package:
+                startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                        .addCategory(Intent.CATEGORY_OPENABLE)
+                        .setType("*/*"), REQUEST_IMPORT_PACKAGE);
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        final Uri uri = data == null ? null : data.getData();
+        if (resultCode != Activity.RESULT_OK || uri == null || courseData == null) {
+            return;
+        }
+        switch (requestCode) {
+            case REQUEST_EXPORT_PACKAGE:
+                new ExportCoursePackageTask(getActivity(), courseData.getCourse().getId(), uri) {
+                    @Override
+                    protected void onSuccess(CoursePackage.Index index) {
+                        showPackageMessage(R.plurals.course_package_exported, index.videos.size());
+                    }
+                }.execute();
+                break;
+            case REQUEST_IMPORT_PACKAGE:
+                new ImportCoursePackageTask(getActivity(), uri) {
+                    @Override
+                    protected void onSuccess(CoursePackageManager.Report report) {
+                        showPackageMessage(R.plurals.course_package_imported, report.videoCount);
+                    }
+                }.execute();
+                break;
+        }
+    }
+
+    private void showPackageMessage(@PluralsRes int pluralsResId, int videoCount) {
+        if (getActivity() instanceof BaseFragmentActivity) {
+            ((BaseFragmentActivity) getActivity()).showInfoMessage(
+                    ResourceUtil.getFormattedStringForQuantity(getResources(), pluralsResId,
+                            "count", videoCount).toString());
+        }
+    }
+
     @Override
     public void onStart() {
         super.onStart();
-        if (updateDownloadProgressRunnable != null) {
-            updateDownloadProgressRunnable.run();
+        if (downloadProgressListener != null) {
+            downloadProgressHub.subscribe(downloadProgressListener);
+            updateDownloadProgress();
         }
     }
 
     @Override
     public void onStop() {
         super.onStop();
-        if (updateDownloadProgressRunnable != null) {
-            handler.removeCallbacks(updateDownloadProgressRunnable);
+        if (downloadProgressListener != null) {
+            downloadProgressHub.unsubscribe(downloadProgressListener);
         }
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (updateDownloadProgressRunnable != null) {
-            handler.removeCallbacks(updateDownloadProgressRunnable);
+        if (downloadProgressListener != null) {
+            downloadProgressHub.unsubscribe(downloadProgressListener);
             /* Assigning null here so that when this fragment is destroyed (e.g. due to orientation
-             * change) the runnable is recreated and the download progress is updated properly.
+             * change) the listener is recreated and the download progress is updated properly.
              */
-            updateDownloadProgressRunnable = null;
+            downloadProgressListener = null;
         }
     }
 
     public void handleDownloadProgressMenuItem(Menu menu) {
         downloadsMenuItem = menu.findItem(R.id.menu_item_download_progress);
         final View progressView = downloadsMenuItem.getActionView();
-        final ProgressWheel progressWheel = (ProgressWheel)
-                progressView.findViewById(R.id.progress_wheel);
+        progressWheel = (ProgressWheel) progressView.findViewById(R.id.progress_wheel);
         downloadsMenuItem.setVisible(downloadsMenuItem.isVisible());
         progressWheel.setProgress(progressWheel.getProgress());
         progressView.setOnClickListener(new View.OnClickListener() {
@@ -199,36 +260,30 @@ public class CourseTabsDashboardFragment extends TabsBaseFragment {
                 environment.getRouter().showDownloads(getActivity());
             }
         });
-        if (updateDownloadProgressRunnable == null) {
-            updateDownloadProgressRunnable = new Runnable() {
+        if (downloadProgressListener == null) {
+            downloadProgressListener = new DownloadProgressHub.Listener() {
                 @Override
-                public void run() {
-                    if (!NetworkUtil.isConnected(getContext()) ||
-                            !environment.getDatabase().isAnyVideoDownloading(null)) {
-                        downloadsMenuItem.setVisible(false);
-                        progressWheel.setProgressPercent(0);
-                    } else {
-                        downloadsMenuItem.setVisible(true);
-                        environment.getStorage().getAverageDownloadProgress(
-                                new DataCallback<Integer>() {
-                                    @Override
-                                    public void onResult(Integer result) {
-                                        int progressPercent = result;
-                                        if (progressPercent >= 0 && progressPercent <= 100) {
-                                            progressWheel.setProgressPercent(progressPercent);
-                                        }
-                                    }
-
-                                    @Override
-                                    public void onFail(Exception ex) {
-                                        logger.error(ex);
-                                    }
-                                });
-                    }
-                    handler.postDelayed(this, DateUtils.SECOND_IN_MILLIS);
+                public void onDownloadProgressChanged(@NonNull List<NativeDownloadModel> changedDownloads) {
+                    updateDownloadProgress();
                 }
             };
-            updateDownloadProgressRunnable.run();
+            downloadProgressHub.subscribe(downloadProgressListener);
+            // The listener only hears of changes, so show the current state right away
+            updateDownloadProgress();
+        }
+    }
+
+    private void updateDownloadProgress() {
+        if (!NetworkUtil.isConnected(getContext()) ||
+                !environment.getDatabase().isAnyVideoDownloading(null)) {
+            downloadsMenuItem.setVisible(false);
+            progressWheel.setProgressPercent(0);
+        } else {
+            downloadsMenuItem.setVisible(true);
+            final int progressPercent = downloadProgressHub.getAverageProgress();
+            if (progressPercent >= 0 && progressPercent <= 100) {
+                progressWheel.setProgressPercent(progressPercent);
+            }
         }
     }
 
@@ -311,11 +366,12 @@ public class CourseTabsDashboardFragment extends TabsBaseFragment {
     }
 
     private void setDownloadProgressMenuItemVisibility(boolean isVisible) {
-        if (updateDownloadProgressRunnable != null) {
-            handler.removeCallbacks(updateDownloadProgressRunnable);
+        if (downloadProgressListener != null) {
             if (isVisible) {
-                handler.post(updateDownloadProgressRunnable);
+                downloadProgressHub.subscribe(downloadProgressListener);
+                updateDownloadProgress();
             } else {
+                downloadProgressHub.unsubscribe(downloadProgressListener);
                 if (downloadsMenuItem != null) {
                     downloadsMenuItem.setVisible(false);
                 }
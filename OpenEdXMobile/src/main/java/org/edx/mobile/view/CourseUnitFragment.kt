@@ -5,6 +5,8 @@ import com.google.inject.Inject
 import org.edx.mobile.base.BaseFragment
 import org.edx.mobile.core.IEdxEnvironment
 import org.edx.mobile.model.course.CourseComponent
+import org.edx.mobile.module.prefs.CompletionPrefs
+import org.edx.mobile.services.BlockCompletionSyncer
 import org.edx.mobile.services.CourseManager
 
 abstract class CourseUnitFragment : BaseFragment() {
@@ -20,14 +22,35 @@ abstract class CourseUnitFragment : BaseFragment() {
     @Inject
     protected var courseManager: CourseManager? = null
 
+    @JvmField
+    @Inject
+    protected var completionPrefs: CompletionPrefs? = null
+
+    @JvmField
+    @Inject
+    protected var completionSyncer: BlockCompletionSyncer? = null
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         unit = if (arguments == null) null else arguments?.getSerializable(Router.EXTRA_COURSE_UNIT) as CourseComponent
     }
 
-    fun markComponentCompleted() {
+    /**
+     * Mark the unit completed in the cached course data and keep its completion on the device,
+     * so that it survives till the server reports it.
+     *
+     * @param syncWithServer Whether the completion has to be sent to server, i.e. the server
+     * doesn't track the completion of the unit by itself.
+     */
+    @JvmOverloads
+    fun markComponentCompleted(syncWithServer: Boolean = false) {
         unit?.let {
             courseManager?.getComponentByIdFromAppLevelCache(it.courseId, it.id)?.setCompleted(1)
+            if (syncWithServer) {
+                completionSyncer?.markBlockCompleted(it.courseId, it.id)
+            } else {
+                completionPrefs?.addCompletedBlock(it.courseId, it.id, false)
+            }
         }
     }
 
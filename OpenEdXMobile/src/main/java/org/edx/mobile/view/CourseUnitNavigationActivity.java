@@ -30,11 +30,11 @@ import org.edx.mobile.event.FileSelectionEvent;
 import org.edx.mobile.event.VideoPlaybackEvent;
 import org.edx.mobile.http.callback.ErrorHandlingCallback;
 import org.edx.mobile.logger.Logger;
-import org.edx.mobile.model.course.BlockType;
 import org.edx.mobile.model.course.CourseComponent;
 import org.edx.mobile.model.course.CourseStatus;
 import org.edx.mobile.model.course.VideoBlockModel;
 import org.edx.mobile.module.analytics.Analytics;
+import org.edx.mobile.module.download.CourseDownloadOrder;
 import org.edx.mobile.util.FileUtil;
 import org.edx.mobile.util.UiUtil;
 import org.edx.mobile.util.images.ShareUtils;
@@ -44,7 +44,6 @@ import org.edx.mobile.view.dialog.CelebratoryModalDialogFragment;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.EnumSet;
 import java.util.List;
 
 import de.greenrobot.event.EventBus;
@@ -73,6 +72,9 @@ public class CourseUnitNavigationActivity extends CourseBaseActivity implements
     @Inject
     private CourseAPI courseApi;
 
+    @Inject
+    private CourseDownloadOrder downloadOrder;
+
     private PreLoadingListener.State viewPagerState = PreLoadingListener.State.DEFAULT;
 
     private boolean isFirstSection = false;
@@ -230,6 +232,8 @@ public class CourseUnitNavigationActivity extends CourseBaseActivity implements
 
         courseComponentId = selectedUnit.getId();
         environment.getDatabase().updateAccess(null, selectedUnit.getId(), true);
+        // The videos coming up next are the ones needed first
+        downloadOrder.prioritizeFrom(selectedUnit);
 
         updateUIForOrientation();
 
@@ -294,8 +298,9 @@ public class CourseUnitNavigationActivity extends CourseBaseActivity implements
     }
 
     private void updateDataModel() {
-        unitList.clear();
         if (selectedUnit == null || selectedUnit.getRoot() == null) {
+            unitList = new ArrayList<>();
+            pagerAdapter.setUnitList(unitList);
             logger.warn("selectedUnit is null?");
             return;   //should not happen
         }
@@ -303,17 +308,12 @@ public class CourseUnitNavigationActivity extends CourseBaseActivity implements
         //if we want to navigate through all unit of within the parent node,
         //we should use courseComponent instead.   Requirement maybe changed?
         // unitList.addAll( courseComponent.getChildLeafs() );
-        List<CourseComponent> leaves = new ArrayList<>();
-
-        if (isVideoMode) {
-            leaves = selectedUnit.getRoot().getVideos(false);
-        } else {
-            selectedUnit.getRoot().fetchAllLeafComponents(leaves, EnumSet.allOf(BlockType.class));
-        }
-        unitList.addAll(leaves);
+        // Not copied, as the units of the other subsections only get created when they're paged to
+        unitList = selectedUnit.getLeafSequence(isVideoMode);
+        pagerAdapter.setUnitList(unitList);
         pagerAdapter.notifyDataSetChanged();
 
-        int index = unitList.indexOf(selectedUnit);
+        int index = selectedUnit.getLeafIndex(isVideoMode);
         if (index >= 0) {
             pager2.setCurrentItem(index, false);
             tryToUpdateForEndOfSequential();
@@ -2,13 +2,14 @@ package org.edx.mobile.view;
 
 import android.app.DownloadManager;
 import android.os.Bundle;
-import android.os.Handler;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ListView;
 
+import com.google.inject.Inject;
+
 import org.edx.mobile.R;
 import org.edx.mobile.base.BaseFragmentActivity;
 import org.edx.mobile.model.VideoModel;
@@ -18,6 +19,7 @@ import org.edx.mobile.module.analytics.Analytics;
 import org.edx.mobile.module.db.DataCallback;
 import org.edx.mobile.module.db.IDbCallback;
 import org.edx.mobile.module.db.ObservableDataCallback;
+import org.edx.mobile.module.download.DownloadProgressHub;
 import org.edx.mobile.view.adapters.DownloadEntryAdapter;
 
 import java.util.ArrayList;
@@ -25,13 +27,19 @@ import java.util.List;
 
 public class DownloadListActivity extends BaseFragmentActivity {
 
-    public static int REFRESH_INTERVAL_IN_MILLISECONDS = 3000;
-
     @Nullable
     private DownloadEntryAdapter adapter;
 
+    @Inject
+    private DownloadProgressHub downloadProgressHub;
+
     @NonNull
-    private final Handler handler = new Handler();
+    private final DownloadProgressHub.Listener downloadProgressListener = new DownloadProgressHub.Listener() {
+        @Override
+        public void onDownloadProgressChanged(@NonNull List<NativeDownloadModel> changedDownloads) {
+            fetchOngoingDownloads();
+        }
+    };
 
     @NonNull
     private final ObservableDataCallback<List<DownloadEntryAdapter.Item>> observable = new ObservableDataCallback<>();
@@ -81,32 +89,23 @@ public class DownloadListActivity extends BaseFragmentActivity {
                 }
                 loadingIndicator.setVisibility(View.GONE);
                 downloadListView.setVisibility(View.VISIBLE);
-                fetchOngoingDownloadsAfterDelay();
             }
 
             @Override
             public void sendException(Exception ex) {
                 logger.error(ex);
-                fetchOngoingDownloadsAfterDelay();
-            }
-
-            private void fetchOngoingDownloadsAfterDelay() {
-                handler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        fetchOngoingDownloads();
-                    }
-                }, REFRESH_INTERVAL_IN_MILLISECONDS);
             }
         });
         fetchOngoingDownloads();
+        // Refresh the list whenever the progress of the downloads changes
+        downloadProgressHub.subscribe(downloadProgressListener);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
         observable.setObserver(null);
-        handler.removeCallbacksAndMessages(null);
+        downloadProgressHub.unsubscribe(downloadProgressListener);
     }
 
     @Override
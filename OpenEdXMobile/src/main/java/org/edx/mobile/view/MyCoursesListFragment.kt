@@ -205,6 +205,9 @@ class MyCoursesListFragment : OfflineSupportBaseFragment(), RefreshListener {
         }
         if (data.size > 0) {
             adapter.setItems(data)
+            // Load the recently accessed courses ahead of time, so their outline shows up right away
+            courseManager.warmUpAppLevelCache(environment.config.apiUrlVersionConfig.blocksApiVersion,
+                    data.map { it.course.id })
         }
         addFindCoursesFooter()
         adapter.notifyDataSetChanged()
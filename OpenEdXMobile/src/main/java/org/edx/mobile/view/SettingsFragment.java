@@ -1,5 +1,6 @@
 package org.edx.mobile.view;
 
+import android.content.DialogInterface;
 import android.os.Build;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -8,6 +9,9 @@ import android.view.ViewGroup;
 import android.widget.CompoundButton;
 import android.widget.LinearLayout;
 import android.widget.Switch;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AlertDialog;
 
 import com.google.inject.Inject;
 
@@ -18,10 +22,14 @@ import org.edx.mobile.event.MediaStatusChangeEvent;
 import org.edx.mobile.logger.Logger;
 import org.edx.mobile.module.analytics.Analytics;
 import org.edx.mobile.module.prefs.PrefManager;
+import org.edx.mobile.module.storage.DownloadMigrator;
 import org.edx.mobile.util.FileUtil;
+import org.edx.mobile.util.MemoryUtil;
 import org.edx.mobile.view.dialog.IDialogCallback;
 import org.edx.mobile.view.dialog.NetworkCheckDialogFragment;
 
+import java.io.File;
+
 import de.greenrobot.event.EventBus;
 
 
@@ -31,15 +39,24 @@ public class SettingsFragment extends BaseFragment {
 
     private final Logger logger = new Logger(SettingsFragment.class);
 
+    /**
+     * Storage limits for the downloads the user can choose from, in GB, 0 being no limit.
+     */
+    private static final int[] DOWNLOAD_QUOTA_OPTIONS_GB = {0, 1, 2, 5, 10, 20};
+
     @Inject
     protected IEdxEnvironment environment;
 
     @Inject
     ExtensionRegistry extensionRegistry;
 
+    @Inject
+    DownloadMigrator downloadMigrator;
+
     private Switch wifiSwitch;
     private Switch sdCardSwitch;
     private LinearLayout sdCardSettingsLayout;
+    private TextView downloadQuotaValue;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -57,6 +74,14 @@ public class SettingsFragment extends BaseFragment {
         sdCardSettingsLayout = (LinearLayout) layout.findViewById(R.id.sd_card_setting_layout);
         updateWifiSwitch();
         updateSDCardSwitch();
+        downloadQuotaValue = (TextView) layout.findViewById(R.id.download_quota_value);
+        layout.findViewById(R.id.download_quota_layout).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                showDownloadQuotaDialog();
+            }
+        });
+        updateDownloadQuota();
         final LinearLayout settingsLayout = (LinearLayout) layout.findViewById(R.id.settings_layout);
         for (SettingsExtension extension : extensionRegistry.forType(SettingsExtension.class)) {
             extension.onCreateSettingsView(settingsLayout);
@@ -116,6 +141,13 @@ public class SettingsFragment extends BaseFragment {
                 @Override
                 public void onCheckedChanged(CompoundButton compoundButton, boolean isChecked) {
                     prefManager.put(PrefManager.Key.DOWNLOAD_TO_SDCARD, isChecked);
+                    // Move the videos downloaded already along with the new downloads
+                    final File targetAppDir = isChecked ?
+                            FileUtil.getRemovableStorageAppDir(getActivity()) :
+                            FileUtil.getExternalAppDir(getActivity());
+                    if (targetAppDir != null) {
+                        downloadMigrator.migrateInBackground(targetAppDir);
+                    }
                     // Send analytics
                     if (isChecked)
                         environment.getAnalyticsRegistry().trackDownloadToSdCardSwitchOn();
@@ -127,6 +159,42 @@ public class SettingsFragment extends BaseFragment {
         }
     }
 
+    private void updateDownloadQuota() {
+        downloadQuotaValue.setText(getDownloadQuotaText(
+                environment.getUserPrefs().getDownloadStorageQuota()));
+    }
+
+    private CharSequence getDownloadQuotaText(long quota) {
+        return quota > 0 ? MemoryUtil.format(getContext(), quota) :
+                getString(R.string.settings_download_quota_none);
+    }
+
+    private void showDownloadQuotaDialog() {
+        final long quota = environment.getUserPrefs().getDownloadStorageQuota();
+        final CharSequence[] items = new CharSequence[DOWNLOAD_QUOTA_OPTIONS_GB.length];
+        int checkedItem = -1;
+        for (int i = 0; i < DOWNLOAD_QUOTA_OPTIONS_GB.length; i++) {
+            final long option = DOWNLOAD_QUOTA_OPTIONS_GB[i] * MemoryUtil.GB;
+            items[i] = getDownloadQuotaText(option);
+            if (option == quota) {
+                checkedItem = i;
+            }
+        }
+        new AlertDialog.Builder(getContext())
+                .setTitle(R.string.settings_download_quota_title)
+                .setSingleChoiceItems(items, checkedItem, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        environment.getUserPrefs().setDownloadStorageQuota(
+                                DOWNLOAD_QUOTA_OPTIONS_GB[which] * MemoryUtil.GB);
+                        updateDownloadQuota();
+                        dialog.dismiss();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
     protected void showWifiDialog() {
         final NetworkCheckDialogFragment newFragment = NetworkCheckDialogFragment.newInstance(getString(R.string.wifi_dialog_title_help),
                 getString(R.string.wifi_dialog_message_help),
@@ -23,6 +23,7 @@ import com.joanzapata.iconify.widget.IconImageView;
 
 import org.edx.mobile.R;
 import org.edx.mobile.core.IEdxEnvironment;
+import org.edx.mobile.course.CourseStructurePatcher;
 import org.edx.mobile.logger.Logger;
 import org.edx.mobile.model.api.AuthorizationDenialReason;
 import org.edx.mobile.model.api.EnrolledCoursesResponse;
@@ -66,7 +67,7 @@ public class CourseOutlineAdapter extends BaseAdapter {
     public interface DownloadListener {
         void download(List<? extends HasDownloadEntry> models);
 
-        void download(DownloadEntry videoData);
+        void download(VideoBlockModel video);
 
         void viewDownloadsStatus();
     }
@@ -222,14 +223,14 @@ public class CourseOutlineAdapter extends BaseAdapter {
             List<IBlock> children = rootComponent.getChildren();
             for (IBlock block : children) {
                 CourseComponent comp = (CourseComponent) block;
-                if (isVideoMode && comp.getVideos().size() == 0)
+                if (isVideoMode && comp.getVideosCount() == 0)
                     continue;
                 if (comp.isContainer()) {
                     SectionRow header = new SectionRow(SectionRow.SECTION, comp);
                     adapterData.add(header);
                     for (IBlock childBlock : comp.getChildren()) {
                         CourseComponent child = (CourseComponent) childBlock;
-                        if (isVideoMode && child.getVideos().size() == 0)
+                        if (isVideoMode && child.getVideosCount() == 0)
                             continue;
                         SectionRow row = new SectionRow(SectionRow.ITEM, false, child);
                         adapterData.add(row);
@@ -243,6 +244,25 @@ public class CourseOutlineAdapter extends BaseAdapter {
         notifyDataSetChanged();
     }
 
+    /**
+     * Refresh the adapter after its data has been patched with a refreshed course structure. The
+     * rows are only rebuilt if the structure of the course has changed, otherwise the existing
+     * rows already point to the updated components and just need to be rebound.
+     *
+     * @param component The CourseComponent to extract data from.
+     * @param result    Result of patching the course data.
+     */
+    public void applyChanges(@Nullable CourseComponent component,
+                             @NonNull CourseStructurePatcher.Result result) {
+        if (component != null && component == rootComponent && result.isStructureUnchanged()) {
+            if (!result.changes.isEmpty()) {
+                notifyDataSetChanged();
+            }
+        } else {
+            setData(component);
+        }
+    }
+
     /**
      * Clear all the course outline rows.
      */
@@ -420,7 +440,7 @@ public class CourseOutlineAdapter extends BaseAdapter {
                             if (state == null || state == DownloadEntry.DownloadedState.ONLINE) {
                                 // not yet downloaded
                                 setRowStateOnDownload(viewHolder, DownloadEntry.DownloadedState.ONLINE,
-                                        getBulkDownloadListener(videoBlockModel, videoData));
+                                        getBulkDownloadListener(videoBlockModel));
                             } else if (state == DownloadEntry.DownloadedState.DOWNLOADING) {
                                 // may be download in progress
                                 setRowStateOnDownload(viewHolder, DownloadEntry.DownloadedState.DOWNLOADING,
@@ -443,7 +463,7 @@ public class CourseOutlineAdapter extends BaseAdapter {
                                 }
                                 setRowStateOnDownload(viewHolder, state,
                                         state == DownloadEntry.DownloadedState.ONLINE ?
-                                                getBulkDownloadListener(videoBlockModel, videoData) : null);
+                                                getBulkDownloadListener(videoBlockModel) : null);
                             }
                         }
 
@@ -457,17 +477,8 @@ public class CourseOutlineAdapter extends BaseAdapter {
 
     }
 
-    private View.OnClickListener getBulkDownloadListener(@NonNull VideoBlockModel videoBlockModel,
-                                                         @NonNull DownloadEntry videoData) {
-        return v -> {
-            /*
-             * Assign preferred downloadable url to {@link DownloadEntry#url}
-             * to use this url to download. After downloading
-             * only downloaded video path will be used for streaming.
-             */
-            videoData.url = VideoUtil.getPreferredVideoUrlForDownloading(videoBlockModel.getData());
-            downloadListener.download(videoData);
-        };
+    private View.OnClickListener getBulkDownloadListener(@NonNull VideoBlockModel videoBlockModel) {
+        return v -> downloadListener.download(videoBlockModel);
     }
 
     private void getRowViewForContainer(ViewHolder holder,
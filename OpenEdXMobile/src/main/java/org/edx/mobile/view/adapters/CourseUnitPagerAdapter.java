@@ -52,6 +52,10 @@ public class CourseUnitPagerAdapter extends FragmentStateAdapter {
         this.callback = callback;
     }
 
+    public void setUnitList(List<CourseComponent> unitList) {
+        this.unitList = unitList;
+    }
+
     public CourseComponent getUnit(int pos) {
         if (pos >= unitList.size())
             pos = unitList.size() - 1;
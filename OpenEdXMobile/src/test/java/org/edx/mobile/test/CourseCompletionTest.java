@@ -0,0 +1,85 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.module.prefs.CompletionPrefs;
+import org.edx.mobile.test.util.CourseStructureGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CourseCompletionTest extends BaseTest {
+    private static final String COURSE_ID = "course-v1:edX+Synthetic+Course";
+
+    private CourseStructureV1Model model;
+    private CourseComponent course;
+    private CompletionPrefs completionPrefs;
+
+    @Before
+    public void setUp() throws Exception {
+        model = new CourseStructureGenerator()
+                .setChapters(2)
+                .setSequentialsPerChapter(2)
+                .setVerticalsPerSequential(2)
+                .setUnitsPerVertical(3)
+                .setVideoRatio(1f)
+                .generate();
+        course = (CourseComponent) CourseAPI.normalizeCourseStructure(model, COURSE_ID);
+        completionPrefs = new CompletionPrefs(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testApplyCompletions() throws Exception {
+        final List<String> videoIds = CourseStructureGenerator.getBlockIds(model, BlockType.VIDEO);
+        final Set<String> completedIds = new HashSet<>(videoIds.subList(0, 2));
+        assertEquals(0, course.getCompletedVideosCount());
+
+        final Set<String> confirmed = new HashSet<>();
+        course.applyCompletions(completedIds, confirmed);
+        assertTrue(confirmed.isEmpty());
+        assertEquals(2, course.getCompletedVideosCount());
+
+        // Leaves created afterwards carry the completion
+        for (String id : completedIds) {
+            assertTrue(course.find(component -> id.equals(component.getId())).isCompleted());
+        }
+        assertEquals(2, course.getCompletedVideosCount());
+
+        // Applying again finds the blocks completed already
+        course.applyCompletions(completedIds, confirmed);
+        assertEquals(completedIds, confirmed);
+        assertEquals(2, course.getCompletedVideosCount());
+    }
+
+    @Test
+    public void testCompletionPrefs() throws Exception {
+        completionPrefs.addCompletedBlock(COURSE_ID, "html", false);
+        completionPrefs.addCompletedBlock(COURSE_ID, "video", true);
+        assertEquals(new HashSet<>(Arrays.asList("html", "video")),
+                completionPrefs.getCompletedBlocks(COURSE_ID));
+        assertEquals(Collections.singleton("video"), completionPrefs.getUnsyncedBlocks(COURSE_ID));
+        assertEquals(Collections.singleton(COURSE_ID), completionPrefs.getCoursesWithUnsyncedBlocks());
+
+        // Blocks yet to be sent to server stay completed locally
+        completionPrefs.removeCompletedBlocks(COURSE_ID, Arrays.asList("html", "video"));
+        assertEquals(Collections.singleton("video"), completionPrefs.getCompletedBlocks(COURSE_ID));
+
+        completionPrefs.removeUnsyncedBlocks(COURSE_ID, Collections.singleton("video"));
+        assertTrue(completionPrefs.getUnsyncedBlocks(COURSE_ID).isEmpty());
+        assertTrue(completionPrefs.getCoursesWithUnsyncedBlocks().isEmpty());
+
+        completionPrefs.removeCompletedBlocks(COURSE_ID, Collections.singleton("video"));
+        assertTrue(completionPrefs.getCompletedBlocks(COURSE_ID).isEmpty());
+    }
+}
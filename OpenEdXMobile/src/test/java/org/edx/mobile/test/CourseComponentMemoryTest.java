@@ -0,0 +1,57 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.test.util.CourseStructureGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the nodes of the normalized tree of a synthetic 20k blocks course share their repeated
+ * values. The memory retained by the tree is measured by the {@code CourseTreeBenchmark}.
+ */
+public class CourseComponentMemoryTest extends BaseTest {
+    private static final int BLOCKS_COUNT = 20221;
+
+    private final CourseStructureGenerator generator = new CourseStructureGenerator()
+            .setChapters(20)
+            .setSequentialsPerChapter(10)
+            .setVerticalsPerSequential(10)
+            .setUnitsPerVertical(9);
+
+    @Test
+    public void testSharedValues() throws Exception {
+        assertEquals(BLOCKS_COUNT, generator.getBlocksCount());
+        final CourseComponent course = (CourseComponent) CourseAPI.normalizeCourseStructure(
+                generator.generate(), "course-v1:edX+Synthetic+Course");
+
+        final List<CourseComponent> leaves = new ArrayList<>();
+        course.fetchAllLeafComponents(leaves, EnumSet.allOf(BlockType.class));
+        assertEquals(20 * 10 * 10 * 9, leaves.size());
+        // All the leaves should share the same empty children list
+        for (CourseComponent leaf : leaves) {
+            assertSame(leaves.get(0).getChildren(), leaf.getChildren());
+        }
+
+        CourseComponent homework = null;
+        for (CourseComponent chapter : course.getChildContainers()) {
+            for (CourseComponent sequential : chapter.getChildContainers()) {
+                if ("Homework".equals(sequential.getFormat())) {
+                    if (homework == null) {
+                        homework = sequential;
+                    }
+                    assertSame(homework.getFormat(), sequential.getFormat());
+                }
+            }
+        }
+        assertTrue(homework != null);
+    }
+}
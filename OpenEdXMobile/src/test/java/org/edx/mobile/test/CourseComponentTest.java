@@ -149,6 +149,35 @@ public class CourseComponentTest {
 
     }
 
+    @Test
+    public void testVideoAggregates() throws Exception {
+        assertTrue("getVideosCount failed", course.getVideosCount() == 2);
+        assertTrue("getVideosCount failed", chapter1.getVideosCount() == 1);
+        assertTrue("getVideosCount failed", unit2.getVideosCount() == 0);
+        assertTrue("getCompletedVideosCount failed", course.getCompletedVideosCount() == 0);
+        assertTrue("isCompletedForVideos failed", !course.isCompletedForVideos());
+
+        unit1.setCompleted(1);
+        assertTrue("getCompletedVideosCount failed", course.getCompletedVideosCount() == 1);
+        assertTrue("isCompletedForVideos failed", chapter1.isCompletedForVideos());
+        assertTrue("isCompletedForVideos failed", !chapter2.isCompletedForVideos());
+
+        unit3.setCompleted(1);
+        assertTrue("isCompletedForVideos failed", course.isCompletedForVideos());
+
+        unit3.setCompleted(0);
+        assertTrue("getCompletedVideosCount failed", course.getCompletedVideosCount() == 1);
+
+        // Adding a new video block should invalidate the aggregates of its ancestors
+        BlockModel bm = Mockito.mock(BlockModel.class);
+        bm.type = BlockType.VIDEO;
+        bm.id = UUID.randomUUID().toString();
+        new VideoBlockModel(bm, vertical2);
+        assertTrue("getVideosCount failed", course.getVideosCount() == 3);
+        assertTrue("getVideosCount failed", chapter2.getVideosCount() == 2);
+        assertTrue("getCompletedVideosCount failed", course.getCompletedVideosCount() == 1);
+    }
+
     @Test
     public void testIisLastChild() throws Exception {
         assertTrue("isLastChild failed", unit1.isLastChild() == false);
@@ -160,6 +189,34 @@ public class CourseComponentTest {
 
     }
 
+    @Test
+    public void testLeafSequence() throws Exception {
+        List<CourseComponent> leaves = course.getLeafSequence(false);
+        assertTrue("getLeafSequence failed", leaves.size() == 4);
+        assertTrue("getLeafSequence failed", leaves.get(0) == unit1 && leaves.get(3) == unit4);
+        assertTrue("getLeafSequence failed", unit3.getLeafSequence(true).size() == 2);
+
+        assertTrue("getLeafIndex failed", unit3.getLeafIndex(false) == 2);
+        assertTrue("getLeafIndex failed", unit3.getLeafIndex(true) == 1);
+        assertTrue("getLeafIndex failed", unit2.getLeafIndex(true) == -1);
+        assertTrue("getLeafIndex failed", chapter1.getLeafIndex(false) == -1);
+
+        assertTrue("getNextLeaf failed", unit2.getNextLeaf(false) == unit3);
+        assertTrue("getNextLeaf failed", unit1.getNextLeaf(true) == unit3);
+        assertTrue("getNextLeaf failed", unit4.getNextLeaf(false) == null);
+        assertTrue("getPreviousLeaf failed", unit3.getPreviousLeaf(false) == unit2);
+        assertTrue("getPreviousLeaf failed", unit1.getPreviousLeaf(false) == null);
+
+        // Adding a new leaf should rebuild the sequence
+        BlockModel bm = Mockito.mock(BlockModel.class);
+        bm.type = BlockType.HTML;
+        bm.id = UUID.randomUUID().toString();
+        CourseComponent unit5 = new CourseComponent(bm, vertical1);
+        assertTrue("getLeafSequence failed", course.getLeafSequence(false).size() == 5);
+        assertTrue("getLeafIndex failed", unit5.getLeafIndex(false) == 2);
+        assertTrue("getLeafIndex failed", unit3.getLeafIndex(false) == 3);
+    }
+
     @Test
     public void testFetchAllLeafComponents() throws Exception {
         List<CourseComponent> leaves = new ArrayList<>();
@@ -211,6 +268,24 @@ public class CourseComponentTest {
         path = course.getPath().getPath();
         assertTrue("testGetCourseId failed", path.size() == 1 );
 
+        // Paths are computed once and shared afterwards
+        assertTrue("testGetPath failed", unit1.getPath() == unit1.getPath());
+        assertTrue("testGetPath failed", unit1.getDepth() == 4);
+        assertTrue("testGetPath failed", course.getDepth() == 0);
+    }
+
+    @Test
+    public void testGetAncestor() throws Exception {
+        assertTrue("testGetAncestor failed", unit1.getAncestor(0) == unit1);
+        assertTrue("testGetAncestor failed", unit1.getAncestor(1) == sequential1);
+        assertTrue("testGetAncestor failed", unit1.getAncestor(2) == chapter1);
+        assertTrue("testGetAncestor failed", unit1.getAncestor(10) == course);
+        assertTrue("testGetAncestor failed", unit1.getAncestor(-1) == course);
+        assertTrue("testGetAncestor failed", course.getAncestor(2) == course);
+
+        assertTrue("testGetAncestor failed", unit1.getAncestor(EnumSet.of(BlockType.CHAPTER)) == chapter1);
+        assertTrue("testGetAncestor failed", unit1.getAncestor(EnumSet.of(BlockType.VIDEO)) == unit1);
+        assertTrue("testGetAncestor failed", unit1.getAncestor(EnumSet.of(BlockType.HTML)) == null);
     }
 
     @Test
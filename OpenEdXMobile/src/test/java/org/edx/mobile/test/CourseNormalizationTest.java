@@ -0,0 +1,52 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.test.util.CourseStructureGenerator;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the parallel normalization of a course structure builds the very same tree as
+ * the sequential one. The time taken by both is measured by the {@code CourseTreeBenchmark}.
+ */
+public class CourseNormalizationTest extends BaseTest {
+    private static final String COURSE_ID = "course-v1:edX+Synthetic+Course";
+
+    private final CourseStructureV1Model model = new CourseStructureGenerator()
+            .setChapters(20)
+            .setSequentialsPerChapter(10)
+            .setVerticalsPerSequential(10)
+            .setUnitsPerVertical(9)
+            .generate();
+
+    @Test
+    public void testParallelNormalizationMatchesSequential() throws Exception {
+        final CourseComponent sequential = (CourseComponent)
+                CourseAPI.normalizeCourseStructure(model, COURSE_ID, false);
+        final CourseComponent parallel = (CourseComponent)
+                CourseAPI.normalizeCourseStructure(model, COURSE_ID, true);
+        assertSameTree(sequential, parallel);
+        assertEquals(sequential.getBlocksCount(), parallel.getBlocksCount());
+        assertEquals(sequential.getVideosCount(), parallel.getVideosCount());
+        assertEquals(sequential.getDownloadableVideosCount(), parallel.getDownloadableVideosCount());
+        assertEquals(sequential.getLeafSequence(false), parallel.getLeafSequence(false));
+    }
+
+    private static void assertSameTree(CourseComponent expected, CourseComponent actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getCourseId(), actual.getCourseId());
+        final List<CourseComponent> expectedChildren = expected.getChildContainers();
+        final List<CourseComponent> actualChildren = actual.getChildContainers();
+        assertEquals(expectedChildren.size(), actualChildren.size());
+        for (int i = 0; i < expectedChildren.size(); i++) {
+            assertSameTree(expectedChildren.get(i), actualChildren.get(i));
+        }
+        assertEquals(expected.getChildLeafs(), actual.getChildLeafs());
+    }
+}
@@ -0,0 +1,71 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.course.CourseSearchIndex;
+import org.edx.mobile.course.CourseStructurePatcher;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.test.util.CourseStructureGenerator;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CourseSearchIndexTest extends BaseTest {
+    private static final String COURSE_ID = "course-v1:edX+Synthetic+Course";
+
+    private final CourseStructureGenerator generator = new CourseStructureGenerator()
+            .setChapters(3)
+            .setSequentialsPerChapter(3)
+            .setVerticalsPerSequential(2)
+            .setUnitsPerVertical(2);
+
+    @Test
+    public void testSearch() throws Exception {
+        final CourseStructureV1Model model = generator.generate();
+        final List<String> sequentialIds = CourseStructureGenerator.getBlockIds(model, BlockType.SEQUENTIAL);
+        model.getBlockById(sequentialIds.get(0)).displayName = "Évaluation des données";
+        final CourseComponent course = (CourseComponent) CourseAPI.normalizeCourseStructure(model, COURSE_ID);
+        final CourseSearchIndex searchIndex = new CourseSearchIndex(course);
+
+        // All the chapters, in outline order
+        List<CourseComponent> results = searchIndex.search("chap", 10);
+        assertEquals(3, results.size());
+        assertEquals(course.getChildren().get(0), results.get(0));
+        assertEquals(course.getChildren().get(2), results.get(2));
+
+        results = searchIndex.search("eval donn", 10);
+        assertEquals(1, results.size());
+        assertEquals(sequentialIds.get(0), results.get(0).getId());
+
+        assertTrue(searchIndex.search("eval chapter", 10).isEmpty());
+        assertTrue(searchIndex.search("  ", 10).isEmpty());
+        assertEquals(2, searchIndex.search("vertical", 2).size());
+        // Units aren't indexed
+        assertTrue(searchIndex.search("html", 10).isEmpty());
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        final CourseComponent course = (CourseComponent)
+                CourseAPI.normalizeCourseStructure(generator.generate(), COURSE_ID);
+        final CourseSearchIndex searchIndex = new CourseSearchIndex(course);
+        assertEquals(9, searchIndex.search("sequential", 100).size());
+
+        final CourseStructureV1Model model = generator.generate();
+        final String firstChapterId = model.getBlockById(model.root).descendants.get(0);
+        final String sequentialId = model.getBlockById(firstChapterId).descendants.get(0);
+        model.getBlockById(sequentialId).displayName = "Renamed";
+        // Remove the last chapter along with its subsections
+        model.getBlockById(model.root).descendants.remove(2);
+
+        final CourseStructurePatcher.Result result = CourseStructurePatcher.patch(course, model, COURSE_ID);
+        searchIndex.update(result.changes);
+        assertEquals(5, searchIndex.search("sequential", 100).size());
+        assertEquals(1, searchIndex.search("renamed", 100).size());
+        assertEquals(2, searchIndex.search("chapter", 100).size());
+    }
+}
@@ -0,0 +1,226 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.course.CourseStructurePatcher;
+import org.edx.mobile.model.course.BlockModel;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.test.util.CourseStructureGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CourseStructurePatcherTest extends BaseTest {
+    private static final String COURSE_ID = "course-v1:edX+Synthetic+Course";
+
+    private final CourseStructureGenerator generator = new CourseStructureGenerator()
+            .setChapters(3)
+            .setSequentialsPerChapter(3)
+            .setVerticalsPerSequential(2)
+            .setUnitsPerVertical(3)
+            .setVideoRatio(0.5f);
+    private CourseComponent course;
+
+    @Before
+    public void setUp() throws Exception {
+        course = (CourseComponent) CourseAPI.normalizeCourseStructure(generator.generate(), COURSE_ID);
+    }
+
+    @Test
+    public void testPatchWithoutPreviousCourse() throws Exception {
+        final CourseStructurePatcher.Result result =
+                CourseStructurePatcher.patch(null, generator.generate(), COURSE_ID);
+        assertNull(result.changes);
+        assertFalse(result.isStructureUnchanged());
+        assertEquals(course.getBlocksCount(), result.course.getBlocksCount());
+    }
+
+    @Test
+    public void testPatchUnchangedStructure() throws Exception {
+        final CourseStructurePatcher.Result result =
+                CourseStructurePatcher.patch(course, generator.generate(), COURSE_ID);
+        assertSame(course, result.course);
+        assertNotNull(result.changes);
+        assertTrue(result.changes.isEmpty());
+        assertTrue(result.isStructureUnchanged());
+    }
+
+    @Test
+    public void testPatchUpdatedValues() throws Exception {
+        final CourseStructureV1Model model = generator.generate();
+        final String sequentialId = CourseStructureGenerator.getBlockIds(model, BlockType.SEQUENTIAL).get(0);
+        model.getBlockById(sequentialId).displayName = "Renamed";
+        final CourseComponent sequential = course.findById(sequentialId);
+
+        final CourseStructurePatcher.Result result = CourseStructurePatcher.patch(course, model, COURSE_ID);
+        assertTrue(result.isStructureUnchanged());
+        assertEquals(1, result.changes.size());
+        assertSame(sequential, result.changes.get(0).component);
+        assertEquals(CourseStructurePatcher.Change.Type.UPDATED, result.changes.get(0).type);
+        assertEquals("Renamed", sequential.getDisplayName());
+        assertSame(sequential, course.findById(sequentialId));
+    }
+
+    @Test
+    public void testPatchChangedChildren() throws Exception {
+        final CourseStructureV1Model model = generator.generate();
+        final String sequentialId = CourseStructureGenerator.getBlockIds(model, BlockType.SEQUENTIAL).get(0);
+        final BlockModel sequential = model.getBlockById(sequentialId);
+        final String removedVerticalId = sequential.descendants.remove(0);
+        final int blocksCount = course.getBlocksCount();
+        final int leavesCount = course.getLeafSequence(false).size();
+
+        final CourseStructurePatcher.Result result = CourseStructurePatcher.patch(course, model, COURSE_ID);
+        final List<CourseStructurePatcher.Change> changes = result.changes;
+        assertFalse(result.isStructureUnchanged());
+        assertEquals(1, changes.size());
+        assertEquals(CourseStructurePatcher.Change.Type.CHILDREN_CHANGED, changes.get(0).type);
+        assertEquals(sequentialId, changes.get(0).component.getId());
+        assertNull(course.findById(removedVerticalId));
+        assertEquals(blocksCount - 4, course.getBlocksCount());
+        assertEquals(leavesCount - 3, course.getLeafSequence(false).size());
+    }
+
+    @Test
+    public void testPatchPendingLeaves() throws Exception {
+        final CourseStructureV1Model model = generator.generate();
+        final String verticalId = CourseStructureGenerator.getBlockIds(model, BlockType.VERTICAL).get(0);
+        final BlockModel vertical = model.getBlockById(verticalId);
+        final String removedUnitId = vertical.descendants.remove(0);
+        final int blocksCount = course.getBlocksCount();
+        final CourseComponent verticalComponent = findContainerById(course, verticalId);
+        assertTrue(verticalComponent.hasPendingChildren());
+
+        final CourseStructurePatcher.Result result = CourseStructurePatcher.patch(course, model, COURSE_ID);
+        // The leaves haven't been created, so the vertical itself is the only change
+        assertTrue(result.isStructureUnchanged());
+        assertEquals(1, result.changes.size());
+        assertSame(verticalComponent, result.changes.get(0).component);
+        assertTrue(verticalComponent.hasPendingChildren());
+        assertEquals(blocksCount - 1, course.getBlocksCount());
+
+        assertEquals(2, verticalComponent.getChildren().size());
+        assertFalse(verticalComponent.hasPendingChildren());
+        assertNull(course.findById(removedUnitId));
+    }
+
+    @Test
+    public void testLazyLeaves() throws Exception {
+        final CourseStructureV1Model model = generator.generate();
+        final String verticalId = CourseStructureGenerator.getBlockIds(model, BlockType.VERTICAL).get(0);
+        final CourseComponent vertical = findContainerById(course, verticalId);
+        assertTrue(vertical.hasPendingChildren());
+        final int videosCount = vertical.getVideosCount();
+        final int blocksCount = course.getBlocksCount();
+        final boolean completed = vertical.isCompleted();
+        assertTrue(vertical.hasPendingChildren());
+
+        assertEquals(3, vertical.getChildren().size());
+        assertFalse(vertical.hasPendingChildren());
+        assertEquals(videosCount, vertical.getVideos().size());
+        assertEquals(blocksCount, course.getBlocksCount());
+        assertEquals(completed, vertical.isCompleted());
+    }
+
+    @Test
+    public void testLazyLeafSequence() throws Exception {
+        final List<String> verticalIds =
+                CourseStructureGenerator.getBlockIds(generator.generate(), BlockType.VERTICAL);
+        final List<CourseComponent> leaves = course.getLeafSequence(false);
+        assertEquals(3 * verticalIds.size(), leaves.size());
+        assertEquals(verticalIds.size(), countPendingVerticals(verticalIds));
+
+        // Only the leaves of the vertical being accessed get created
+        final CourseComponent leaf = leaves.get(leaves.size() - 1);
+        assertFalse(leaf.getParent().hasPendingChildren());
+        assertEquals(verticalIds.size() - 1, countPendingVerticals(verticalIds));
+        assertEquals(leaves.size() - 1, leaf.getLeafIndex(false));
+        assertSame(leaves.get(leaves.size() - 2), leaf.getPreviousLeaf(false));
+        assertNull(leaf.getNextLeaf(false));
+        final int videoIndex = leaf.getLeafIndex(true);
+        if (videoIndex >= 0) {
+            assertSame(leaf, course.getLeafSequence(true).get(videoIndex));
+        }
+        assertEquals(verticalIds.size() - 1, countPendingVerticals(verticalIds));
+    }
+
+    @Test
+    public void testFindByIdCreatesOnlyMatchingLeaves() throws Exception {
+        final CourseStructureV1Model model = generator.generate();
+        final List<String> verticalIds = CourseStructureGenerator.getBlockIds(model,
+                BlockType.VERTICAL);
+        final String verticalId = verticalIds.get(verticalIds.size() - 1);
+        final String leafId = model.getBlockById(verticalId).descendants.get(0);
+
+        assertNull(course.findById("missing"));
+        assertEquals(verticalIds.size(), countPendingVerticals(verticalIds));
+
+        final CourseComponent leaf = course.findById(leafId);
+        assertEquals(leafId, leaf.getId());
+        assertEquals(verticalId, leaf.getParent().getId());
+        assertEquals(verticalIds.size() - 1, countPendingVerticals(verticalIds));
+        assertSame(findContainerById(course, verticalId), course.findById(verticalId));
+    }
+
+    @Test
+    public void testSerializePendingLeaves() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(course);
+        }
+        final CourseComponent copy;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (CourseComponent) in.readObject();
+        }
+        final List<CourseComponent> leaves = course.getLeafSequence(false);
+        final List<CourseComponent> copiedLeaves = copy.getLeafSequence(false);
+        assertEquals(leaves.size(), copiedLeaves.size());
+        for (int i = 0; i < leaves.size(); i++) {
+            assertEquals(leaves.get(i).getId(), copiedLeaves.get(i).getId());
+            assertEquals(i, copiedLeaves.get(i).getLeafIndex(false));
+        }
+    }
+
+    private int countPendingVerticals(List<String> verticalIds) {
+        int count = 0;
+        for (String verticalId : verticalIds) {
+            if (findContainerById(course, verticalId).hasPendingChildren()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find a container without creating any pending leaves on the way.
+     */
+    private static CourseComponent findContainerById(CourseComponent component, String id) {
+        if (id.equals(component.getId())) {
+            return component;
+        }
+        if (component.hasPendingChildren()) {
+            return null;
+        }
+        for (CourseComponent child : component.getChildContainers()) {
+            final CourseComponent found = findContainerById(child, id);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+}
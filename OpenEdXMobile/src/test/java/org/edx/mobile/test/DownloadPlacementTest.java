@@ -0,0 +1,44 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.module.storage.DownloadPlacement;
+import org.edx.mobile.module.storage.DownloadPlacement.Throughput;
+import org.edx.mobile.module.storage.DownloadPlacement.Volume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DownloadPlacementTest extends BaseTest {
+    private static final long MB = 1024 * 1024;
+    private static final Throughput FAST = new Throughput(20 * 1024, 40 * 1024);
+    private static final Throughput SLOW = new Throughput(512, 40 * 1024);
+
+    @Test
+    public void testPicksPreferredVolume() {
+        final Volume internal = new Volume(new File("internal"), 1000 * MB, FAST, false);
+        final Volume sdCard = new Volume(new File("sdcard"), 1000 * MB, null, true);
+        assertSame(sdCard, DownloadPlacement.pick(Arrays.asList(internal, sdCard), 100 * MB));
+    }
+
+    @Test
+    public void testAvoidsSlowVolume() {
+        final Volume internal = new Volume(new File("internal"), 1000 * MB, FAST, false);
+        final Volume sdCard = new Volume(new File("sdcard"), 1000 * MB, SLOW, true);
+        assertSame(internal, DownloadPlacement.pick(Arrays.asList(internal, sdCard), 100 * MB));
+        // Unless it is the only one with enough free storage
+        final Volume fullInternal = new Volume(new File("internal"), 100 * MB, FAST, false);
+        assertSame(sdCard, DownloadPlacement.pick(Arrays.asList(fullInternal, sdCard), 100 * MB));
+    }
+
+    @Test
+    public void testFallsBackToPreferredVolumeWithoutFreeStorage() {
+        final Volume internal = new Volume(new File("internal"), 10 * MB, FAST, true);
+        final Volume sdCard = new Volume(new File("sdcard"), 20 * MB, FAST, false);
+        assertSame(internal, DownloadPlacement.pick(Arrays.asList(internal, sdCard), 100 * MB));
+        assertNull(DownloadPlacement.pick(Collections.<Volume>emptyList(), 100 * MB));
+    }
+}
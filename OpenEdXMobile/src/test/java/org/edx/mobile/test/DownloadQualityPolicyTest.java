@@ -0,0 +1,93 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.model.course.EncodedVideos;
+import org.edx.mobile.model.course.VideoInfo;
+import org.edx.mobile.model.course.VideoQuality;
+import org.edx.mobile.module.download.DownloadQualityPolicy;
+import org.edx.mobile.util.MemoryUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DownloadQualityPolicyTest extends BaseTest {
+    private static final long MB = 1024 * 1024;
+    private static final float FAST_KBPS = 10 * 1024;
+    private static final float SLOW_KBPS = 50;
+
+    @Test
+    public void testChoosesHighQualityWhenAffordable() {
+        final List<EncodedVideos> videos = createVideos(10, 10 * MB, 30 * MB);
+        assertEquals(VideoQuality.MOBILE_HIGH, DownloadQualityPolicy.plan(videos, FAST_KBPS,
+                false, MemoryUtil.GB).quality);
+    }
+
+    @Test
+    public void testChoosesLowQuality() {
+        final List<EncodedVideos> videos = createVideos(10, 10 * MB, 30 * MB);
+        // Metered network
+        assertEquals(VideoQuality.MOBILE_LOW, DownloadQualityPolicy.plan(videos, FAST_KBPS,
+                true, MemoryUtil.GB).quality);
+        // Too slow to download the batch in time
+        assertEquals(VideoQuality.MOBILE_LOW, DownloadQualityPolicy.plan(videos, SLOW_KBPS,
+                false, MemoryUtil.GB).quality);
+        // Unknown speed
+        assertEquals(VideoQuality.MOBILE_LOW, DownloadQualityPolicy.plan(videos, 0,
+                false, MemoryUtil.GB).quality);
+        // Too little free storage
+        assertEquals(VideoQuality.MOBILE_LOW, DownloadQualityPolicy.plan(videos, FAST_KBPS,
+                false, 500 * MB).quality);
+    }
+
+    @Test
+    public void testEstimate() {
+        final DownloadQualityPolicy.Plan plan = DownloadQualityPolicy.plan(
+                createVideos(1, MB, 2 * MB), 512, false, MemoryUtil.GB);
+        assertEquals(2, plan.getEstimatedSeconds(MB));
+        assertEquals(-1, DownloadQualityPolicy.plan(createVideos(1, MB, 2 * MB), 0, false,
+                MemoryUtil.GB).getEstimatedSeconds(MB));
+    }
+
+    @Test
+    public void testVideoInfoForDownloading() {
+        final EncodedVideos video = createVideo(MB, 2 * MB);
+        assertSame(video.mobileLow, video.getVideoInfoForDownloading(VideoQuality.MOBILE_LOW));
+        assertSame(video.mobileHigh, video.getVideoInfoForDownloading(VideoQuality.MOBILE_HIGH));
+        assertSame(video.fallback, video.getVideoInfoForDownloading(VideoQuality.FALLBACK));
+        assertSame(video.mobileLow, video.getPreferredVideoInfoForDownloading());
+
+        // Missing encodings fall back to the preferred one
+        video.mobileHigh = null;
+        assertSame(video.mobileLow, video.getVideoInfoForDownloading(VideoQuality.MOBILE_HIGH));
+        video.fallback.url = "https://example.com/video.m3u8";
+        assertSame(video.mobileLow, video.getVideoInfoForDownloading(VideoQuality.FALLBACK));
+    }
+
+    private static List<EncodedVideos> createVideos(int count, long lowSize, long highSize) {
+        final List<EncodedVideos> videos = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            videos.add(createVideo(lowSize, highSize));
+        }
+        // Videos of which the encodings aren't known are left out of the estimates
+        videos.add(null);
+        return videos;
+    }
+
+    private static EncodedVideos createVideo(long lowSize, long highSize) {
+        final EncodedVideos video = new EncodedVideos();
+        video.mobileLow = createVideoInfo("https://example.com/low.mp4", lowSize);
+        video.mobileHigh = createVideoInfo("https://example.com/high.mp4", highSize);
+        video.fallback = createVideoInfo("https://example.com/fallback.mp4", highSize * 2);
+        return video;
+    }
+
+    private static VideoInfo createVideoInfo(String url, long size) {
+        final VideoInfo videoInfo = new VideoInfo();
+        videoInfo.url = url;
+        videoInfo.fileSize = size;
+        return videoInfo;
+    }
+}
@@ -0,0 +1,157 @@
+package org.edx.mobile.test;
+
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.db.DownloadEntry;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.model.db.DownloadEntry.WatchedState;
+import org.edx.mobile.module.storage.DownloadStorageManager;
+import org.edx.mobile.module.storage.DownloadStorageManager.EvictionReport;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadStorageManagerTest extends BaseTest {
+    private static final long MB = 1024 * 1024;
+    private static final Map<String, Integer> NO_REFS = Collections.emptyMap();
+
+    @Test
+    public void testNothingEvictedWithinLimits() {
+        final List<VideoModel> videos = Arrays.asList(
+                createVideo("a", "url-a", 100 * MB, 10, WatchedState.WATCHED));
+        final EvictionReport report = DownloadStorageManager.plan(videos, NO_REFS, 50 * MB, 0,
+                500 * MB);
+        assertTrue(report.isSufficient());
+        assertTrue(report.isEmpty());
+        assertEquals(0, report.requiredBytes);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyPlayedFirst() {
+        final List<VideoModel> videos = Arrays.asList(
+                createVideo("a", "url-a", 100 * MB, 30, WatchedState.WATCHED),
+                createVideo("b", "url-b", 100 * MB, 10, WatchedState.WATCHED),
+                createVideo("c", "url-c", 100 * MB, 20, WatchedState.WATCHED));
+        final EvictionReport report = DownloadStorageManager.plan(videos, NO_REFS, 150 * MB, 0,
+                0);
+        assertTrue(report.isSufficient());
+        assertFalse(report.isLimitedByQuota);
+        assertEquals(150 * MB, report.requiredBytes);
+        assertEquals(200 * MB, report.reclaimedBytes);
+        assertEquals(2, report.fileCount);
+        assertEquals(Arrays.asList("b", "c"), getVideoIds(report));
+    }
+
+    @Test
+    public void testKeepsVideosNotWatchedOrDownloaded() {
+        final DownloadEntry downloading = createVideo("c", "url-c", 100 * MB, 0,
+                WatchedState.WATCHED);
+        downloading.downloaded = DownloadedState.DOWNLOADING;
+        final List<VideoModel> videos = Arrays.asList(
+                createVideo("a", "url-a", 100 * MB, 10, WatchedState.PARTIALLY_WATCHED),
+                createVideo("b", "url-b", 100 * MB, 20, WatchedState.UNWATCHED),
+                downloading,
+                createVideo("d", "url-d", 100 * MB, 40, WatchedState.WATCHED));
+        final EvictionReport report = DownloadStorageManager.plan(videos, NO_REFS, 150 * MB, 0,
+                0);
+        assertFalse(report.isSufficient());
+        assertEquals(100 * MB, report.reclaimedBytes);
+        assertEquals(Arrays.asList("d"), getVideoIds(report));
+    }
+
+    @Test
+    public void testVideosSharingFileEvictedTogether() {
+        final List<VideoModel> videos = Arrays.asList(
+                createVideo("a", "url-a", 100 * MB, 10, WatchedState.WATCHED),
+                createVideo("b", "url-a", 100 * MB, 50, WatchedState.WATCHED),
+                createVideo("c", "url-c", 100 * MB, 20, WatchedState.WATCHED),
+                createVideo("d", "url-d", 100 * MB, 5, WatchedState.UNWATCHED),
+                createVideo("e", "url-d", 100 * MB, 5, WatchedState.WATCHED));
+        // The file is counted once towards the quota, and is last played by its latest video
+        final EvictionReport report = DownloadStorageManager.plan(videos, NO_REFS, 50 * MB,
+                300 * MB, 500 * MB);
+        assertTrue(report.isLimitedByQuota);
+        assertEquals(50 * MB, report.requiredBytes);
+        assertEquals(100 * MB, report.reclaimedBytes);
+        assertEquals(1, report.fileCount);
+        assertEquals(Arrays.asList("c"), getVideoIds(report));
+
+        final EvictionReport largerReport = DownloadStorageManager.plan(videos, NO_REFS,
+                150 * MB, 300 * MB, 500 * MB);
+        assertTrue(largerReport.isSufficient());
+        assertEquals(2, largerReport.fileCount);
+        assertEquals(Arrays.asList("c", "a", "b"), getVideoIds(largerReport));
+    }
+
+    @Test
+    public void testVideosOfDifferentUrlsSharingStoredFileEvictedTogether() {
+        // Two runs of a course with the same video, deduplicated to one stored file
+        final DownloadEntry first = createVideo("a", "url-a", 100 * MB, 10, WatchedState.WATCHED);
+        final DownloadEntry second = createVideo("b", "url-b", 100 * MB, 20,
+                WatchedState.WATCHED);
+        first.filepath = second.filepath = "/videos/store/sha1-ab";
+        final DownloadEntry other = createVideo("c", "url-c", 100 * MB, 30,
+                WatchedState.WATCHED);
+        other.filepath = "/videos/store/sha1-c";
+        final List<VideoModel> videos = Arrays.asList(first, second, other);
+        final Map<String, Integer> refCounts = new HashMap<>();
+        refCounts.put(first.filepath, 2);
+        refCounts.put(other.filepath, 1);
+
+        // The shared file is counted once towards the quota, and freed once
+        final EvictionReport report = DownloadStorageManager.plan(videos, refCounts, 50 * MB,
+                200 * MB, 500 * MB);
+        assertTrue(report.isLimitedByQuota);
+        assertEquals(50 * MB, report.requiredBytes);
+        assertEquals(100 * MB, report.reclaimedBytes);
+        assertEquals(1, report.fileCount);
+        assertEquals(Arrays.asList("a", "b"), getVideoIds(report));
+
+        // Removing the videos doesn't free a file another user's video refers to
+        refCounts.put(first.filepath, 3);
+        final EvictionReport sharedReport = DownloadStorageManager.plan(videos, refCounts,
+                50 * MB, 200 * MB, 500 * MB);
+        assertEquals(100 * MB, sharedReport.reclaimedBytes);
+        assertEquals(Arrays.asList("c"), getVideoIds(sharedReport));
+    }
+
+    @Test
+    public void testFallsBackToDownloadTime() {
+        final DownloadEntry neverPlayed = createVideo("a", "url-a", 100 * MB, 0,
+                WatchedState.WATCHED);
+        neverPlayed.downloadedOn = 30;
+        final List<VideoModel> videos = Arrays.asList(neverPlayed,
+                createVideo("b", "url-b", 100 * MB, 20, WatchedState.WATCHED));
+        final EvictionReport report = DownloadStorageManager.plan(videos, NO_REFS, 50 * MB, 0,
+                0);
+        assertEquals(Arrays.asList("b"), getVideoIds(report));
+    }
+
+    private static DownloadEntry createVideo(String videoId, String url, long size,
+                                             long lastPlayedOn, WatchedState watched) {
+        final DownloadEntry video = new DownloadEntry();
+        video.videoId = videoId;
+        video.url = url;
+        video.size = size;
+        video.lastPlayedOn = lastPlayedOn;
+        video.watched = watched;
+        video.downloaded = DownloadedState.DOWNLOADED;
+        return video;
+    }
+
+    private static List<String> getVideoIds(EvictionReport report) {
+        final List<String> videoIds = new ArrayList<>();
+        for (VideoModel video : report.videos) {
+            videoIds.add(video.getVideoId());
+        }
+        return videoIds;
+    }
+}
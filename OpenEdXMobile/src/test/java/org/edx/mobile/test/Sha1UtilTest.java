@@ -1,11 +1,21 @@
 package org.edx.mobile.test;
 
 import org.edx.mobile.util.Sha1Util;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 
 import static junit.framework.Assert.assertEquals;
 
 public class Sha1UtilTest extends BaseTestCase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testSha1Hashing() {
         assertEquals("94ca247fff5ad413788a1c8d8c80394a246dba1c", Sha1Util.SHA1("khalid"));
@@ -17,4 +27,16 @@ public class Sha1UtilTest extends BaseTestCase {
         assertEquals("6b68616c6964", Sha1Util.convertToHex("khalid".getBytes()));
         assertEquals("736f6d655f76616775655f737472696e67", Sha1Util.convertToHex("some_vague_string".getBytes()));
     }
+
+    @Test
+    public void testSha1HashingOfFileRegion() throws Exception {
+        final File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("header-khalid-trailer".getBytes("iso-8859-1"));
+        }
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            assertEquals(Sha1Util.SHA1("khalid"), Sha1Util.SHA1(channel, 7, 6));
+            assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", Sha1Util.SHA1(channel, 0, 0));
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package org.edx.mobile.test.benchmark;
+
+import org.edx.mobile.course.CourseAPI;
+import org.edx.mobile.course.CourseSearchIndex;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseComponent;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.test.BaseTest;
+import org.edx.mobile.test.util.Benchmark;
+import org.edx.mobile.test.util.CourseStructureGenerator;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the course tree operations on synthetic courses of different shapes. These take a
+ * while, so they only run when asked for, i.e.
+ * {@code ./gradlew testProdDebugUnitTest --tests '*CourseTreeBenchmark' -Pbenchmark}
+ * <p>
+ * The results get written to {@code build/reports/benchmarks/CourseTreeBenchmark.csv}.
+ */
+public class CourseTreeBenchmark extends BaseTest {
+    private static final String COURSE_ID = "course-v1:edX+Synthetic+Course";
+    private static final boolean ENABLED = Boolean.getBoolean("benchmark");
+
+    private static final Benchmark benchmark = new Benchmark("CourseTreeBenchmark");
+
+    private static final Shape[] SHAPES = {
+            new Shape("small", new CourseStructureGenerator()
+                    .setChapters(5)
+                    .setSequentialsPerChapter(4)
+                    .setVerticalsPerSequential(3)
+                    .setUnitsPerVertical(4)),
+            new Shape("wide", new CourseStructureGenerator()
+                    .setChapters(2)
+                    .setSequentialsPerChapter(50)
+                    .setVerticalsPerSequential(20)
+                    .setUnitsPerVertical(3)),
+            new Shape("video-heavy", new CourseStructureGenerator()
+                    .setChapters(10)
+                    .setSequentialsPerChapter(10)
+                    .setVerticalsPerSequential(5)
+                    .setUnitsPerVertical(6)
+                    .setVideoRatio(0.9f)),
+            new Shape("large", new CourseStructureGenerator()
+                    .setChapters(20)
+                    .setSequentialsPerChapter(10)
+                    .setVerticalsPerSequential(10)
+                    .setUnitsPerVertical(9)),
+    };
+
+    private static class Shape {
+        final String name;
+        final CourseStructureGenerator generator;
+
+        Shape(String name, CourseStructureGenerator generator) {
+            this.name = name;
+            this.generator = generator;
+        }
+
+        String label(String operation) {
+            return operation + " [" + name + ", " + generator.getBlocksCount() + " blocks]";
+        }
+    }
+
+    @Before
+    public void setUp() {
+        assumeTrue("Benchmarks run only with -Pbenchmark", ENABLED);
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        if (ENABLED) {
+            benchmark.writeReport();
+        }
+    }
+
+    @Test
+    public void normalizeCourseStructure() throws Exception {
+        for (Shape shape : SHAPES) {
+            final CourseStructureV1Model model = shape.generator.generate();
+            benchmark.measure(shape.label("normalizeCourseStructure"),
+                    () -> CourseAPI.normalizeCourseStructure(model, COURSE_ID, false));
+            benchmark.measure(shape.label("normalizeCourseStructure parallel"),
+                    () -> CourseAPI.normalizeCourseStructure(model, COURSE_ID, true));
+        }
+    }
+
+    @Test
+    public void treeQueries() throws Exception {
+        for (Shape shape : SHAPES) {
+            final CourseComponent course = normalize(shape);
+            final CourseComponent lastLeaf = getLastLeaf(course);
+            final String lastLeafId = lastLeaf.getId();
+            final EnumSet<BlockType> allTypes = EnumSet.allOf(BlockType.class);
+            final EnumSet<BlockType> chapterType = EnumSet.of(BlockType.CHAPTER);
+
+            benchmark.measure(shape.label("find last leaf"),
+                    () -> course.findById(lastLeafId));
+            benchmark.measure(shape.label("getVideos(true)"), () -> course.getVideos(true));
+            benchmark.measure(shape.label("getDownloadableVideosCount"),
+                    course::getDownloadableVideosCount);
+            benchmark.measure(shape.label("fetchAllLeafComponents"), () -> {
+                final List<CourseComponent> leaves = new ArrayList<>();
+                course.fetchAllLeafComponents(leaves, allTypes);
+                return leaves;
+            });
+            benchmark.measure(shape.label("getAncestor(level)"),
+                    () -> lastLeaf.getAncestor(Integer.MAX_VALUE));
+            benchmark.measure(shape.label("getAncestor(types)"),
+                    () -> lastLeaf.getAncestor(chapterType));
+            benchmark.measure(shape.label("getPath"), lastLeaf::getPath);
+        }
+    }
+
+    @Test
+    public void search() throws Exception {
+        final String[] queries = {"v", "vertical", "vertical 5", "chapter 19"};
+        for (Shape shape : SHAPES) {
+            final CourseComponent course = normalize(shape);
+            benchmark.measure(shape.label("build search index"),
+                    () -> new CourseSearchIndex(course));
+            final CourseSearchIndex searchIndex = new CourseSearchIndex(course);
+            for (String query : queries) {
+                benchmark.measure(shape.label("search \"" + query + "\""),
+                        () -> searchIndex.search(query, 20));
+            }
+        }
+    }
+
+    @Test
+    public void retainedHeap() throws Exception {
+        for (Shape shape : SHAPES) {
+            final CourseStructureV1Model model = shape.generator.generate();
+            final long before = Benchmark.usedMemory();
+            final CourseComponent course = (CourseComponent) CourseAPI.normalizeCourseStructure(
+                    model, COURSE_ID);
+            // Count the leaves that get created once the learner has opened every unit
+            getLastLeaf(course);
+            final long after = Benchmark.usedMemory();
+            benchmark.record(shape.label("retained bytes/block"),
+                    (after - before) / shape.generator.getBlocksCount());
+            Benchmark.sink = course;
+        }
+    }
+
+    private static CourseComponent normalize(Shape shape) throws Exception {
+        return (CourseComponent) CourseAPI.normalizeCourseStructure(
+                shape.generator.generate(), COURSE_ID);
+    }
+
+    /**
+     * Obtain the last leaf of the course, which creates all the pending leaves on the way.
+     */
+    private static CourseComponent getLastLeaf(CourseComponent course) {
+        final List<CourseComponent> leaves = new ArrayList<>();
+        course.fetchAllLeafComponents(leaves, EnumSet.allOf(BlockType.class));
+        return leaves.get(leaves.size() - 1);
+    }
+}
@@ -0,0 +1,150 @@
+package org.edx.mobile.test.http;
+
+import android.os.SystemClock;
+
+import org.edx.mobile.http.ThroughputEstimator;
+import org.edx.mobile.http.interceptor.ThroughputInterceptor;
+import org.edx.mobile.module.analytics.AnalyticsRegistry;
+import org.edx.mobile.test.BaseTest;
+import org.edx.mobile.util.Config;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.RuntimeEnvironment;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ThroughputEstimatorTest extends BaseTest {
+    private static final int KB = 1024;
+    private static final float DELTA = 0.01f;
+
+    @Mock
+    private Config config;
+    @Mock
+    private AnalyticsRegistry analyticsRegistry;
+
+    private ThroughputEstimator estimator;
+
+    @Before
+    public void setUp() {
+        when(config.isSpeedTestEnabled()).thenReturn(true);
+        estimator = createEstimator();
+    }
+
+    @Test
+    public void testMovingAverage() {
+        assertEquals(0, estimator.getThroughputKbps(), DELTA);
+        transfer(512 * KB, 1000);
+        assertEquals(512, estimator.getThroughputKbps(), DELTA);
+        transfer(1024 * KB, 1000);
+        assertEquals(ThroughputEstimator.SMOOTHING_FACTOR * 1024 +
+                (1 - ThroughputEstimator.SMOOTHING_FACTOR) * 512, estimator.getThroughputKbps(), DELTA);
+
+        // Transfers too small to tell the throughput apart from the latency are left out
+        final float estimate = estimator.getThroughputKbps();
+        transfer(KB, 1000);
+        assertEquals(estimate, estimator.getThroughputKbps(), DELTA);
+
+        // The estimate survives restarts of the app
+        assertEquals(512, createEstimator().getThroughputKbps(), DELTA);
+    }
+
+    @Test
+    public void testConcurrentTransfers() {
+        // Concurrent transfers are sampled together
+        estimator.onTransferStarted();
+        estimator.onTransferStarted();
+        estimator.onBytesTransferred(256 * KB);
+        estimator.onBytesTransferred(256 * KB);
+        advanceClock(500);
+        estimator.onTransferEnded();
+        assertEquals(0, estimator.getThroughputKbps(), DELTA);
+        advanceClock(500);
+        estimator.onTransferEnded();
+        assertEquals(512, estimator.getThroughputKbps(), DELTA);
+
+        // Long transfers are sampled once per window
+        estimator.onTransferStarted();
+        advanceClock(ThroughputEstimator.MAX_SAMPLE_MS);
+        estimator.onBytesTransferred(2048 * KB);
+        assertEquals(ThroughputEstimator.SMOOTHING_FACTOR * 1024 +
+                (1 - ThroughputEstimator.SMOOTHING_FACTOR) * 512, estimator.getThroughputKbps(), DELTA);
+    }
+
+    @Test
+    public void testReportedOncePerConnection() {
+        transfer(512 * KB, 1000);
+        transfer(512 * KB, 1000);
+        verify(analyticsRegistry, times(1)).trackUserConnectionSpeed(anyString(), anyFloat());
+
+        estimator.onNetworkChanged();
+        transfer(512 * KB, 1000);
+        verify(analyticsRegistry, times(2)).trackUserConnectionSpeed(anyString(), anyFloat());
+
+        when(config.isSpeedTestEnabled()).thenReturn(false);
+        estimator.onNetworkChanged();
+        transfer(512 * KB, 1000);
+        verify(analyticsRegistry, times(2)).trackUserConnectionSpeed(anyString(), anyFloat());
+    }
+
+    @Test
+    public void testInterceptorCountsResponseBodies() throws Exception {
+        final ThroughputEstimator estimator = mock(ThroughputEstimator.class);
+        final MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse().setBody(new Buffer().write(new byte[100 * KB])));
+        server.start();
+        try {
+            final OkHttpClient client = new OkHttpClient.Builder()
+                    .addNetworkInterceptor(new ThroughputInterceptor(estimator))
+                    .build();
+            try (Response response = client.newCall(new Request.Builder()
+                    .url(server.url("/")).build()).execute()) {
+                assertEquals(100 * KB, response.body().bytes().length);
+            }
+        } finally {
+            server.shutdown();
+        }
+
+        verify(estimator, times(1)).onTransferStarted();
+        verify(estimator, times(1)).onTransferEnded();
+        final ArgumentCaptor<Long> byteCounts = ArgumentCaptor.forClass(Long.class);
+        verify(estimator, atLeastOnce()).onBytesTransferred(byteCounts.capture());
+        long total = 0;
+        for (long byteCount : byteCounts.getAllValues()) {
+            total += byteCount;
+        }
+        assertEquals(100 * KB, total);
+        verify(estimator, never()).onBytesTransferred(-1);
+    }
+
+    private ThroughputEstimator createEstimator() {
+        return new ThroughputEstimator(RuntimeEnvironment.application, config, analyticsRegistry);
+    }
+
+    private void transfer(long bytes, long durationMs) {
+        estimator.onTransferStarted();
+        advanceClock(durationMs);
+        estimator.onBytesTransferred(bytes);
+        estimator.onTransferEnded();
+    }
+
+    private static void advanceClock(long ms) {
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + ms);
+    }
+}
@@ -0,0 +1,126 @@
+package org.edx.mobile.test.module;
+
+import com.google.gson.Gson;
+
+import org.edx.mobile.module.storage.CoursePackage;
+import org.edx.mobile.module.storage.CoursePackage.TranscriptEntry;
+import org.edx.mobile.module.storage.CoursePackage.VideoEntry;
+import org.edx.mobile.test.BaseTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class CoursePackageTest extends BaseTest {
+    private static final String COURSE_ID = "course-v1:edX+DemoX+Demo_Course";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Gson gson = new Gson();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final byte[] video = createContent(300 * 1024);
+        final byte[] transcript = "1\n00:00:00,000 --> 00:00:01,000\nHello\n".getBytes("UTF-8");
+        final File packageFile = writePackage(video, transcript);
+
+        try (CoursePackage.Reader reader = new CoursePackage.Reader(packageFile, gson)) {
+            final CoursePackage.Index index = reader.getIndex();
+            assertEquals(COURSE_ID, index.courseId);
+            assertEquals("{\"root\":\"block\"}",
+                    new String(reader.read(index.structure), "UTF-8"));
+            assertEquals(1, index.videos.size());
+            assertEquals("video-1", index.videos.get(0).videoId);
+            final File videoFile = new File(folder.getRoot(), "video");
+            reader.extract(index.videos.get(0), videoFile);
+            assertArrayEquals(video, Files.readAllBytes(videoFile.toPath()));
+            final File transcriptFile = new File(folder.getRoot(), "transcript");
+            reader.extract(index.transcripts.get(0), transcriptFile);
+            assertArrayEquals(transcript, Files.readAllBytes(transcriptFile.toPath()));
+        }
+    }
+
+    @Test
+    public void testCorruptedEntryIsNotExtracted() throws IOException {
+        final byte[] video = createContent(300 * 1024);
+        final File packageFile = writePackage(video, new byte[0]);
+        final long offset;
+        try (CoursePackage.Reader reader = new CoursePackage.Reader(packageFile, gson)) {
+            offset = reader.getIndex().videos.get(0).offset;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(packageFile, "rw")) {
+            file.seek(offset + 1000);
+            file.write(~video[1000]);
+        }
+
+        try (CoursePackage.Reader reader = new CoursePackage.Reader(packageFile, gson)) {
+            final File videoFile = new File(folder.getRoot(), "video");
+            try {
+                reader.extract(reader.getIndex().videos.get(0), videoFile);
+                fail("Corrupted entry extracted");
+            } catch (IOException e) {
+                // expected
+            }
+            assertFalse(videoFile.exists());
+        }
+    }
+
+    @Test
+    public void testIncompletePackageIsRejected() throws IOException {
+        final File packageFile = writePackage(createContent(1024), new byte[0]);
+        try (RandomAccessFile file = new RandomAccessFile(packageFile, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        try {
+            new CoursePackage.Reader(packageFile, gson).close();
+            fail("Incomplete package read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private File writePackage(byte[] video, byte[] transcript) throws IOException {
+        final File videoFile = createFile("source-video", video);
+        final File transcriptFile = createFile("source-transcript", transcript);
+        final File packageFile = new File(folder.getRoot(), "course.pkg");
+        try (CoursePackage.Writer writer = new CoursePackage.Writer(packageFile, COURSE_ID, gson)) {
+            writer.index.structure = writer.add(new CoursePackage.Entry(),
+                    "{\"root\":\"block\"}".getBytes("UTF-8"));
+            final VideoEntry videoEntry = new VideoEntry();
+            videoEntry.videoId = "video-1";
+            videoEntry.url = "https://example.com/video-1.mp4";
+            writer.index.videos.add(writer.add(videoEntry, videoFile));
+            final TranscriptEntry transcriptEntry = new TranscriptEntry();
+            transcriptEntry.url = "https://example.com/video-1.srt";
+            writer.index.transcripts.add(writer.add(transcriptEntry, transcriptFile));
+            writer.finish();
+        }
+        return packageFile;
+    }
+
+    private File createFile(String name, byte[] content) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private static byte[] createContent(int size) {
+        final byte[] content = new byte[size];
+        new Random(11).nextBytes(content);
+        return content;
+    }
+}
@@ -4,6 +4,7 @@ import com.google.inject.Injector;
 
 import org.edx.mobile.model.VideoModel;
 import org.edx.mobile.model.api.ProfileModel;
+import org.edx.mobile.model.db.CourseDownloadSummary;
 import org.edx.mobile.model.db.DownloadEntry;
 import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
 import org.edx.mobile.model.db.DownloadEntry.WatchedState;
@@ -15,6 +16,8 @@ import org.edx.mobile.test.BaseTestCase;
 import org.junit.Test;
 import org.robolectric.RuntimeEnvironment;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -1245,6 +1248,92 @@ public class DbTests extends BaseTestCase {
 
     }
 
+    @Test
+    public void testCourseDownloadSummaries() throws Exception {
+        db.clearDataByUser(username);
+        assertTrue(db.getCourseDownloadSummaries(null).isEmpty());
+        assertFalse(db.isAnyVideoDownloading(null));
+
+        DownloadEntry downloaded = getDummyVideoModel();
+        downloaded.videoId = "videoId-1";
+        downloaded.downloaded = DownloadedState.DOWNLOADED;
+        db.addVideoData(downloaded, null);
+        DownloadEntry downloading = getDummyVideoModel();
+        downloading.videoId = "videoId-2";
+        downloading.dmId = 2;
+        db.addVideoData(downloading, null);
+        DownloadEntry online = getDummyVideoModel();
+        online.videoId = "videoId-3";
+        online.eid = "other_eid";
+        online.downloaded = DownloadedState.ONLINE;
+        db.addVideoData(online, null);
+
+        List<CourseDownloadSummary> summaries = db.getCourseDownloadSummaries(null);
+        assertEquals("Courses without downloads should be left out", 1, summaries.size());
+        assertSummary(summaries.get(0), 1, 1024, 1);
+        assertTrue(db.isAnyVideoDownloading(null));
+        assertTrue(db.isAnyVideoDownloadingInCourse(null, "fake_eid"));
+        assertFalse(db.isAnyVideoDownloadingInCourse(null, "other_eid"));
+        assertNull(db.getCourseDownloadSummary("other_eid", null));
+
+        downloading.downloaded = DownloadedState.DOWNLOADED;
+        downloading.size = 2048;
+        db.updateDownloadCompleteInfoByDmId(2, downloading, null);
+        assertSummary(db.getCourseDownloadSummary("fake_eid", null), 2, 3072, 0);
+        assertFalse(db.isAnyVideoDownloading(null));
+        assertEquals(2, db.getVideosDownloadedCount(null).intValue());
+
+        db.updateVideoAsOnlineByVideoId("videoId-1", null);
+        assertSummary(db.getCourseDownloadSummary("fake_eid", null), 1, 2048, 0);
+
+        db.deleteVideoByVideoId(db.getVideoEntryByVideoId("videoId-2", null), null);
+        assertNull("Courses without downloads should be left out",
+                db.getCourseDownloadSummary("fake_eid", null));
+        assertEquals(0, db.getVideosDownloadedCount(null).intValue());
+    }
+
+    @Test
+    public void testVideoFileReferences() throws Exception {
+        db.clearDataByUser(username);
+        final String filepath = "/store/sha1";
+        db.addVideoFile(filepath, "sha1", 1000, null);
+        assertFalse(db.isVideoFileReferenced(filepath, null));
+
+        for (String videoId : Arrays.asList("videoId-1", "videoId-2", "videoId-3")) {
+            DownloadEntry de = getDummyVideoModel();
+            de.videoId = videoId;
+            de.filepath = filepath;
+            de.downloaded = DownloadedState.DOWNLOADED;
+            db.addVideoData(de, null);
+        }
+        assertTrue(db.isVideoFileReferenced(filepath, null));
+        assertEquals("Two of the three videos share the file of the first one", 2000,
+                db.getVideoFileBytesSaved(null).longValue());
+
+        // The references follow the file when it's moved
+        db.updateDownloadedVideoFilePath(filepath, "/moved/sha1", null);
+        assertFalse(db.isVideoFileReferenced(filepath, null));
+        assertEquals(Arrays.asList("/moved/sha1"), db.getVideoFilePathsByContent("sha1", 1000,
+                null));
+        assertEquals(2000, db.getVideoFileBytesSaved(null).longValue());
+
+        db.updateVideoAsOnlineByVideoId("videoId-1", null);
+        db.deleteVideoByVideoId(db.getVideoEntryByVideoId("videoId-2", null), null);
+        assertEquals(0, db.getVideoFileBytesSaved(null).longValue());
+        assertEquals(0, db.deleteUnreferencedVideoFile("/moved/sha1", null).intValue());
+        db.deleteVideoByVideoId(db.getVideoEntryByVideoId("videoId-3", null), null);
+        assertEquals(1, db.deleteUnreferencedVideoFile("/moved/sha1", null).intValue());
+    }
+
+    private static void assertSummary(CourseDownloadSummary summary, int downloadedCount,
+                                      long downloadedBytes, int downloadingCount) {
+        assertNotNull(summary);
+        assertEquals("fake_eid", summary.courseId);
+        assertEquals(downloadedCount, summary.downloadedCount);
+        assertEquals(downloadedBytes, summary.downloadedBytes);
+        assertEquals(downloadingCount, summary.downloadingCount);
+    }
+
     @Test
     public void testgetIVideoModelByVideoUrl() throws Exception {
         db.clearDataByUser(username);
@@ -1631,6 +1720,95 @@ public class DbTests extends BaseTestCase {
         lock();
     }
 
+    @Test
+    public void testGetVideosByVideoUrls() throws Exception {
+        db.clearDataByUser(username);
+
+        DownloadEntry downloaded = getDummyVideoModel();
+        downloaded.videoId = "videoId-1";
+        downloaded.url = "http://fake/url/1";
+        downloaded.downloaded = DownloadedState.DOWNLOADED;
+        db.addVideoData(downloaded, null);
+        DownloadEntry online = getDummyVideoModel();
+        online.videoId = "videoId-2";
+        online.url = "http://fake/url/2";
+        online.downloaded = DownloadedState.ONLINE;
+        db.addVideoData(online, null);
+
+        List<VideoModel> videos = db.getVideosByVideoUrls(Arrays.asList(
+                "http://fake/url/1", "http://fake/url/2", "http://fake/url/3"), null);
+        assertNotNull(videos);
+        assertEquals("Only the video being downloaded should be returned", 1, videos.size());
+        assertEquals(downloaded.videoId, videos.get(0).getVideoId());
+    }
+
+    @Test
+    public void testGetVideosByManyVideoUrls() throws Exception {
+        db.clearDataByUser(username);
+
+        DownloadEntry first = getDummyVideoModel();
+        first.videoId = "videoId-1";
+        first.url = "http://fake/url/0";
+        first.downloaded = DownloadedState.DOWNLOADED;
+        db.addVideoData(first, null);
+        DownloadEntry last = getDummyVideoModel();
+        last.videoId = "videoId-2";
+        last.url = "http://fake/url/1999";
+        last.downloaded = DownloadedState.DOWNLOADING;
+        db.addVideoData(last, null);
+
+        // More urls than the variables SQLite can bind in a query
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            urls.add("http://fake/url/" + i);
+        }
+        List<VideoModel> videos = db.getVideosByVideoUrls(urls, null);
+        assertNotNull(videos);
+        assertEquals("Should find the videos of every chunk of urls", 2, videos.size());
+    }
+
+    @Test
+    public void testAddDownloads() throws Exception {
+        db.clearDataByUser(username);
+
+        DownloadEntry existing = getDummyVideoModel();
+        existing.videoId = "videoId-1";
+        existing.downloaded = DownloadedState.ONLINE;
+        existing.dmId = -1;
+        db.addVideoData(existing, null);
+
+        DownloadEntry download = getDummyVideoModel();
+        download.videoId = "videoId-1";
+        download.downloaded = DownloadedState.DOWNLOADING;
+        download.dmId = 10;
+        DownloadEntry newDownload = getDummyVideoModel();
+        newDownload.videoId = "videoId-2";
+        newDownload.downloaded = DownloadedState.DOWNLOADING;
+        newDownload.dmId = 11;
+        DownloadEntry webOnly = getDummyVideoModel();
+        webOnly.videoId = "videoId-3";
+        webOnly.downloaded = DownloadedState.ONLINE;
+        webOnly.dmId = -1;
+
+        Integer count = db.addDownloads(Arrays.asList(download, newDownload, webOnly),
+                Arrays.asList(download, newDownload), null);
+        assertNotNull(count);
+        assertEquals("Should have updated the two downloads", 2, count.intValue());
+
+        VideoModel video = db.getVideoEntryByVideoId("videoId-1", null);
+        assertNotNull(video);
+        assertEquals(10, video.getDmId());
+        assertEquals(DownloadedState.DOWNLOADING.ordinal(), video.getDownloadedStateOrdinal());
+        video = db.getVideoEntryByVideoId("videoId-2", null);
+        assertNotNull(video);
+        assertEquals(11, video.getDmId());
+        video = db.getVideoEntryByVideoId("videoId-3", null);
+        assertNotNull("Videos that aren't downloaded should be saved as well", video);
+        assertEquals(-1, video.getDmId());
+        assertEquals("Existing videos shouldn't be added again", 3,
+                db.getAllVideos(username, null).size());
+    }
+
     private void lock() throws InterruptedException {
         synchronized (lock) {
             lock.wait(1000); // in milliseconds
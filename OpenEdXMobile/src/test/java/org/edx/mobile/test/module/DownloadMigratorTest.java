@@ -0,0 +1,78 @@
+package org.edx.mobile.test.module;
+
+import android.os.CancellationSignal;
+
+import org.edx.mobile.module.storage.DownloadMigrator;
+import org.edx.mobile.test.BaseTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadMigratorTest extends BaseTest {
+    private static final int SIZE = 1024 * 1024 + 123;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResumesPartialCopy() throws IOException {
+        final byte[] content = createContent();
+        final File source = createFile("source", content);
+        final File partial = createFile("partial", Arrays.copyOf(content, SIZE / 3));
+
+        assertTrue(DownloadMigrator.copyResumable(source, partial, new CancellationSignal()));
+        assertArrayEquals(content, Files.readAllBytes(partial.toPath()));
+    }
+
+    @Test
+    public void testRestartsCopyWithCorruptTail() throws IOException {
+        final byte[] content = createContent();
+        final File source = createFile("source", content);
+        final byte[] torn = Arrays.copyOf(content, SIZE / 3);
+        // Garbage that didn't make it to the storage before the copy was cut short
+        Arrays.fill(torn, torn.length - 100, torn.length, (byte) 0);
+        torn[torn.length - 1] = (byte) ~content[torn.length - 1];
+        final File partial = createFile("partial", torn);
+
+        assertTrue(DownloadMigrator.copyResumable(source, partial, new CancellationSignal()));
+        assertArrayEquals(content, Files.readAllBytes(partial.toPath()));
+    }
+
+    @Test
+    public void testCancelledCopyIsLeftToResume() throws IOException {
+        final byte[] content = createContent();
+        final File source = createFile("source", content);
+        final File partial = new File(folder.getRoot(), "partial");
+        final CancellationSignal signal = new CancellationSignal();
+        signal.cancel();
+
+        assertFalse(DownloadMigrator.copyResumable(source, partial, signal));
+        assertTrue(DownloadMigrator.copyResumable(source, partial, new CancellationSignal()));
+        assertArrayEquals(content, Files.readAllBytes(partial.toPath()));
+    }
+
+    private static byte[] createContent() {
+        final byte[] content = new byte[SIZE];
+        new Random(7).nextBytes(content);
+        return content;
+    }
+
+    private File createFile(String name, byte[] content) throws IOException {
+        final File file = new File(folder.getRoot(), name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+}
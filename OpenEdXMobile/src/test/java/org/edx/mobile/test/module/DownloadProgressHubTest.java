@@ -0,0 +1,152 @@
+package org.edx.mobile.test.module;
+
+import android.app.DownloadManager;
+import android.os.SystemClock;
+
+import org.edx.mobile.model.download.NativeDownloadModel;
+import org.edx.mobile.module.download.DownloadProgressHub;
+import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.test.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DownloadProgressHubTest extends BaseTest {
+    @Mock
+    private IDownloadManager dm;
+
+    private DownloadProgressHub hub;
+    // The tests run on the main thread, which is only answered from the latest sample
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() {
+        hub = new DownloadProgressHub(dm);
+    }
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+    }
+
+    @Test
+    public void testSampledOncePerInterval() throws Exception {
+        final NativeDownloadModel first = createDownload(1, 25, 100);
+        final NativeDownloadModel second = createDownload(2, 75, 100);
+        when(dm.getActiveDownloads()).thenReturn(Arrays.asList(first, second));
+
+        assertEquals(50, (int) onWorker(() -> hub.getAverageProgress()));
+        assertEquals(25, (int) onWorker(() -> hub.getAverageProgressForDownloads(new long[]{1})));
+        final NativeDownloadModel details =
+                onWorker(() -> hub.getProgressDetailsForDownloads(new long[]{1, 2}));
+        assertEquals(2, details.downloadCount);
+        assertEquals(100, details.downloaded);
+        assertEquals(200, details.size);
+        assertSame(second, onWorker(() -> hub.getDownload(2)));
+        // All of the above are answered from a single query
+        verify(dm, times(1)).getActiveDownloads();
+        verify(dm, never()).getDownload(anyLong());
+
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime()
+                + DownloadProgressHub.SAMPLE_INTERVAL_MS);
+        when(dm.getActiveDownloads()).thenReturn(Collections.singletonList(createDownload(2, 100, 100)));
+        assertEquals(100, (int) onWorker(() -> hub.getAverageProgress()));
+        verify(dm, times(2)).getActiveDownloads();
+    }
+
+    @Test
+    public void testInactiveDownloads() throws Exception {
+        when(dm.getActiveDownloads()).thenReturn(Collections.singletonList(createDownload(1, 50, 100)));
+        final NativeDownloadModel completed = createDownload(2, 100, 100);
+        completed.status = DownloadManager.STATUS_SUCCESSFUL;
+        when(dm.getDownload(2)).thenReturn(completed);
+
+        // Downloads that aren't active are queried from the download manager
+        assertSame(completed, onWorker(() -> hub.getDownload(2)));
+        assertEquals(75, (int) onWorker(() -> hub.getAverageProgressForDownloads(new long[]{1, 2})));
+        assertNull(onWorker(() -> hub.getDownload(3)));
+        assertEquals(0, (int) onWorker(() -> hub.getAverageProgressForDownloads(new long[0])));
+    }
+
+    @Test(timeout = 5000)
+    public void testInactiveDownloadsOnMainThread() throws Exception {
+        when(dm.getActiveDownloads()).thenReturn(Collections.singletonList(createDownload(1, 50, 100)));
+        final NativeDownloadModel completed = createDownload(2, 100, 100);
+        completed.status = DownloadManager.STATUS_SUCCESSFUL;
+        when(dm.getDownload(2)).thenReturn(completed);
+        assertEquals(50, (int) onWorker(() -> hub.getAverageProgress()));
+
+        // The main thread is answered without the inactive download, which is queried in the
+        // background and cached
+        assertEquals(50, hub.getAverageProgressForDownloads(new long[]{1, 2}));
+        while (hub.getAverageProgressForDownloads(new long[]{1, 2}) != 75) {
+            Thread.sleep(10);
+        }
+        final NativeDownloadModel details = hub.getProgressDetailsForDownloads(new long[]{1, 2});
+        assertEquals(2, details.downloadCount);
+        assertEquals(150, details.downloaded);
+        verify(dm, times(1)).getDownload(2);
+    }
+
+    @Test(timeout = 5000)
+    public void testMainThreadNotBlocked() throws Exception {
+        when(dm.getActiveDownloads()).thenReturn(Collections.singletonList(createDownload(1, 50, 100)));
+        assertEquals(50, (int) onWorker(() -> hub.getAverageProgress()));
+
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime()
+                + DownloadProgressHub.SAMPLE_INTERVAL_MS);
+        when(dm.getActiveDownloads()).thenReturn(Collections.singletonList(createDownload(1, 100, 100)));
+        // A sample being taken holds the lock of the hub
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        new Thread(() -> {
+            synchronized (hub) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).start();
+        locked.await();
+
+        // The main thread gets the latest sample without waiting, and a new one is taken later
+        assertEquals(50, hub.getAverageProgress());
+        verify(dm, times(1)).getActiveDownloads();
+        release.countDown();
+        verify(dm, timeout(1000).times(2)).getActiveDownloads();
+    }
+
+    private <T> T onWorker(Callable<T> callable) throws Exception {
+        return worker.submit(callable).get();
+    }
+
+    private static NativeDownloadModel createDownload(long dmid, long downloaded, long size) {
+        final NativeDownloadModel download = new NativeDownloadModel();
+        download.dmid = dmid;
+        download.downloadCount = 1;
+        download.downloaded = downloaded;
+        download.size = size;
+        download.status = DownloadManager.STATUS_RUNNING;
+        return download;
+    }
+}
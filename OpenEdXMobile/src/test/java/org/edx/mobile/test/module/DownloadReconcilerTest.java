@@ -0,0 +1,166 @@
+package org.edx.mobile.test.module;
+
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.db.DownloadEntry;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.model.download.NativeDownloadModel;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.module.prefs.LoginPrefs;
+import org.edx.mobile.module.storage.DownloadReconciler;
+import org.edx.mobile.module.storage.VideoFileStore;
+import org.edx.mobile.test.BaseTest;
+import org.edx.mobile.util.Sha1Util;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DownloadReconcilerTest extends BaseTest {
+    private static final long OLD = System.currentTimeMillis() - 2 * DownloadReconciler.GRACE_PERIOD_MS;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private IDatabase db;
+    @Mock
+    private IDownloadManager dm;
+    @Mock
+    private LoginPrefs loginPrefs;
+
+    private DownloadReconciler reconciler;
+    private File directory;
+    private final List<VideoModel> videos = new ArrayList<>();
+    private final List<NativeDownloadModel> activeDownloads = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("videos");
+        when(db.getAllVideos(any(), any())).thenReturn(videos);
+        when(db.updateVideoAsOnlineByVideoId(anyString(), any())).thenReturn(1);
+        when(dm.getActiveDownloads()).thenReturn(activeDownloads);
+        reconciler = new DownloadReconciler(RuntimeEnvironment.application, db, dm, loginPrefs,
+                new VideoFileStore(db));
+    }
+
+    @Test
+    public void testDeletesFilesNotInDatabase() throws IOException {
+        final File downloaded = createFile(directory, "downloaded", 100, OLD);
+        addVideo("a", "url-a", downloaded, DownloadedState.DOWNLOADED);
+        final File orphan = createFile(directory, "orphan", 200, OLD);
+        final File orphanDirectory = new File(directory, "orphan-dir");
+        createFile(orphanDirectory, "child", 300, OLD);
+        orphanDirectory.setLastModified(OLD);
+        final File noMedia = createFile(directory, ".nomedia", 0, OLD);
+
+        final DownloadReconciler.Report report = reconciler.reconcile(
+                Collections.singletonList(directory));
+        assertEquals(2, report.deletedFileCount);
+        assertEquals(500, report.reclaimedBytes);
+        assertEquals(0, report.repairedVideoCount);
+        assertTrue(downloaded.exists());
+        assertTrue(noMedia.exists());
+        assertFalse(orphan.exists());
+        assertFalse(orphanDirectory.exists());
+    }
+
+    @Test
+    public void testKeepsFilesOfDownloadsInProgress() throws IOException {
+        // Downloading without a path yet
+        addVideo("a", "url-a", null, DownloadedState.DOWNLOADING);
+        final File named = createFile(directory, Sha1Util.SHA1("url-a"), 100, OLD);
+        // Known to the download manager only
+        final File active = createFile(directory, "active", 100, OLD);
+        final NativeDownloadModel download = new NativeDownloadModel();
+        download.filepath = active.getAbsolutePath();
+        activeDownloads.add(download);
+        // Just enqueued
+        final File recent = createFile(directory, "recent", 100, System.currentTimeMillis());
+
+        final DownloadReconciler.Report report = reconciler.reconcile(
+                Collections.singletonList(directory));
+        assertEquals(0, report.deletedFileCount);
+        assertTrue(named.exists());
+        assertTrue(active.exists());
+        assertTrue(recent.exists());
+    }
+
+    @Test
+    public void testKeepsStoredFilesOfOtherUsers() throws IOException {
+        final File store = folder.newFolder("store");
+        final File ownFile = createFile(store, "own", 100, OLD);
+        addVideo("a", "url-a", ownFile, DownloadedState.DOWNLOADED);
+        final File sharedFile = createFile(store, "shared", 200, OLD);
+        final File unreferencedFile = createFile(store, "unreferenced", 300, OLD);
+        when(db.getReferencedVideoFilePaths(any())).thenReturn(Arrays.asList(
+                ownFile.getAbsolutePath(), sharedFile.getAbsolutePath()));
+
+        final DownloadReconciler.Report report = reconciler.reconcile(
+                Arrays.asList(directory, store));
+        assertEquals(1, report.deletedFileCount);
+        assertEquals(300, report.reclaimedBytes);
+        assertTrue(ownFile.exists());
+        assertTrue(sharedFile.exists());
+        assertFalse(unreferencedFile.exists());
+    }
+
+    @Test
+    public void testRepairsVideosWithMissingFiles() throws IOException {
+        final File missing = new File(directory, "missing");
+        addVideo("a", "url-a", missing, DownloadedState.DOWNLOADED);
+        addVideo("b", "url-a", missing, DownloadedState.DOWNLOADED);
+        addVideo("c", "url-c", createFile(directory, "present", 100, OLD),
+                DownloadedState.DOWNLOADED);
+        // On a storage that isn't mounted
+        addVideo("d", "url-d", new File(folder.getRoot(), "unmounted/video"),
+                DownloadedState.DOWNLOADED);
+
+        final DownloadReconciler.Report report = reconciler.reconcile(
+                Arrays.asList(directory, new File(folder.getRoot(), "unmounted")));
+        assertEquals(2, report.repairedVideoCount);
+        verify(db).updateVideoAsOnlineByVideoId("a", null);
+        verify(db).updateVideoAsOnlineByVideoId("b", null);
+        verify(db, never()).updateVideoAsOnlineByVideoId("c", null);
+        verify(db, never()).updateVideoAsOnlineByVideoId("d", null);
+    }
+
+    private void addVideo(String videoId, String url, File file, DownloadedState downloaded) {
+        final DownloadEntry video = new DownloadEntry();
+        video.videoId = videoId;
+        video.url = url;
+        video.filepath = file == null ? null : file.getAbsolutePath();
+        video.downloaded = downloaded;
+        videos.add(video);
+    }
+
+    private static File createFile(File directory, String name, int size, long lastModified)
+            throws IOException {
+        directory.mkdirs();
+        final File file = new File(directory, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        file.setLastModified(lastModified);
+        return file;
+    }
+}
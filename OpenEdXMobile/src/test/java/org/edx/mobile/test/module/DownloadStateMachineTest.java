@@ -0,0 +1,407 @@
+package org.edx.mobile.test.module;
+
+import android.app.DownloadManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.inject.Injector;
+
+import org.edx.mobile.model.VideoModel;
+import org.edx.mobile.model.api.ProfileModel;
+import org.edx.mobile.model.db.DownloadEntry;
+import org.edx.mobile.model.db.DownloadEntry.DownloadedState;
+import org.edx.mobile.model.download.NativeDownloadModel;
+import org.edx.mobile.module.db.IDatabase;
+import org.edx.mobile.module.db.impl.DatabaseFactory;
+import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.module.prefs.LoginPrefs;
+import org.edx.mobile.module.storage.DownloadJournal;
+import org.edx.mobile.module.storage.DownloadStateMachine;
+import org.edx.mobile.module.storage.VideoFileStore;
+import org.edx.mobile.test.BaseTestCase;
+import org.edx.mobile.util.Sha1Util;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Crashes the app, in effect, after every step of the transitions of the downloads, and checks
+ * that the recovery on the next start leaves the downloads consistent.
+ */
+public class DownloadStateMachineTest extends BaseTestCase {
+    private static final String USERNAME = "unittest";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IDatabase db;
+    private LoginPrefs loginPrefs;
+    private File downloadDirectory;
+
+    @Override
+    protected void inject(Injector injector) throws Exception {
+        super.inject(injector);
+        loginPrefs = injector.getInstance(LoginPrefs.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        db = DatabaseFactory.getInstance(DatabaseFactory.TYPE_DATABASE_NATIVE,
+                RuntimeEnvironment.application);
+        final ProfileModel profileModel = new ProfileModel();
+        profileModel.username = USERNAME;
+        loginPrefs.storeUserProfile(profileModel);
+        // Laid out like the video directories, as the store is next to the user's directory
+        downloadDirectory = folder.newFolder("videos", USERNAME);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        db.release();
+    }
+
+    @Test
+    public void testEnqueueRecoversFromCrashAtEveryStep() throws Exception {
+        for (int crashAt = 1; ; crashAt++) {
+            db.clearDataByUser(USERNAME);
+            final FakeDownloadManager dm = new FakeDownloadManager();
+            final File journalFile = folder.newFile();
+            final List<DownloadEntry> videos = Arrays.asList(createVideo("a", "url-a"),
+                    createVideo("b", "url-b"), createVideo("c", "url-b"));
+            final DownloadStateMachine stateMachine = restart(dm, journalFile);
+            stateMachine.setStepListener(new CrashingStepListener(crashAt));
+            final boolean crashed = crash(() -> stateMachine.enqueue(videos,
+                    Arrays.asList(videos.get(0), videos.get(1)), downloadDirectory, false));
+            // The downloads enqueued in parallel keep going until the "app" dies
+            dm.awaitAddedDownloads(crashAt == 1 ? 0 : 2);
+
+            restart(dm, journalFile).recover();
+
+            // Every download is either saved along with its videos, or removed
+            for (NativeDownloadModel download : dm.getActiveDownloads()) {
+                assertTrue("Download not saved, crash at step " + crashAt,
+                        db.getVideoCountBydmId(download.dmid, null) > 0);
+            }
+            for (VideoModel video : db.getAllVideos(null, null)) {
+                if (video.getDownloadedStateOrdinal() == DownloadedState.DOWNLOADING.ordinal()) {
+                    assertNotNull("Video saved without download, crash at step " + crashAt,
+                            dm.getDownload(video.getDmId()));
+                }
+            }
+            if (!crashed) {
+                assertEquals(2, dm.getActiveDownloads().size());
+                assertEquals(3, db.getAllVideos(null, null).size());
+                break;
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveRecoversFromCrashAtEveryStep() throws Exception {
+        for (int crashAt = 1; ; crashAt++) {
+            db.clearDataByUser(USERNAME);
+            final FakeDownloadManager dm = new FakeDownloadManager();
+            final File journalFile = folder.newFile();
+            final DownloadStateMachine stateMachine = restart(dm, journalFile);
+            final List<DownloadEntry> videos = Arrays.asList(createVideo("a", "url-a"),
+                    createVideo("b", "url-b"));
+            stateMachine.enqueue(videos, videos, downloadDirectory, false);
+            // Complete one of the downloads, and keep its file around
+            final long completedDmid = videos.get(0).getDmId();
+            dm.complete(completedDmid);
+            assertNotNull(stateMachine.complete(completedDmid));
+            stateMachine.awaitStoredFiles();
+            final String completedPath = db.getVideoEntryByVideoId("a", null).getFilePath();
+            dm.removeDownloadsOnly(completedDmid);
+
+            final List<VideoModel> saved = db.getAllVideos(null, null);
+            assertEquals(2, saved.size());
+            stateMachine.setStepListener(new CrashingStepListener(crashAt));
+            final boolean crashed = crash(() -> stateMachine.remove(saved, null, true));
+
+            restart(dm, journalFile).recover();
+
+            assertTrue("Downloads left, crash at step " + crashAt,
+                    dm.getActiveDownloads().isEmpty());
+            assertTrue("Videos left, crash at step " + crashAt,
+                    db.getAllVideos(null, null).isEmpty());
+            assertFalse("File left, crash at step " + crashAt, new File(completedPath).exists());
+            if (!crashed) {
+                break;
+            }
+        }
+    }
+
+    @Test
+    public void testRecoverCompletesFinishedDownloads() throws Exception {
+        db.clearDataByUser(USERNAME);
+        final FakeDownloadManager dm = new FakeDownloadManager();
+        final File journalFile = folder.newFile();
+        final List<DownloadEntry> videos = Arrays.asList(createVideo("a", "url-a"));
+        restart(dm, journalFile).enqueue(videos, videos, downloadDirectory, false);
+        // The download completes while the app isn't running
+        dm.complete(videos.get(0).getDmId());
+
+        final DownloadStateMachine stateMachine = restart(dm, journalFile);
+        final List<String> filepaths = stateMachine.recover();
+
+        // The file is only hashed and stored in a separate pass, outside the recovery budget
+        VideoModel video = db.getVideoEntryByVideoId("a", null);
+        assertEquals(DownloadedState.DOWNLOADED.ordinal(), video.getDownloadedStateOrdinal());
+        assertEquals(Collections.singletonList(video.getFilePath()), filepaths);
+        assertFalse(VideoFileStore.isStored(video.getFilePath()));
+
+        stateMachine.storeFiles(filepaths);
+        video = db.getVideoEntryByVideoId("a", null);
+        assertEquals(DownloadedState.DOWNLOADED.ordinal(), video.getDownloadedStateOrdinal());
+        assertTrue("File not moved to the store", VideoFileStore.isStored(video.getFilePath()));
+        assertTrue(new File(video.getFilePath()).exists());
+        assertFalse(new File(dm.getDownload(video.getDmId()).filepath).exists());
+    }
+
+    @Test
+    public void testDownloadsOfSameContentShareFile() throws Exception {
+        db.clearDataByUser(USERNAME);
+        final FakeDownloadManager dm = new FakeDownloadManager();
+        final DownloadStateMachine stateMachine = restart(dm, folder.newFile());
+        // Different urls of the same video, as in another run of the course
+        final List<DownloadEntry> videos = Arrays.asList(createVideo("a", "url-a"),
+                createVideo("b", "url-b"));
+        stateMachine.enqueue(videos, videos, downloadDirectory, false);
+        for (DownloadEntry video : videos) {
+            dm.complete(video.getDmId());
+            assertNotNull(stateMachine.complete(video.getDmId()));
+            stateMachine.awaitStoredFiles();
+            assertFalse(new File(dm.getDownload(video.getDmId()).filepath).exists());
+        }
+        final String filepath = db.getVideoEntryByVideoId("a", null).getFilePath();
+        assertEquals(filepath, db.getVideoEntryByVideoId("b", null).getFilePath());
+        assertTrue(db.isVideoFileReferenced(filepath, null));
+
+        // The file is kept until the last video referring to it is removed
+        stateMachine.remove(Collections.singletonList(db.getVideoEntryByVideoId("a", null)), null,
+                true);
+        assertTrue(new File(filepath).exists());
+        stateMachine.remove(Collections.singletonList(db.getVideoEntryByVideoId("b", null)), null,
+                true);
+        assertFalse(new File(filepath).exists());
+        assertFalse(db.isVideoFileReferenced(filepath, null));
+    }
+
+    @Test
+    public void testJournalIgnoresTornRecord() throws Exception {
+        final File journalFile = folder.newFile();
+        final DownloadJournal journal = new DownloadJournal(journalFile);
+        final DownloadJournal.Entry committed = journal.begin(DownloadJournal.Operation.REMOVE,
+                null, Collections.singletonList("a"), Collections.<String>emptyList(),
+                Collections.<String>emptyList(), Collections.singletonList(1L));
+        journal.commit(committed);
+        journal.begin(DownloadJournal.Operation.ENQUEUE, null, Collections.singletonList("b"),
+                Collections.singletonList("url-b"), Collections.<String>emptyList(),
+                Collections.<Long>emptyList());
+        // The app dies while a record is being written
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 2, 0, 0});
+        }
+
+        final DownloadJournal restarted = new DownloadJournal(journalFile);
+        List<DownloadJournal.Entry> pending = restarted.getPendingEntries();
+        assertEquals(1, pending.size());
+        assertEquals(DownloadJournal.Operation.ENQUEUE, pending.get(0).operation);
+        assertEquals(Collections.singletonList("url-b"), pending.get(0).urls);
+
+        // Records appended after the torn one are read
+        restarted.addDmid(pending.get(0), 7);
+        pending = new DownloadJournal(journalFile).getPendingEntries();
+        assertEquals(Collections.singletonList(7L), pending.get(0).dmids);
+        restarted.commit(pending.get(0));
+        assertTrue(new DownloadJournal(journalFile).getPendingEntries().isEmpty());
+    }
+
+    @NonNull
+    private DownloadStateMachine restart(@NonNull IDownloadManager dm, @NonNull File journalFile) {
+        return new DownloadStateMachine(db, dm, new VideoFileStore(db),
+                new DownloadJournal(journalFile));
+    }
+
+    /**
+     * @return Whether the operation crashed.
+     */
+    private static boolean crash(@NonNull Runnable operation) {
+        try {
+            operation.run();
+            return false;
+        } catch (Crash e) {
+            return true;
+        }
+    }
+
+    @NonNull
+    private static DownloadEntry createVideo(@NonNull String videoId, @NonNull String url) {
+        final DownloadEntry video = new DownloadEntry();
+        video.username = USERNAME;
+        video.title = "title";
+        video.videoId = videoId;
+        video.duration = 3600;
+        video.url = url;
+        video.eid = "fake_eid";
+        video.chapter = "fake_chapter";
+        video.section = "fake_section";
+        return video;
+    }
+
+    private static class Crash extends RuntimeException {
+    }
+
+    private static class CrashingStepListener implements DownloadStateMachine.StepListener {
+        private int stepsLeft;
+
+        CrashingStepListener(int crashAt) {
+            stepsLeft = crashAt;
+        }
+
+        @Override
+        public void onStep(@NonNull String step) {
+            if (--stepsLeft == 0) {
+                throw new Crash();
+            }
+        }
+    }
+
+    /**
+     * Keeps the downloads in memory, and creates and deletes their files like the download
+     * managers do.
+     */
+    private static class FakeDownloadManager implements IDownloadManager {
+        private final Map<Long, NativeDownloadModel> downloads = new HashMap<>();
+        private long nextDmid = 1;
+        private int addedDownloads;
+
+        synchronized void complete(long dmid) {
+            downloads.get(dmid).status = DownloadManager.STATUS_SUCCESSFUL;
+        }
+
+        /**
+         * Remove downloads from the download manager, leaving their files.
+         */
+        synchronized void removeDownloadsOnly(long dmid) {
+            downloads.remove(dmid);
+        }
+
+        synchronized void awaitAddedDownloads(int count) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (addedDownloads < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+        }
+
+        @Nullable
+        @Override
+        public synchronized NativeDownloadModel getDownload(long dmid) {
+            return downloads.get(dmid);
+        }
+
+        @NonNull
+        @Override
+        public synchronized List<NativeDownloadModel> getActiveDownloads() {
+            final List<NativeDownloadModel> active = new ArrayList<>();
+            for (NativeDownloadModel download : downloads.values()) {
+                if (download.status != DownloadManager.STATUS_SUCCESSFUL) {
+                    active.add(download);
+                }
+            }
+            return active;
+        }
+
+        @Override
+        public long addDownload(File destFolder, String url, boolean wifiOnly, String title) {
+            return addDownload(destFolder, url, wifiOnly, title, null);
+        }
+
+        @Override
+        public synchronized long addDownload(File destFolder, String url, boolean wifiOnly,
+                                             String title, @Nullable String courseId) {
+            final NativeDownloadModel download = new NativeDownloadModel();
+            download.dmid = nextDmid++;
+            download.filepath = new File(destFolder, Sha1Util.SHA1(url)).getAbsolutePath();
+            download.status = DownloadManager.STATUS_RUNNING;
+            download.size = 1024;
+            try {
+                new File(download.filepath).createNewFile();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            downloads.put(download.dmid, download);
+            addedDownloads++;
+            notifyAll();
+            return download.dmid;
+        }
+
+        @Override
+        public synchronized int removeDownloads(long... dmids) {
+            int removed = 0;
+            for (long dmid : dmids) {
+                final NativeDownloadModel download = downloads.remove(dmid);
+                if (download != null) {
+                    new File(download.filepath).delete();
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        @Override
+        public void setDownloadPositions(@NonNull String courseId,
+                                         @NonNull Map<String, Integer> positions) {
+        }
+
+        @Override
+        public void prioritizeDownloads(@NonNull String courseId, @NonNull List<String> urls) {
+        }
+
+        @Override
+        public int getProgressForDownload(long dmid) {
+            return 0;
+        }
+
+        @Override
+        public boolean isDownloadComplete(long dmid) {
+            return false;
+        }
+
+        @Override
+        public int getAverageProgressForDownloads(long[] dmids) {
+            return 0;
+        }
+
+        @Override
+        public NativeDownloadModel getProgressDetailsForDownloads(long[] dmids) {
+            return null;
+        }
+
+        @Override
+        public boolean isDownloadManagerEnabled() {
+            return true;
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package org.edx.mobile.test.module;
 
-import android.app.Application;
+import com.google.inject.Injector;
 
-import org.edx.mobile.base.MainApplication;
-import org.edx.mobile.core.IEdxEnvironment;
 import org.edx.mobile.model.download.NativeDownloadModel;
 import org.edx.mobile.module.download.DownloadFactory;
 import org.edx.mobile.module.download.IDownloadManager;
+import org.edx.mobile.module.storage.DownloadPlacement;
 import org.edx.mobile.test.BaseTestCase;
-import org.edx.mobile.util.FileUtil;
 import org.junit.Test;
 import org.robolectric.RuntimeEnvironment;
 
@@ -21,6 +19,13 @@ import static org.junit.Assert.assertTrue;
 public class DownloadTests extends BaseTestCase {
 
     private IDownloadManager dm;
+    private DownloadPlacement placement;
+
+    @Override
+    protected void inject(Injector injector) throws Exception {
+        super.inject(injector);
+        placement = injector.getInstance(DownloadPlacement.class);
+    }
 
     @Override
     public void setUp() throws Exception {
@@ -32,9 +37,7 @@ public class DownloadTests extends BaseTestCase {
     public void testAddDownload() throws Exception {
         File dir = null;
         try {
-            final Application application = RuntimeEnvironment.application;
-            final IEdxEnvironment environment = MainApplication.getEnvironment(application);
-            dir = FileUtil.getDownloadDirectory(application, environment);
+            dir = placement.getDownloadDirectory(0);
         } catch (Exception ex) {
             // it happens in CI environment and we should skip the test.
             print("dir is null, it happens in CI environment and we should skip the test.");
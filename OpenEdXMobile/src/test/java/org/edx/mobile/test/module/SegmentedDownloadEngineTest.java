@@ -0,0 +1,332 @@
+package org.edx.mobile.test.module;
+
+import android.app.DownloadManager;
+
+import androidx.annotation.NonNull;
+
+import org.edx.mobile.module.download.SegmentedDownload;
+import org.edx.mobile.module.download.SegmentedDownloadEngine;
+import org.edx.mobile.test.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedDownloadEngineTest extends BaseTest {
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private RangeDispatcher dispatcher;
+    private File journalDir;
+    private final List<SegmentedDownload> finished = Collections.synchronizedList(new ArrayList<>());
+    private CountDownLatch finishedLatch;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new RangeDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        journalDir = temporaryFolder.newFolder("journals");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testSegmentedDownload() throws Exception {
+        final byte[] content = dispatcher.addFile("/video.mp4", 5 * 1024 * 1024 + 123);
+        final SegmentedDownloadEngine engine = createEngine(1, new AtomicBoolean(true));
+        final File file = new File(temporaryFolder.getRoot(), "video.mp4");
+
+        final long dmid = engine.addDownload(server.url("/video.mp4").toString(), file, false,
+                "Video", "course");
+        awaitFinished();
+
+        assertEquals(DownloadManager.STATUS_SUCCESSFUL, engine.getDownload(dmid).getStatus());
+        assertEquals(content.length, engine.getDownload(dmid).getDownloadedBytes());
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // A probe, followed by a request for each of the two segments
+        assertEquals(3, dispatcher.ranges.size());
+        final int segmentSize = content.length / 2;
+        assertTrue(dispatcher.ranges.contains("bytes=0-" + (segmentSize - 1)));
+        assertTrue(dispatcher.ranges.contains("bytes=" + segmentSize + "-" + (content.length - 1)));
+    }
+
+    @Test
+    public void testDownloadWithoutRangeSupport() throws Exception {
+        final byte[] content = dispatcher.addFile("/video.mp4", 3 * 1024 * 1024);
+        dispatcher.supportsRanges = false;
+        final SegmentedDownloadEngine engine = createEngine(1, new AtomicBoolean(true));
+        final File file = new File(temporaryFolder.getRoot(), "video.mp4");
+
+        final long dmid = engine.addDownload(server.url("/video.mp4").toString(), file, false,
+                "Video", null);
+        awaitFinished();
+
+        assertEquals(DownloadManager.STATUS_SUCCESSFUL, engine.getDownload(dmid).getStatus());
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testResumeFromJournal() throws Exception {
+        final byte[] content = dispatcher.addFile("/video.mp4", 4 * 1024 * 1024);
+        final File file = new File(temporaryFolder.getRoot(), "video.mp4");
+        final long secondSegmentStart = content.length / 2;
+        // Lose the network as soon as the second segment is requested
+        final AtomicBoolean online = new AtomicBoolean(true);
+        dispatcher.disconnectFrom = secondSegmentStart;
+        dispatcher.online = online;
+
+        final SegmentedDownloadEngine engine = createEngine(1, online);
+        final long dmid = engine.addDownload(server.url("/video.mp4").toString(), file, false,
+                "Video", "course");
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (engine.getDownload(dmid).getStatus() != DownloadManager.STATUS_PAUSED) {
+            assertTrue("Download wasn't paused", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        // Wait for the engine to be done with the download, which includes journaling it
+        engine.schedule();
+        assertEquals(secondSegmentStart, engine.getDownload(dmid).getDownloadedBytes());
+
+        // Restart the app with the network back
+        dispatcher.ranges.clear();
+        dispatcher.disconnectFrom = -1;
+        final SegmentedDownloadEngine restartedEngine = createEngine(1, new AtomicBoolean(true));
+        assertEquals(DownloadManager.STATUS_PENDING, restartedEngine.getDownload(dmid).getStatus());
+        restartedEngine.schedule();
+        awaitFinished();
+
+        assertEquals(DownloadManager.STATUS_SUCCESSFUL,
+                restartedEngine.getDownload(dmid).getStatus());
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // Only the second segment is requested again
+        assertEquals(Collections.singletonList("bytes=" + secondSegmentStart + "-"
+                + (content.length - 1)), dispatcher.ranges);
+    }
+
+    @Test
+    public void testConcurrencyAndCourseOrder() throws Exception {
+        dispatcher.addFile("/a1.mp4", 1024);
+        dispatcher.addFile("/a2.mp4", 1024);
+        dispatcher.addFile("/b1.mp4", 1024);
+        dispatcher.gate = new CountDownLatch(1);
+        final SegmentedDownloadEngine engine = createEngine(3, new AtomicBoolean(true));
+        engine.setMaxConcurrentDownloads(1);
+        final File dir = temporaryFolder.getRoot();
+
+        final long a1 = engine.addDownload(server.url("/a1.mp4").toString(),
+                new File(dir, "a1.mp4"), false, null, "courseA");
+        final long a2 = engine.addDownload(server.url("/a2.mp4").toString(),
+                new File(dir, "a2.mp4"), false, null, "courseA");
+        final long b1 = engine.addDownload(server.url("/b1.mp4").toString(),
+                new File(dir, "b1.mp4"), false, null, "courseB");
+        assertEquals(DownloadManager.STATUS_RUNNING, engine.getDownload(a1).getStatus());
+        assertEquals(DownloadManager.STATUS_PENDING, engine.getDownload(a2).getStatus());
+        assertEquals(DownloadManager.STATUS_PENDING, engine.getDownload(b1).getStatus());
+        dispatcher.gate.countDown();
+        awaitFinished();
+
+        // The course requested last is served first
+        assertEquals(a1, finished.get(0).getDmid());
+        assertEquals(b1, finished.get(1).getDmid());
+        assertEquals(a2, finished.get(2).getDmid());
+        assertEquals(1, dispatcher.maxConcurrentRequests);
+    }
+
+    @Test
+    public void testCoursePositionsAndPrioritizedDownloads() throws Exception {
+        final Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            dispatcher.addFile("/v" + i + ".mp4", 1024);
+            positions.put(server.url("/v" + i + ".mp4").toString(), i);
+        }
+        dispatcher.gate = new CountDownLatch(1);
+        final SegmentedDownloadEngine engine = createEngine(4, new AtomicBoolean(true));
+        engine.setMaxConcurrentDownloads(1);
+        engine.setDownloadPositions("course", positions);
+        final File dir = temporaryFolder.getRoot();
+
+        // Added out of course order, as by the parallel enqueueing of the videos
+        final long[] dmids = new long[4];
+        for (int i : new int[]{2, 3, 1, 0}) {
+            dmids[i] = engine.addDownload(server.url("/v" + i + ".mp4").toString(),
+                    new File(dir, "v" + i + ".mp4"), false, null, "course");
+        }
+        assertEquals(DownloadManager.STATUS_RUNNING, engine.getDownload(dmids[2]).getStatus());
+        engine.prioritizeDownloads("course",
+                Collections.singletonList(server.url("/v3.mp4").toString()));
+        dispatcher.gate.countDown();
+        awaitFinished();
+
+        // The prioritized download is served first, and then the others in course order
+        assertEquals(dmids[2], finished.get(0).getDmid());
+        assertEquals(dmids[3], finished.get(1).getDmid());
+        assertEquals(dmids[0], finished.get(2).getDmid());
+        assertEquals(dmids[1], finished.get(3).getDmid());
+    }
+
+    @Test
+    public void testRemoveDownload() throws Exception {
+        dispatcher.addFile("/video.mp4", 1024);
+        dispatcher.gate = new CountDownLatch(1);
+        final SegmentedDownloadEngine engine = createEngine(1, new AtomicBoolean(true));
+        final File file = new File(temporaryFolder.getRoot(), "video.mp4");
+
+        final long dmid = engine.addDownload(server.url("/video.mp4").toString(), file, false,
+                null, null);
+        assertTrue(engine.removeDownload(dmid));
+        dispatcher.gate.countDown();
+
+        assertFalse(engine.removeDownload(dmid));
+        assertNull(engine.getDownload(dmid));
+        assertFalse(file.exists());
+        final File[] journals = journalDir.listFiles();
+        assertEquals(0, journals == null ? 0 : journals.length);
+    }
+
+    @Test
+    public void testFinishedDownloadForgottenAfterReload() throws Exception {
+        dispatcher.addFile("/video.mp4", 1024);
+        final SegmentedDownloadEngine engine = createEngine(1, new AtomicBoolean(true));
+        final File file = new File(temporaryFolder.getRoot(), "video.mp4");
+        final long dmid = engine.addDownload(server.url("/video.mp4").toString(), file, false,
+                null, null);
+        awaitFinished();
+
+        // Kept for a while, in case the app is restarted before the completion is handled
+        assertEquals(DownloadManager.STATUS_SUCCESSFUL,
+                createEngine(0, new AtomicBoolean(true)).getDownload(dmid).getStatus());
+
+        final File[] journals = journalDir.listFiles();
+        assertEquals(1, journals.length);
+        assertTrue(journals[0].setLastModified(System.currentTimeMillis()
+                - SegmentedDownloadEngine.FINISHED_JOURNAL_RETENTION_MS - 1000));
+        assertNull(createEngine(0, new AtomicBoolean(true)).getDownload(dmid));
+        assertEquals(0, journalDir.listFiles().length);
+        assertTrue("Downloaded file deleted", file.exists());
+    }
+
+    @NonNull
+    private SegmentedDownloadEngine createEngine(int expectedDownloads,
+                                                 @NonNull AtomicBoolean online) {
+        finishedLatch = new CountDownLatch(expectedDownloads);
+        return new SegmentedDownloadEngine(new OkHttpClient(), journalDir,
+                download -> {
+                    finished.add(download);
+                    finishedLatch.countDown();
+                },
+                wifiOnly -> online.get());
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        assertTrue("Downloads didn't finish", finishedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Serves files with support for single range requests.
+     */
+    private static class RangeDispatcher extends Dispatcher {
+        private final Map<String, byte[]> files = new HashMap<>();
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean supportsRanges = true;
+        /**
+         * Requests for ranges from this byte on disconnect and take the network offline.
+         */
+        volatile long disconnectFrom = -1;
+        volatile AtomicBoolean online;
+        /**
+         * Responses are held back till this is opened.
+         */
+        volatile CountDownLatch gate;
+        private int concurrentRequests;
+        volatile int maxConcurrentRequests;
+
+        byte[] addFile(@NonNull String path, int size) {
+            final byte[] content = new byte[size];
+            new Random(size).nextBytes(content);
+            files.put(path, content);
+            return content;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            synchronized (this) {
+                maxConcurrentRequests = Math.max(maxConcurrentRequests, ++concurrentRequests);
+            }
+            try {
+                final CountDownLatch gate = this.gate;
+                if (gate != null) {
+                    gate.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+                return respond(request);
+            } finally {
+                synchronized (this) {
+                    concurrentRequests--;
+                }
+            }
+        }
+
+        @NonNull
+        private MockResponse respond(@NonNull RecordedRequest request) {
+            final byte[] content = files.get(request.getPath());
+            if (content == null) {
+                return new MockResponse().setResponseCode(404);
+            }
+            final String range = request.getHeader("Range");
+            final Matcher matcher = range == null ? null : RANGE_PATTERN.matcher(range);
+            if (!supportsRanges || matcher == null || !matcher.matches()) {
+                return new MockResponse().setBody(new Buffer().write(content));
+            }
+            ranges.add(range);
+            final int start = Integer.parseInt(matcher.group(1));
+            final int end = matcher.group(2).isEmpty() ? content.length - 1 :
+                    Integer.parseInt(matcher.group(2));
+            if (disconnectFrom >= 0 && start >= disconnectFrom) {
+                online.set(false);
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+            }
+            return new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                    .setBody(new Buffer().write(content, start, end - start + 1));
+        }
+    }
+}
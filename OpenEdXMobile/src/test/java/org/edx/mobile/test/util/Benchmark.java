@@ -0,0 +1,128 @@
+package org.edx.mobile.test.util;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A minimal micro benchmark harness for the JVM unit tests. Every operation is warmed up, then
+ * timed in samples of enough invocations to take at least {@link #MIN_SAMPLE_TIME_NS}, and the
+ * median and minimum time per invocation get reported.
+ * <p>
+ * The results of a suite are written as CSV to {@code build/reports/benchmarks/}, so that they
+ * can be kept as a baseline and compared against after a change.
+ */
+public class Benchmark {
+    private static final long MIN_SAMPLE_TIME_NS = 1000000;
+    private static final int WARMUP_SAMPLES = 5;
+    private static final int SAMPLES = 15;
+    private static final File REPORTS_DIR = new File("build/reports/benchmarks");
+
+    /**
+     * Keeps the results of the operations reachable, so that the JIT can't drop them as dead code.
+     */
+    public static volatile Object sink;
+
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    public static class Result {
+        public final String name;
+        public final long medianNs;
+        public final long minNs;
+
+        Result(@NonNull String name, long medianNs, long minNs) {
+            this.name = name;
+            this.medianNs = medianNs;
+            this.minNs = minNs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-50s median %,12d ns/op   min %,12d ns/op",
+                    name, medianNs, minNs);
+        }
+    }
+
+    @NonNull
+    private final String suite;
+    private final List<Result> results = new ArrayList<>();
+
+    public Benchmark(@NonNull String suite) {
+        this.suite = suite;
+    }
+
+    @NonNull
+    public Result measure(@NonNull String name, @NonNull Operation operation) throws Exception {
+        // Find the no of invocations that makes up a sample, which also warms the operation up
+        int invocations = 1;
+        while (time(operation, invocations) < MIN_SAMPLE_TIME_NS) {
+            invocations *= 2;
+        }
+        for (int i = 0; i < WARMUP_SAMPLES; i++) {
+            time(operation, invocations);
+        }
+        final long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = time(operation, invocations) / invocations;
+        }
+        Arrays.sort(samples);
+        final Result result = new Result(name, samples[SAMPLES / 2], samples[0]);
+        results.add(result);
+        System.out.println(suite + ": " + result);
+        return result;
+    }
+
+    /**
+     * Record a value that isn't a time, e.g. the retained heap.
+     */
+    public void record(@NonNull String name, long value) {
+        results.add(new Result(name, value, value));
+        System.out.println(suite + ": " + name + " = " + value);
+    }
+
+    /**
+     * @return Bytes of the heap in use, after letting the garbage collector run, to measure the
+     * memory retained by the objects created in between two calls.
+     */
+    public static long usedMemory() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Write the results measured so far to the report of the suite.
+     */
+    public void writeReport() throws IOException {
+        if (!REPORTS_DIR.isDirectory() && !REPORTS_DIR.mkdirs()) {
+            throw new IOException("Unable to create " + REPORTS_DIR);
+        }
+        try (Writer writer = new FileWriter(new File(REPORTS_DIR, suite + ".csv"))) {
+            writer.write("name,median,min\n");
+            for (Result result : results) {
+                writer.write(String.format(Locale.US, "%s,%d,%d\n",
+                        result.name, result.medianNs, result.minNs));
+            }
+        }
+    }
+
+    private static long time(@NonNull Operation operation, int invocations) throws Exception {
+        final long start = System.nanoTime();
+        for (int i = 0; i < invocations; i++) {
+            sink = operation.run();
+        }
+        return System.nanoTime() - start;
+    }
+}
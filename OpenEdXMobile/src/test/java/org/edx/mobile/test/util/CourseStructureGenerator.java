@@ -0,0 +1,163 @@
+package org.edx.mobile.test.util;
+
+import androidx.annotation.NonNull;
+
+import org.edx.mobile.model.course.BlockCount;
+import org.edx.mobile.model.course.BlockData;
+import org.edx.mobile.model.course.BlockList;
+import org.edx.mobile.model.course.BlockModel;
+import org.edx.mobile.model.course.BlockType;
+import org.edx.mobile.model.course.CourseStructureV1Model;
+import org.edx.mobile.model.course.EncodedVideos;
+import org.edx.mobile.model.course.VideoData;
+import org.edx.mobile.model.course.VideoInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic course structures of the given shape, to test and measure the course
+ * tree operations on courses much bigger than the mocked API responses.
+ */
+public class CourseStructureGenerator {
+    private static final String[] FORMATS = {null, "Homework", "Lab", "Exam"};
+
+    private int chapters = 10;
+    private int sequentialsPerChapter = 10;
+    private int verticalsPerSequential = 10;
+    private int unitsPerVertical = 5;
+    private float videoRatio = 0.3f;
+    private long seed = 42;
+
+    public CourseStructureGenerator setChapters(int chapters) {
+        this.chapters = chapters;
+        return this;
+    }
+
+    public CourseStructureGenerator setSequentialsPerChapter(int sequentialsPerChapter) {
+        this.sequentialsPerChapter = sequentialsPerChapter;
+        return this;
+    }
+
+    public CourseStructureGenerator setVerticalsPerSequential(int verticalsPerSequential) {
+        this.verticalsPerSequential = verticalsPerSequential;
+        return this;
+    }
+
+    public CourseStructureGenerator setUnitsPerVertical(int unitsPerVertical) {
+        this.unitsPerVertical = unitsPerVertical;
+        return this;
+    }
+
+    /**
+     * @param videoRatio Fraction of the units that are videos, between 0 and 1.
+     */
+    public CourseStructureGenerator setVideoRatio(float videoRatio) {
+        this.videoRatio = videoRatio;
+        return this;
+    }
+
+    public CourseStructureGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @return Total no of blocks, including the course block, of the generated structure.
+     */
+    public int getBlocksCount() {
+        final int verticals = chapters * sequentialsPerChapter * verticalsPerSequential;
+        return 1 + chapters + chapters * sequentialsPerChapter + verticals
+                + verticals * unitsPerVertical;
+    }
+
+    @NonNull
+    public CourseStructureV1Model generate() {
+        final Random random = new Random(seed);
+        final HashMap<String, BlockModel> blocks = new HashMap<>();
+        final BlockModel course = createBlock(blocks, "course", BlockType.COURSE, 0);
+        for (int c = 0; c < chapters; c++) {
+            final BlockModel chapter = createBlock(blocks, "chapter", BlockType.CHAPTER, c);
+            course.descendants.add(chapter.id);
+            for (int s = 0; s < sequentialsPerChapter; s++) {
+                final BlockModel sequential = createBlock(blocks, chapter.blockId + "_sequential",
+                        BlockType.SEQUENTIAL, s);
+                sequential.graded = random.nextBoolean();
+                sequential.format = FORMATS[random.nextInt(FORMATS.length)];
+                chapter.descendants.add(sequential.id);
+                for (int v = 0; v < verticalsPerSequential; v++) {
+                    final BlockModel vertical = createBlock(blocks, sequential.blockId + "_vertical",
+                            BlockType.VERTICAL, v);
+                    sequential.descendants.add(vertical.id);
+                    for (int u = 0; u < unitsPerVertical; u++) {
+                        final BlockModel unit;
+                        if (random.nextFloat() < videoRatio) {
+                            unit = createBlock(blocks, vertical.blockId + "_video", BlockType.VIDEO, u);
+                            unit.data = createVideoData(unit.blockId, random);
+                        } else {
+                            unit = createBlock(blocks, vertical.blockId + "_html", BlockType.HTML, u);
+                            unit.data = new BlockData();
+                        }
+                        unit.descendants = null;
+                        vertical.descendants.add(unit.id);
+                    }
+                }
+            }
+        }
+        final CourseStructureV1Model model = new CourseStructureV1Model();
+        model.root = course.id;
+        model.blockData = new BlockList(blocks);
+        return model;
+    }
+
+    @NonNull
+    private static BlockModel createBlock(@NonNull HashMap<String, BlockModel> blocks,
+                                          @NonNull String prefix, @NonNull BlockType type,
+                                          int index) {
+        final BlockModel block = new BlockModel();
+        block.blockId = prefix + index;
+        block.id = "block-v1:edX+Synthetic+Course+type@" + type.name().toLowerCase() +
+                "+block@" + block.blockId;
+        block.type = type;
+        block.displayName = type.name() + " " + index;
+        block.studentViewMultiDevice = true;
+        block.studentViewUrl = "https://courses.example.com/xblock/" + block.id;
+        block.lmsWebUrl = "https://courses.example.com/jump_to/" + block.id;
+        block.blockCounts = new BlockCount();
+        block.descendants = new ArrayList<>();
+        blocks.put(block.id, block);
+        return block;
+    }
+
+    @NonNull
+    private static VideoData createVideoData(@NonNull String name, @NonNull Random random) {
+        final VideoData data = new VideoData();
+        data.duration = 60 + random.nextInt(600);
+        data.onlyOnWeb = random.nextInt(10) == 0;
+        data.encodedVideos = new EncodedVideos();
+        data.encodedVideos.mobileLow = new VideoInfo();
+        data.encodedVideos.mobileLow.url = "https://video.example.com/" + name + "_low.mp4";
+        data.encodedVideos.mobileLow.fileSize = 1_000_000 + random.nextInt(50_000_000);
+        data.encodedVideos.mobileHigh = new VideoInfo();
+        data.encodedVideos.mobileHigh.url = "https://video.example.com/" + name + "_high.mp4";
+        data.encodedVideos.mobileHigh.fileSize = 2 * data.encodedVideos.mobileLow.fileSize;
+        return data;
+    }
+
+    /**
+     * @return Ids of all the blocks of the given type in the structure.
+     */
+    @NonNull
+    public static List<String> getBlockIds(@NonNull CourseStructureV1Model model,
+                                           @NonNull BlockType type) {
+        final List<String> ids = new ArrayList<>();
+        for (BlockModel block : model.blockData.values()) {
+            if (block.type == type) {
+                ids.add(block.id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,38 @@
+package org.edx.mobile.util;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+/**
+ * Tests for verifying implementation correctness of {@link StringInterner}.
+ */
+public class StringInternerTest {
+    /**
+     * Verify that equal strings are resolved to the copy kept first, and that null is passed
+     * through.
+     */
+    @Test
+    public void testIntern_returnsKeptCopy() {
+        final StringInterner interner = new StringInterner(10);
+        final String first = new String("Homework");
+        final String second = new String("Homework");
+        assertThat(interner.intern(first)).isSameAs(first);
+        assertThat(interner.intern(second)).isSameAs(first);
+        assertThat(interner.intern(null)).isNull();
+        assertThat(interner.size()).isEqualTo(1);
+    }
+
+    /**
+     * Verify that the pool never holds more than its maximum no of strings.
+     */
+    @Test
+    public void testIntern_staysBounded() {
+        final StringInterner interner = new StringInterner(3);
+        for (int i = 0; i < 10; i++) {
+            final String value = "value" + i;
+            assertThat(interner.intern(value)).isEqualTo(value);
+            assertThat(interner.size()).isLessThanOrEqualTo(3);
+        }
+    }
+}